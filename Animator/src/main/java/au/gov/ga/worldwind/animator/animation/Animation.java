@@ -94,6 +94,12 @@ public interface Animation extends AnimationObject, XmlSerializable<Animation>,
 	 */
 	int getKeyFrameCount();
 	
+	/**
+	 * @return A count that is incremented whenever the key frames of this animation, or the parameter values 
+	 * recorded in them, change. Can be compared with a previous count to invalidate state derived from the key frames.
+	 */
+	long getKeyFrameModificationCount();
+	
 	/**
 	 * @return The key frame at the given frame, or <code>null</code> if no key frame is recorded at that frame
 	 */
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.logging.Level;
 
@@ -40,6 +41,7 @@ import au.gov.ga.worldwind.animator.animation.camera.Camera;
 import au.gov.ga.worldwind.animator.animation.camera.CameraImpl;
 import au.gov.ga.worldwind.animator.animation.elevation.AnimatableElevation;
 import au.gov.ga.worldwind.animator.animation.elevation.DefaultAnimatableElevation;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
@@ -81,6 +83,12 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 	private NavigableMap<Integer, KeyFrame> keyFrameMap = new TreeMap<Integer, KeyFrame>();
 	private ReadWriteLock keyFrameMapLock = new LenientReadWriteLock();
 
+	/**
+	 * Incremented whenever the key frame map or the values in the key frames
+	 * change (see {@link #getKeyFrameModificationCount()})
+	 */
+	private final AtomicLong keyFrameModificationCount = new AtomicLong();
+
 	/** The number of frames in this animation */
 	private int frameCount;
 
@@ -154,6 +162,29 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		}
 	}
 
+	@Override
+	public long getKeyFrameModificationCount()
+	{
+		return keyFrameModificationCount.get();
+	}
+
+	/**
+	 * Mark the key frames as modified. Called after the key frame map is
+	 * modified.
+	 */
+	private void keyFramesModified()
+	{
+		keyFrameModificationCount.incrementAndGet();
+	}
+
+	@Override
+	protected boolean handleEvent(AnimationEvent event)
+	{
+		//events propagated from the key frames include changes to the values they contain
+		keyFramesModified();
+		return true;
+	}
+
 	@Override
 	public boolean hasKeyFrames()
 	{
@@ -572,6 +603,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			{
 				keyFrameMapLock.writeLock().unlock();
 			}
+			keyFramesModified();
 		}
 
 		this.frameCount = newCount;
@@ -661,6 +693,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 				keyFrameMapLock.writeLock().unlock();
 			}
 		}
+		keyFramesModified();
 
 		if (applySmoothing)
 		{
@@ -948,6 +981,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			{
 				keyFrameMapLock.writeLock().unlock();
 			}
+			keyFramesModified();
 			fireRemoveEvent(keyFrame);
 		}
 	}
@@ -1012,6 +1046,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		{
 			keyFrameMapLock.writeLock().lock();
 			this.keyFrameMap.clear();
+			keyFramesModified();
 			for (int i = 0; i < oldKeyFrames.size(); i++)
 			{
 				insertKeyFrame(new KeyFrameImpl(newFrames[i], oldKeyFrames.get(i).getParameterValues()));
@@ -164,8 +164,8 @@ public class CameraImpl extends AnimatableBase implements Camera
 
 		if (clippingParametersActivated)
 		{
-			nearClip.applyValueIfEnabled(nearClip.getValueAtFrame(frame).getValue(), frame);
-			farClip.applyValueIfEnabled(farClip.getValueAtFrame(frame).getValue(), frame);
+			nearClip.applyValueIfEnabled(nearClip.getDoubleValueAtFrame(frame), frame);
+			farClip.applyValueIfEnabled(farClip.getDoubleValueAtFrame(frame), frame);
 		}
 	}
 
@@ -186,16 +186,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] latValues = lat.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] lonValues = lon.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] elevationValues = elevation.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] latValues = lat.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] lonValues = lon.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] elevationValues = elevation.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
 
-		Position[] result = new Position[latValues.length];
+		Position[] result = new Position[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
 			result[i] =
-					Position.fromDegrees(latValues[i].getValue(), lonValues[i].getValue(),
-							animation.unapplyZoomScaling(elevationValues[i].getValue()));
+					Position.fromDegrees(latValues[i], lonValues[i], animation.unapplyZoomScaling(elevationValues[i]));
 		}
 
 		return result;
@@ -205,15 +204,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	@Override
 	public Position getEyePositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(eyeLat.getValueAtFrame(frame).getValue(), eyeLon.getValueAtFrame(frame).getValue(),
-				getAnimation().unapplyZoomScaling(eyeElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(eyeLat.getDoubleValueAtFrame(frame), eyeLon.getDoubleValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(eyeElevation.getDoubleValueAtFrame(frame)));
 	}
 
 	@Override
 	public Position getLookatPositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(lookAtLat.getValueAtFrame(frame).getValue(), lookAtLon.getValueAtFrame(frame)
-				.getValue(), getAnimation().unapplyZoomScaling(lookAtElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(lookAtLat.getDoubleValueAtFrame(frame), lookAtLon.getDoubleValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(lookAtElevation.getDoubleValueAtFrame(frame)));
 	}
 
 	@Override
@@ -363,9 +362,9 @@ public class CameraImpl extends AnimatableBase implements Camera
 			Vector3 vStart = null;
 			for (int frame = firstFrame; frame <= lastFrame; frame++)
 			{
-				double x = eyeLat.getValueAtFrame(frame).getValue();
-				double y = eyeLon.getValueAtFrame(frame).getValue();
-				double z = eyeElevation.getValueAtFrame(frame).getValue();
+				double x = eyeLat.getDoubleValueAtFrame(frame);
+				double y = eyeLon.getDoubleValueAtFrame(frame);
+				double z = eyeElevation.getDoubleValueAtFrame(frame);
 
 				Vector3 vEnd = new Vector3(x, y, z);
 				if (vStart != null)
@@ -115,8 +115,8 @@ public class StereoCameraImpl extends CameraImpl implements StereoCamera
 		{
 			StereoView stereo = (StereoView) view;
 			int frame = animation.getCurrentFrame();
-			double focalLength = this.focalLength.getValueAtFrame(frame).getValue();
-			double eyeSeparation = this.eyeSeparation.getValueAtFrame(frame).getValue();
+			double focalLength = this.focalLength.getDoubleValueAtFrame(frame);
+			double eyeSeparation = this.eyeSeparation.getDoubleValueAtFrame(frame);
 			stereo.getParameters().setDynamicStereo(dynamicStereo);
 			stereo.getParameters().setFocalLength(focalLength);
 			stereo.getParameters().setEyeSeparation(eyeSeparation);
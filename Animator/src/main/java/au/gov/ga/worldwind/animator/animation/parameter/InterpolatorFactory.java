@@ -15,6 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.animation.parameter;
 
+import au.gov.ga.worldwind.animator.math.bezier.TimeBezier;
 import au.gov.ga.worldwind.animator.math.interpolation.BezierInterpolator;
 import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
 import au.gov.ga.worldwind.animator.math.interpolation.LinearInterpolator;
@@ -59,6 +60,37 @@ public class InterpolatorFactory
 		return createLinearInterpolator(startValue, endValue);
 	}
 
+	/**
+	 * Create and return a {@link TimeBezier} for interpolation between the two provided parameter values,
+	 * if either value is a bezier value.
+	 * <p/>
+	 * The curve is defined on the same scaled interval <code>[0,1]</code> in the time dimension, with the same
+	 * control points, as the {@link BezierInterpolator} returned by {@link #getInterpolator}, so it produces the
+	 * same values.
+	 * 
+	 * @param startValue The start value of the interpolation
+	 * @param endValue The end value of the interpolation
+	 * 
+	 * @return a {@link TimeBezier} for interpolation between the two provided parameter values, or 
+	 * <code>null</code> if neither value is a bezier value (and linear interpolation should be used)
+	 */
+	public static TimeBezier getTimeBezier(ParameterValue startValue, ParameterValue endValue)
+	{
+		Validate.notNull(startValue, "A start value is required");
+		Validate.notNull(endValue, "An end value is required");
+		
+		if (startValue.getType() != ParameterValueType.BEZIER && endValue.getType() != ParameterValueType.BEZIER)
+		{
+			return null;
+		}
+		
+		BezierParameterValue startBezier = asBezierValue(startValue, true, endValue);
+		BezierParameterValue endBezier = asBezierValue(endValue, false, startValue);
+		
+		return new TimeBezier(0, startBezier.getValue(), startBezier.getOutPercent(), startBezier.getOutValue(),
+				1 - endBezier.getInPercent(), endBezier.getInValue(), 1, endBezier.getValue());
+	}
+
 	/**
 	 * Create a new {@link LinearInterpolator} using the provided start and end values
 	 * 
@@ -98,6 +98,36 @@ public interface Parameter extends AnimationObject, Serializable, Nameable, XmlS
 	 */
 	ParameterValue[] getValuesBetweenFrames(int startFrame, int endFrame, ParameterValue[] array);
 
+	/**
+	 * Get the value of this {@link Parameter} at the provided frame. Returns
+	 * the same value as {@link Parameter#getValueAtFrame(int)}, without
+	 * creating a {@link ParameterValue}.
+	 * 
+	 * @param frame
+	 *            The frame for which the value of the parameter is required
+	 * 
+	 * @return The value of this {@link Parameter} at the provided frame.
+	 */
+	double getDoubleValueAtFrame(int frame);
+
+	/**
+	 * Get the values of this {@link Parameter} between the provided frames,
+	 * inclusive. Returns the same values as
+	 * {@link Parameter#getValuesBetweenFrames(int, int, ParameterValue[])},
+	 * without creating {@link ParameterValue}s.
+	 * 
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 * 
+	 * @return Values for the frames provided.
+	 */
+	double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array);
+
 	/**
 	 * Get the default value of this parameter. This could be a static value
 	 * stored in the parameter, or a dynamic value based on the current state of
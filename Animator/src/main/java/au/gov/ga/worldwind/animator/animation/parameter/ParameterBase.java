@@ -31,8 +31,6 @@ import au.gov.ga.worldwind.animator.animation.event.ParameterEventImpl;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
-import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
-import au.gov.ga.worldwind.animator.math.vector.Vector2;
 import au.gov.ga.worldwind.animator.util.Armable;
 import au.gov.ga.worldwind.animator.util.CodependantHelper;
 import au.gov.ga.worldwind.animator.util.Enableable;
@@ -71,6 +69,12 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 
 	private final CodependantHelper codependantHelper;
 
+	/**
+	 * Compiled key frame values of this parameter, recompiled when the
+	 * animation's key frames change
+	 */
+	private transient volatile ParameterTimeline timeline;
+
 	/**
 	 * Constructor. Initialises the mandatory {@link Animation} parameter.
 	 */
@@ -215,13 +219,29 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 	 */
 	protected abstract void doApplyValue(double value);
 
+	/**
+	 * Get the compiled timeline of this parameter's key frame values,
+	 * recompiling it if the animation's key frames have changed since it was
+	 * last compiled.
+	 * 
+	 * @return Up to date timeline for this parameter
+	 */
+	protected ParameterTimeline getTimeline()
+	{
+		long modificationCount = animation.getKeyFrameModificationCount();
+		ParameterTimeline timeline = this.timeline;
+		if (timeline == null || !timeline.isValid(modificationCount))
+		{
+			timeline = new ParameterTimeline(this, animation.getKeyFrames(this), modificationCount);
+			this.timeline = timeline;
+		}
+		return timeline;
+	}
+
 	@Override
 	public final ParameterValue getValueAtFrame(int frame)
 	{
-		// Interpolate between the two surrounding frames
-		KeyFrame previousKeyFrame = animation.getKeyFrameWithParameterBeforeFrame(this, frame, true);
-		KeyFrame nextKeyFrame = animation.getKeyFrameWithParameterAfterFrame(this, frame, false);
-		return calculateInterpolatedParameterValue(frame, previousKeyFrame, nextKeyFrame);
+		return getValueAtFrame(getTimeline(), frame);
 	}
 
 	@Override
@@ -234,88 +254,73 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 			array = new ParameterValue[endFrame - startFrame + 1];
 		}
 
-		KeyFrame previousKeyFrame = null;
-		KeyFrame nextKeyFrame = null;
+		ParameterTimeline timeline = getTimeline();
 		for (int frame = startFrame; frame <= endFrame; frame++)
 		{
-			//if the frame is outside of the bounds of previous and next, then recalculate
-			if (frame == startFrame || (nextKeyFrame != null && frame >= nextKeyFrame.getFrame()))
-			{
-				previousKeyFrame = animation.getKeyFrameWithParameterBeforeFrame(this, frame, true);
-				nextKeyFrame = animation.getKeyFrameWithParameterAfterFrame(this, frame, false);
-			}
-			array[frame - startFrame] = calculateInterpolatedParameterValue(frame, previousKeyFrame, nextKeyFrame);
+			array[frame - startFrame] = getValueAtFrame(timeline, frame);
 		}
 
 		return array;
 	}
 
 	/**
-	 * Invoked by the {@link ParameterBase#getValueAtFrame(int)} and
-	 * {@link ParameterBase#getValuesBetweenFrames(int, int, ParameterValue[])}
-	 * functions.
+	 * Calculate the value at the given frame from the given timeline. If the
+	 * frame is at, before the first, or after the last key frame with a value
+	 * for this parameter, that key frame's value is returned; otherwise a new
+	 * value is created with the interpolated value.
 	 */
-	protected ParameterValue calculateInterpolatedParameterValue(int frame, KeyFrame previousKeyFrame,
-			KeyFrame nextKeyFrame)
+	private ParameterValue getValueAtFrame(ParameterTimeline timeline, int frame)
 	{
 		// If no key values exist, return the default value
-		if (previousKeyFrame == null && nextKeyFrame == null)
+		if (timeline.isEmpty())
 		{
 			return ParameterValueFactory.createParameterValue(this, getDefaultValue(frame), frame);
 		}
 
-		// If there is no previous key value, return the next one
-		if (previousKeyFrame == null)
+		ParameterValue keyValue = timeline.getKeyValueAtFrame(frame);
+		if (keyValue != null)
 		{
-			return nextKeyFrame.getValueForParameter(this);
+			return keyValue;
 		}
 
-		// If there is no next key value, return the previous one
-		if (nextKeyFrame == null)
+		return ParameterValueFactory.createParameterValue(this, timeline.getValueAtFrame(frame), frame);
+	}
+
+	@Override
+	public double getDoubleValueAtFrame(int frame)
+	{
+		ParameterTimeline timeline = getTimeline();
+		if (timeline.isEmpty())
 		{
-			return previousKeyFrame.getValueForParameter(this);
+			return getDefaultValue(frame);
 		}
+		return timeline.getValueAtFrame(frame);
+	}
 
-		// Otherwise, use an interpolator to interpolate between the two values
+	@Override
+	public double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		double percent = calculatePercentOfInterval(previousKeyFrame.getFrame(), nextKeyFrame.getFrame(), frame);
+		if (array == null || array.length < (endFrame - startFrame + 1))
+		{
+			array = new double[endFrame - startFrame + 1];
+		}
 
-		//don't need to interpolate if at either end
-		if (percent <= 0)
+		ParameterTimeline timeline = getTimeline();
+		if (timeline.isEmpty())
 		{
-			return previousKeyFrame.getValueForParameter(this);
+			for (int frame = startFrame; frame <= endFrame; frame++)
+			{
+				array[frame - startFrame] = getDefaultValue(frame);
+			}
 		}
-		if (percent >= 1)
+		else
 		{
-			return nextKeyFrame.getValueForParameter(this);
+			timeline.getValuesBetweenFrames(startFrame, endFrame, array);
 		}
 
-		Interpolator<Vector2> interpolator =
-				InterpolatorFactory.getInterpolator(previousKeyFrame.getValueForParameter(this),
-						nextKeyFrame.getValueForParameter(this));
-		double interpolatedValue = interpolator.computeValue(percent).y;
-
-		return ParameterValueFactory.createParameterValue(this, interpolatedValue, frame);
-	}
-
-	/**
-	 * Calculate where the <code>target</code> lies on the interval
-	 * <code>[start,end]</code> as a percentage of the interval.
-	 * 
-	 * @param start
-	 *            The start of the interval
-	 * @param end
-	 *            The end of the interval
-	 * @param target
-	 *            The target point on the interval for which the percentage is
-	 *            required
-	 * 
-	 * @return where the <code>target</code> lies on the interval
-	 *         <code>[start,end]</code> as a percentage of the interval.
-	 */
-	private static double calculatePercentOfInterval(int start, int end, int target)
-	{
-		return ((double) (target - start)) / ((double) (end - start));
+		return array;
 	}
 
 	@Override
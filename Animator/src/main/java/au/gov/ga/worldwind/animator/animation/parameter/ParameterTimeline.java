@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.parameter;
+
+import java.util.List;
+
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.math.bezier.TimeBezier;
+import au.gov.ga.worldwind.animator.math.vector.Vector2;
+
+/**
+ * A compiled snapshot of the key frame values recorded for a single
+ * {@link Parameter}, used to evaluate the parameter without searching the
+ * animation's key frames.
+ * <p/>
+ * The key frame values are stored in arrays sorted by frame, so the key
+ * frames surrounding a frame are found with a binary search. The curve used to
+ * interpolate between each pair of bezier key frame values is created the
+ * first time it is needed, and kept for the lifetime of the timeline.
+ * <p/>
+ * A timeline doesn't track changes to the key frames; it records the
+ * animation's key frame modification count at the time it was compiled, and
+ * should be recompiled when that count changes (see
+ * {@link #isValid(long)}).
+ */
+public class ParameterTimeline
+{
+	private final long modificationCount;
+	private final int[] frames;
+	private final double[] values;
+	private final ParameterValue[] keyValues;
+
+	/** Interpolation curve for each segment, created lazily (null for linear segments) */
+	private final TimeBezier[] curves;
+	private final boolean[] bezier;
+
+	/**
+	 * Compile a timeline for the given parameter from the given key frames.
+	 * 
+	 * @param parameter
+	 *            Parameter to compile
+	 * @param keyFrames
+	 *            Key frames containing values for the parameter, sorted by
+	 *            frame
+	 * @param modificationCount
+	 *            Animation's key frame modification count at the time the key
+	 *            frames were retrieved
+	 */
+	public ParameterTimeline(Parameter parameter, List<KeyFrame> keyFrames, long modificationCount)
+	{
+		this.modificationCount = modificationCount;
+
+		int count = keyFrames.size();
+		frames = new int[count];
+		values = new double[count];
+		keyValues = new ParameterValue[count];
+		for (int i = 0; i < count; i++)
+		{
+			KeyFrame keyFrame = keyFrames.get(i);
+			frames[i] = keyFrame.getFrame();
+			keyValues[i] = keyFrame.getValueForParameter(parameter);
+			values[i] = keyValues[i].getValue();
+		}
+
+		int segments = Math.max(0, count - 1);
+		curves = new TimeBezier[segments];
+		bezier = new boolean[segments];
+		for (int i = 0; i < segments; i++)
+		{
+			bezier[i] =
+					keyValues[i].getType() == ParameterValueType.BEZIER
+							|| keyValues[i + 1].getType() == ParameterValueType.BEZIER;
+		}
+	}
+
+	/**
+	 * @param currentModificationCount
+	 *            The animation's current key frame modification count
+	 * @return Whether this timeline is up to date with the animation's key
+	 *         frames
+	 */
+	public boolean isValid(long currentModificationCount)
+	{
+		return modificationCount == currentModificationCount;
+	}
+
+	/**
+	 * @return Whether the parameter has no key frame values (in which case the
+	 *         parameter's default value should be used)
+	 */
+	public boolean isEmpty()
+	{
+		return frames.length == 0;
+	}
+
+	/**
+	 * Get the recorded key frame value that applies at the given frame, if no
+	 * interpolation is required at that frame: the frame is at a key frame, or
+	 * outside of the range of the key frames.
+	 * 
+	 * @param frame
+	 * @return The key frame value at frame, or <code>null</code> if the value
+	 *         at frame is interpolated
+	 */
+	public ParameterValue getKeyValueAtFrame(int frame)
+	{
+		if (isEmpty())
+		{
+			return null;
+		}
+		int index = indexOfKeyAtOrBefore(frame);
+		if (index < 0)
+		{
+			return keyValues[0];
+		}
+		if (index == frames.length - 1 || frames[index] == frame)
+		{
+			return keyValues[index];
+		}
+		return null;
+	}
+
+	/**
+	 * Calculate the value at the given frame. The timeline must not be empty.
+	 * 
+	 * @param frame
+	 * @return The (possibly interpolated) value at frame
+	 */
+	public double getValueAtFrame(int frame)
+	{
+		int index = indexOfKeyAtOrBefore(frame);
+		if (index < 0)
+		{
+			return values[0];
+		}
+		if (index == frames.length - 1 || frames[index] == frame)
+		{
+			return values[index];
+		}
+		return interpolate(index, frame);
+	}
+
+	/**
+	 * Calculate the values between the given frames (inclusive). The timeline
+	 * must not be empty. The key frames are only searched for the first frame;
+	 * subsequent frames step through the segments in order.
+	 * 
+	 * @param startFrame
+	 *            First frame to calculate
+	 * @param endFrame
+	 *            Last frame to calculate
+	 * @param array
+	 *            Array to store the values in, from index 0; must be at least
+	 *            <code>endFrame - startFrame + 1</code> long
+	 */
+	public void getValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		int last = frames.length - 1;
+		int index = indexOfKeyAtOrBefore(startFrame);
+		int frame = startFrame;
+		while (frame <= endFrame)
+		{
+			while (index < last && frames[index + 1] <= frame)
+			{
+				index++;
+			}
+
+			if (index < 0 || index == last || frames[index] == frame)
+			{
+				array[frame - startFrame] = values[index < 0 ? 0 : index];
+				frame++;
+				continue;
+			}
+
+			//interpolate the run of frames up to the next key frame
+			int segmentStart = frames[index];
+			int segmentLength = frames[index + 1] - segmentStart;
+			int runEnd = Math.min(endFrame, frames[index + 1] - 1);
+			if (bezier[index])
+			{
+				getCurve(index).valuesAt(frame - segmentStart, runEnd - frame + 1, segmentLength, array, frame
+						- startFrame);
+			}
+			else
+			{
+				for (int f = frame; f <= runEnd; f++)
+				{
+					double percent = ((double) (f - segmentStart)) / ((double) segmentLength);
+					array[f - startFrame] = Vector2.interpolate(values[index], values[index + 1], percent);
+				}
+			}
+			frame = runEnd + 1;
+		}
+	}
+
+	/**
+	 * Find the index of the last key frame at or before the given frame.
+	 * 
+	 * @return Key index, or -1 if the frame is before the first key frame
+	 */
+	private int indexOfKeyAtOrBefore(int frame)
+	{
+		int low = 0;
+		int high = frames.length - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if (frames[mid] <= frame)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return low - 1;
+	}
+
+	/**
+	 * Interpolate the value at a frame strictly between the key frames at index
+	 * and index + 1.
+	 */
+	private double interpolate(int index, int frame)
+	{
+		double percent = ((double) (frame - frames[index])) / ((double) (frames[index + 1] - frames[index]));
+		if (!bezier[index])
+		{
+			return Vector2.interpolate(values[index], values[index + 1], percent);
+		}
+
+		return getCurve(index).valueAt(percent);
+	}
+
+	/**
+	 * Get the bezier curve for the segment starting at the given key index,
+	 * creating it if required.
+	 */
+	private TimeBezier getCurve(int index)
+	{
+		//curves are immutable, so it doesn't matter if two threads create the same curve
+		TimeBezier curve = curves[index];
+		if (curve == null)
+		{
+			curve = InterpolatorFactory.getTimeBezier(keyValues[index], keyValues[index + 1]);
+			curves[index] = curve;
+		}
+		return curve;
+	}
+}
@@ -132,7 +132,10 @@ import au.gov.ga.worldwind.animator.application.effects.EffectDialog;
 import au.gov.ga.worldwind.animator.application.effects.EffectFactory;
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer;
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+import au.gov.ga.worldwind.animator.application.render.BatchRenderOptions;
+import au.gov.ga.worldwind.animator.application.render.OffscreenRenderer;
 import au.gov.ga.worldwind.animator.application.render.RenderDialog;
+import au.gov.ga.worldwind.animator.application.render.RenderManifest;
 import au.gov.ga.worldwind.animator.application.render.RenderProgressDialog;
 import au.gov.ga.worldwind.animator.application.render.StereoOffscreenRenderer;
 import au.gov.ga.worldwind.animator.application.settings.ProxyDialog;
@@ -179,7 +182,26 @@ public class Animator
 {
 	public static void main(String[] args)
 	{
-		launchAnimatorApplication();
+		BatchRenderOptions batchRenderOptions = null;
+		try
+		{
+			batchRenderOptions = BatchRenderOptions.parse(args);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(BatchRenderOptions.getUsage());
+			System.exit(1);
+		}
+
+		if (batchRenderOptions != null)
+		{
+			launchBatchRender(batchRenderOptions);
+		}
+		else
+		{
+			launchAnimatorApplication();
+		}
 	}
 
 	static
@@ -305,6 +327,16 @@ public class Animator
 		new Animator();
 	}
 
+	/**
+	 * Launch an instance of the Animator Application that renders the
+	 * animation given by the batch render options without any user
+	 * interaction, and exits when the render is complete.
+	 */
+	public static final void launchBatchRender(BatchRenderOptions options)
+	{
+		new Animator().renderBatch(options);
+	}
+
 	public Animator()
 	{
 		GDALDataHelper.init();
@@ -477,6 +509,11 @@ public class Animator
 			{
 			}
 
+			@Override
+			public void skippedFrame(int frame)
+			{
+			}
+
 			@Override
 			public void completed()
 			{
@@ -1649,6 +1686,140 @@ public class Animator
 		renderer.render(animation, renderParams);
 	}
 
+	/**
+	 * Render the frames of the animation file given by the batch render
+	 * options, then exit the application. Frames already written to the render
+	 * destination are skipped unless the options request that they are
+	 * overwritten. Each rendered frame is recorded in a {@link RenderManifest}
+	 * in the render directory.
+	 * <p/>
+	 * Exits with a non-zero status if the animation can't be rendered.
+	 */
+	void renderBatch(BatchRenderOptions options)
+	{
+		File animationFile = options.getAnimationFile();
+		try
+		{
+			XmlAnimationReader animationReader = new XmlAnimationReader();
+			AnimationFileVersion version = animationReader.getFileVersion(animationFile);
+			if (version == null)
+			{
+				exitBatchRender(1, "Could not read animation file: " + animationFile.getAbsolutePath());
+				return;
+			}
+
+			Animation newAnimation = animationReader.readAnimation(animationFile, wwd);
+			if (version == AnimationFileVersion.VERSION010)
+			{
+				addDefaultLayersToAnimation(newAnimation);
+				addDefaultElevationModelsToAnimation(newAnimation);
+			}
+
+			setCurrentAnimation(newAnimation);
+			setFile(animationFile);
+			resetChanged();
+			updateSlider();
+		}
+		catch (Exception e)
+		{
+			ExceptionLogger.logException(e);
+			exitBatchRender(1, "Could not read animation file: " + animationFile.getAbsolutePath());
+			return;
+		}
+
+		Animation animation = getCurrentAnimation();
+		int[] frameRange =
+				options.getShardFrameRange(animation.getFrameOfFirstKeyFrame(), animation.getFrameOfLastKeyFrame());
+		if (!animation.hasKeyFrames() || frameRange == null)
+		{
+			exitBatchRender(0, "No frames to render for shard " + options.getShardIndex() + "/"
+					+ options.getShardCount());
+			return;
+		}
+
+		RenderParameters renderParams = animation.getRenderParameters().clone();
+		renderParams.setFrameRange(frameRange[0], frameRange[1]);
+		if (options.getRenderDestination() != null)
+		{
+			renderParams.setRenderDestination(options.getRenderDestination());
+		}
+		if (options.getDetailLevel() != null)
+		{
+			renderParams.setDetailLevel(options.getDetailLevel());
+		}
+		if (!renderParams.isRenderDestinationSet())
+		{
+			exitBatchRender(1, "The animation has no render destination, provide one with "
+					+ BatchRenderOptions.OUTPUT_ARGUMENT);
+			return;
+		}
+
+		final RenderManifest manifest = new RenderManifest(RenderManifest.getManifestFile(renderParams));
+		renderer.addListener(manifest);
+		if (renderer instanceof OffscreenRenderer)
+		{
+			((OffscreenRenderer) renderer).getFrameOutput().addListener(manifest);
+		}
+		renderer.addListener(new RenderEventListener()
+		{
+			@Override
+			public void started()
+			{
+			}
+
+			@Override
+			public void startingFrame(int frame)
+			{
+			}
+
+			@Override
+			public void finishedFrame(int frame)
+			{
+				System.out.println("Rendered frame " + frame);
+			}
+
+			@Override
+			public void skippedFrame(int frame)
+			{
+				System.out.println("Skipped frame " + frame + " (already rendered)");
+			}
+
+			@Override
+			public void stopped(int frame)
+			{
+				manifest.close();
+				exitBatchRender(1, "Render stopped at frame " + frame + ": " + manifest.getStatistics());
+			}
+
+			@Override
+			public void completed()
+			{
+				manifest.close();
+				int status = manifest.getFailedCount() > 0 ? 1 : 0;
+				exitBatchRender(status, "Render complete: " + manifest.getStatistics());
+			}
+		});
+		renderer.setSkipRenderedFrames(!options.isOverwrite());
+
+		System.out.println("Rendering frames " + frameRange[0] + "-" + frameRange[1] + " to "
+				+ renderParams.getRenderDirectory().getAbsolutePath());
+		renderer.render(animation, renderParams);
+	}
+
+	private void exitBatchRender(int status, String message)
+	{
+		if (status == 0)
+		{
+			System.out.println(message);
+		}
+		else
+		{
+			System.err.println(message);
+		}
+		frame.dispose();
+		System.exit(status);
+	}
+
 	/**
 	 * Prompt the user for a location to save a rendered TGA image sequence to.
 	 * <p/>
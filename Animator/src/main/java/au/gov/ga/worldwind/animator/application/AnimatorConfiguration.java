@@ -28,6 +28,7 @@ import au.gov.ga.worldwind.animator.layers.immediate.ImmediateTaskService;
 import au.gov.ga.worldwind.animator.terrain.ImmediateRectangularTessellator;
 import au.gov.ga.worldwind.animator.util.ExceptionLogger;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
+import au.gov.ga.worldwind.common.downloader.HttpConnectionPool;
 import au.gov.ga.worldwind.common.terrain.ElevationModelFactory;
 import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
 
@@ -48,6 +49,7 @@ public class AnimatorConfiguration
 		initialiseLAF();
 		initialiseWorldWindConfiguration();
 		initialiseMessageSource();
+		initialiseNetworking();
 	}
 	
 	private static void initialiseGLCapabilities()
@@ -104,6 +106,12 @@ public class AnimatorConfiguration
 		MessageSourceAccessor.addBundle("messages.animatorMessages");
 	}
 	
+	private static void initialiseNetworking()
+	{
+		//before any network access, as the JRE only reads the keep-alive cache size once
+		HttpConnectionPool.configureKeepAlive();
+	}
+	
 	public static GLCapabilities getGLCapabilities()
 	{
 		return caps;
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+import au.gov.ga.worldwind.animator.util.TGAScreenshot;
+
+/**
+ * A {@link PaintTask} which reads the pixels of the current frame buffer into
+ * a buffer, without writing them to disk. Used like the
+ * {@link ScreenshotPaintTask}: add it as a postPaintTask, call
+ * WorldWindow.redraw(), and then call {@link #waitForReadback()} from the
+ * non-GL thread to block until the pixels have been read.
+ */
+public class FrameReadbackPaintTask implements PaintTask
+{
+	private final ByteBuffer buffer;
+	private final int width;
+	private final int height;
+	private final int format;
+
+	private final Object semaphore = new Object();
+	private boolean complete = false;
+	private boolean succeeded = false;
+	private Exception error;
+	private long readbackNanos;
+
+	/**
+	 * @param buffer
+	 *            Buffer to read the pixels into
+	 * @param width
+	 *            Width of the region to read, from the bottom-left corner
+	 * @param height
+	 *            Height of the region to read, from the bottom-left corner
+	 * @param format
+	 *            OpenGL pixel format to read, eg. GL_BGR or GL_RGBA
+	 */
+	public FrameReadbackPaintTask(ByteBuffer buffer, int width, int height, int format)
+	{
+		this.buffer = buffer;
+		this.width = width;
+		this.height = height;
+		this.format = format;
+	}
+
+	@Override
+	public void run(DrawContext dc)
+	{
+		try
+		{
+			long start = System.nanoTime();
+			buffer.rewind();
+			TGAScreenshot.readPixels(dc.getGL(), 0, 0, width, height, format, buffer);
+			readbackNanos = System.nanoTime() - start;
+			succeeded = true;
+		}
+		catch (Exception e)
+		{
+			Logging.logger().log(Level.SEVERE, "Error reading back frame pixels", e);
+			error = e;
+		}
+
+		synchronized (semaphore)
+		{
+			complete = true;
+			semaphore.notifyAll();
+		}
+	}
+
+	/**
+	 * Block until the pixels have been read.
+	 * 
+	 * @return Whether the pixels were read successfully
+	 */
+	public boolean waitForReadback()
+	{
+		//don't return early if interrupted, as the GL thread may still be writing to the buffer
+		boolean interrupted = false;
+		synchronized (semaphore)
+		{
+			while (!complete)
+			{
+				try
+				{
+					semaphore.wait();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return succeeded;
+	}
+
+	/**
+	 * @return The exception thrown if the pixels couldn't be read (only valid
+	 *         after {@link #waitForReadback()} returns false)
+	 */
+	public Exception getError()
+	{
+		return error;
+	}
+
+	/**
+	 * @return Time taken to read the pixels back
+	 */
+	public long getReadbackNanos()
+	{
+		return readbackNanos;
+	}
+}
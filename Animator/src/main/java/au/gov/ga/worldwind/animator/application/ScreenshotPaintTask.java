@@ -21,6 +21,7 @@ import java.io.File;
 
 import javax.media.opengl.GL;
 
+import au.gov.ga.worldwind.animator.util.FileUtil;
 import au.gov.ga.worldwind.animator.util.TGAScreenshot;
 
 /**
@@ -29,6 +30,10 @@ import au.gov.ga.worldwind.animator.util.TGAScreenshot;
  * WorldWindow.redraw() should then be called, and then this.waitForScreenshot()
  * should be called (from the non-GL thread) to block until the screenshot has
  * completed.
+ * <p/>
+ * The screenshot is written to a temporary file which is renamed when
+ * complete, so that an interrupted render never leaves a partially written
+ * screenshot file behind.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -60,14 +65,17 @@ public class ScreenshotPaintTask implements PaintTask
 			int width = viewportArray[2];
 			int height = viewportArray[3];
 
+			File temporaryFile = FileUtil.getTemporaryFile(screenshotFile);
 			if (screenshotFile.getName().toLowerCase().endsWith(".tga"))
 			{
-				TGAScreenshot.writeToTargaFile(screenshotFile, width, height, alpha);
+				TGAScreenshot.writeToTargaFile(temporaryFile, width, height, alpha);
 			}
 			else
 			{
-				com.sun.opengl.util.Screenshot.writeToFile(screenshotFile, width, height, alpha);
+				com.sun.opengl.util.Screenshot.writeToFile(temporaryFile, width, height, alpha);
 			}
+
+			FileUtil.renameTemporaryFile(temporaryFile, screenshotFile);
 		}
 		catch (Exception e)
 		{
@@ -95,7 +95,7 @@ public class DebugWriter
 				
 				for (int i = start; i < end; i++)
 				{
-					writer.append("" + i).append(", ").append("" + p.getValueAtFrame(i).getValue()).append('\n');
+					writer.append("" + i).append(", ").append("" + p.getDoubleValueAtFrame(i)).append('\n');
 				}
 				
 				writer.append("\n\n");
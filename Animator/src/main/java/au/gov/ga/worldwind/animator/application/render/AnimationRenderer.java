@@ -61,6 +61,12 @@ public interface AnimationRenderer
 	 */
 	void removeListener(RenderEventListener listener);
 	
+	/**
+	 * Set whether frames that have already been rendered to the render
+	 * destination should be skipped, instead of being rendered again.
+	 */
+	void setSkipRenderedFrames(boolean skipRenderedFrames);
+	
 	/**
 	 * An interface for listeners that want to be notified of render events
 	 */
@@ -75,6 +81,9 @@ public interface AnimationRenderer
 		/** Notified when a frame is finished rendering */
 		void finishedFrame(int frame);
 		
+		/** Notified when a frame is skipped because it has already been rendered */
+		void skippedFrame(int frame);
+		
 		/** Notified when the rendering is aborted by an external agent */
 		void stopped(int frame);
 		
@@ -39,14 +39,19 @@ public abstract class AnimationRendererBase implements AnimationRenderer
 	private AtomicBoolean started = new AtomicBoolean(false);
 	private AtomicBoolean stop = new AtomicBoolean(true);
 	private AtomicBoolean done = new AtomicBoolean(false);
+	
+	private boolean skipRenderedFrames = false;
+	private boolean frameAborted = false;
 
+	/**
+	 * Stop the current render after the frame being rendered. Listeners are
+	 * notified that the render has stopped (instead of completed) once the
+	 * render thread has finished.
+	 */
 	@Override
 	public void stop()
 	{
-		if (!stop.getAndSet(true))
-		{
-			notifyStopped(currentFrame);
-		}
+		stop.set(true);
 	}
 
 	@Override
@@ -84,24 +89,45 @@ public abstract class AnimationRendererBase implements AnimationRenderer
 		notifyStarted();
 		doPreRender(animation, renderParams);
 		
+		boolean stopped = false;
 		for (int frame = renderParams.getStartFrame(); frame <= renderParams.getEndFrame(); frame ++)
 		{
 			currentFrame = frame;
-			notifyStartingFrame(frame);
-			
-			renderFrame(frame, animation, renderParams);
-			
-			notifyFinishedFrame(frame);
+			if (skipRenderedFrames && isFrameRendered(frame, animation, renderParams))
+			{
+				notifySkippedFrame(frame);
+			}
+			else
+			{
+				notifyStartingFrame(frame);
+				
+				renderFrame(frame, animation, renderParams);
+				if (frameAborted)
+				{
+					stopped = true;
+					break;
+				}
+				
+				notifyFinishedFrame(frame);
+			}
 			completedPercentage = (double)(frame - renderParams.getStartFrame()) / (double)(renderParams.getEndFrame() - renderParams.getStartFrame());
 			
 			if (isStopped())
 			{
+				stopped = frame < renderParams.getEndFrame();
 				break;
 			}
 		}
 		
 		doPostRender(animation, renderParams);
-		notifyCompleted(renderParams.getEndFrame());
+		if (stopped)
+		{
+			notifyStopped(currentFrame);
+		}
+		else
+		{
+			notifyCompleted(renderParams.getEndFrame());
+		}
 	}
 	
 	protected void renderFrame(int frame, Animation animation, RenderParameters renderParams)
@@ -111,9 +137,42 @@ public abstract class AnimationRendererBase implements AnimationRenderer
 																					renderParams.getRenderDirectory());
 		doRender(frame, targetFile, animation, renderParams);
 	}
+	
+	/**
+	 * @return Whether the given frame has already been rendered to the render
+	 *         destination
+	 */
+	protected boolean isFrameRendered(int frame, Animation animation, RenderParameters renderParams)
+	{
+		File targetFile = AnimationImageSequenceNameFactory.createImageSequenceFile(animation, frame, 
+																					renderParams.getFrameName(), 
+																					renderParams.getRenderDirectory());
+		return isFileRendered(targetFile);
+	}
+	
+	/**
+	 * @return Whether the given frame file has been written. Frames are
+	 *         written to a temporary file which is renamed when complete, so
+	 *         an existing frame file is always complete.
+	 */
+	protected static boolean isFileRendered(File targetFile)
+	{
+		return targetFile.isFile() && targetFile.length() > 0;
+	}
+
+	/**
+	 * Stop the render because the current frame could not be rendered. Called
+	 * from {@link #doRender}; the frame is not reported as finished.
+	 */
+	protected void abortFrame()
+	{
+		frameAborted = true;
+		stop.set(true);
+	}
 
 	private void resetRenderFlags()
 	{
+		frameAborted = false;
 		stop.set(false);
 		done.set(false);
 		started.set(false);
@@ -135,6 +194,12 @@ public abstract class AnimationRendererBase implements AnimationRenderer
 	 */
 	protected abstract void doPostRender(Animation animation, RenderParameters renderParams);
 	
+	@Override
+	public void setSkipRenderedFrames(boolean skipRenderedFrames)
+	{
+		this.skipRenderedFrames = skipRenderedFrames;
+	}
+	
 	@Override
 	public boolean isDone()
 	{
@@ -193,6 +258,14 @@ public abstract class AnimationRendererBase implements AnimationRenderer
 		}
 	}
 	
+	public void notifySkippedFrame(int frame)
+	{
+		for (int i = listeners.size()-1; i >= 0; i--)
+		{
+			listeners.get(i).skippedFrame(frame);
+		}
+	}
+	
 	public void notifyStopped(int frame)
 	{
 		for (int i = listeners.size()-1; i >= 0; i--)
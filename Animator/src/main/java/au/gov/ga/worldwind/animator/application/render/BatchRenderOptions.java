@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Options for rendering an animation from the command line, without any user
+ * interaction. Used to split a render across several processes or machines:
+ * 
+ * <pre>
+ * --render animation.xml [--frames first-last] [--shard index/count]
+ *          [--output destination] [--detail level] [--overwrite]
+ * </pre>
+ * 
+ * The frame range defaults to the animation's first and last key frames. A
+ * shard (numbered from 1) renders one of <code>count</code> contiguous,
+ * equally sized blocks of the frame range. Frames that have already been
+ * written to the destination are skipped unless <code>--overwrite</code> is
+ * given, so a render can be resumed by running the same command again.
+ * <p/>
+ * The renderer still requires an OpenGL context. On a headless server, run
+ * the Animator in a virtual framebuffer with a software OpenGL implementation,
+ * eg. <code>LIBGL_ALWAYS_SOFTWARE=1 xvfb-run -s "-screen 0 1280x1024x24" java
+ * ... --render animation.xml --shard 3/8</code>.
+ */
+public class BatchRenderOptions
+{
+	public static final String RENDER_ARGUMENT = "--render";
+	public static final String FRAMES_ARGUMENT = "--frames";
+	public static final String SHARD_ARGUMENT = "--shard";
+	public static final String OUTPUT_ARGUMENT = "--output";
+	public static final String DETAIL_ARGUMENT = "--detail";
+	public static final String OVERWRITE_ARGUMENT = "--overwrite";
+
+	private File animationFile;
+	private Integer startFrame;
+	private Integer endFrame;
+	private int shardIndex = 1;
+	private int shardCount = 1;
+	private File renderDestination;
+	private Double detailLevel;
+	private boolean overwrite = false;
+
+	/**
+	 * Parse batch render options from the command line arguments.
+	 * 
+	 * @return The parsed options, or <code>null</code> if the arguments don't
+	 *         request a batch render
+	 * @throws IllegalArgumentException
+	 *             If the arguments are invalid
+	 */
+	public static BatchRenderOptions parse(String[] args)
+	{
+		if (args == null || !Arrays.asList(args).contains(RENDER_ARGUMENT))
+		{
+			return null;
+		}
+
+		BatchRenderOptions options = new BatchRenderOptions();
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if (OVERWRITE_ARGUMENT.equals(arg))
+			{
+				options.overwrite = true;
+				continue;
+			}
+
+			if (i + 1 >= args.length)
+			{
+				throw new IllegalArgumentException("Missing value for argument: " + arg);
+			}
+			String value = args[++i];
+			if (RENDER_ARGUMENT.equals(arg))
+			{
+				options.animationFile = new File(value);
+			}
+			else if (FRAMES_ARGUMENT.equals(arg))
+			{
+				int[] range = parsePair(arg, value, '-');
+				if (range[1] < range[0])
+				{
+					throw new IllegalArgumentException("End frame must not be less than start frame: " + value);
+				}
+				options.startFrame = range[0];
+				options.endFrame = range[1];
+			}
+			else if (SHARD_ARGUMENT.equals(arg))
+			{
+				int[] shard = parsePair(arg, value, '/');
+				if (shard[1] < 1 || shard[0] < 1 || shard[0] > shard[1])
+				{
+					throw new IllegalArgumentException("Shard must be of the form index/count, where 1 <= index <= count: "
+							+ value);
+				}
+				options.shardIndex = shard[0];
+				options.shardCount = shard[1];
+			}
+			else if (OUTPUT_ARGUMENT.equals(arg))
+			{
+				options.renderDestination = new File(value);
+			}
+			else if (DETAIL_ARGUMENT.equals(arg))
+			{
+				try
+				{
+					options.detailLevel = Double.valueOf(value);
+				}
+				catch (NumberFormatException e)
+				{
+					throw new IllegalArgumentException("Invalid detail level: " + value);
+				}
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+
+		return options;
+	}
+
+	private static int[] parsePair(String arg, String value, char separator)
+	{
+		//search from index 1, so that a negative first number isn't taken as the separator
+		int index = value.indexOf(separator, 1);
+		try
+		{
+			if (index > 0)
+			{
+				return new int[] { Integer.parseInt(value.substring(0, index).trim()),
+						Integer.parseInt(value.substring(index + 1).trim()) };
+			}
+		}
+		catch (NumberFormatException e)
+		{
+		}
+		throw new IllegalArgumentException("Invalid value for argument " + arg + ": " + value);
+	}
+
+	/**
+	 * @return A description of the batch render command line arguments
+	 */
+	public static String getUsage()
+	{
+		return "Usage: " + RENDER_ARGUMENT + " animation.xml [" + FRAMES_ARGUMENT + " first-last] [" + SHARD_ARGUMENT
+				+ " index/count] [" + OUTPUT_ARGUMENT + " destination] [" + DETAIL_ARGUMENT + " level] ["
+				+ OVERWRITE_ARGUMENT + "]";
+	}
+
+	/**
+	 * Calculate the range of frames to be rendered by this shard.
+	 * 
+	 * @param firstFrame
+	 *            First frame of the animation (used if no frame range was
+	 *            provided)
+	 * @param lastFrame
+	 *            Last frame of the animation (used if no frame range was
+	 *            provided)
+	 * @return The first and last frames (inclusive) to render, or
+	 *         <code>null</code> if this shard has no frames to render
+	 */
+	public int[] getShardFrameRange(int firstFrame, int lastFrame)
+	{
+		int start = startFrame != null ? startFrame : firstFrame;
+		int end = endFrame != null ? endFrame : lastFrame;
+		long count = (long) end - start + 1;
+		if (count <= 0)
+		{
+			return null;
+		}
+
+		int shardStart = (int) (start + count * (shardIndex - 1) / shardCount);
+		int shardEnd = (int) (start + count * shardIndex / shardCount - 1);
+		if (shardEnd < shardStart)
+		{
+			return null;
+		}
+		return new int[] { shardStart, shardEnd };
+	}
+
+	public File getAnimationFile()
+	{
+		return animationFile;
+	}
+
+	public Integer getStartFrame()
+	{
+		return startFrame;
+	}
+
+	public Integer getEndFrame()
+	{
+		return endFrame;
+	}
+
+	public int getShardIndex()
+	{
+		return shardIndex;
+	}
+
+	public int getShardCount()
+	{
+		return shardCount;
+	}
+
+	public File getRenderDestination()
+	{
+		return renderDestination;
+	}
+
+	public Double getDetailLevel()
+	{
+		return detailLevel;
+	}
+
+	public boolean isOverwrite()
+	{
+		return overwrite;
+	}
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Intersection;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Line;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.TileKey;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import au.gov.ga.worldwind.animator.application.render.PrefetchPlanner.FramePrefetcher;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTextureTile;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTiledImageLayer;
+
+/**
+ * A {@link FramePrefetcher} that prefetches the image tiles and elevations
+ * visible from the camera at each frame of the animation.
+ * <p/>
+ * The camera path is calculated up front. For each frame, a grid of rays is
+ * cast through the view frustum and intersected with the globe, which divides
+ * the visible surface into cells. Each cell's level of detail is chosen from
+ * the size of a pixel at the cell's nearest corner, similar to the level
+ * selection of the tiled image layers and tessellator (but an approximation of
+ * it, as the view's exact level selection requires a draw context). The image
+ * tiles of each enabled {@link DelegatorTiledImageLayer} covering the cell at
+ * that level are downloaded if they aren't already available locally, and the
+ * cell's elevations are requested from the elevation model at that
+ * resolution.
+ */
+public class CameraPathPrefetcher implements FramePrefetcher
+{
+	private static final int RAYS_PER_AXIS = 9;
+	private static final int MAX_TILES_PER_CELL = 64;
+
+	private final Globe globe;
+	private final Iterable<Layer> layers;
+	private final ElevationModel elevationModel;
+	private final Position[] eyePositions;
+	private final Position[] lookatPositions;
+	private final int firstFrame;
+	private final double tanHalfWidth;
+	private final double tanHalfHeight;
+	private final double pixelSizePerDistance;
+
+	private final ConcurrentMap<TileKey, Boolean> requestedTiles = new ConcurrentHashMap<TileKey, Boolean>();
+
+	/**
+	 * @param globe
+	 *            Globe being rendered
+	 * @param layers
+	 *            Layers being rendered
+	 * @param elevationModel
+	 *            Elevation model to prefetch elevations from (may be null)
+	 * @param fieldOfView
+	 *            Horizontal field of view of the view
+	 * @param renderDimensions
+	 *            Dimensions of the rendered frames
+	 * @param detailHint
+	 *            Detail hint of the render; each increment of 1 increases the
+	 *            resolution prefetched by a factor of 10
+	 * @param eyePositions
+	 *            Camera eye positions, from the first frame
+	 * @param lookatPositions
+	 *            Camera look-at positions, from the first frame
+	 * @param firstFrame
+	 *            Frame of the first eye and look-at positions
+	 */
+	public CameraPathPrefetcher(Globe globe, Iterable<Layer> layers, ElevationModel elevationModel,
+			Angle fieldOfView, Dimension renderDimensions, double detailHint, Position[] eyePositions,
+			Position[] lookatPositions, int firstFrame)
+	{
+		this.globe = globe;
+		this.layers = layers;
+		this.elevationModel = elevationModel;
+		this.eyePositions = eyePositions;
+		this.lookatPositions = lookatPositions;
+		this.firstFrame = firstFrame;
+
+		tanHalfWidth = Math.tan(fieldOfView.radians / 2d);
+		tanHalfHeight = tanHalfWidth * renderDimensions.height / renderDimensions.width;
+		pixelSizePerDistance = 2d * tanHalfWidth / renderDimensions.width / Math.pow(10, detailHint);
+	}
+
+	@Override
+	public void prefetch(int frame, PrefetchPlanner planner)
+	{
+		int index = frame - firstFrame;
+		if (index < 0 || index >= eyePositions.length || index >= lookatPositions.length)
+		{
+			return;
+		}
+
+		LatLon[][] locations = new LatLon[RAYS_PER_AXIS][RAYS_PER_AXIS];
+		double[][] distances = new double[RAYS_PER_AXIS][RAYS_PER_AXIS];
+		castRays(eyePositions[index], lookatPositions[index], locations, distances);
+
+		for (int i = 0; i < RAYS_PER_AXIS - 1; i++)
+		{
+			for (int j = 0; j < RAYS_PER_AXIS - 1; j++)
+			{
+				Sector cell =
+						Sector.boundingSector(Arrays.asList(locations[i][j], locations[i + 1][j],
+								locations[i][j + 1], locations[i + 1][j + 1]));
+				if (cell.getDeltaLonDegrees() > 180d)
+				{
+					//cell crosses the antimeridian
+					continue;
+				}
+
+				double distance =
+						Math.min(Math.min(distances[i][j], distances[i + 1][j]),
+								Math.min(distances[i][j + 1], distances[i + 1][j + 1]));
+				double resolution = distance * pixelSizePerDistance / globe.getRadius();
+
+				prefetchImagery(cell, resolution, planner);
+				prefetchElevations(cell, resolution, planner);
+			}
+		}
+	}
+
+	/**
+	 * Cast a grid of rays through the view frustum from the eye, and calculate
+	 * where each ray hits the globe and how far away the hit is. Rays that
+	 * miss the globe are clipped at the horizon.
+	 */
+	protected void castRays(Position eye, Position lookat, LatLon[][] locations, double[][] distances)
+	{
+		Vec4 eyePoint = globe.computePointFromPosition(eye);
+		Vec4 forward = globe.computePointFromPosition(lookat).subtract3(eyePoint).normalize3();
+		Vec4 up = globe.computeSurfaceNormalAtPoint(eyePoint);
+		Vec4 right = forward.cross3(up);
+		if (right.getLength3() < 1e-6)
+		{
+			//looking straight down, so use north as up
+			up = globe.computeNorthPointingTangentAtLocation(eye.getLatitude(), eye.getLongitude());
+			right = forward.cross3(up);
+		}
+		right = right.normalize3();
+		up = right.cross3(forward).normalize3();
+
+		double altitude = Math.max(0, eye.getElevation());
+		double horizon = Math.sqrt(altitude * (2 * globe.getRadius() + altitude));
+
+		for (int i = 0; i < RAYS_PER_AXIS; i++)
+		{
+			double x = (2d * i / (RAYS_PER_AXIS - 1) - 1d) * tanHalfWidth;
+			for (int j = 0; j < RAYS_PER_AXIS; j++)
+			{
+				double y = (2d * j / (RAYS_PER_AXIS - 1) - 1d) * tanHalfHeight;
+				Vec4 direction = forward.add3(right.multiply3(x)).add3(up.multiply3(y)).normalize3();
+
+				Vec4 point = null;
+				Intersection[] intersections = globe.intersect(new Line(eyePoint, direction), 0);
+				if (intersections != null)
+				{
+					for (Intersection intersection : intersections)
+					{
+						Vec4 p = intersection.getIntersectionPoint();
+						if (point == null || p.distanceTo3(eyePoint) < point.distanceTo3(eyePoint))
+						{
+							point = p;
+						}
+					}
+				}
+				if (point == null)
+				{
+					point = eyePoint.add3(direction.multiply3(horizon));
+				}
+
+				locations[i][j] = globe.computePositionFromPoint(point);
+				distances[i][j] = point.distanceTo3(eyePoint);
+			}
+		}
+	}
+
+	protected void prefetchImagery(Sector cell, double resolution, PrefetchPlanner planner)
+	{
+		for (Layer layer : layers)
+		{
+			if (!(layer instanceof DelegatorTiledImageLayer) || !layer.isEnabled() || layer.getOpacity() <= 0)
+			{
+				continue;
+			}
+
+			DelegatorTiledImageLayer tiledLayer = (DelegatorTiledImageLayer) layer;
+			LevelSet levels = tiledLayer.getLevels();
+			Sector sector = cell.intersection(levels.getSector());
+			if (sector == null)
+			{
+				continue;
+			}
+
+			Level level = selectLevel(levels, resolution);
+			TextureTile[][] tiles = tiledLayer.getTilesInSector(sector, level.getLevelNumber());
+			if (tiles.length == 0 || tiles.length * tiles[0].length > MAX_TILES_PER_CELL)
+			{
+				continue;
+			}
+
+			for (TextureTile[] row : tiles)
+			{
+				for (TextureTile tile : row)
+				{
+					DelegatorTextureTile delegatorTile = (DelegatorTextureTile) tile;
+					if (requestedTiles.putIfAbsent(delegatorTile.getTransformedTileKey(), Boolean.TRUE) != null)
+					{
+						//already prefetched for another frame
+						continue;
+					}
+
+					if (tiledLayer.isTextureAvailable(delegatorTile))
+					{
+						planner.recordCached();
+					}
+					else
+					{
+						tiledLayer.prefetchTexture(delegatorTile);
+						planner.recordFetched();
+					}
+				}
+			}
+		}
+	}
+
+	protected void prefetchElevations(Sector cell, double resolution, PrefetchPlanner planner)
+	{
+		if (elevationModel == null || elevationModel.intersects(cell) < 0)
+		{
+			return;
+		}
+
+		resolution = Math.max(resolution, elevationModel.getBestResolution(cell));
+		List<LatLon> corners = new ArrayList<LatLon>(Arrays.asList(cell.getCorners()));
+		double[] buffer = new double[corners.size()];
+
+		//missing elevation tiles are requested by the elevation model, and are loaded on this
+		//thread by the immediate task service; the achieved resolution is that of the tiles
+		//that were already loaded
+		double achieved = elevationModel.getElevations(cell, corners, resolution, buffer);
+		if (achieved <= resolution)
+		{
+			planner.recordCached();
+		}
+		else
+		{
+			planner.recordFetched();
+		}
+	}
+
+	/**
+	 * @return The coarsest non-empty level with texels no larger than the
+	 *         given resolution (in radians), or the finest level if none are
+	 */
+	protected static Level selectLevel(LevelSet levels, double resolution)
+	{
+		for (Level level : levels.getLevels())
+		{
+			if (!level.isEmpty() && level.getTexelSize() <= resolution)
+			{
+				return level;
+			}
+		}
+		return levels.getLastLevel();
+	}
+}
@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.imageio.ImageIO;
+
+import au.gov.ga.worldwind.animator.util.FileUtil;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * A bounded queue of rendered frames waiting to be encoded and written to
+ * disk by a pool of worker threads, so that encoding and writing a frame
+ * overlaps with rendering the next frame.
+ * <p/>
+ * The renderer acquires a pooled direct buffer for each frame, reads the
+ * frame's pixels back into it, and submits it with {@link #write}. At most
+ * <code>capacity</code> buffers are in use at once, so
+ * {@link #acquireBuffer(int)} blocks (throttling the renderer) when the
+ * workers fall behind.
+ * <p/>
+ * Frames are read back from the bottom row up, with one byte per channel.
+ * Targa frames (<code>.tga</code>) are read back as BGR(A), and written
+ * directly after the Targa header. Frames in other formats are read back as
+ * RGB(A) and encoded with {@link ImageIO}. Each frame is written to a
+ * temporary file which is renamed when complete.
+ */
+public class FrameOutputQueue
+{
+	private final ThreadPoolExecutor executor;
+	private final int capacity;
+	private final Semaphore availableBuffers;
+	private final LinkedList<ByteBuffer> bufferPool = new LinkedList<ByteBuffer>();
+
+	private final Object pendingLock = new Object();
+	private int pendingCount = 0;
+
+	private final List<FrameOutputListener> listeners = new CopyOnWriteArrayList<FrameOutputListener>();
+
+	// Statistics, guarded by pendingLock
+	private int writtenCount = 0;
+	private int failedCount = 0;
+	private long totalThrottleNanos = 0;
+	private long totalReadbackNanos = 0;
+	private long totalQueueNanos = 0;
+	private long totalEncodeNanos = 0;
+	private long totalWriteNanos = 0;
+
+	/**
+	 * @param threads
+	 *            Number of threads encoding and writing frames
+	 * @param capacity
+	 *            Maximum number of frames that can be read back but not yet
+	 *            written (the number of pooled buffers)
+	 */
+	public FrameOutputQueue(int threads, int capacity)
+	{
+		threads = Math.max(1, threads);
+		this.capacity = Math.max(1, capacity);
+		availableBuffers = new Semaphore(this.capacity, true);
+		executor =
+				new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+						new DaemonThreadFactory("Frame output"));
+	}
+
+	/**
+	 * @return Whether the given frame file is a Targa file, which is read
+	 *         back as BGR(A) instead of RGB(A)
+	 */
+	public static boolean isTarga(File file)
+	{
+		return FileUtil.hasExtension(file.getName(), "tga");
+	}
+
+	/**
+	 * @return The size of the buffer required for a frame of the given
+	 *         dimensions
+	 */
+	public static int getBufferSize(int width, int height, boolean alpha)
+	{
+		return width * height * (alpha ? 4 : 3);
+	}
+
+	/**
+	 * Acquire a buffer to read a frame back into, blocking until a buffer is
+	 * available if the queue is full. The buffer must be passed to
+	 * {@link #write} or {@link #releaseBuffer(ByteBuffer)}.
+	 * 
+	 * @param size
+	 *            Required size of the buffer
+	 * @return A direct buffer with its limit set to size
+	 */
+	public ByteBuffer acquireBuffer(int size) throws InterruptedException
+	{
+		long start = System.nanoTime();
+		availableBuffers.acquire();
+		long throttleNanos = System.nanoTime() - start;
+
+		ByteBuffer buffer = null;
+		synchronized (bufferPool)
+		{
+			for (Iterator<ByteBuffer> iterator = bufferPool.iterator(); iterator.hasNext();)
+			{
+				ByteBuffer pooled = iterator.next();
+				if (pooled.capacity() >= size)
+				{
+					iterator.remove();
+					buffer = pooled;
+					break;
+				}
+			}
+			if (buffer == null && !bufferPool.isEmpty())
+			{
+				//replace a buffer that is too small, so the pool holds at most capacity buffers
+				bufferPool.removeFirst();
+			}
+		}
+		if (buffer == null)
+		{
+			buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+		buffer.clear();
+		buffer.limit(size);
+
+		synchronized (pendingLock)
+		{
+			totalThrottleNanos += throttleNanos;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Return a buffer acquired with {@link #acquireBuffer(int)} that won't be
+	 * written (eg. if the frame was aborted).
+	 */
+	public void releaseBuffer(ByteBuffer buffer)
+	{
+		synchronized (bufferPool)
+		{
+			bufferPool.addLast(buffer);
+		}
+		availableBuffers.release();
+	}
+
+	/**
+	 * Report that a frame couldn't be written because its pixels couldn't be
+	 * read back. The pixel buffer is released back to the pool, and the frame
+	 * is counted as failed and reported to the listeners.
+	 * 
+	 * @param frame
+	 *            Frame number
+	 * @param file
+	 *            File the frame would have been written to
+	 * @param pixels
+	 *            Buffer acquired from {@link #acquireBuffer(int)} for the frame
+	 * @param e
+	 *            Cause of the failure
+	 */
+	public void fail(int frame, File file, ByteBuffer pixels, Exception e)
+	{
+		releaseBuffer(pixels);
+		frameFailed(frame, file, e);
+	}
+
+	/**
+	 * Queue a frame to be encoded and written to the given file. The pixel
+	 * buffer is released back to the pool once the frame has been written.
+	 * 
+	 * @param frame
+	 *            Frame number
+	 * @param file
+	 *            File to write the frame to
+	 * @param pixels
+	 *            Buffer acquired from {@link #acquireBuffer(int)} containing
+	 *            the frame's pixels
+	 * @param width
+	 *            Frame width
+	 * @param height
+	 *            Frame height
+	 * @param alpha
+	 *            Whether the pixels include an alpha channel
+	 * @param readbackNanos
+	 *            Time taken to read the pixels back, for the frame's timings
+	 */
+	public void write(final int frame, final File file, final ByteBuffer pixels, final int width, final int height,
+			final boolean alpha, final long readbackNanos)
+	{
+		synchronized (pendingLock)
+		{
+			pendingCount++;
+		}
+
+		final long queuedTime = System.nanoTime();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					writeFrame(frame, file, pixels, width, height, alpha, readbackNanos, System.nanoTime()
+							- queuedTime);
+				}
+				finally
+				{
+					releaseBuffer(pixels);
+					synchronized (pendingLock)
+					{
+						pendingCount--;
+						pendingLock.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Block until all queued frames have been written.
+	 */
+	public void flush()
+	{
+		boolean interrupted = false;
+		synchronized (pendingLock)
+		{
+			while (pendingCount > 0)
+			{
+				try
+				{
+					pendingLock.wait();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeFrame(int frame, File file, ByteBuffer pixels, int width, int height, boolean alpha,
+			long readbackNanos, long queueNanos)
+	{
+		File temporaryFile = FileUtil.getTemporaryFile(file);
+		try
+		{
+			if (file.getParentFile() != null && !file.getParentFile().exists())
+			{
+				file.getParentFile().mkdirs();
+			}
+
+			long encodeStart = System.nanoTime();
+			ByteBuffer[] encoded =
+					isTarga(file) ? encodeTarga(pixels, width, height, alpha) : encodeImage(file, pixels, width,
+							height, alpha);
+			long writeStart = System.nanoTime();
+
+			FileOutputStream os = new FileOutputStream(temporaryFile);
+			try
+			{
+				FileChannel channel = os.getChannel();
+				for (ByteBuffer buffer : encoded)
+				{
+					while (buffer.hasRemaining())
+					{
+						channel.write(buffer);
+					}
+				}
+			}
+			finally
+			{
+				os.close();
+			}
+			FileUtil.renameTemporaryFile(temporaryFile, file);
+			long end = System.nanoTime();
+
+			FrameTimings timings =
+					new FrameTimings(frame, file, readbackNanos, queueNanos, writeStart - encodeStart, end
+							- writeStart);
+			synchronized (pendingLock)
+			{
+				writtenCount++;
+				totalReadbackNanos += readbackNanos;
+				totalQueueNanos += queueNanos;
+				totalEncodeNanos += timings.encodeNanos;
+				totalWriteNanos += timings.writeNanos;
+			}
+			for (FrameOutputListener listener : listeners)
+			{
+				listener.frameWritten(timings);
+			}
+		}
+		catch (Exception e)
+		{
+			Logging.logger().log(Level.SEVERE, "Error writing frame " + frame + " to " + file, e);
+			temporaryFile.delete();
+			frameFailed(frame, file, e);
+		}
+	}
+
+	private void frameFailed(int frame, File file, Exception e)
+	{
+		synchronized (pendingLock)
+		{
+			failedCount++;
+		}
+		for (FrameOutputListener listener : listeners)
+		{
+			listener.frameFailed(frame, file, e);
+		}
+	}
+
+	/**
+	 * Encode BGR(A) pixels as a Targa file, which stores the pixels unchanged
+	 * after the header.
+	 */
+	private static ByteBuffer[] encodeTarga(ByteBuffer pixels, int width, int height, boolean alpha)
+	{
+		byte[] header = new byte[18];
+		header[2] = 2;
+		header[12] = (byte) (width & 0xFF);
+		header[13] = (byte) (width >> 8);
+		header[14] = (byte) (height & 0xFF);
+		header[15] = (byte) (height >> 8);
+		header[16] = (byte) (alpha ? 32 : 24);
+
+		ByteBuffer data = pixels.duplicate();
+		data.position(0);
+		data.limit(getBufferSize(width, height, alpha));
+		return new ByteBuffer[] { ByteBuffer.wrap(header), data };
+	}
+
+	/**
+	 * Encode bottom-up RGB(A) pixels with ImageIO, in the format given by the
+	 * file's extension.
+	 */
+	private static ByteBuffer[] encodeImage(File file, ByteBuffer pixels, int width, int height, boolean alpha)
+			throws IOException
+	{
+		BufferedImage image =
+				new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int channels = alpha ? 4 : 3;
+		for (int row = 0; row < height; row++)
+		{
+			int source = (height - 1 - row) * width * channels;
+			int destination = row * width;
+			for (int column = 0; column < width; column++, source += channels)
+			{
+				int r = pixels.get(source) & 0xff;
+				int g = pixels.get(source + 1) & 0xff;
+				int b = pixels.get(source + 2) & 0xff;
+				int a = alpha ? pixels.get(source + 3) & 0xff : 0xff;
+				data[destination + column] = (a << 24) | (r << 16) | (g << 8) | b;
+			}
+		}
+
+		String format = FileUtil.getExtension(file.getName());
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (format == null || !ImageIO.write(image, format, baos))
+		{
+			throw new IOException("Unsupported image format: " + file);
+		}
+		return new ByteBuffer[] { ByteBuffer.wrap(baos.toByteArray()) };
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public void addListener(FrameOutputListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	public void removeListener(FrameOutputListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	public int getWrittenCount()
+	{
+		synchronized (pendingLock)
+		{
+			return writtenCount;
+		}
+	}
+
+	public int getFailedCount()
+	{
+		synchronized (pendingLock)
+		{
+			return failedCount;
+		}
+	}
+
+	/**
+	 * @return A summary of the mean per frame timings of the frames written
+	 */
+	public String getStatistics()
+	{
+		synchronized (pendingLock)
+		{
+			String statistics = writtenCount + " frames written, " + failedCount + " failed";
+			if (writtenCount > 0)
+			{
+				double n = writtenCount * 1e6;
+				statistics +=
+						String.format(", mean per frame: %.1fms readback, %.1fms throttled, %.1fms queued, "
+								+ "%.1fms encode, %.1fms write", totalReadbackNanos / n, totalThrottleNanos / n,
+								totalQueueNanos / n, totalEncodeNanos / n, totalWriteNanos / n);
+			}
+			return statistics;
+		}
+	}
+
+	/**
+	 * Timings of the stages of writing a single frame.
+	 */
+	public static class FrameTimings
+	{
+		private final int frame;
+		private final File file;
+		private final long readbackNanos;
+		private final long queueNanos;
+		private final long encodeNanos;
+		private final long writeNanos;
+
+		public FrameTimings(int frame, File file, long readbackNanos, long queueNanos, long encodeNanos,
+				long writeNanos)
+		{
+			this.frame = frame;
+			this.file = file;
+			this.readbackNanos = readbackNanos;
+			this.queueNanos = queueNanos;
+			this.encodeNanos = encodeNanos;
+			this.writeNanos = writeNanos;
+		}
+
+		public int getFrame()
+		{
+			return frame;
+		}
+
+		public File getFile()
+		{
+			return file;
+		}
+
+		/**
+		 * @return Time taken to read the frame's pixels back from OpenGL
+		 */
+		public double getReadbackMillis()
+		{
+			return readbackNanos / 1e6;
+		}
+
+		/**
+		 * @return Time the frame waited in the queue for a worker thread
+		 */
+		public double getQueueMillis()
+		{
+			return queueNanos / 1e6;
+		}
+
+		/**
+		 * @return Time taken to encode the frame
+		 */
+		public double getEncodeMillis()
+		{
+			return encodeNanos / 1e6;
+		}
+
+		/**
+		 * @return Time taken to write the encoded frame to disk
+		 */
+		public double getWriteMillis()
+		{
+			return writeNanos / 1e6;
+		}
+	}
+
+	/**
+	 * Listener notified from the worker threads as each frame is written.
+	 */
+	public static interface FrameOutputListener
+	{
+		/** Notified when a frame has been written */
+		void frameWritten(FrameTimings timings);
+
+		/** Notified when writing a frame failed */
+		void frameFailed(int frame, File file, Exception e);
+	}
+}
@@ -16,26 +16,36 @@
 package au.gov.ga.worldwind.animator.application.render;
 
 import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.view.orbit.OrbitView;
 
 import java.awt.Dimension;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import javax.media.opengl.GL;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
 import au.gov.ga.worldwind.animator.application.Animator;
 import au.gov.ga.worldwind.animator.application.AnimatorSceneController;
+import au.gov.ga.worldwind.animator.application.FrameReadbackPaintTask;
 import au.gov.ga.worldwind.animator.application.PaintTask;
-import au.gov.ga.worldwind.animator.application.ScreenshotPaintTask;
 import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
  * An {@link AnimationRenderer} that renders each frame of the animation to an
  * offscreen texture, then writes that texture to disk.
+ * <p/>
+ * Each frame's pixels are read back on the GL thread, and then encoded and
+ * written by a {@link FrameOutputQueue} while the next frame renders. The
+ * imagery and elevations visible in the frames ahead of the current frame are
+ * prefetched by a {@link PrefetchPlanner}.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
@@ -48,6 +58,15 @@ public class OffscreenRenderer extends AnimationRendererBase
 	
 	private FrameBuffer frameBuffer = new FrameBuffer();
 
+	private static final int FRAME_OUTPUT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime()
+			.availableProcessors() / 2));
+	private static final int FRAME_OUTPUT_CAPACITY = FRAME_OUTPUT_THREADS * 2;
+	private final FrameOutputQueue frameOutput = new FrameOutputQueue(FRAME_OUTPUT_THREADS, FRAME_OUTPUT_CAPACITY);
+
+	private static final int PREFETCH_LOOK_AHEAD = 30;
+	private static final int PREFETCH_THREADS = 4;
+	private PrefetchPlanner prefetchPlanner;
+
 	private boolean detectCollisions;
 	private double detailHintBackup;
 	private boolean wasImmediate;
@@ -71,6 +90,7 @@ public class OffscreenRenderer extends AnimationRendererBase
 	protected void doPreRender(final Animation animation, final RenderParameters renderParams)
 	{
 		setupForRendering(renderParams.getDetailLevel());
+		startPrefetching(animation, renderParams);
 
 		final Dimension renderDimensions = renderParams.getRenderDimension();
 		//final Dimension viewDimensions = renderParams.getImageDimension();
@@ -133,6 +153,27 @@ public class OffscreenRenderer extends AnimationRendererBase
 			targetFile.getParentFile().mkdirs();
 		}
 		
+		Dimension renderDimensions = renderParams.getRenderDimension();
+		boolean alpha = renderParams.isRenderAlpha();
+
+		//prefetch the frames ahead of this one, and count the retrievals that block this frame
+		prefetchPlanner.advance(frame);
+		long renderRetrievals = ImmediateMode.getRenderRetrievalCount();
+
+		//acquire a buffer to read the frame back into; this blocks if the frame output queue is full
+		ByteBuffer pixels;
+		try
+		{
+			pixels = frameOutput.acquireBuffer(FrameOutputQueue.getBufferSize(renderDimensions.width,
+					renderDimensions.height, alpha));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			abortFrame();
+			return;
+		}
+		
 		targetApplication.setSlider(frame);
 		animation.applyFrame(frame);
 
@@ -142,21 +183,50 @@ public class OffscreenRenderer extends AnimationRendererBase
 		//also add a viewport set just before the screenshot, to ensure the viewport is always correct
 		animatorSceneController.addPostPaintTask(prePostRenderTask);
 
-		//add the screenshot task
-		ScreenshotPaintTask screenshotTask = new ScreenshotPaintTask(targetFile, renderParams.isRenderAlpha());
-		animatorSceneController.addPostPaintTask(screenshotTask);
+		//add the readback task
+		int format;
+		if (FrameOutputQueue.isTarga(targetFile))
+		{
+			format = alpha ? GL.GL_BGRA : GL.GL_BGR;
+		}
+		else
+		{
+			format = alpha ? GL.GL_RGBA : GL.GL_RGB;
+		}
+		FrameReadbackPaintTask readbackTask =
+				new FrameReadbackPaintTask(pixels, renderDimensions.width, renderDimensions.height, format);
+		animatorSceneController.addPostPaintTask(readbackTask);
 
-		//add the post render task AFTER the screenshot task, so that the screenshot is taken from the FBO
+		//add the post render task AFTER the readback task, so that the pixels are read from the FBO
 		animatorSceneController.addPostPaintTask(postRenderTask);
 
-		//redraw, and then wait for the screenshot to complete 
+		//redraw, wait for the readback to complete, and then queue the frame to be written
 		wwd.redraw();
-		screenshotTask.waitForScreenshot();
+		boolean readback = readbackTask.waitForReadback();
+		prefetchPlanner.recordRenderedFrame(ImmediateMode.getRenderRetrievalCount() - renderRetrievals);
+		if (readback)
+		{
+			frameOutput.write(frame, targetFile, pixels, renderDimensions.width, renderDimensions.height, alpha,
+					readbackTask.getReadbackNanos());
+		}
+		else
+		{
+			//report the failure, so that the manifest and batch exit status don't count the frame as written
+			Exception error = readbackTask.getError();
+			frameOutput.fail(frame, targetFile, pixels, error != null ? error : new IOException(
+					"Could not read back the pixels of frame " + frame));
+		}
 	}
 
 	@Override
 	protected void doPostRender(Animation animation, RenderParameters renderParams)
 	{
+		//wait for the queued frames to be written
+		frameOutput.flush();
+		Logging.logger().info("Frame output: " + frameOutput.getStatistics());
+		prefetchPlanner.shutdown();
+		Logging.logger().info("Prefetch: " + prefetchPlanner.getStatistics());
+
 		animatorSceneController.setRenderDimensions(null);
 		animatorSceneController.addPostPaintTask(new PaintTask()
 		{
@@ -171,6 +241,38 @@ public class OffscreenRenderer extends AnimationRendererBase
 		resetViewingParameters();
 	}
 
+	/**
+	 * @return The queue that encodes and writes the rendered frames
+	 */
+	public FrameOutputQueue getFrameOutput()
+	{
+		return frameOutput;
+	}
+
+	/**
+	 * @return The planner prefetching data for the current (or last) render,
+	 *         which counts the prefetch hits and misses
+	 */
+	public PrefetchPlanner getPrefetchPlanner()
+	{
+		return prefetchPlanner;
+	}
+
+	private void startPrefetching(Animation animation, RenderParameters renderParams)
+	{
+		int startFrame = renderParams.getStartFrame();
+		int endFrame = renderParams.getEndFrame();
+		Camera camera = animation.getCamera();
+		Globe globe = wwd.getModel().getGlobe();
+
+		CameraPathPrefetcher prefetcher =
+				new CameraPathPrefetcher(globe, wwd.getModel().getLayers(), globe.getElevationModel(), wwd.getView()
+						.getFieldOfView(), renderParams.getRenderDimension(), renderParams.getDetailLevel(),
+						camera.getEyePositionsBetweenFrames(startFrame, endFrame),
+						camera.getLookatPositionsBetweenFrames(startFrame, endFrame), startFrame);
+		prefetchPlanner = new PrefetchPlanner(prefetcher, startFrame, endFrame, PREFETCH_LOOK_AHEAD, PREFETCH_THREADS);
+	}
+
 	private void setupForRendering(double detailHint)
 	{
 		wasImmediate = ImmediateMode.isImmediate();
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Plans the prefetching of data for the frames ahead of the frame being
+ * rendered, so that the render finds the data it requires already cached
+ * instead of blocking on retrievals.
+ * <p/>
+ * The renderer calls {@link #advance(int)} before rendering each frame, which
+ * submits the frames within the look-ahead window to a pool of prefetch
+ * threads. Frames are prefetched in order, and frames that the renderer has
+ * already reached are skipped. The prefetch threads are marked as prefetching
+ * in {@link ImmediateMode}, so that retrievals run while rendering can be
+ * counted separately from those run by the prefetch threads.
+ */
+public class PrefetchPlanner
+{
+	private final FramePrefetcher prefetcher;
+	private final int lastFrame;
+	private final int lookAhead;
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicInteger currentFrame = new AtomicInteger(Integer.MIN_VALUE);
+	private int nextFrame;
+
+	private final AtomicLong cachedCount = new AtomicLong();
+	private final AtomicLong fetchedCount = new AtomicLong();
+	private final AtomicInteger prefetchedFrameCount = new AtomicInteger();
+	private final AtomicInteger lateFrameCount = new AtomicInteger();
+	private final AtomicInteger hitFrameCount = new AtomicInteger();
+	private final AtomicInteger missFrameCount = new AtomicInteger();
+	private final AtomicLong renderRetrievalCount = new AtomicLong();
+
+	/**
+	 * @param prefetcher
+	 *            Prefetches the data for a single frame
+	 * @param firstFrame
+	 *            First frame to be rendered
+	 * @param lastFrame
+	 *            Last frame to be rendered
+	 * @param lookAhead
+	 *            Maximum number of frames ahead of the current frame to
+	 *            prefetch
+	 * @param threads
+	 *            Number of prefetch threads
+	 */
+	public PrefetchPlanner(FramePrefetcher prefetcher, int firstFrame, int lastFrame, int lookAhead, int threads)
+	{
+		this.prefetcher = prefetcher;
+		this.lastFrame = lastFrame;
+		this.lookAhead = Math.max(1, lookAhead);
+		this.nextFrame = firstFrame;
+		threads = Math.max(1, threads);
+		executor =
+				new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+						new DaemonThreadFactory("Prefetch"));
+	}
+
+	/**
+	 * Notify the planner that the given frame is about to be rendered, and
+	 * submit the frames within the look-ahead window that haven't yet been
+	 * submitted.
+	 * 
+	 * @param frame
+	 *            Frame about to be rendered
+	 */
+	public void advance(int frame)
+	{
+		currentFrame.set(frame);
+		int first = Math.max(nextFrame, frame + 1);
+		int last = Math.min(lastFrame, frame + lookAhead);
+		for (int i = first; i <= last; i++)
+		{
+			submit(i);
+		}
+		nextFrame = Math.max(nextFrame, last + 1);
+	}
+
+	private void submit(final int frame)
+	{
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (frame <= currentFrame.get())
+				{
+					//too late, the renderer has already reached this frame
+					lateFrameCount.incrementAndGet();
+					return;
+				}
+
+				ImmediateMode.setPrefetching(true);
+				try
+				{
+					prefetcher.prefetch(frame, PrefetchPlanner.this);
+					prefetchedFrameCount.incrementAndGet();
+				}
+				catch (RuntimeException e)
+				{
+					Logging.logger().log(Level.WARNING, "Error prefetching frame " + frame, e);
+				}
+				finally
+				{
+					ImmediateMode.setPrefetching(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop prefetching. Frames that have been submitted but not started are
+	 * skipped.
+	 */
+	public void shutdown()
+	{
+		currentFrame.set(Integer.MAX_VALUE);
+		executor.shutdown();
+	}
+
+	/**
+	 * Wait for the prefetch threads to finish after a {@link #shutdown()}.
+	 * 
+	 * @return True if the threads finished before the timeout
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Record that a resource required by a frame was already cached when the
+	 * frame was prefetched (a prefetch hit).
+	 */
+	public void recordCached()
+	{
+		cachedCount.incrementAndGet();
+	}
+
+	/**
+	 * Record that a resource required by a frame was fetched ahead of the
+	 * render (a prefetch miss).
+	 */
+	public void recordFetched()
+	{
+		fetchedCount.incrementAndGet();
+	}
+
+	/**
+	 * Record that a frame has been rendered.
+	 * 
+	 * @param renderRetrievals
+	 *            Number of retrievals that blocked the render of the frame;
+	 *            frames with no blocking retrievals found all their data
+	 *            already cached
+	 */
+	public void recordRenderedFrame(long renderRetrievals)
+	{
+		if (renderRetrievals > 0)
+		{
+			missFrameCount.incrementAndGet();
+			renderRetrievalCount.addAndGet(renderRetrievals);
+		}
+		else
+		{
+			hitFrameCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return Number of resources that were already cached when prefetched
+	 */
+	public long getCachedCount()
+	{
+		return cachedCount.get();
+	}
+
+	/**
+	 * @return Number of resources fetched ahead of the render
+	 */
+	public long getFetchedCount()
+	{
+		return fetchedCount.get();
+	}
+
+	/**
+	 * @return Number of frames prefetched before the renderer reached them
+	 */
+	public int getPrefetchedFrameCount()
+	{
+		return prefetchedFrameCount.get();
+	}
+
+	/**
+	 * @return Number of frames skipped because the renderer reached them
+	 *         before they were prefetched
+	 */
+	public int getLateFrameCount()
+	{
+		return lateFrameCount.get();
+	}
+
+	/**
+	 * @return Number of rendered frames that didn't block on any retrievals
+	 */
+	public int getHitFrameCount()
+	{
+		return hitFrameCount.get();
+	}
+
+	/**
+	 * @return Number of rendered frames that blocked on retrievals
+	 */
+	public int getMissFrameCount()
+	{
+		return missFrameCount.get();
+	}
+
+	/**
+	 * @return Number of retrievals that blocked the render
+	 */
+	public long getRenderRetrievalCount()
+	{
+		return renderRetrievalCount.get();
+	}
+
+	/**
+	 * @return A summary of the prefetch statistics
+	 */
+	public String getStatistics()
+	{
+		return hitFrameCount.get() + " frames rendered from cached data, " + missFrameCount.get()
+				+ " frames blocked on " + renderRetrievalCount.get() + " retrievals; " + prefetchedFrameCount.get()
+				+ " frames prefetched, " + lateFrameCount.get() + " too late; " + cachedCount.get()
+				+ " resources already cached, " + fetchedCount.get() + " fetched ahead";
+	}
+
+	/**
+	 * Prefetches the data required to render a single frame.
+	 */
+	public static interface FramePrefetcher
+	{
+		/**
+		 * Prefetch the data required to render the given frame. Called on a
+		 * prefetch thread; implementations should record each resource with
+		 * {@link PrefetchPlanner#recordCached()} or
+		 * {@link PrefetchPlanner#recordFetched()}.
+		 */
+		void prefetch(int frame, PrefetchPlanner planner);
+	}
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+
+import au.gov.ga.worldwind.animator.animation.RenderParameters;
+import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+import au.gov.ga.worldwind.animator.application.render.FrameOutputQueue.FrameOutputListener;
+import au.gov.ga.worldwind.animator.application.render.FrameOutputQueue.FrameTimings;
+
+/**
+ * A {@link RenderEventListener} that records each frame of a render in a
+ * manifest file, along with the time taken to render the frame. Frames skipped
+ * because they had already been rendered are also recorded.
+ * <p/>
+ * The manifest is a tab separated text file, with a line per frame containing
+ * the frame number, <code>rendered</code> or <code>skipped</code>, and the
+ * milliseconds taken to render the frame. When listening to a
+ * {@link FrameOutputQueue}, a <code>written</code> line is also added for each
+ * frame file written, containing the frame number, the readback, queue,
+ * encode and write milliseconds, and the file name (or a <code>failed</code>
+ * line if the frame couldn't be read back or written). Lines starting with <code>#</code>
+ * are comments, and the timing statistics are appended as comments when the
+ * render completes. Lines are flushed as they are written, so the manifest of
+ * an interrupted render lists the frames completed.
+ */
+public class RenderManifest implements RenderEventListener, FrameOutputListener
+{
+	public static final String RENDERED = "rendered";
+	public static final String SKIPPED = "skipped";
+	public static final String WRITTEN = "written";
+	public static final String FAILED = "failed";
+
+	private final File file;
+	private PrintWriter writer;
+
+	private long frameStartTime;
+	private int renderedCount = 0;
+	private int skippedCount = 0;
+	private int failedCount = 0;
+	private long totalMillis = 0;
+	private long minMillis = Long.MAX_VALUE;
+	private long maxMillis = 0;
+
+	/**
+	 * @return The manifest file for the given render parameters. Each frame
+	 *         range gets its own manifest, so that processes rendering
+	 *         different ranges to the same directory don't overwrite each
+	 *         other's manifests.
+	 */
+	public static File getManifestFile(RenderParameters renderParams)
+	{
+		return new File(renderParams.getRenderDirectory(), renderParams.getFrameName() + "_"
+				+ renderParams.getStartFrame() + "-" + renderParams.getEndFrame() + ".manifest");
+	}
+
+	public RenderManifest(File file)
+	{
+		this.file = file;
+	}
+
+	@Override
+	public synchronized void started()
+	{
+		close();
+		try
+		{
+			if (file.getParentFile() != null && !file.getParentFile().exists())
+			{
+				file.getParentFile().mkdirs();
+			}
+			writer = new PrintWriter(new FileWriter(file, true));
+			writer.println("# Render started " + new Date());
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		renderedCount = 0;
+		skippedCount = 0;
+		failedCount = 0;
+		totalMillis = 0;
+		minMillis = Long.MAX_VALUE;
+		maxMillis = 0;
+	}
+
+	@Override
+	public synchronized void startingFrame(int frame)
+	{
+		frameStartTime = System.nanoTime();
+	}
+
+	@Override
+	public synchronized void finishedFrame(int frame)
+	{
+		long millis = (System.nanoTime() - frameStartTime) / 1000000L;
+		renderedCount++;
+		totalMillis += millis;
+		minMillis = Math.min(minMillis, millis);
+		maxMillis = Math.max(maxMillis, millis);
+		writeFrame(frame, RENDERED, millis);
+	}
+
+	@Override
+	public synchronized void skippedFrame(int frame)
+	{
+		skippedCount++;
+		writeFrame(frame, SKIPPED, 0);
+	}
+
+	@Override
+	public synchronized void frameWritten(FrameTimings timings)
+	{
+		if (writer != null)
+		{
+			writer.println(String.format("%d\t%s\t%.1f\t%.1f\t%.1f\t%.1f\t%s", timings.getFrame(), WRITTEN,
+					timings.getReadbackMillis(), timings.getQueueMillis(), timings.getEncodeMillis(),
+					timings.getWriteMillis(), timings.getFile().getName()));
+			writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void frameFailed(int frame, File file, Exception e)
+	{
+		failedCount++;
+		if (writer != null)
+		{
+			writer.println(frame + "\t" + FAILED + "\t" + file.getName() + "\t" + e);
+			writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void stopped(int frame)
+	{
+		if (writer != null)
+		{
+			writer.println("# Render stopped at frame " + frame);
+		}
+		close();
+	}
+
+	@Override
+	public synchronized void completed()
+	{
+		close();
+	}
+
+	/**
+	 * Write the timing statistics to the manifest and close it. Does nothing
+	 * if the manifest is already closed.
+	 */
+	public synchronized void close()
+	{
+		if (writer == null)
+		{
+			return;
+		}
+		writer.println("# " + getStatistics());
+		writer.println("# Render finished " + new Date());
+		writer.close();
+		writer = null;
+	}
+
+	/**
+	 * @return A summary of the frame timing statistics
+	 */
+	public synchronized String getStatistics()
+	{
+		String statistics = renderedCount + " frames rendered, " + skippedCount + " skipped";
+		if (failedCount > 0)
+		{
+			statistics += ", " + failedCount + " failed to write";
+		}
+		if (renderedCount > 0)
+		{
+			statistics +=
+					String.format(", %.1fs total, %dms min, %.0fms mean, %dms max per frame", totalMillis / 1000d,
+							minMillis, totalMillis / (double) renderedCount, maxMillis);
+		}
+		return statistics;
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	public synchronized int getRenderedCount()
+	{
+		return renderedCount;
+	}
+
+	public synchronized int getSkippedCount()
+	{
+		return skippedCount;
+	}
+
+	public synchronized int getFailedCount()
+	{
+		return failedCount;
+	}
+
+	private void writeFrame(int frame, String status, long millis)
+	{
+		if (writer != null)
+		{
+			writer.println(frame + "\t" + status + "\t" + millis);
+			writer.flush();
+		}
+	}
+}
@@ -93,6 +93,12 @@ public class RenderProgressDialog implements RenderEventListener
 		}
 	}
 
+	@Override
+	public void skippedFrame(int frame)
+	{
+		finishedFrame(frame);
+	}
+
 	@Override
 	public void stopped(int frame)
 	{
@@ -63,4 +63,17 @@ public class StereoOffscreenRenderer extends OffscreenRenderer
 		view.setup(false, Eye.LEFT);
 	}
 
+	@Override
+	protected boolean isFrameRendered(int frame, Animation animation, RenderParameters renderParams)
+	{
+		boolean stereo = wwd.getView() instanceof StereoView && animation.getCamera() instanceof StereoCamera;
+		if (!stereo)
+		{
+			return super.isFrameRendered(frame, animation, renderParams);
+		}
+
+		return isFileRendered(AnimationImageSequenceNameFactory.createStereoImageSequenceFile(animation, frame, renderParams.getFrameName(), renderParams.getRenderDirectory(), Eye.LEFT))
+				&& isFileRendered(AnimationImageSequenceNameFactory.createStereoImageSequenceFile(animation, frame, renderParams.getFrameName(), renderParams.getRenderDirectory(), Eye.RIGHT));
+	}
+
 }
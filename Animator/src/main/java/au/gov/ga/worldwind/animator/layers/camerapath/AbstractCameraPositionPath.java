@@ -17,8 +17,10 @@ package au.gov.ga.worldwind.animator.layers.camerapath;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
+import gov.nasa.worldwind.terrain.ElevationModel;
 import gov.nasa.worldwind.util.OGLStackHandler;
 
 import java.awt.Color;
@@ -29,11 +31,21 @@ import javax.media.opengl.GL;
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.common.util.HSLColor;
+import au.gov.ga.worldwind.common.util.ParallelLoop;
 
 import com.sun.opengl.util.BufferUtil;
 
 /**
  * Base class for camera position paths
+ * <p/>
+ * The path's vertices and colours are calculated off the render thread into
+ * back buffers, which are swapped with the front buffers used for drawing.
+ * The model coordinates of each frame's position are cached between
+ * recalculations, so that only the window of frames whose positions have
+ * changed (eg. between the key frames either side of an edited key frame) is
+ * recalculated. The cache is discarded if the globe or its elevation model
+ * changes. The calculation of that window is split into chunks run in
+ * parallel.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -48,6 +60,21 @@ public abstract class AbstractCameraPositionPath implements Renderable
 	private DoubleBuffer pathColourBackBuffer;
 	private Object pathBufferLock = new Object();
 	private Vec4 pathReferenceCenter;
+	private Vec4 pathReferenceCenterBackBuffer;
+
+	/** Minimum number of frames calculated by each parallel chunk */
+	private static final int MIN_FRAMES_PER_CHUNK = 512;
+
+	// Per-frame values cached from the last recalculation, used to find the frames that have changed
+	private Position[] pathPositions;
+	private int pathFirstFrame;
+	private Globe pathGlobe;
+	private ElevationModel pathElevationModel;
+	private double[] pathPoints;
+	private double[] pathDeltas;
+	private double[] pathColours;
+	private double pathMinDelta;
+	private double pathMaxDelta;
 
 	/** The animation whose camera path is to be displayed on this layer */
 	private Animation animation;
@@ -66,8 +93,10 @@ public abstract class AbstractCameraPositionPath implements Renderable
 
 	public void recalulatePath()
 	{
-		populatePathBuffers();
-		swapBuffers();
+		if (populatePathBuffers())
+		{
+			swapBuffers();
+		}
 	}
 
 	public void resetPath()
@@ -77,6 +106,7 @@ public abstract class AbstractCameraPositionPath implements Renderable
 		this.pathVertexBackBuffer = BufferUtil.newDoubleBuffer(frameCount * 3);
 		this.pathColourFrontBuffer = BufferUtil.newDoubleBuffer(frameCount * 3);
 		this.pathColourBackBuffer = BufferUtil.newDoubleBuffer(frameCount * 3);
+		this.pathPositions = null;
 	}
 
 	@Override
@@ -181,57 +211,94 @@ public abstract class AbstractCameraPositionPath implements Renderable
 	 * colours ramping through the HSV colour space based on the rate of change
 	 * of the camera eye position. Colours <code>[r,g,b]</code> are stored at
 	 * <code>[3*frame, 3*frame+1, 3*frame+2]</code>.
+	 * 
+	 * @return False if the path hasn't changed since the last call (in which
+	 *         case the back buffers have not been populated)
 	 */
-	private void populatePathBuffers()
+	private boolean populatePathBuffers()
 	{
-		pathReferenceCenter = null;
-
 		int firstFrame = animation.getFrameOfFirstKeyFrame();
 		int lastFrame = animation.getFrameOfLastKeyFrame();
-
-		double[] deltas = new double[lastFrame - firstFrame + 1];
-		double minDelta = Double.MAX_VALUE;
-		double maxDelta = 0d;
-
-		pathVertexBackBuffer.rewind();
-
-		Position[] pathPositions = getPathPositions(firstFrame, lastFrame);
-
-		Position previousPathPosition = null;
-		for (int i = 0; i < pathPositions.length; i++)
+		Position[] positions = getPathPositions(firstFrame, lastFrame);
+		int count = positions.length;
+		Globe globe = animation.getView().getGlobe();
+		ElevationModel elevationModel = globe.getElevationModel();
+
+		// Find the window of frames whose positions have changed since the last recalculation
+		int dirtyStart = 0;
+		int dirtyEnd = count - 1;
+		if (pathPositions != null && pathFirstFrame == firstFrame && pathPositions.length == count
+				&& pathGlobe == globe && pathElevationModel == elevationModel)
 		{
-			Position currentPathPosition = pathPositions[i];
-
-			// Populate the vertex buffer
-			Vec4 eyeVector = animation.getView().getGlobe().computePointFromPosition(currentPathPosition);
-			if (pathReferenceCenter == null)
+			while (dirtyStart < count && positions[dirtyStart].equals(pathPositions[dirtyStart]))
 			{
-				pathReferenceCenter = eyeVector; // Choose the first point in the path to be the reference point
+				dirtyStart++;
 			}
-			pathVertexBackBuffer.put(eyeVector.x - pathReferenceCenter.x);
-			pathVertexBackBuffer.put(eyeVector.y - pathReferenceCenter.y);
-			pathVertexBackBuffer.put(eyeVector.z - pathReferenceCenter.z);
-
-			// Populate the delta array
-			if (previousPathPosition != null)
+			if (dirtyStart == count)
+			{
+				return false;
+			}
+			while (dirtyEnd > dirtyStart && positions[dirtyEnd].equals(pathPositions[dirtyEnd]))
 			{
-				double positionDelta = calculateDelta(currentPathPosition, previousPathPosition);
-				deltas[i] = positionDelta;
-				maxDelta = Math.max(maxDelta, positionDelta);
-				minDelta = Math.min(minDelta, positionDelta);
+				dirtyEnd--;
 			}
-			previousPathPosition = currentPathPosition;
 		}
+		else
+		{
+			pathPoints = new double[count * 3];
+			pathDeltas = new double[count];
+			pathColours = new double[count * 3];
+			pathMinDelta = Double.NaN;
+			pathMaxDelta = Double.NaN;
+		}
+		pathPositions = positions;
+		pathFirstFrame = firstFrame;
+		pathGlobe = globe;
+		pathElevationModel = elevationModel;
+
+		populatePoints(globe, positions, dirtyStart, dirtyEnd);
+
+		// Each delta is the distance from the previous frame, so the frame after the window also changes
+		int deltaStart = Math.max(1, dirtyStart);
+		int deltaEnd = Math.min(count - 1, dirtyEnd + 1);
+		populateDeltas(deltaStart, deltaEnd);
 
-		//first wasn't set in loop above, so just copy from second:
-		if (deltas.length > 1)
+		double minDelta = Double.MAX_VALUE;
+		double maxDelta = 0d;
+		for (int i = 1; i < count; i++)
 		{
-			deltas[0] = deltas[1];
+			maxDelta = Math.max(maxDelta, pathDeltas[i]);
+			minDelta = Math.min(minDelta, pathDeltas[i]);
 		}
 
-		populatePathColourBufferFromDeltas(deltas, minDelta, maxDelta);
+		// The colours are scaled by the delta range, so if it changes the whole path must be recoloured
+		if (minDelta == pathMinDelta && maxDelta == pathMaxDelta)
+		{
+			populateColours(deltaStart <= 1 ? 0 : deltaStart, deltaEnd);
+		}
+		else
+		{
+			pathMinDelta = minDelta;
+			pathMaxDelta = maxDelta;
+			populateColours(0, count - 1);
+		}
 
+		// Vertices are stored relative to the first point in the path (the reference point)
+		pathReferenceCenterBackBuffer = new Vec4(pathPoints[0], pathPoints[1], pathPoints[2]);
 		pathVertexBackBuffer.rewind();
+		for (int i = 0; i < count * 3; i += 3)
+		{
+			pathVertexBackBuffer.put(pathPoints[i] - pathPoints[0]);
+			pathVertexBackBuffer.put(pathPoints[i + 1] - pathPoints[1]);
+			pathVertexBackBuffer.put(pathPoints[i + 2] - pathPoints[2]);
+		}
+		pathVertexBackBuffer.rewind();
+
+		pathColourBackBuffer.rewind();
+		pathColourBackBuffer.put(pathColours, 0, count * 3);
+		pathColourBackBuffer.rewind();
+
+		return true;
 	}
 
 	/**
@@ -240,37 +307,79 @@ public abstract class AbstractCameraPositionPath implements Renderable
 	protected abstract Position[] getPathPositions(int startFrame, int endFrame);
 
 	/**
-	 * @return The delta of the current and previous position
+	 * Calculate the model coordinates of the given positions between the
+	 * start and end indices (inclusive).
 	 */
-	private double calculateDelta(Position currentPosition, Position previousPosition)
+	private void populatePoints(final Globe globe, final Position[] positions, final int start, int end)
 	{
-		Vec4 current = animation.getView().getGlobe().computePointFromPosition(currentPosition);
-		Vec4 previous = animation.getView().getGlobe().computePointFromPosition(previousPosition);
-		return Math.abs(current.distanceTo3(previous));
+		final double[] points = pathPoints;
+		ParallelLoop.run(end - start + 1, MIN_FRAMES_PER_CHUNK, new ParallelLoop.Body()
+		{
+			@Override
+			public void run(int chunkStart, int chunkEnd)
+			{
+				for (int i = start + chunkStart; i < start + chunkEnd; i++)
+				{
+					Vec4 point = globe.computePointFromPosition(positions[i]);
+					points[i * 3] = point.x;
+					points[i * 3 + 1] = point.y;
+					points[i * 3 + 2] = point.z;
+				}
+			}
+		});
 	}
 
-	private void populatePathColourBufferFromDeltas(double[] deltas, double minDelta, double maxDelta)
+	/**
+	 * Calculate the deltas between the start and end indices (inclusive).
+	 * Each delta is the distance between a point and the previous point.
+	 */
+	private void populateDeltas(int start, int end)
 	{
-		double deltaWindow = maxDelta - minDelta;
-		if (deltaWindow < 1)
+		double[] points = pathPoints;
+		for (int i = start; i <= end; i++)
 		{
-			deltaWindow = 1;
+			double dx = points[i * 3] - points[i * 3 - 3];
+			double dy = points[i * 3 + 1] - points[i * 3 - 2];
+			double dz = points[i * 3 + 2] - points[i * 3 - 1];
+			pathDeltas[i] = Math.sqrt(dx * dx + dy * dy + dz * dz);
 		}
 
-		// Use the HSL colour ramp to indicate magnitude of deltas
-		HSLColor hslColor = new HSLColor(0, 80, 50);
-		Color pathColor = null;
-
-		pathColourBackBuffer.rewind();
-		for (double delta : deltas)
+		//first has no previous point, so just copy from second:
+		if (start <= 1 && pathDeltas.length > 1)
 		{
-			float normalizedDelta = (float) ((delta - minDelta) / deltaWindow);
-			pathColor = hslColor.adjustHue((1f - normalizedDelta) * 240f);
-			pathColourBackBuffer.put((double) pathColor.getRed() / 255d);
-			pathColourBackBuffer.put((double) pathColor.getGreen() / 255d);
-			pathColourBackBuffer.put((double) pathColor.getBlue() / 255d);
+			pathDeltas[0] = pathDeltas[1];
 		}
-		pathColourBackBuffer.rewind();
+	}
+
+	/**
+	 * Calculate the colours between the start and end indices (inclusive) from
+	 * the deltas.
+	 */
+	private void populateColours(final int start, int end)
+	{
+		double window = pathMaxDelta - pathMinDelta;
+		final double deltaWindow = window < 1 ? 1 : window;
+		final double minDelta = pathMinDelta;
+		final double[] deltas = pathDeltas;
+		final double[] colours = pathColours;
+
+		// Use the HSL colour ramp to indicate magnitude of deltas
+		final HSLColor hslColor = new HSLColor(0, 80, 50);
+		ParallelLoop.run(end - start + 1, MIN_FRAMES_PER_CHUNK, new ParallelLoop.Body()
+		{
+			@Override
+			public void run(int chunkStart, int chunkEnd)
+			{
+				for (int i = start + chunkStart; i < start + chunkEnd; i++)
+				{
+					float normalizedDelta = (float) ((deltas[i] - minDelta) / deltaWindow);
+					Color pathColor = hslColor.adjustHue((1f - normalizedDelta) * 240f);
+					colours[i * 3] = (double) pathColor.getRed() / 255d;
+					colours[i * 3 + 1] = (double) pathColor.getGreen() / 255d;
+					colours[i * 3 + 2] = (double) pathColor.getBlue() / 255d;
+				}
+			}
+		});
 	}
 
 	/**
@@ -296,6 +405,8 @@ public abstract class AbstractCameraPositionPath implements Renderable
 			pathColourFrontBuffer = pathColourBackBuffer;
 			pathColourBackBuffer = tmp;
 			pathColourFrontBuffer.rewind();
+
+			pathReferenceCenter = pathReferenceCenterBackBuffer;
 		}
 	}
 
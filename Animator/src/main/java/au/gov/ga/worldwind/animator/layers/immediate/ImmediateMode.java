@@ -15,18 +15,26 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.layers.immediate;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Helper class that stores whether immediate mode is enabled or not. Immediate
  * mode is switched on by the animator when it begins rendering an animation. It
  * causes layers to download and load textures immediately, instead of passing
  * the request off to the task service. This ensures that the highest resolution
  * imagery and elevation data is available when rendering each frame.
+ * <p/>
+ * Retrievals run immediately on the render thread block the render, so they
+ * are counted. Threads that fetch data ahead of the render (see
+ * {@link #setPrefetching(boolean)}) are not counted.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImmediateMode
 {
 	private static boolean immediate = false;
+	private static final ThreadLocal<Boolean> prefetching = new ThreadLocal<Boolean>();
+	private static final AtomicLong renderRetrievalCount = new AtomicLong();
 
 	/**
 	 * @return Is immediate mode switched on?
@@ -45,4 +53,44 @@ public class ImmediateMode
 	{
 		ImmediateMode.immediate = immediate;
 	}
+
+	/**
+	 * Mark the current thread as prefetching data ahead of the render.
+	 * Retrievals run on a prefetching thread are not counted as render
+	 * retrievals.
+	 * 
+	 * @param prefetching
+	 */
+	public static void setPrefetching(boolean prefetching)
+	{
+		ImmediateMode.prefetching.set(prefetching ? Boolean.TRUE : null);
+	}
+
+	/**
+	 * @return Is the current thread prefetching data ahead of the render?
+	 */
+	public static boolean isPrefetching()
+	{
+		return prefetching.get() != null;
+	}
+
+	/**
+	 * Record that a retrieval has been run immediately on the current thread.
+	 */
+	public static void recordRetrieval()
+	{
+		if (!isPrefetching())
+		{
+			renderRetrievalCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return Number of retrievals that have been run immediately on threads
+	 *         that aren't prefetching (ie. retrievals that blocked the render)
+	 */
+	public static long getRenderRetrievalCount()
+	{
+		return renderRetrievalCount.get();
+	}
 }
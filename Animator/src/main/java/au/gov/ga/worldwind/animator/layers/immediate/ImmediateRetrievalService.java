@@ -28,6 +28,9 @@ import java.beans.PropertyChangeListener;
 import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 /**
@@ -35,6 +38,11 @@ import java.util.concurrent.FutureTask;
  * {@link #runRetriever(Retriever)}, returning only when retrieval has
  * completed.
  * <p/>
+ * Retrievals can be run immediately from several threads at once (such as the
+ * render thread and prefetch threads). If a thread requests a resource that is
+ * already being retrieved by another thread, it waits for that retrieval
+ * instead of retrieving the resource again.
+ * <p/>
  * Delegates to an internal instance of the {@link BasicRetrievalService}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
@@ -43,6 +51,7 @@ import java.util.concurrent.FutureTask;
 public class ImmediateRetrievalService implements RetrievalService
 {
 	private final RetrievalService delegate = new BasicRetrievalService();
+	private final ConcurrentMap<String, RetrievalTask> activeTasks = new ConcurrentHashMap<String, RetrievalTask>();
 
 	@Override
 	public void onMessage(Message msg)
@@ -197,13 +206,47 @@ public class ImmediateRetrievalService implements RetrievalService
 	}
 
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	public RetrievalFuture runRetriever(Retriever retriever, double priority)
 	{
 		if (!ImmediateMode.isImmediate())
 			return delegate.runRetriever(retriever, priority);
 
+		ImmediateMode.recordRetrieval();
 		RetrievalTask task = new RetrievalTask(retriever);
-		task.run(); //run the task
+		String name = retriever.getName();
+		if (name == null)
+		{
+			task.run();
+			return task;
+		}
+
+		RetrievalTask activeTask = activeTasks.putIfAbsent(name, task);
+		if (activeTask != null)
+		{
+			//another thread is retrieving the same resource, so wait for it to complete
+			try
+			{
+				activeTask.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				//the retriever's post processor handles failed retrievals
+			}
+			return activeTask;
+		}
+
+		try
+		{
+			task.run(); //run the task
+		}
+		finally
+		{
+			activeTasks.remove(name, task);
+		}
 		return task;
 	}
 
@@ -26,13 +26,19 @@ import gov.nasa.worldwind.util.ThreadedTaskService;
 public class ImmediateTaskService extends ThreadedTaskService
 {
 	@Override
-	public synchronized void addTask(Runnable runnable)
+	public void addTask(Runnable runnable)
 	{
 		if (ImmediateMode.isImmediate())
 		{
+			//not synchronized, so that prefetch threads can run tasks alongside the render thread
 			runnable.run();
 			return;
 		}
+		addQueuedTask(runnable);
+	}
+
+	private synchronized void addQueuedTask(Runnable runnable)
+	{
 		super.addTask(runnable);
 	}
 }
@@ -157,12 +157,7 @@ public class Bezier<V extends Vector<V>> implements Serializable
 			throw new IllegalArgumentException("Percent must be in range [0,1]. Value '" + percent + "' is illegal.");
 		}
 
-		int i = 0;
-		while (i < percents.length - 1 && percents[i] <= percent)
-		{
-			i++;
-		}
-
+		int i = indexOfSubdivision(percents, percent);
 		double percentStart = i > 0 ? percents[i - 1] : 0d;
 		double percentWindow = percents[i] - percentStart;
 		double p = (percent - percentStart) / percentWindow;
@@ -171,6 +166,31 @@ public class Bezier<V extends Vector<V>> implements Serializable
 		return bezierPointAt(percent);
 	}
 
+	/**
+	 * Find the subdivision containing the given percent along the curve: the
+	 * first index whose cumulative percent is greater than <code>percent</code>,
+	 * or the last index if there is none. The percents are non-decreasing, so
+	 * this is a binary search.
+	 */
+	static int indexOfSubdivision(double[] percents, double percent)
+	{
+		int low = 0;
+		int high = percents.length - 1;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (percents[mid] <= percent)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
 	/**
 	 * Evaluates the bezier curve at the parametric point <code>t</code>
 	 * 
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.math.bezier;
+
+import java.io.Serializable;
+
+import au.gov.ga.worldwind.animator.math.vector.TimeVector;
+
+/**
+ * A cubic Bezier curve through (time, value) space, stored as primitives.
+ * <p/>
+ * This produces the same values as a {@link Bezier} of {@link TimeVector}s:
+ * the curve is discretised into a number of subdivisions, with the distance
+ * along the curve measured on the time axis only, and a point at a percent
+ * along the curve is found using that table. Unlike {@link Bezier}, the table
+ * is searched using a binary search, and no vectors are created when
+ * evaluating the curve, so this should be used when evaluating the curve for
+ * many points.
+ * <p/>
+ * This implementation is immutable.
+ */
+public class TimeBezier implements Serializable
+{
+	private static final long serialVersionUID = 20121017L;
+
+	/** The default number of points to sample along the curve */
+	private final static int DEFAULT_NUM_SUBDIVISIONS = 1000;
+
+	private final int numSubdivisions;
+
+	private final double beginTime;
+	private final double beginValue;
+
+	// Polynomial coefficients of the curve, in each dimension
+	private final double aTime, bTime, cTime;
+	private final double aValue, bValue, cValue;
+
+	/** The normalised cumulative length at each subdivision */
+	private final double[] percents;
+
+	/** The length of the curve on the time axis */
+	private final double length;
+
+	/**
+	 * Construct a new curve with the provided control points, using the
+	 * default number of subdivisions to sample the curve.
+	 */
+	public TimeBezier(double beginTime, double beginValue, double outTime, double outValue, double inTime,
+			double inValue, double endTime, double endValue)
+	{
+		this(beginTime, beginValue, outTime, outValue, inTime, inValue, endTime, endValue, DEFAULT_NUM_SUBDIVISIONS);
+	}
+
+	/**
+	 * Construct a new curve with the provided beginning point, exiting control
+	 * point, entering control point and end point, using the provided number of
+	 * subdivisions to sample the curve.
+	 * 
+	 * @param numSubdivisions
+	 *            The number of subdivisions to use to sample the curve
+	 */
+	public TimeBezier(double beginTime, double beginValue, double outTime, double outValue, double inTime,
+			double inValue, double endTime, double endValue, int numSubdivisions)
+	{
+		this.beginTime = beginTime;
+		this.beginValue = beginValue;
+		this.numSubdivisions = numSubdivisions;
+
+		// Same order of operations as Bezier.bezierPointAt(), so the results are identical
+		cTime = (outTime - beginTime) * 3d;
+		bTime = (inTime - outTime) * 3d - cTime;
+		aTime = endTime - beginTime - cTime - bTime;
+		cValue = (outValue - beginValue) * 3d;
+		bValue = (inValue - outValue) * 3d - cValue;
+		aValue = endValue - beginValue - cValue - bValue;
+
+		percents = new double[numSubdivisions];
+		double length = 0d;
+		double previousTime = beginTime;
+		for (int i = 0; i < numSubdivisions; i++)
+		{
+			double time = timeAt((i + 1) / (double) numSubdivisions);
+			length += Math.abs(previousTime - time);
+			percents[i] = length;
+			previousTime = time;
+		}
+		if (length > 0d)
+		{
+			for (int i = 0; i < numSubdivisions; i++)
+			{
+				percents[i] /= length;
+			}
+		}
+		percents[numSubdivisions - 1] = 1d;
+		this.length = length;
+	}
+
+	/**
+	 * @return The length of the curve on the time axis
+	 */
+	public double getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * @return The number or subdivisions used to sample the curve
+	 */
+	public int getNumSubdivisions()
+	{
+		return numSubdivisions;
+	}
+
+	/**
+	 * Obtain the value of the point on the curve that is <code>percent</code>
+	 * of the way along the curve.
+	 * 
+	 * @param percent
+	 *            The percent along the curve to sample. In range
+	 *            <code>[0,1]</code>
+	 * @return The value at the given percentage along the curve
+	 * @see Bezier#pointAt(double)
+	 */
+	public double valueAt(double percent)
+	{
+		if (percent < 0 || percent > 1)
+		{
+			throw new IllegalArgumentException("Percent must be in range [0,1]. Value '" + percent + "' is illegal.");
+		}
+
+		return valueAt(percent, Bezier.indexOfSubdivision(percents, percent));
+	}
+
+	/**
+	 * Calculate the values at a sequence of evenly spaced percents along the
+	 * curve: <code>array[offset + i]</code> is set to the value at
+	 * <code>(first + i) / steps</code> percent. Equivalent to calling
+	 * {@link #valueAt(double)} for each percent, but steps through the
+	 * subdivisions instead of searching them for each value.
+	 * 
+	 * @param first
+	 *            Numerator of the first percent
+	 * @param count
+	 *            Number of values to calculate
+	 * @param steps
+	 *            Denominator of the percents
+	 * @param array
+	 *            Array to store the values in
+	 * @param offset
+	 *            Index in the array to store the first value in
+	 */
+	public void valuesAt(int first, int count, int steps, double[] array, int offset)
+	{
+		if (first < 0 || first + count - 1 > steps)
+		{
+			throw new IllegalArgumentException("Percents must be in range [0,1]. Values '" + first + "' to '"
+					+ (first + count - 1) + "' of '" + steps + "' are illegal.");
+		}
+		if (count <= 0)
+		{
+			return;
+		}
+
+		int last = numSubdivisions - 1;
+		int i = Bezier.indexOfSubdivision(percents, (double) first / (double) steps);
+		for (int j = 0; j < count; j++)
+		{
+			double percent = ((double) (first + j)) / ((double) steps);
+			while (i < last && percents[i] <= percent)
+			{
+				i++;
+			}
+			array[offset + j] = valueAt(percent, i);
+		}
+	}
+
+	/**
+	 * Calculate the value at the given percent, which lies within the given
+	 * subdivision.
+	 */
+	private double valueAt(double percent, int i)
+	{
+		double percentStart = i > 0 ? percents[i - 1] : 0d;
+		double percentWindow = percents[i] - percentStart;
+		double p = (percent - percentStart) / percentWindow;
+		return valueAtParameter((p + (double) i) / (double) numSubdivisions);
+	}
+
+	private double timeAt(double t)
+	{
+		double t2 = t * t;
+		return aTime * (t2 * t) + bTime * t2 + cTime * t + beginTime;
+	}
+
+	private double valueAtParameter(double t)
+	{
+		double t2 = t * t;
+		return aValue * (t2 * t) + bValue * t2 + cValue * t + beginValue;
+	}
+}
@@ -258,7 +258,7 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 		{
 			return;
 		}
-		for (int i = listeners.size() - 1; i <= 0; i--)
+		for (int i = listeners.size() - 1; i >= 0; i--)
 		{
 			listeners.get(i).curveChanged();
 		}
@@ -362,7 +362,12 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 			{
 				dirtyWindowEnd = lastFrame;
 			}
-			ParameterValue[] windowValues = parameter.getValuesBetweenFrames(dirtyWindowStart, dirtyWindowEnd, null);
+			double[] windowValues = parameter.getDoubleValuesBetweenFrames(dirtyWindowStart, dirtyWindowEnd, null);
+			
+			// Points outside the window are reused from the latest curve, which is the front buffer (the back
+			// buffer holds the curve before that). The front buffer is only replaced while the back buffer
+			// lock is held, so it can be read here without locking it.
+			TreeMap<Integer, ParameterCurvePoint> previousPoints = curvePointsFrontBuffer;
 			
 			// Repopulate the buffer from the recalculated values
 			for (int frame = firstFrame; frame <= lastFrame; frame++)
@@ -370,14 +375,14 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 				ParameterCurvePoint curvePoint = null;
 				
 				boolean inWindow = inWindow(frame, dirtyWindowStart, dirtyWindowEnd);
-				if (inWindow || !curvePointsBackBuffer.containsKey(frame))
+				if (!inWindow)
 				{
-					double curveValue = inWindow ? windowValues[frame - dirtyWindowStart].getValue() : parameter.getValueAtFrame(frame).getValue();
-					curvePoint = new ParameterCurvePoint(frame, curveValue);
+					curvePoint = previousPoints.get(frame);
 				}
-				else
+				if (curvePoint == null)
 				{
-					curvePoint = curvePointsBackBuffer.get(frame);
+					double curveValue = inWindow ? windowValues[frame - dirtyWindowStart] : parameter.getDoubleValueAtFrame(frame);
+					curvePoint = new ParameterCurvePoint(frame, curveValue);
 				}
 				
 				if (curvePoint.value > maxValue)
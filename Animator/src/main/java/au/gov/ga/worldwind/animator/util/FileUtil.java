@@ -84,4 +84,28 @@ public class FileUtil extends au.gov.ga.worldwind.common.util.FileUtil
 		}
 		return stripSequenceNumber(name.substring(0, name.length()-1));
 	}
+	
+	/**
+	 * @return A temporary file in the same directory as the given file, with the same extension 
+	 *         (e.g. "frame0056.tga" -> "frame0056.tmp.tga"). Write to the temporary file and then 
+	 *         {@link #renameTemporaryFile(File, File)} so that the file is never seen partially written.
+	 */
+	public static File getTemporaryFile(File file)
+	{
+		String extension = getExtension(file.getName());
+		String temporaryName = stripExtension(file.getName()) + ".tmp" + (extension == null ? "" : "." + extension);
+		return new File(file.getParentFile(), temporaryName);
+	}
+	
+	/**
+	 * Replace the given file with the completely written temporary file.
+	 */
+	public static void renameTemporaryFile(File temporaryFile, File file) throws IOException
+	{
+		file.delete();
+		if (!temporaryFile.renameTo(file))
+		{
+			throw new IOException("Could not rename " + temporaryFile + " to " + file);
+		}
+	}
 }
@@ -61,22 +61,32 @@ public class TGAScreenshot
 		writer.open(file, width, height, alpha);
 		ByteBuffer buf = writer.getImageData();
 
-		GL gl = GLU.getCurrentGL();
+		// read the BGR values into the image buffer
+		readPixels(GLU.getCurrentGL(), x, y, width, height, alpha ? GL.GL_BGRA : GL.GL_BGR, buf);
+
+		// close the file
+		writer.close();
+	}
 
+	/**
+	 * Read the pixels from the current OpenGL read buffer into the given
+	 * buffer, tightly packed (no row padding) from the bottom row up, with one
+	 * unsigned byte per channel.
+	 * 
+	 * @param format
+	 *            Pixel format to read, such as {@link GL#GL_BGR} or
+	 *            {@link GL#GL_RGBA}
+	 */
+	public static void readPixels(GL gl, int x, int y, int width, int height, int format, ByteBuffer buffer)
+	{
 		// Set up pixel storage modes
 		PixelStorageModes psm = new PixelStorageModes();
 		psm.save(gl);
 
-		int readbackType = (alpha ? GL.GL_BGRA : GL.GL_BGR);
-
-		// read the BGR values into the image buffer
-		gl.glReadPixels(x, y, width, height, readbackType, GL.GL_UNSIGNED_BYTE, buf);
+		gl.glReadPixels(x, y, width, height, format, GL.GL_UNSIGNED_BYTE, buffer);
 
 		// Restore pixel storage modes
 		psm.restore(gl);
-
-		// close the file
-		writer.close();
 	}
 
 	public static class TGAWriter
@@ -0,0 +1,206 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.RenderParameters;
+import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+
+/**
+ * Unit tests for the {@link AnimationRendererBase} class
+ */
+public class AnimationRendererBaseTest
+{
+	private Animation animation;
+	private RenderParameters renderParams;
+	private RecordingListener listener;
+
+	@Before
+	public void setup()
+	{
+		Mockery mockContext = new Mockery();
+		animation = mockContext.mock(Animation.class);
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(animation).hasKeyFrames();
+				will(returnValue(true));
+			}
+		});
+
+		renderParams = new RenderParameters();
+		renderParams.setFrameRange(0, 4);
+		listener = new RecordingListener();
+	}
+
+	@Test
+	public void testAllFramesFinished() throws Exception
+	{
+		TestRenderer classToBeTested = new TestRenderer(-1);
+		classToBeTested.addListener(listener);
+
+		classToBeTested.render(animation, renderParams);
+
+		assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), classToBeTested.rendered);
+		assertEquals(Arrays.asList("started", "finished 0", "finished 1", "finished 2", "finished 3", "finished 4",
+				"completed"), listener.getEvents());
+	}
+
+	@Test
+	public void testAbortedFrameNotFinished() throws Exception
+	{
+		TestRenderer classToBeTested = new TestRenderer(2);
+		classToBeTested.addListener(listener);
+
+		classToBeTested.render(animation, renderParams);
+
+		assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(0, 1, 2), classToBeTested.rendered);
+		assertEquals(Arrays.asList("started", "finished 0", "finished 1", "stopped 2"), listener.getEvents());
+	}
+
+	@Test
+	public void testStopReportedAfterCurrentFrame() throws Exception
+	{
+		final TestRenderer classToBeTested = new TestRenderer(-1);
+		classToBeTested.addListener(listener);
+		classToBeTested.addListener(new RecordingListener()
+		{
+			@Override
+			public synchronized void finishedFrame(int frame)
+			{
+				if (frame == 1)
+				{
+					classToBeTested.stop();
+				}
+			}
+		});
+
+		classToBeTested.render(animation, renderParams);
+
+		assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(0, 1), classToBeTested.rendered);
+		assertEquals(Arrays.asList("started", "finished 0", "finished 1", "stopped 1"), listener.getEvents());
+	}
+
+	@Test
+	public void testStopOnLastFrameCompletes() throws Exception
+	{
+		final TestRenderer classToBeTested = new TestRenderer(-1);
+		classToBeTested.addListener(listener);
+		classToBeTested.addListener(new RecordingListener()
+		{
+			@Override
+			public synchronized void finishedFrame(int frame)
+			{
+				if (frame == 4)
+				{
+					classToBeTested.stop();
+				}
+			}
+		});
+
+		classToBeTested.render(animation, renderParams);
+
+		assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+		assertEquals("completed", listener.getEvents().get(listener.getEvents().size() - 1));
+	}
+
+	private static class TestRenderer extends AnimationRendererBase
+	{
+		private final int abortFrame;
+		private final List<Integer> rendered = new ArrayList<Integer>();
+
+		public TestRenderer(int abortFrame)
+		{
+			this.abortFrame = abortFrame;
+		}
+
+		@Override
+		protected void renderFrame(int frame, Animation animation, RenderParameters renderParams)
+		{
+			doRender(frame, null, animation, renderParams);
+		}
+
+		@Override
+		protected void doPreRender(Animation animation, RenderParameters renderParams)
+		{
+		}
+
+		@Override
+		protected void doRender(int frame, File targetFile, Animation animation, RenderParameters renderParams)
+		{
+			rendered.add(frame);
+			if (frame == abortFrame)
+			{
+				abortFrame();
+			}
+		}
+
+		@Override
+		protected void doPostRender(Animation animation, RenderParameters renderParams)
+		{
+		}
+	}
+
+	private static class RecordingListener implements RenderEventListener
+	{
+		private final List<String> events = new ArrayList<String>();
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		@Override
+		public synchronized void started()
+		{
+			events.add("started");
+		}
+
+		@Override
+		public void startingFrame(int frame)
+		{
+		}
+
+		@Override
+		public synchronized void finishedFrame(int frame)
+		{
+			events.add("finished " + frame);
+		}
+
+		@Override
+		public synchronized void skippedFrame(int frame)
+		{
+			events.add("skipped " + frame);
+		}
+
+		@Override
+		public synchronized void stopped(int frame)
+		{
+			events.add("stopped " + frame);
+			done.countDown();
+		}
+
+		@Override
+		public synchronized void completed()
+		{
+			events.add("completed");
+			done.countDown();
+		}
+
+		public synchronized List<String> getEvents()
+		{
+			return new ArrayList<String>(events);
+		}
+	}
+}
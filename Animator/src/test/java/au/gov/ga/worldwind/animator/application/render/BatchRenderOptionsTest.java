@@ -0,0 +1,121 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BatchRenderOptions} class
+ */
+public class BatchRenderOptionsTest
+{
+	@Test
+	public void testNotBatchRender()
+	{
+		assertNull(BatchRenderOptions.parse(null));
+		assertNull(BatchRenderOptions.parse(new String[0]));
+		assertNull(BatchRenderOptions.parse(new String[] { "-psn_0_12345" }));
+	}
+
+	@Test
+	public void testParse()
+	{
+		BatchRenderOptions options =
+				BatchRenderOptions.parse(new String[] { "--render", "animation.xml", "--frames", "1000-1999",
+						"--shard", "3/8", "--output", "out/frame", "--detail", "0.5", "--overwrite" });
+
+		assertNotNull(options);
+		assertEquals(new File("animation.xml"), options.getAnimationFile());
+		assertEquals(1000, (int) options.getStartFrame());
+		assertEquals(1999, (int) options.getEndFrame());
+		assertEquals(3, options.getShardIndex());
+		assertEquals(8, options.getShardCount());
+		assertEquals(new File("out/frame"), options.getRenderDestination());
+		assertEquals(0.5, options.getDetailLevel(), 0);
+		assertTrue(options.isOverwrite());
+	}
+
+	@Test
+	public void testDefaults()
+	{
+		BatchRenderOptions options = BatchRenderOptions.parse(new String[] { "--render", "animation.xml" });
+
+		assertNull(options.getStartFrame());
+		assertNull(options.getEndFrame());
+		assertEquals(1, options.getShardIndex());
+		assertEquals(1, options.getShardCount());
+		assertNull(options.getRenderDestination());
+		assertNull(options.getDetailLevel());
+		assertFalse(options.isOverwrite());
+		assertArrayEquals(new int[] { 5, 500 }, options.getShardFrameRange(5, 500));
+	}
+
+	@Test
+	public void testInvalidArguments()
+	{
+		assertInvalid("--render");
+		assertInvalid("--render", "a.xml", "--frames", "20-10");
+		assertInvalid("--render", "a.xml", "--frames", "ten");
+		assertInvalid("--render", "a.xml", "--shard", "0/8");
+		assertInvalid("--render", "a.xml", "--shard", "9/8");
+		assertInvalid("--render", "a.xml", "--detail", "high");
+		assertInvalid("--render", "a.xml", "--unknown", "1");
+	}
+
+	@Test
+	public void testShardsCoverFrameRange()
+	{
+		int shardCount = 8;
+		int nextFrame = 1000;
+		for (int shard = 1; shard <= shardCount; shard++)
+		{
+			BatchRenderOptions options =
+					BatchRenderOptions.parse(new String[] { "--render", "a.xml", "--frames", "1000-1999", "--shard",
+							shard + "/" + shardCount });
+			int[] range = options.getShardFrameRange(0, 5000);
+			assertEquals(nextFrame, range[0]);
+			assertEquals(125, range[1] - range[0] + 1);
+			nextFrame = range[1] + 1;
+		}
+		assertEquals(2000, nextFrame);
+	}
+
+	@Test
+	public void testUnevenShards()
+	{
+		int nextFrame = 0;
+		for (int shard = 1; shard <= 3; shard++)
+		{
+			BatchRenderOptions options =
+					BatchRenderOptions.parse(new String[] { "--render", "a.xml", "--shard", shard + "/3" });
+			int[] range = options.getShardFrameRange(0, 9);
+			assertEquals(nextFrame, range[0]);
+			nextFrame = range[1] + 1;
+		}
+		assertEquals(10, nextFrame);
+	}
+
+	@Test
+	public void testEmptyShard()
+	{
+		BatchRenderOptions options = BatchRenderOptions.parse(new String[] { "--render", "a.xml", "--shard", "1/8" });
+		assertNull(options.getShardFrameRange(0, 2));
+
+		options = BatchRenderOptions.parse(new String[] { "--render", "a.xml", "--shard", "8/8" });
+		assertArrayEquals(new int[] { 2, 2 }, options.getShardFrameRange(0, 2));
+	}
+
+	private static void assertInvalid(String... args)
+	{
+		try
+		{
+			BatchRenderOptions.parse(args);
+			fail("Expected an IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.application.render.FrameOutputQueue.FrameOutputListener;
+import au.gov.ga.worldwind.animator.application.render.FrameOutputQueue.FrameTimings;
+
+/**
+ * Unit tests for the {@link FrameOutputQueue} class
+ */
+public class FrameOutputQueueTest
+{
+	private File directory;
+	private List<FrameTimings> written;
+	private List<Integer> failed;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("frameoutput", "");
+		directory.delete();
+		directory.mkdirs();
+		written = new ArrayList<FrameTimings>();
+		failed = new ArrayList<Integer>();
+	}
+
+	@After
+	public void cleanup()
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testWriteTarga() throws Exception
+	{
+		FrameOutputQueue classToBeTested = createQueue(2, 2);
+		byte[] pixels = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 };
+		File file = new File(directory, "frame01.tga");
+
+		write(classToBeTested, 1, file, pixels, 2, 2, false);
+		classToBeTested.flush();
+
+		byte[] contents = readFile(file);
+		assertEquals(18 + pixels.length, contents.length);
+		assertEquals(2, contents[2]);
+		assertEquals(2, contents[12]);
+		assertEquals(2, contents[14]);
+		assertEquals(24, contents[16]);
+		for (int i = 0; i < pixels.length; i++)
+		{
+			assertEquals(pixels[i], contents[18 + i]);
+		}
+
+		assertEquals(1, written.size());
+		assertEquals(1, written.get(0).getFrame());
+		assertEquals(file, written.get(0).getFile());
+		assertEquals(1, classToBeTested.getWrittenCount());
+		assertFalse(new File(directory, "frame01.tmp.tga").exists());
+	}
+
+	@Test
+	public void testWritePng() throws Exception
+	{
+		FrameOutputQueue classToBeTested = createQueue(2, 2);
+		//RGBA, bottom row first
+		byte[] pixels = { (byte) 255, 0, 0, (byte) 255, 0, (byte) 255, 0, (byte) 128, //bottom row
+				0, 0, (byte) 255, (byte) 255, 10, 20, 30, 0 }; //top row
+		File file = new File(directory, "frame02.png");
+
+		write(classToBeTested, 2, file, pixels, 2, 2, true);
+		classToBeTested.flush();
+
+		BufferedImage image = ImageIO.read(file);
+		assertEquals(2, image.getWidth());
+		assertEquals(2, image.getHeight());
+		assertEquals(0xff0000ff, image.getRGB(0, 0));
+		assertEquals(0x000a141e, image.getRGB(1, 0));
+		assertEquals(0xffff0000, image.getRGB(0, 1));
+		assertEquals(0x8000ff00, image.getRGB(1, 1));
+	}
+
+	@Test
+	public void testUnsupportedFormat() throws Exception
+	{
+		FrameOutputQueue classToBeTested = createQueue(1, 1);
+		File file = new File(directory, "frame03.unknown");
+
+		write(classToBeTested, 3, file, new byte[3], 1, 1, false);
+		classToBeTested.flush();
+
+		assertEquals(1, failed.size());
+		assertEquals(3, (int) failed.get(0));
+		assertEquals(1, classToBeTested.getFailedCount());
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void testFail() throws Exception
+	{
+		FrameOutputQueue classToBeTested = createQueue(1, 1);
+		ByteBuffer buffer = classToBeTested.acquireBuffer(3);
+
+		classToBeTested.fail(4, new File(directory, "frame04.tga"), buffer, new IOException("Readback failed"));
+
+		assertEquals(1, failed.size());
+		assertEquals(4, (int) failed.get(0));
+		assertEquals(1, classToBeTested.getFailedCount());
+		assertSame(buffer, classToBeTested.acquireBuffer(3));
+	}
+
+	@Test
+	public void testBuffersReused() throws Exception
+	{
+		FrameOutputQueue classToBeTested = createQueue(1, 2);
+		ByteBuffer buffer = classToBeTested.acquireBuffer(100);
+		assertTrue(buffer.isDirect());
+		assertEquals(100, buffer.limit());
+		classToBeTested.releaseBuffer(buffer);
+
+		ByteBuffer reused = classToBeTested.acquireBuffer(50);
+		assertSame(buffer, reused);
+		assertEquals(50, reused.limit());
+
+		//too small to be reused
+		classToBeTested.releaseBuffer(reused);
+		assertNotSame(buffer, classToBeTested.acquireBuffer(200));
+	}
+
+	@Test
+	public void testBackpressure() throws Exception
+	{
+		final FrameOutputQueue classToBeTested = createQueue(1, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		classToBeTested.addListener(new FrameOutputListener()
+		{
+			@Override
+			public void frameWritten(FrameTimings timings)
+			{
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+
+			@Override
+			public void frameFailed(int frame, File file, Exception e)
+			{
+			}
+		});
+
+		write(classToBeTested, 0, new File(directory, "frame00.tga"), new byte[3], 1, 1, false);
+
+		//the only buffer is in use until the first frame has been written
+		final CountDownLatch acquired = new CountDownLatch(1);
+		Thread renderer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					classToBeTested.releaseBuffer(classToBeTested.acquireBuffer(3));
+					acquired.countDown();
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		});
+		renderer.setDaemon(true);
+		renderer.start();
+
+		assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+	}
+
+	private FrameOutputQueue createQueue(int threads, int capacity)
+	{
+		FrameOutputQueue queue = new FrameOutputQueue(threads, capacity);
+		queue.addListener(new FrameOutputListener()
+		{
+			@Override
+			public void frameWritten(FrameTimings timings)
+			{
+				synchronized (written)
+				{
+					written.add(timings);
+				}
+			}
+
+			@Override
+			public void frameFailed(int frame, File file, Exception e)
+			{
+				synchronized (failed)
+				{
+					failed.add(frame);
+				}
+			}
+		});
+		return queue;
+	}
+
+	private static void write(FrameOutputQueue queue, int frame, File file, byte[] pixels, int width, int height,
+			boolean alpha) throws InterruptedException
+	{
+		ByteBuffer buffer = queue.acquireBuffer(pixels.length);
+		buffer.put(pixels);
+		queue.write(frame, file, buffer, width, height, alpha, 0);
+	}
+
+	private static byte[] readFile(File file) throws IOException
+	{
+		byte[] contents = new byte[(int) file.length()];
+		FileInputStream fis = new FileInputStream(file);
+		try
+		{
+			int offset = 0;
+			while (offset < contents.length)
+			{
+				offset += fis.read(contents, offset, contents.length - offset);
+			}
+		}
+		finally
+		{
+			fis.close();
+		}
+		return contents;
+	}
+}
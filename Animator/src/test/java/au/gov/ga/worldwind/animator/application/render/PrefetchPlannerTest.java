@@ -0,0 +1,215 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.application.render.PrefetchPlanner.FramePrefetcher;
+import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
+
+/**
+ * Unit tests for the {@link PrefetchPlanner} class
+ */
+public class PrefetchPlannerTest
+{
+	private PrefetchPlanner classToBeTested;
+
+	@After
+	public void cleanup()
+	{
+		if (classToBeTested != null)
+		{
+			classToBeTested.shutdown();
+		}
+	}
+
+	@Test
+	public void testPrefetchesLookAheadWindow() throws Exception
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(5);
+		classToBeTested = new PrefetchPlanner(prefetcher, 0, 100, 5, 1);
+
+		classToBeTested.advance(0);
+
+		assertTrue(prefetcher.prefetched.await(5, TimeUnit.SECONDS));
+		assertEquals(frames(1, 5), prefetcher.getFrames());
+	}
+
+	@Test
+	public void testFramesPrefetchedOnce() throws Exception
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(7);
+		classToBeTested = new PrefetchPlanner(prefetcher, 0, 100, 5, 2);
+
+		classToBeTested.advance(0);
+		assertTrue(prefetcher.awaitFrames(5));
+		classToBeTested.advance(1);
+		classToBeTested.advance(2);
+
+		assertTrue(prefetcher.prefetched.await(5, TimeUnit.SECONDS));
+		classToBeTested.shutdown();
+		assertTrue(classToBeTested.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(frames(1, 7), prefetcher.getFrames());
+		assertEquals(7, classToBeTested.getPrefetchedFrameCount());
+	}
+
+	@Test
+	public void testWindowClampedToLastFrame() throws Exception
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(2);
+		classToBeTested = new PrefetchPlanner(prefetcher, 10, 12, 5, 1);
+
+		classToBeTested.advance(10);
+		assertTrue(prefetcher.prefetched.await(5, TimeUnit.SECONDS));
+		classToBeTested.advance(11);
+		classToBeTested.advance(12);
+
+		classToBeTested.shutdown();
+		assertTrue(classToBeTested.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(frames(11, 12), prefetcher.getFrames());
+	}
+
+	@Test
+	public void testLateFramesSkipped() throws Exception
+	{
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(4)
+		{
+			@Override
+			public void prefetch(int frame, PrefetchPlanner planner)
+			{
+				if (frame == 1)
+				{
+					blocked.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+				super.prefetch(frame, planner);
+			}
+		};
+		classToBeTested = new PrefetchPlanner(prefetcher, 0, 100, 3, 1);
+
+		classToBeTested.advance(0);
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+		//the renderer overtakes frames 2 and 3 while frame 1 is being prefetched
+		classToBeTested.advance(3);
+		release.countDown();
+
+		assertTrue(prefetcher.prefetched.await(5, TimeUnit.SECONDS));
+		assertEquals(frames(1, 1, 4, 6), prefetcher.getFrames());
+		assertEquals(2, classToBeTested.getLateFrameCount());
+	}
+
+	@Test
+	public void testPrefetchThreadsMarkedAsPrefetching() throws Exception
+	{
+		final List<Boolean> prefetching = Collections.synchronizedList(new ArrayList<Boolean>());
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(1)
+		{
+			@Override
+			public void prefetch(int frame, PrefetchPlanner planner)
+			{
+				prefetching.add(ImmediateMode.isPrefetching());
+				super.prefetch(frame, planner);
+			}
+		};
+		classToBeTested = new PrefetchPlanner(prefetcher, 0, 1, 5, 1);
+
+		classToBeTested.advance(0);
+
+		assertTrue(prefetcher.prefetched.await(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList(true), prefetching);
+		assertFalse(ImmediateMode.isPrefetching());
+	}
+
+	@Test
+	public void testCounters()
+	{
+		classToBeTested = new PrefetchPlanner(new RecordingPrefetcher(0), 0, 10, 5, 1);
+
+		classToBeTested.recordCached();
+		classToBeTested.recordCached();
+		classToBeTested.recordFetched();
+		classToBeTested.recordRenderedFrame(0);
+		classToBeTested.recordRenderedFrame(3);
+		classToBeTested.recordRenderedFrame(0);
+
+		assertEquals(2, classToBeTested.getCachedCount());
+		assertEquals(1, classToBeTested.getFetchedCount());
+		assertEquals(2, classToBeTested.getHitFrameCount());
+		assertEquals(1, classToBeTested.getMissFrameCount());
+		assertEquals(3, classToBeTested.getRenderRetrievalCount());
+	}
+
+	private static List<Integer> frames(int... ranges)
+	{
+		List<Integer> frames = new ArrayList<Integer>();
+		for (int i = 0; i < ranges.length; i += 2)
+		{
+			for (int frame = ranges[i]; frame <= ranges[i + 1]; frame++)
+			{
+				frames.add(frame);
+			}
+		}
+		return frames;
+	}
+
+	private static class RecordingPrefetcher implements FramePrefetcher
+	{
+		private final List<Integer> frames = new ArrayList<Integer>();
+		private final CountDownLatch prefetched;
+
+		private RecordingPrefetcher(int count)
+		{
+			prefetched = new CountDownLatch(count);
+		}
+
+		@Override
+		public void prefetch(int frame, PrefetchPlanner planner)
+		{
+			synchronized (frames)
+			{
+				frames.add(frame);
+				frames.notifyAll();
+			}
+			prefetched.countDown();
+		}
+
+		public boolean awaitFrames(int count) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + 5000;
+			synchronized (frames)
+			{
+				while (frames.size() < count && System.currentTimeMillis() < end)
+				{
+					frames.wait(100);
+				}
+				return frames.size() >= count;
+			}
+		}
+
+		public List<Integer> getFrames()
+		{
+			synchronized (frames)
+			{
+				List<Integer> sorted = new ArrayList<Integer>(frames);
+				Collections.sort(sorted);
+				return sorted;
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.util.FileUtil;
+
+/**
+ * Unit tests for the {@link RenderManifest} class
+ */
+public class RenderManifestTest
+{
+	private File file;
+
+	@Before
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("render", ".manifest");
+		file.delete();
+	}
+
+	@After
+	public void cleanup()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testManifest() throws IOException
+	{
+		RenderManifest classToBeTested = new RenderManifest(file);
+		classToBeTested.started();
+		classToBeTested.skippedFrame(10);
+		classToBeTested.startingFrame(11);
+		classToBeTested.finishedFrame(11);
+		classToBeTested.startingFrame(12);
+		classToBeTested.finishedFrame(12);
+		classToBeTested.completed();
+
+		assertEquals(2, classToBeTested.getRenderedCount());
+		assertEquals(1, classToBeTested.getSkippedCount());
+
+		String[] lines = FileUtil.readFileAsString(file).split("\r?\n");
+		assertTrue(lines[0].startsWith("#"));
+		assertEquals("10\tskipped\t0", lines[1]);
+		assertTrue(lines[2].startsWith("11\trendered\t"));
+		assertTrue(lines[3].startsWith("12\trendered\t"));
+		assertTrue(lines[4].startsWith("# 2 frames rendered, 1 skipped"));
+	}
+
+	@Test
+	public void testManifestWrittenBeforeCompletion() throws IOException
+	{
+		RenderManifest classToBeTested = new RenderManifest(file);
+		classToBeTested.started();
+		classToBeTested.startingFrame(0);
+		classToBeTested.finishedFrame(0);
+
+		//frames are flushed as they complete, so an interrupted render's manifest lists them
+		String[] lines = FileUtil.readFileAsString(file).split("\r?\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[1].startsWith("0\trendered\t"));
+
+		classToBeTested.stopped(0);
+		classToBeTested.completed();
+		assertTrue(FileUtil.readFileAsString(file).contains("# Render stopped at frame 0"));
+	}
+
+	@Test
+	public void testResumedRenderAppends() throws IOException
+	{
+		RenderManifest classToBeTested = new RenderManifest(file);
+		classToBeTested.started();
+		classToBeTested.startingFrame(0);
+		classToBeTested.finishedFrame(0);
+		classToBeTested.stopped(0);
+
+		classToBeTested.started();
+		classToBeTested.skippedFrame(0);
+		classToBeTested.completed();
+
+		String manifest = FileUtil.readFileAsString(file);
+		assertTrue(manifest.contains("0\trendered\t"));
+		assertTrue(manifest.contains("0\tskipped\t0"));
+		assertEquals(0, classToBeTested.getRenderedCount());
+		assertEquals(1, classToBeTested.getSkippedCount());
+	}
+}
@@ -0,0 +1,77 @@
+package au.gov.ga.worldwind.animator.math.bezier;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.math.vector.TimeVector;
+import au.gov.ga.worldwind.animator.math.vector.Vector2;
+
+/**
+ * Unit tests for the {@link TimeBezier} class
+ */
+public class TimeBezierTest
+{
+	private static final double[][] CONTROL_POINTS = { 
+			{ 0, 10, 0.4, 12, 0.6, 22, 1, 20 },
+			{ 0, 0, 0.1, 100, 0.9, -100, 1, 0 },
+			{ 0, 5, 0, 5, 1, 5, 1, 5 },
+			{ 0, -3, 0.8, 50, 0.2, -50, 1, 7 } };
+
+	@Test
+	public void testMatchesBezier()
+	{
+		for (double[] c : CONTROL_POINTS)
+		{
+			TimeBezier classToBeTested = new TimeBezier(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]);
+			Bezier<Vector2> bezier = createBezier(c);
+
+			assertEquals(bezier.getLength(), classToBeTested.getLength(), 0);
+			for (int i = 0; i <= 1000; i++)
+			{
+				double percent = i / 1000d;
+				assertEquals(bezier.pointAt(percent).y, classToBeTested.valueAt(percent), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testValuesAtMatchesValueAt()
+	{
+		for (double[] c : CONTROL_POINTS)
+		{
+			TimeBezier classToBeTested = new TimeBezier(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7]);
+			int steps = 37;
+			double[] values = new double[steps + 3];
+			classToBeTested.valuesAt(0, steps + 1, steps, values, 2);
+			for (int i = 0; i <= steps; i++)
+			{
+				assertEquals(classToBeTested.valueAt(((double) i) / ((double) steps)), values[i + 2], 0);
+			}
+
+			classToBeTested.valuesAt(20, 5, steps, values, 0);
+			for (int i = 0; i < 5; i++)
+			{
+				assertEquals(classToBeTested.valueAt(((double) (20 + i)) / ((double) steps)), values[i], 0);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValueAtOutOfRange()
+	{
+		new TimeBezier(0, 0, 0.4, 0, 0.6, 1, 1, 1).valueAt(1.1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValuesAtOutOfRange()
+	{
+		new TimeBezier(0, 0, 0.4, 0, 0.6, 1, 1, 1).valuesAt(5, 10, 10, new double[10], 0);
+	}
+
+	private static Bezier<Vector2> createBezier(double[] c)
+	{
+		return new Bezier<Vector2>(new TimeVector(c[0], c[1]), new TimeVector(c[2], c[3]), new TimeVector(c[4], c[5]),
+				new TimeVector(c[6], c[7]));
+	}
+}
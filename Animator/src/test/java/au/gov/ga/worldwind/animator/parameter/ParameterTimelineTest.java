@@ -0,0 +1,125 @@
+package au.gov.ga.worldwind.animator.parameter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.InterpolatorFactory;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterTimeline;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+
+/**
+ * Unit tests for the {@link ParameterTimeline} class
+ */
+public class ParameterTimelineTest
+{
+	private Parameter owner;
+	private List<KeyFrame> keyFrames;
+
+	@Before
+	public void setup()
+	{
+		Mockery context = new Mockery();
+
+		owner = context.mock(Parameter.class);
+
+		keyFrames = new ArrayList<KeyFrame>();
+		addKeyFrame(new BasicBezierParameterValue(10.0, 5, owner, 8d, 0.4, 12d, 0.4));
+		addKeyFrame(new BasicBezierParameterValue(20.0, 15, owner, 22d, 0.3, 18d, 0.6));
+		addKeyFrame(new BasicParameterValue(-5.0, 30, owner));
+		addKeyFrame(new BasicParameterValue(5.0, 40, owner));
+		addKeyFrame(new BasicBezierParameterValue(0.0, 47, owner));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		ParameterTimeline classToBeTested = new ParameterTimeline(owner, new ArrayList<KeyFrame>(), 0);
+
+		assertTrue(classToBeTested.isEmpty());
+		assertNull(classToBeTested.getKeyValueAtFrame(10));
+	}
+
+	@Test
+	public void testIsValid()
+	{
+		ParameterTimeline classToBeTested = new ParameterTimeline(owner, keyFrames, 3);
+
+		assertTrue(classToBeTested.isValid(3));
+		assertFalse(classToBeTested.isValid(4));
+	}
+
+	@Test
+	public void testKeyValues()
+	{
+		ParameterTimeline classToBeTested = new ParameterTimeline(owner, keyFrames, 0);
+
+		assertFalse(classToBeTested.isEmpty());
+		assertSame(valueAt(0), classToBeTested.getKeyValueAtFrame(-10));
+		assertSame(valueAt(0), classToBeTested.getKeyValueAtFrame(5));
+		assertNull(classToBeTested.getKeyValueAtFrame(6));
+		assertSame(valueAt(2), classToBeTested.getKeyValueAtFrame(30));
+		assertSame(valueAt(4), classToBeTested.getKeyValueAtFrame(47));
+		assertSame(valueAt(4), classToBeTested.getKeyValueAtFrame(100));
+
+		assertEquals(10.0, classToBeTested.getValueAtFrame(0), 0);
+		assertEquals(-5.0, classToBeTested.getValueAtFrame(30), 0);
+		assertEquals(0.0, classToBeTested.getValueAtFrame(100), 0);
+	}
+
+	@Test
+	public void testMatchesInterpolators()
+	{
+		ParameterTimeline classToBeTested = new ParameterTimeline(owner, keyFrames, 0);
+
+		for (int i = 0; i < keyFrames.size() - 1; i++)
+		{
+			ParameterValue start = valueAt(i);
+			ParameterValue end = valueAt(i + 1);
+			for (int frame = start.getFrame() + 1; frame < end.getFrame(); frame++)
+			{
+				double percent =
+						((double) (frame - start.getFrame())) / ((double) (end.getFrame() - start.getFrame()));
+				double expected = InterpolatorFactory.getInterpolator(start, end).computeValue(percent).y;
+				assertEquals("Frame " + frame, expected, classToBeTested.getValueAtFrame(frame), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testValuesBetweenFramesMatchesValueAtFrame()
+	{
+		ParameterTimeline classToBeTested = new ParameterTimeline(owner, keyFrames, 0);
+
+		double[] values = new double[80];
+		classToBeTested.getValuesBetweenFrames(-10, 60, values);
+		for (int frame = -10; frame <= 60; frame++)
+		{
+			assertEquals("Frame " + frame, classToBeTested.getValueAtFrame(frame), values[frame + 10], 0);
+		}
+
+		classToBeTested.getValuesBetweenFrames(12, 13, values);
+		assertEquals(classToBeTested.getValueAtFrame(12), values[0], 0);
+		assertEquals(classToBeTested.getValueAtFrame(13), values[1], 0);
+	}
+
+	private void addKeyFrame(ParameterValue value)
+	{
+		keyFrames.add(new KeyFrameImpl(value.getFrame(), value));
+	}
+
+	private ParameterValue valueAt(int index)
+	{
+		return keyFrames.get(index).getValueForParameter(owner);
+	}
+}
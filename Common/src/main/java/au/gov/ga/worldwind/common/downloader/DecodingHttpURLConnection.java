@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.security.Permission;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link HttpURLConnection} wrapper which requests compressed responses
+ * (Accept-Encoding gzip/deflate), and transparently decompresses them.
+ * <p/>
+ * Readers of this connection see the decoded content: the content encoding is
+ * reported as null, and the content length as unknown (-1) when the response is
+ * compressed. All other calls are passed through to the wrapped connection.
+ */
+public class DecodingHttpURLConnection extends HttpURLConnection
+{
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private final HttpURLConnection connection;
+	private InputStream inputStream;
+
+	public DecodingHttpURLConnection(HttpURLConnection connection)
+	{
+		super(connection.getURL());
+		this.connection = connection;
+		connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+	}
+
+	/**
+	 * @return The wrapped connection
+	 */
+	public HttpURLConnection getConnection()
+	{
+		return connection;
+	}
+
+	/**
+	 * @return Is the response compressed with an encoding that this connection
+	 *         decodes?
+	 */
+	public boolean isEncoded()
+	{
+		String encoding = connection.getContentEncoding();
+		return "gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)
+				|| "deflate".equalsIgnoreCase(encoding);
+	}
+
+	@Override
+	public synchronized InputStream getInputStream() throws IOException
+	{
+		if (inputStream == null)
+		{
+			inputStream = decode(connection.getInputStream());
+		}
+		return inputStream;
+	}
+
+	@Override
+	public InputStream getErrorStream()
+	{
+		InputStream errorStream = connection.getErrorStream();
+		try
+		{
+			return errorStream != null ? decode(errorStream) : null;
+		}
+		catch (IOException e)
+		{
+			//the error stream is advisory only; return it undecoded
+			return errorStream;
+		}
+	}
+
+	private InputStream decode(InputStream is) throws IOException
+	{
+		String encoding = connection.getContentEncoding();
+		if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding))
+		{
+			return new GZIPInputStream(is);
+		}
+		if ("deflate".equalsIgnoreCase(encoding))
+		{
+			//'deflate' should be zlib wrapped, but some servers send raw deflate data; detect which
+			if (!is.markSupported())
+			{
+				is = new BufferedInputStream(is);
+			}
+			is.mark(2);
+			int cmf = is.read();
+			int flg = is.read();
+			is.reset();
+			boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+			return new InflaterInputStream(is, new Inflater(!zlib));
+		}
+		return is;
+	}
+
+	@Override
+	public String getContentEncoding()
+	{
+		return isEncoded() ? null : connection.getContentEncoding();
+	}
+
+	@Override
+	public int getContentLength()
+	{
+		return isEncoded() ? -1 : connection.getContentLength();
+	}
+
+	@Override
+	public String getHeaderField(String name)
+	{
+		if (isEncoded() && ("Content-Length".equalsIgnoreCase(name) || "Content-Encoding".equalsIgnoreCase(name)))
+			return null;
+		return connection.getHeaderField(name);
+	}
+
+	@Override
+	public void connect() throws IOException
+	{
+		connection.connect();
+	}
+
+	@Override
+	public void disconnect()
+	{
+		connection.disconnect();
+	}
+
+	@Override
+	public boolean usingProxy()
+	{
+		return connection.usingProxy();
+	}
+
+	@Override
+	public URL getURL()
+	{
+		return connection.getURL();
+	}
+
+	@Override
+	public int getResponseCode() throws IOException
+	{
+		return connection.getResponseCode();
+	}
+
+	@Override
+	public String getResponseMessage() throws IOException
+	{
+		return connection.getResponseMessage();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException
+	{
+		return connection.getOutputStream();
+	}
+
+	@Override
+	public String getContentType()
+	{
+		return connection.getContentType();
+	}
+
+	@Override
+	public long getDate()
+	{
+		return connection.getDate();
+	}
+
+	@Override
+	public long getExpiration()
+	{
+		return connection.getExpiration();
+	}
+
+	@Override
+	public long getLastModified()
+	{
+		return connection.getLastModified();
+	}
+
+	@Override
+	public String getHeaderField(int n)
+	{
+		return connection.getHeaderField(n);
+	}
+
+	@Override
+	public String getHeaderFieldKey(int n)
+	{
+		return connection.getHeaderFieldKey(n);
+	}
+
+	@Override
+	public Map<String, List<String>> getHeaderFields()
+	{
+		return connection.getHeaderFields();
+	}
+
+	@Override
+	public int getHeaderFieldInt(String name, int defaultValue)
+	{
+		String value = getHeaderField(name);
+		try
+		{
+			return value != null ? Integer.parseInt(value) : defaultValue;
+		}
+		catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+
+	@Override
+	public long getHeaderFieldDate(String name, long defaultValue)
+	{
+		return connection.getHeaderFieldDate(name, defaultValue);
+	}
+
+	@Override
+	public Permission getPermission() throws IOException
+	{
+		return connection.getPermission();
+	}
+
+	@Override
+	public void setConnectTimeout(int timeout)
+	{
+		connection.setConnectTimeout(timeout);
+	}
+
+	@Override
+	public int getConnectTimeout()
+	{
+		return connection.getConnectTimeout();
+	}
+
+	@Override
+	public void setReadTimeout(int timeout)
+	{
+		connection.setReadTimeout(timeout);
+	}
+
+	@Override
+	public int getReadTimeout()
+	{
+		return connection.getReadTimeout();
+	}
+
+	@Override
+	public void setRequestMethod(String method) throws ProtocolException
+	{
+		connection.setRequestMethod(method);
+	}
+
+	@Override
+	public String getRequestMethod()
+	{
+		return connection.getRequestMethod();
+	}
+
+	@Override
+	public void setRequestProperty(String key, String value)
+	{
+		connection.setRequestProperty(key, value);
+	}
+
+	@Override
+	public void addRequestProperty(String key, String value)
+	{
+		connection.addRequestProperty(key, value);
+	}
+
+	@Override
+	public String getRequestProperty(String key)
+	{
+		return connection.getRequestProperty(key);
+	}
+
+	@Override
+	public Map<String, List<String>> getRequestProperties()
+	{
+		return connection.getRequestProperties();
+	}
+
+	@Override
+	public void setIfModifiedSince(long ifModifiedSince)
+	{
+		connection.setIfModifiedSince(ifModifiedSince);
+	}
+
+	@Override
+	public long getIfModifiedSince()
+	{
+		return connection.getIfModifiedSince();
+	}
+
+	@Override
+	public void setUseCaches(boolean useCaches)
+	{
+		connection.setUseCaches(useCaches);
+	}
+
+	@Override
+	public boolean getUseCaches()
+	{
+		return connection.getUseCaches();
+	}
+
+	@Override
+	public void setDoInput(boolean doInput)
+	{
+		connection.setDoInput(doInput);
+	}
+
+	@Override
+	public boolean getDoInput()
+	{
+		return connection.getDoInput();
+	}
+
+	@Override
+	public void setDoOutput(boolean doOutput)
+	{
+		connection.setDoOutput(doOutput);
+	}
+
+	@Override
+	public boolean getDoOutput()
+	{
+		return connection.getDoOutput();
+	}
+
+	@Override
+	public void setInstanceFollowRedirects(boolean followRedirects)
+	{
+		connection.setInstanceFollowRedirects(followRedirects);
+	}
+
+	@Override
+	public boolean getInstanceFollowRedirects()
+	{
+		return connection.getInstanceFollowRedirects();
+	}
+
+	@Override
+	public void setAllowUserInteraction(boolean allowUserInteraction)
+	{
+		connection.setAllowUserInteraction(allowUserInteraction);
+	}
+
+	@Override
+	public boolean getAllowUserInteraction()
+	{
+		return connection.getAllowUserInteraction();
+	}
+
+	@Override
+	public String toString()
+	{
+		return connection.toString();
+	}
+}
@@ -0,0 +1,595 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.util.WWIO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.URLUtil;
+
+/**
+ * Disk cache of downloaded URLs, used by the {@link Downloader}.
+ * <p/>
+ * Cached files are stored in a directory in the {@link FileStore}'s write
+ * location, named after the URL. An in-memory index maps each file to its size
+ * and last access time, so that lookups don't touch the disk (a file removed
+ * externally is dropped from the index when the caller fails to open it; see
+ * {@link #fileMissing(URL)}), and writes to
+ * different URLs don't block each other (writes to the same URL are
+ * serialised by one of a set of striped locks). Files are written to a
+ * temporary file and renamed into place, so readers never see a partially
+ * written file.
+ * <p/>
+ * The total size of the cache is bounded: when it is exceeded, the least
+ * recently accessed files are deleted. The index is persisted incrementally to
+ * a journal in the cache directory, which is compacted when it grows too large
+ * and when the JVM exits. Journal records are queued and appended in batches
+ * by a background thread, so callers never wait for the journal to be written.
+ */
+public class DownloadCache
+{
+	private static final String INDEX_FILENAME = "cache.index";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int LOCK_STRIPES = 32;
+	private static final double EVICTION_TARGET = 0.9;
+
+	private final String directoryName;
+	private final File directory;
+	private final long maxSize;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final Object[] locks = new Object[LOCK_STRIPES];
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final Object journalLock = new Object();
+	private final File indexFile;
+	private Writer journal;
+	private int journalRecords;
+	private final ConcurrentLinkedQueue<String> pendingRecords = new ConcurrentLinkedQueue<String>();
+	private final AtomicBoolean journalWriteScheduled = new AtomicBoolean(false);
+	private final ExecutorService journalWriter = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+			"Download cache index writer"));
+	private final Runnable journalWriteTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			writeJournal();
+		}
+	};
+
+	/**
+	 * @param directoryName
+	 *            Name of the cache directory, relative to the data file store
+	 * @param maxSize
+	 *            Maximum total size of the cached files, in bytes
+	 */
+	public DownloadCache(String directoryName, long maxSize)
+	{
+		this.directoryName = directoryName;
+		this.directory = new File(WorldWind.getDataFileStore().getWriteLocation(), directoryName);
+		this.maxSize = maxSize;
+		this.indexFile = new File(directory, INDEX_FILENAME);
+		for (int i = 0; i < locks.length; i++)
+		{
+			locks[i] = new Object();
+		}
+
+		loadIndex();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				compactIndex();
+			}
+		}, "Download cache index writer"));
+	}
+
+	/**
+	 * Find the cached file for the given URL.
+	 * 
+	 * @return Cached file, or null if the URL is not cached
+	 */
+	public File get(URL url)
+	{
+		String name = filenameForURL(url);
+		Entry entry = entries.get(name);
+		if (entry != null)
+		{
+			//trust the index; if the file has been removed externally, the caller reports it with fileMissing()
+			entry.lastAccess = System.currentTimeMillis();
+			hits.incrementAndGet();
+			return entry.file;
+		}
+
+		//not indexed; the file may exist in one of the file store's read locations
+		URL fileUrl = WorldWind.getDataFileStore().findFile(directoryName + File.separator + name, false);
+		File file = URLUtil.urlToFile(fileUrl);
+		if (file != null && file.isFile())
+		{
+			if (file.equals(new File(directory, name)))
+			{
+				//written by another process sharing the cache; index it
+				synchronized (lockFor(name))
+				{
+					addEntry(name, new Entry(file, file.length(), System.currentTimeMillis()));
+				}
+				evictIfRequired();
+			}
+			hits.incrementAndGet();
+			return file;
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Report that the file returned by {@link #get(URL)} for the given URL
+	 * couldn't be opened. If the file no longer exists (eg. it was removed
+	 * externally), it is dropped from the index, and the lookup is counted as
+	 * a miss.
+	 */
+	public void fileMissing(URL url)
+	{
+		String name = filenameForURL(url);
+		synchronized (lockFor(name))
+		{
+			Entry entry = entries.get(name);
+			if (entry != null && !entry.file.isFile() && removeEntry(name, entry))
+			{
+				hits.decrementAndGet();
+				misses.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Save data to the cache for the given URL, replacing any existing cached
+	 * data.
+	 * 
+	 * @throws IOException
+	 *             If the data could not be saved
+	 */
+	public void put(URL url, ByteBuffer buffer) throws IOException
+	{
+		String name = filenameForURL(url);
+		synchronized (lockFor(name))
+		{
+			File file = WorldWind.getDataFileStore().newFile(directoryName + File.separator + name);
+			if (file == null)
+				throw new IOException("Could not create cache file for " + url);
+
+			File temp = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+			WWIO.saveBuffer(buffer, temp);
+			//note: the following is only available in Java 6
+			temp.setReadable(true, false);
+			temp.setWritable(true, false);
+			if (!temp.renameTo(file))
+			{
+				//some platforms can't rename over an existing file
+				file.delete();
+				if (!temp.renameTo(file))
+				{
+					temp.delete();
+					throw new IOException("Could not move cache file into place: " + file);
+				}
+			}
+
+			addEntry(name, new Entry(file, file.length(), System.currentTimeMillis()));
+		}
+		evictIfRequired();
+	}
+
+	/**
+	 * Remove the cached file for the given URL, if it exists.
+	 */
+	public void remove(URL url)
+	{
+		String name = filenameForURL(url);
+		synchronized (lockFor(name))
+		{
+			Entry entry = entries.get(name);
+			if (entry != null)
+			{
+				removeEntry(name, entry);
+			}
+
+			URL fileUrl = WorldWind.getDataFileStore().findFile(directoryName + File.separator + name, false);
+			File file = URLUtil.urlToFile(fileUrl);
+			if (file != null && file.isFile())
+			{
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return Total size of the indexed cache files, in bytes
+	 */
+	public long getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return Number of indexed cache files
+	 */
+	public int getEntryCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of lookups that found a cached file
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of lookups that didn't find a cached file
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of files deleted to keep the cache within its size limit
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	private Object lockFor(String name)
+	{
+		return locks[(name.hashCode() & 0x7fffffff) % locks.length];
+	}
+
+	/**
+	 * Add an entry to the index. Must be called while holding the entry's lock.
+	 */
+	private void addEntry(String name, Entry entry)
+	{
+		Entry old = entries.put(name, entry);
+		size.addAndGet(entry.length - (old != null ? old.length : 0));
+		appendJournal("+\t" + entry.length + "\t" + entry.lastAccess + "\t" + name);
+	}
+
+	/**
+	 * Remove an entry from the index, and delete its file. Must be called
+	 * while holding the entry's lock.
+	 */
+	private boolean removeEntry(String name, Entry entry)
+	{
+		if (!entries.remove(name, entry))
+			return false;
+
+		entry.file.delete();
+		size.addAndGet(-entry.length);
+		appendJournal("-\t" + name);
+		return true;
+	}
+
+	/**
+	 * If the cache is larger than its maximum size, delete the least recently
+	 * accessed files. Only one thread evicts at a time; other threads return
+	 * immediately.
+	 */
+	private void evictIfRequired()
+	{
+		if (size.get() <= maxSize || !evicting.compareAndSet(false, true))
+			return;
+
+		try
+		{
+			List<Map.Entry<String, Entry>> snapshot = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+			final long[] accessTimes = new long[snapshot.size()];
+			Integer[] order = new Integer[snapshot.size()];
+			for (int i = 0; i < order.length; i++)
+			{
+				//copy the access times, as they may change while sorting
+				accessTimes[i] = snapshot.get(i).getValue().lastAccess;
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer o1, Integer o2)
+				{
+					long a1 = accessTimes[o1], a2 = accessTimes[o2];
+					return a1 < a2 ? -1 : a1 == a2 ? 0 : 1;
+				}
+			});
+
+			long target = (long) (maxSize * EVICTION_TARGET);
+			for (int i = 0; i < order.length && size.get() > target; i++)
+			{
+				Map.Entry<String, Entry> mapEntry = snapshot.get(order[i]);
+				String name = mapEntry.getKey();
+				synchronized (lockFor(name))
+				{
+					if (removeEntry(name, mapEntry.getValue()))
+					{
+						evictions.incrementAndGet();
+					}
+				}
+			}
+		}
+		finally
+		{
+			evicting.set(false);
+		}
+	}
+
+	private void loadIndex()
+	{
+		synchronized (journalLock)
+		{
+			if (indexFile.isFile())
+			{
+				readIndex();
+			}
+			else
+			{
+				scanDirectory();
+			}
+			compactIndex();
+		}
+	}
+
+	/**
+	 * Replay the index journal.
+	 */
+	private void readIndex()
+	{
+		BufferedReader reader = null;
+		try
+		{
+			reader = new BufferedReader(new FileReader(indexFile));
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.startsWith("+\t"))
+				{
+					String[] split = line.split("\t", 4);
+					if (split.length == 4)
+					{
+						Entry entry =
+								new Entry(new File(directory, split[3]), Long.parseLong(split[1]),
+										Long.parseLong(split[2]));
+						Entry old = entries.put(split[3], entry);
+						size.addAndGet(entry.length - (old != null ? old.length : 0));
+					}
+				}
+				else if (line.startsWith("-\t"))
+				{
+					Entry old = entries.remove(line.substring(2));
+					if (old != null)
+					{
+						size.addAndGet(-old.length);
+					}
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			//journal is corrupt; rebuild it from the directory contents
+			WorldWind.getLogger().log(Level.WARNING, "Error reading download cache index", e);
+			entries.clear();
+			size.set(0);
+			scanDirectory();
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build the index from the files in the cache directory (for caches
+	 * created before the index existed).
+	 */
+	private void scanDirectory()
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+
+		for (File file : files)
+		{
+			String name = file.getName();
+			if (!file.isFile() || name.equals(INDEX_FILENAME))
+				continue;
+			if (name.endsWith(TEMP_SUFFIX))
+			{
+				file.delete();
+				continue;
+			}
+			entries.put(name, new Entry(file, file.length(), file.lastModified()));
+			size.addAndGet(file.length());
+		}
+	}
+
+	/**
+	 * Queue a record to be appended to the journal by the journal writer
+	 * thread. Records are appended in the order they are queued.
+	 */
+	private void appendJournal(String record)
+	{
+		pendingRecords.add(record);
+		if (journalWriteScheduled.compareAndSet(false, true))
+		{
+			journalWriter.execute(journalWriteTask);
+		}
+	}
+
+	/**
+	 * Append all queued records to the journal, flushing once per batch.
+	 */
+	private void writeJournal()
+	{
+		//clear the flag first, so that a record queued while writing schedules another write
+		journalWriteScheduled.set(false);
+		synchronized (journalLock)
+		{
+			try
+			{
+				if (journal == null)
+				{
+					directory.mkdirs();
+					journal = new BufferedWriter(new FileWriter(indexFile, true));
+				}
+				String record;
+				while ((record = pendingRecords.poll()) != null)
+				{
+					journal.write(record);
+					journal.write('\n');
+					journalRecords++;
+				}
+				journal.flush();
+			}
+			catch (IOException e)
+			{
+				WorldWind.getLogger().log(Level.FINE, "Error writing download cache index", e);
+			}
+
+			if (journalRecords > entries.size() * 2 + 1000)
+			{
+				compactIndex();
+			}
+		}
+	}
+
+	/**
+	 * Rewrite the index journal with a single record per cached file.
+	 */
+	private void compactIndex()
+	{
+		synchronized (journalLock)
+		{
+			//the snapshot of the index includes the changes of the records already queued
+			pendingRecords.clear();
+			try
+			{
+				if (journal != null)
+				{
+					journal.close();
+					journal = null;
+				}
+
+				directory.mkdirs();
+				File temp = new File(directory, INDEX_FILENAME + TEMP_SUFFIX);
+				Writer writer = new BufferedWriter(new FileWriter(temp));
+				try
+				{
+					List<Map.Entry<String, Entry>> snapshot =
+							new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+					for (Map.Entry<String, Entry> mapEntry : snapshot)
+					{
+						Entry entry = mapEntry.getValue();
+						writer.write("+\t" + entry.length + "\t" + entry.lastAccess + "\t" + mapEntry.getKey() + "\n");
+					}
+					journalRecords = snapshot.size();
+				}
+				finally
+				{
+					writer.close();
+				}
+
+				if (!temp.renameTo(indexFile))
+				{
+					indexFile.delete();
+					temp.renameTo(indexFile);
+				}
+			}
+			catch (IOException e)
+			{
+				WorldWind.getLogger().log(Level.FINE, "Error writing download cache index", e);
+			}
+		}
+	}
+
+	/**
+	 * @return Name of the cache file for the given URL
+	 */
+	public static String filenameForURL(URL url)
+	{
+		// need to replace the following invalid filename characters: \/:*?"<>|
+		// replace them with exclamation points, because that is cool
+		String external = url.toExternalForm();
+		external = external.replaceAll("!", "!!");
+		external = external.replaceAll("[\\/:*?\"<>|]", "!");
+		return external;
+	}
+
+	private static class Entry
+	{
+		public final File file;
+		public final long length;
+		public volatile long lastAccess;
+
+		public Entry(File file, long length, long lastAccess)
+		{
+			this.file = file;
+			this.length = length;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
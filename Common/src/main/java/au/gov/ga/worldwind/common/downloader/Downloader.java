@@ -16,12 +16,9 @@
 package au.gov.ga.worldwind.common.downloader;
 
 import gov.nasa.worldwind.Configuration;
-import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.RetrievalService;
-import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
-import gov.nasa.worldwind.util.WWIO;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -29,13 +26,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
-import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * Utility class which performs downloading from URLs. Supports the file, http
@@ -48,12 +42,14 @@ import au.gov.ga.worldwind.common.util.URLUtil;
 public class Downloader
 {
 	private static final String DIRECTORY = "GA/Download Cache"; //TODO should this be in configuration?
-	private static final Object cacheLock = new Object();
-	private static final Object duplicateLock = new Object();
+	private static final long DEFAULT_CACHE_SIZE = 1024L * 1024L * 1024L;
 
 	//use the standard World Wind BasicRetrievalService for handling downloading
 	private static final RetrievalService service = new DownloaderRetrievalService();
-	private static final ActiveRetrieverCache retrieverCache = new ActiveRetrieverCache();
+
+	//post processors of downloads currently in progress, keyed by URL, used to join duplicate requests
+	private static final ConcurrentMap<String, HandlerPostProcessor> activeDownloads =
+			new ConcurrentHashMap<String, HandlerPostProcessor>();
 
 	/**
 	 * Performs a download synchronously, returning the result immediately. If
@@ -92,20 +88,10 @@ public class Downloader
 		ImmediateRetrievalHandler immediateHandler = new ImmediateRetrievalHandler();
 		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
 		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
+		//the caller is blocked waiting for the result, so never drop the request as stale
+		retriever.setStaleRequestLimit(Integer.MAX_VALUE);
 
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, retriever, postProcessor, immediateHandler);
 
 		//get the result immediately
 		RetrievalResult result = immediateHandler.get();
@@ -154,20 +140,10 @@ public class Downloader
 		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
 		//download if lastModified is null or server's modification date is greater than lastModified
 		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
+		//the caller is blocked waiting for the result, so never drop the request as stale
+		retriever.setStaleRequestLimit(Integer.MAX_VALUE);
 
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, retriever, postProcessor, immediateHandler);
 
 		//get the result immediately
 		RetrievalResult modifiedResult = immediateHandler.get();
@@ -238,18 +214,7 @@ public class Downloader
 		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
 		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
 
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(cacherHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, retriever, postProcessor, cacherHandler);
 	}
 
 	/**
@@ -363,56 +328,33 @@ public class Downloader
 		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
 		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
 
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor currentHandler = retrieverCache.getActiveRetriever(retriever);
-			if (currentHandler != null)
-			{
-				currentHandler.addHandler(cacherHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, retriever, postProcessor, cacherHandler);
 	}
 
 	private static FileRetrievalResult getFromCache(URL url)
 	{
-		synchronized (cacheLock)
+		File file = CacheHolder.cache.get(url);
+		if (file == null)
+			return null;
+		FileRetrievalResult result = new FileRetrievalResult(url, file, true);
+		if (!result.hasData())
 		{
-			URL fileUrl = getCacheURL(url);
-			if (fileUrl != null)
-			{
-				try
-				{
-					File file = new File(fileUrl.toURI());
-					return new FileRetrievalResult(url, file, true);
-				}
-				catch (Exception e)
-				{
-				}
-			}
+			//the cache index doesn't check that the file exists; drop it from the index if it's gone
+			CacheHolder.cache.fileMissing(url);
 			return null;
 		}
+		return result;
 	}
 
 	private static void saveToCache(URL url, RetrievalResult result)
 	{
-		synchronized (cacheLock)
+		try
 		{
-			try
-			{
-				File file = newCacheFile(url);
-				WWIO.saveBuffer(result.getAsBuffer(), file);
-				//note: the following is only available in Java 6
-				file.setReadable(true, false);
-				file.setWritable(true, false);
-			}
-			catch (Exception e)
-			{
-				e.printStackTrace();
-			}
+			CacheHolder.cache.put(url, result.getAsBuffer());
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
 		}
 	}
 
@@ -424,35 +366,16 @@ public class Downloader
 	 */
 	public static void removeCache(URL url)
 	{
-		URL fileUrl = getCacheURL(url);
-		File file = URLUtil.urlToFile(fileUrl);
-		if (file != null && file.isFile())
-		{
-			file.delete();
-		}
-	}
-
-	private static URL getCacheURL(URL url)
-	{
-		String filename = filenameForURL(url);
-		return WorldWind.getDataFileStore().findFile(filename, false);
+		CacheHolder.cache.remove(url);
 	}
 
-	private static File newCacheFile(URL url)
-	{
-		String filename = filenameForURL(url);
-		File file = WorldWind.getDataFileStore().newFile(filename);
-		return file;
-	}
-
-	private static String filenameForURL(URL url)
+	/**
+	 * @return The {@link DownloadCache} used to cache downloads by this
+	 *         Downloader.
+	 */
+	public static DownloadCache getCache()
 	{
-		// need to replace the following invalid filename characters: \/:*?"<>|
-		// replace them with exclamation points, because that is cool
-		String external = url.toExternalForm();
-		external = external.replaceAll("!", "!!");
-		external = external.replaceAll("[\\/:*?\"<>|]", "!");
-		return DIRECTORY + File.separator + external;
+		return CacheHolder.cache;
 	}
 
 	private static URLRetriever createRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor,
@@ -474,9 +397,30 @@ public class Downloader
 		return new ExtendedFileRetriever(url, ifModifiedSince, postProcessor, unzip);
 	}
 
-	private static void runRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
+	/**
+	 * Run the retriever, unless a download of the same URL is already in
+	 * progress, in which case the handler is added to the active download
+	 * instead.
+	 */
+	private static void runRetriever(URL url, URLRetriever retriever, final HandlerPostProcessor postProcessor,
+			RetrievalHandler handler)
 	{
-		retrieverCache.addRetriever(retriever, postProcessor);
+		final String key = url.toExternalForm();
+		HandlerPostProcessor active = activeDownloads.putIfAbsent(key, postProcessor);
+		if (active != null)
+		{
+			active.addHandler(handler);
+			return;
+		}
+
+		postProcessor.addHandler(new RetrievalHandler()
+		{
+			@Override
+			public void handle(RetrievalResult result)
+			{
+				activeDownloads.remove(key, postProcessor);
+			}
+		});
 		service.runRetriever(retriever);
 	}
 
@@ -586,87 +530,12 @@ public class Downloader
 	}
 
 	/**
-	 * Class which acts as a cache for Retrievers, storing Retrievers that are
-	 * currently downloading in the {@link RetrievalService} in a map. This
-	 * allows the download methods above to check for duplicate Retrievers (ie
-	 * Retrievers that are requesting a download from the same URL) and if a
-	 * duplicate is found the method can add their {@link RetrievalHandler} to
-	 * the current {@link HandlerPostProcessor} instead of running a new
-	 * Retriever.
-	 * 
-	 * The {@link RetrievalService} is checked every 5 seconds in a daemon
-	 * thread and if the Retriever is no longer running it is removed from the
-	 * map.
-	 * 
-	 * @author Michael de Hoog
+	 * Lazily creates the {@link DownloadCache}, so that the data file store
+	 * isn't accessed until the first download.
 	 */
-	private static class ActiveRetrieverCache
+	private static class CacheHolder
 	{
-		private Object lock = new Object();
-		private final Map<Retriever, HandlerPostProcessor> activeRetrievers =
-				new HashMap<Retriever, HandlerPostProcessor>();
-
-		public ActiveRetrieverCache()
-		{
-			//daemon thread to remove activeRetrievers when they are no longer active
-			//in the retrieval service
-			Thread thread = new Thread(new Runnable()
-			{
-				@Override
-				public void run()
-				{
-					while (true)
-					{
-						try
-						{
-							Thread.sleep(5000);
-							removeNonActiveRetrievers();
-						}
-						catch (Exception e)
-						{
-						}
-					}
-				}
-			});
-			thread.setName("Retriever cache cleaner");
-			thread.setDaemon(true);
-			thread.start();
-		}
-
-		private void removeNonActiveRetrievers()
-		{
-			synchronized (lock)
-			{
-				if (service.getNumRetrieversPending() <= 0)
-					activeRetrievers.clear();
-				else
-				{
-					List<Retriever> toRemove = new ArrayList<Retriever>();
-					for (Retriever r : activeRetrievers.keySet())
-						if (!service.contains(r))
-							toRemove.add(r);
-					for (Retriever r : toRemove)
-						activeRetrievers.remove(r);
-				}
-			}
-		}
-
-		public HandlerPostProcessor getActiveRetriever(Retriever retriever)
-		{
-			synchronized (lock)
-			{
-				if (activeRetrievers.containsKey(retriever))
-					return activeRetrievers.get(retriever);
-				return null;
-			}
-		}
-
-		public void addRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
-		{
-			synchronized (lock)
-			{
-				activeRetrievers.put(retriever, postProcessor);
-			}
-		}
+		private static final DownloadCache cache = new DownloadCache(DIRECTORY, Configuration.getLongValue(
+				AVKeyMore.DOWNLOADER_CACHE_SIZE, DEFAULT_CACHE_SIZE));
 	}
 }
@@ -19,21 +19,39 @@ import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WWObjectImpl;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.retrieve.Retriever;
+import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.Logging;
 
 import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+import au.gov.ga.worldwind.common.util.AVKeyMore;
+
 /**
  * {@link RetrievalService} used by the {@link Downloader}.
+ * <p/>
+ * Pending retrievals are run in priority order (see
+ * {@link RetrievalTask#compareTo(RetrievalTask)}), so that the most recently
+ * requested retrievals are run first. The queue is bounded: when it is full,
+ * the lowest priority retrieval is dropped. Retrievals that have waited on the
+ * queue longer than their stale request limit are dropped when they reach the
+ * front of the queue. Only retrievals that set a limit (such as tile
+ * retrievals from layers with a configured stale request limit) expire,
+ * unless a default limit is configured with
+ * {@link AVKeyMore#DOWNLOADER_STALE_REQUEST_LIMIT}. Requests for a URL that is already queued or running are
+ * coalesced with the existing retrieval. The handlers of dropped retrievals
+ * are notified with a {@link CancellationException}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -43,12 +61,24 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 	// These constants are last-ditch values in case Configuration lacks defaults
 	private static final int DEFAULT_POOL_SIZE = 5;
 	private static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+	private static final int DEFAULT_QUEUE_SIZE = 200;
+	private static final long DEFAULT_STALE_REQUEST_LIMIT = -1; // milliseconds (disabled)
 
 	private static final String RUNNING_THREAD_NAME_PREFIX = "Active downloader thread: ";
 	private static final String IDLE_THREAD_NAME_PREFIX = "Idle downloader thread";
 
 	private RetrievalExecutor executor; // thread pool for running retrievers
 	private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+	private int queueSize; // maximum queue size
+	private long staleRequestLimit; // drop requests that have been queued longer than this
+
+	//statistics
+	private final AtomicLong startedCount = new AtomicLong();
+	private final AtomicLong totalWaitTime = new AtomicLong();
+	private final AtomicLong maxWaitTime = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+	private final AtomicLong overflowCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
 
 	/**
 	 * Encapsulates a single threaded retrieval as a
@@ -143,7 +173,7 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 
 		private RetrievalExecutor(int poolSize)
 		{
-			super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
 					new ThreadFactory()
 					{
 						@Override
@@ -186,14 +216,33 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 			RetrievalTask task = (RetrievalTask) runnable;
 
 			task.retriever.setBeginTime(System.currentTimeMillis());
+			long waitTime = task.retriever.getBeginTime() - task.retriever.getSubmitTime();
+			recordWaitTime(waitTime);
 
-			if (DownloaderRetrievalService.this.activeTasks.contains(task))
+			long limit =
+					task.retriever.getStaleRequestLimit() >= 0 ? task.retriever.getStaleRequestLimit()
+							: DownloaderRetrievalService.this.staleRequestLimit;
+			if (limit >= 0 && waitTime > limit)
 			{
-				// Task is a duplicate
+				// Task has been sitting on the queue too long
 				Logging.logger().finer(
-						Logging.getMessage("BasicRetrievalService.CancellingDuplicateRetrieval", task.getRetriever()
+						Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval", task.getRetriever()
 								.getName()));
-				task.cancel(true);
+				staleCount.incrementAndGet();
+				drop(task, "Download request expired after waiting " + waitTime + "ms: ");
+			}
+			else
+			{
+				RetrievalTask active = findTask(DownloaderRetrievalService.this.activeTasks, task);
+				if (active != null)
+				{
+					// Task is a duplicate
+					Logging.logger().finer(
+							Logging.getMessage("BasicRetrievalService.CancellingDuplicateRetrieval", task
+									.getRetriever().getName()));
+					coalesce(active, task);
+					task.cancel(true);
+				}
 			}
 
 			DownloaderRetrievalService.this.activeTasks.add(task);
@@ -279,6 +328,10 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 	{
 		Integer poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
 
+		this.queueSize = Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+		this.staleRequestLimit =
+				Configuration.getLongValue(AVKeyMore.DOWNLOADER_STALE_REQUEST_LIMIT, DEFAULT_STALE_REQUEST_LIMIT);
+
 		// this.executor runs the retrievers, each in their own thread
 		this.executor = new RetrievalExecutor(poolSize);
 
@@ -356,15 +409,187 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 		RetrievalTask task = new RetrievalTask(retriever, priority);
 		retriever.setSubmitTime(System.currentTimeMillis());
 
-		// Do not queue duplicates.
-		if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
-			return null;
+		// Do not run duplicates; coalesce them with the running task.
+		RetrievalTask active = findTask(this.activeTasks, task);
+		if (active != null)
+		{
+			coalesce(active, task);
+			return active;
+		}
+
+		// Do not queue duplicates; coalesce them with the queued task, which is requeued with the new request's
+		// submit time and priority if they are more urgent.
+		RetrievalTask queued = findTask(this.executor.getQueue(), task);
+		if (queued != null)
+		{
+			coalesce(queued, task);
+			if (task.compareTo(queued) < 0 && this.executor.getQueue().remove(queued))
+			{
+				queued.retriever.setSubmitTime(retriever.getSubmitTime());
+				queued.priority = priority;
+				this.executor.getQueue().add(queued);
+			}
+			return queued;
+		}
+
+		// If the queue is full, drop the least urgent task (which may be this one).
+		if (this.executor.getQueue().size() >= this.queueSize)
+		{
+			RetrievalTask last = task;
+			for (Runnable runnable : this.executor.getQueue())
+			{
+				RetrievalTask t = (RetrievalTask) runnable;
+				if (t.compareTo(last) > 0)
+					last = t;
+			}
+
+			Logging.logger().finer(
+					Logging.getMessage("BasicRetrievalService.ResourceRejected", last.getRetriever().getName()));
+			overflowCount.incrementAndGet();
+			if (last == task)
+			{
+				drop(task, "Download queue is full: ");
+				return null;
+			}
+			this.executor.getQueue().remove(last);
+			drop(last, "Download queue is full: ");
+		}
 
 		this.executor.execute(task);
 
 		return task;
 	}
 
+	private static RetrievalTask findTask(Iterable<? extends Runnable> tasks, RetrievalTask task)
+	{
+		for (Runnable runnable : tasks)
+		{
+			if (task.equals(runnable))
+				return (RetrievalTask) runnable;
+		}
+		return null;
+	}
+
+	/**
+	 * Forward the result of the given task to the handlers of a duplicate task
+	 * that won't be run.
+	 */
+	private void coalesce(RetrievalTask task, RetrievalTask duplicate)
+	{
+		HandlerPostProcessor processor = getHandlerPostProcessor(task.getRetriever());
+		HandlerPostProcessor duplicateProcessor = getHandlerPostProcessor(duplicate.getRetriever());
+		if (processor != null && duplicateProcessor != null)
+		{
+			duplicateProcessor.follow(processor);
+		}
+		coalescedCount.incrementAndGet();
+	}
+
+	/**
+	 * Cancel the given task, notifying its handlers that it won't be run.
+	 */
+	private void drop(RetrievalTask task, String reason)
+	{
+		task.cancel(true);
+		HandlerPostProcessor processor = getHandlerPostProcessor(task.getRetriever());
+		if (processor != null)
+		{
+			processor.fail(new CancellationException(reason + task.getRetriever().getName()));
+		}
+	}
+
+	private static HandlerPostProcessor getHandlerPostProcessor(Retriever retriever)
+	{
+		if (retriever instanceof URLRetriever)
+		{
+			RetrievalPostProcessor processor = ((URLRetriever) retriever).getPostProcessor();
+			if (processor instanceof HandlerPostProcessor)
+				return (HandlerPostProcessor) processor;
+		}
+		return null;
+	}
+
+	private void recordWaitTime(long waitTime)
+	{
+		startedCount.incrementAndGet();
+		totalWaitTime.addAndGet(waitTime);
+		long max;
+		while (waitTime > (max = maxWaitTime.get()))
+		{
+			if (maxWaitTime.compareAndSet(max, waitTime))
+				break;
+		}
+	}
+
+	/**
+	 * @return Number of retrievals waiting on the queue
+	 */
+	public int getQueueDepth()
+	{
+		return this.executor.getQueue().size();
+	}
+
+	/**
+	 * @return Number of retrievals currently running
+	 */
+	public int getActiveCount()
+	{
+		return this.activeTasks.size();
+	}
+
+	/**
+	 * @return Average time in milliseconds that started retrievals spent
+	 *         waiting on the queue
+	 */
+	public double getAverageWaitTime()
+	{
+		long started = startedCount.get();
+		return started == 0 ? 0 : totalWaitTime.get() / (double) started;
+	}
+
+	/**
+	 * @return Longest time in milliseconds that a started retrieval spent
+	 *         waiting on the queue
+	 */
+	public long getMaxWaitTime()
+	{
+		return maxWaitTime.get();
+	}
+
+	/**
+	 * @return Number of retrievals that have been started
+	 */
+	public long getStartedCount()
+	{
+		return startedCount.get();
+	}
+
+	/**
+	 * @return Number of retrievals dropped because they waited on the queue
+	 *         longer than the stale request limit
+	 */
+	public long getStaleCount()
+	{
+		return staleCount.get();
+	}
+
+	/**
+	 * @return Number of retrievals dropped because the queue was full
+	 */
+	public long getOverflowCount()
+	{
+		return overflowCount.get();
+	}
+
+	/**
+	 * @return Number of requests coalesced with an existing retrieval of the
+	 *         same URL
+	 */
+	public long getCoalescedCount()
+	{
+		return coalescedCount.get();
+	}
+
 	/**
 	 * @param poolSize
 	 *            the number of threads in the thread pool
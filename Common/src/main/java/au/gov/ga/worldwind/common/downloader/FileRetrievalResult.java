@@ -17,8 +17,10 @@ package au.gov.ga.worldwind.common.downloader;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Extension of the {@link ByteBufferRetrievalResult} which fills the ByteBuffer
@@ -36,22 +38,45 @@ public class FileRetrievalResult extends ByteBufferRetrievalResult
 		this.file = file;
 	}
 
+	/**
+	 * Read the file, without checking whether it exists first (a missing,
+	 * unreadable or directory file fails to open).
+	 */
 	private static ByteBuffer readFile(File file)
 	{
-		if (!file.exists() || file.isDirectory() || !file.canRead())
+		FileInputStream fis;
+		try
+		{
+			fis = new FileInputStream(file);
+		}
+		catch (FileNotFoundException e)
+		{
 			return null;
-		ByteBuffer buffer = ByteBuffer.allocate((int) file.length());
+		}
 		try
 		{
-			FileInputStream fis = new FileInputStream(file);
-			fis.read(buffer.array());
-			fis.close();
+			FileChannel channel = fis.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+			{
+			}
+			buffer.flip();
 			return buffer;
 		}
 		catch (Exception e)
 		{
 			return null;
 		}
+		finally
+		{
+			try
+			{
+				fis.close();
+			}
+			catch (Exception e)
+			{
+			}
+		}
 	}
 
 	/**
@@ -83,13 +83,53 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 		}
 
 		ByteBuffer buffer = retriever.getBuffer();
+		complete(new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error, retriever.getContentType()));
+		return buffer;
+	}
+
+	/**
+	 * Notify the handlers that the download failed without being run (for
+	 * example, if it was dropped from the download queue).
+	 * 
+	 * @param error
+	 *            Reason for the failure
+	 */
+	public void fail(Exception error)
+	{
+		complete(new ByteBufferRetrievalResult(sourceURL, null, false, false, error, null));
+	}
+
+	/**
+	 * Notify this processor's handlers with the result of another processor
+	 * that is downloading the same URL, once that result is available.
+	 * 
+	 * @param other
+	 *            Processor to take the result from
+	 */
+	public void follow(HandlerPostProcessor other)
+	{
+		if (other == this)
+			return;
+
+		other.addHandler(new RetrievalHandler()
+		{
+			@Override
+			public void handle(RetrievalResult result)
+			{
+				complete(result);
+			}
+		});
+	}
+
+	private void complete(RetrievalResult result)
+	{
 		int size;
 		synchronized (lock)
 		{
 			//synchronized with the addHandler method to ensure thread safety
-			result =
-					new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error,
-							retriever.getContentType());
+			if (this.result != null)
+				return;
+			this.result = result;
 			size = handlers.size();
 		}
 		//iterate through handlers, ending at size (which was calculated in the synchronzied
@@ -97,6 +137,5 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 		//will instead be notified immediately by addHandler())
 		for (int i = 0; i < size; i++)
 			handlers.get(i).handle(result);
-		return buffer;
 	}
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import gov.nasa.worldwind.Configuration;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import au.gov.ga.worldwind.common.util.AVKeyMore;
+
+/**
+ * Limits the number of concurrent HTTP connections to each host, so that
+ * connections can be kept alive and reused between requests.
+ * <p/>
+ * The sockets themselves are pooled by the JRE's HTTP keep-alive cache, which
+ * keeps up to <code>http.maxConnections</code> idle connections per host. A
+ * connection is only returned to that cache if its response is read
+ * completely, and only that many are kept; if more requests than that run
+ * concurrently against a host, the extra connections are closed after use
+ * and each new request pays for a new TCP (and TLS) handshake. This class
+ * bounds the number of concurrent requests per host to the keep-alive cache
+ * size, so that every connection is reused.
+ * <p/>
+ * The JRE reads <code>http.maxConnections</code> only once, the first time a
+ * connection is kept alive, so applications should call
+ * {@link #configureKeepAlive()} at startup, before any network access, to
+ * size the cache from {@link AVKeyMore#DOWNLOADER_MAX_CONNECTIONS_PER_HOST}.
+ * If it is not called in time, or <code>http.maxConnections</code> is set
+ * explicitly to something smaller, a per-host limit above
+ * <code>http.maxConnections</code> has no effect on connection reuse: the
+ * extra concurrent connections are still opened, but are closed after use
+ * rather than kept alive.
+ */
+public class HttpConnectionPool
+{
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 6;
+	private static final String KEEP_ALIVE_PROPERTY = "http.maxConnections";
+
+	private static HttpConnectionPool instance;
+
+	private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+	private final int maxConnectionsPerHost;
+
+	/**
+	 * @return The shared connection pool
+	 */
+	public static synchronized HttpConnectionPool get()
+	{
+		if (instance == null)
+		{
+			instance = new HttpConnectionPool(getConfiguredMaxConnectionsPerHost());
+		}
+		return instance;
+	}
+
+	/**
+	 * Size the JRE's HTTP keep-alive cache to the configured maximum number of
+	 * connections per host, unless <code>http.maxConnections</code> has
+	 * already been set (for example on the command line). Must be called
+	 * before the first HTTP connection is made.
+	 */
+	public static void configureKeepAlive()
+	{
+		if (System.getProperty(KEEP_ALIVE_PROPERTY) == null)
+		{
+			System.setProperty(KEEP_ALIVE_PROPERTY, String.valueOf(getConfiguredMaxConnectionsPerHost()));
+		}
+	}
+
+	private static int getConfiguredMaxConnectionsPerHost()
+	{
+		return Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_MAX_CONNECTIONS_PER_HOST,
+				DEFAULT_MAX_CONNECTIONS_PER_HOST);
+	}
+
+	/**
+	 * @param maxConnectionsPerHost
+	 *            Default maximum number of concurrent connections to each host
+	 */
+	public HttpConnectionPool(int maxConnectionsPerHost)
+	{
+		if (maxConnectionsPerHost < 1)
+			throw new IllegalArgumentException("Maximum connections per host must be at least 1");
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Wait for a connection to the given URL's host to become available. Must
+	 * be followed by a call to {@link #release(URL)} once the response has
+	 * been read.
+	 * 
+	 * @param url
+	 *            URL to connect to
+	 * @param maxConnections
+	 *            Maximum concurrent connections to the host, used if this is
+	 *            the first connection to the host (if less than 1, the pool
+	 *            default is used); connections beyond
+	 *            <code>http.maxConnections</code> are not kept alive
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	public void acquire(URL url, int maxConnections) throws InterruptedException
+	{
+		getSemaphore(url, maxConnections).acquire();
+	}
+
+	/**
+	 * Release a connection acquired with {@link #acquire(URL, int)}.
+	 * 
+	 * @param url
+	 *            URL that was connected to
+	 */
+	public void release(URL url)
+	{
+		Semaphore semaphore = hosts.get(getHostKey(url));
+		if (semaphore != null)
+		{
+			semaphore.release();
+		}
+	}
+
+	/**
+	 * @return Number of connections currently in use to the given URL's host
+	 */
+	public int getActiveConnections(URL url)
+	{
+		Semaphore semaphore = hosts.get(getHostKey(url));
+		return semaphore != null ? ((HostSemaphore) semaphore).permits - semaphore.availablePermits() : 0;
+	}
+
+	/**
+	 * @return Default maximum number of concurrent connections to each host
+	 */
+	public int getMaxConnectionsPerHost()
+	{
+		return maxConnectionsPerHost;
+	}
+
+	private Semaphore getSemaphore(URL url, int maxConnections)
+	{
+		String key = getHostKey(url);
+		Semaphore semaphore = hosts.get(key);
+		if (semaphore == null)
+		{
+			Semaphore created = new HostSemaphore(maxConnections > 0 ? maxConnections : maxConnectionsPerHost);
+			semaphore = hosts.putIfAbsent(key, created);
+			if (semaphore == null)
+			{
+				semaphore = created;
+			}
+		}
+		return semaphore;
+	}
+
+	private static String getHostKey(URL url)
+	{
+		int port = url.getPort() >= 0 ? url.getPort() : url.getDefaultPort();
+		return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+	}
+
+	private static class HostSemaphore extends Semaphore
+	{
+		public final int permits;
+
+		public HostSemaphore(int permits)
+		{
+			super(permits, true);
+			this.permits = permits;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ExtendedHTTPRetriever} which reuses connections to the server.
+ * <p/>
+ * Limits the number of concurrent connections to each host using the
+ * {@link HttpConnectionPool}, and always reads responses (including error
+ * responses) completely, so that the connection is kept alive for subsequent
+ * requests instead of requiring a new TCP/TLS handshake for every tile. Also
+ * requests gzip/deflate compressed responses, which are decompressed
+ * transparently (see {@link DecodingHttpURLConnection}).
+ */
+public class PooledHTTPRetriever extends ExtendedHTTPRetriever
+{
+	private final HttpConnectionPool pool;
+	private final int maxConnectionsPerHost;
+
+	public PooledHTTPRetriever(URL url, RetrievalPostProcessor postProcessor)
+	{
+		this(url, null, postProcessor, true, 0);
+	}
+
+	/**
+	 * @param url
+	 *            URL to retrieve
+	 * @param ifModifiedSince
+	 *            Only download if the server's resource is modified since this
+	 *            time (can be null)
+	 * @param postProcessor
+	 *            Post processor to run after retrieval
+	 * @param unzip
+	 *            Should zip responses be unzipped?
+	 * @param maxConnectionsPerHost
+	 *            Maximum concurrent connections to the URL's host, if this is
+	 *            the first connection to the host; if less than 1, the pool
+	 *            default is used
+	 */
+	public PooledHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip,
+			int maxConnectionsPerHost)
+	{
+		super(url, ifModifiedSince, postProcessor, unzip);
+		this.pool = HttpConnectionPool.get();
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	@Override
+	protected URLConnection openConnection() throws IOException
+	{
+		URLConnection connection = super.openConnection();
+		if (connection instanceof HttpURLConnection && !(connection instanceof DecodingHttpURLConnection))
+		{
+			this.connection = new DecodingHttpURLConnection((HttpURLConnection) connection);
+		}
+		return this.connection;
+	}
+
+	@Override
+	protected ByteBuffer doRead(URLConnection connection) throws Exception
+	{
+		//the connection is made when the response is first requested, so only hold a connection while reading
+		pool.acquire(url, maxConnectionsPerHost);
+		try
+		{
+			return super.doRead(connection);
+		}
+		finally
+		{
+			try
+			{
+				drainErrorStream(connection);
+			}
+			finally
+			{
+				pool.release(url);
+			}
+		}
+	}
+
+	/**
+	 * Error responses (404s etc) aren't read by the superclass; read them
+	 * completely so that the connection can be reused.
+	 */
+	protected void drainErrorStream(URLConnection connection)
+	{
+		if (!(connection instanceof HttpURLConnection))
+			return;
+
+		InputStream errorStream = ((HttpURLConnection) connection).getErrorStream();
+		if (errorStream == null)
+			return;
+
+		try
+		{
+			byte[] buffer = new byte[4096];
+			while (errorStream.read(buffer) >= 0)
+			{
+			}
+		}
+		catch (IOException e)
+		{
+			//ignore; the connection won't be reused
+		}
+		finally
+		{
+			try
+			{
+				errorStream.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+	}
+}
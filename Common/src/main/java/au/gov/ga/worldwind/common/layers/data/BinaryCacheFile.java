@@ -0,0 +1,578 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.data;
+
+import gov.nasa.worldwind.cache.FileStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A versioned binary file used to cache data parsed from a data layer's
+ * source files, so that later loads of the same source can skip parsing and
+ * simply read the cache file into memory.
+ * <p/>
+ * A cache file starts with a header containing:
+ * <ul>
+ * <li>a magic number and format version (the magic number also identifies
+ * the byte order; cache files are written in the native byte order, and are
+ * invalid on a machine with a different byte order)</li>
+ * <li>the type and version of the cached data, chosen by the writer</li>
+ * <li>a key describing the source URL and any parameters used when parsing</li>
+ * <li>the path, length and modification time of each source file</li>
+ * </ul>
+ * A cache file is only valid if all of these match. The header is followed by
+ * the type specific data. Arrays are aligned to 8 bytes, so that they can be
+ * used directly as views of the buffer the file is read into.
+ * <p/>
+ * Cache files are written to a temporary file and renamed into place, so a
+ * partially written file is never read. Cache files are read into a direct
+ * buffer rather than memory mapped, because a mapping stays open until it is
+ * garbage collected, and on Windows an open mapping prevents the cache file
+ * from being replaced.
+ */
+public class BinaryCacheFile
+{
+	public static final String SUFFIX = ".wwcache";
+
+	private static final int MAGIC = 0x57574346; //'WWCF'
+	private static final int FORMAT_VERSION = 1;
+	private static final int ALIGNMENT = 8;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String CHARSET = "UTF-8";
+
+	/**
+	 * @return The cache file for the given data cache name in the file store,
+	 *         or null if the file store has no writable location
+	 */
+	public static File getCacheFile(FileStore fileStore, String dataCacheName)
+	{
+		if (dataCacheName == null)
+		{
+			return null;
+		}
+		return fileStore.newFile(dataCacheName + SUFFIX);
+	}
+
+	/**
+	 * Open and read a cache file, validating its header.
+	 * 
+	 * @param file
+	 *            Cache file to open
+	 * @param type
+	 *            Expected type of the cached data
+	 * @param typeVersion
+	 *            Expected version of the cached data
+	 * @param key
+	 *            Expected key (source URL and parsing parameters)
+	 * @return Input positioned at the start of the cached data, or null if the
+	 *         file doesn't exist or is invalid or out of date
+	 * @throws IOException
+	 *             If the file exists but cannot be read
+	 */
+	public static Input open(File file, String type, int typeVersion, String key) throws IOException
+	{
+		if (file == null || !file.isFile() || file.length() > Integer.MAX_VALUE)
+		{
+			return null;
+		}
+
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			buffer = ByteBuffer.allocateDirect((int) channel.size());
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+				{
+					//file truncated while reading
+					return null;
+				}
+			}
+			buffer.flip();
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		buffer.order(ByteOrder.nativeOrder());
+		Input input = new Input(buffer);
+		try
+		{
+			if (buffer.remaining() < 8 || input.getInt() != MAGIC || input.getInt() != FORMAT_VERSION)
+			{
+				return null;
+			}
+			if (!type.equals(input.getString()) || input.getInt() != typeVersion || !key.equals(input.getString()))
+			{
+				return null;
+			}
+			int sourceCount = input.getInt();
+			for (int i = 0; i < sourceCount; i++)
+			{
+				File source = new File(input.getString());
+				long length = input.getLong();
+				long lastModified = input.getLong();
+				if (!source.isFile() || source.length() != length || source.lastModified() != lastModified)
+				{
+					return null;
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			//truncated or corrupt header
+			return null;
+		}
+		return input;
+	}
+
+	/**
+	 * Create a new cache file, and write its header. The file is written to a
+	 * temporary file until {@link Output#commit()} is called.
+	 * 
+	 * @param file
+	 *            Cache file to create
+	 * @param type
+	 *            Type of the cached data
+	 * @param typeVersion
+	 *            Version of the cached data; increment this whenever the
+	 *            layout of the cached data changes
+	 * @param key
+	 *            Key describing the source URL and parsing parameters
+	 * @param sources
+	 *            Files the cached data was parsed from
+	 * @return Output positioned at the start of the cached data
+	 * @throws IOException
+	 */
+	public static Output create(File file, String type, int typeVersion, String key, List<File> sources)
+			throws IOException
+	{
+		Output output = new Output(file);
+		try
+		{
+			output.putInt(MAGIC);
+			output.putInt(FORMAT_VERSION);
+			output.putString(type);
+			output.putInt(typeVersion);
+			output.putString(key);
+			output.putInt(sources.size());
+			for (File source : sources)
+			{
+				output.putString(source.getAbsolutePath());
+				output.putLong(source.length());
+				output.putLong(source.lastModified());
+			}
+		}
+		catch (IOException e)
+		{
+			output.abort();
+			throw e;
+		}
+		return output;
+	}
+
+	/**
+	 * Convenience method for building the list of source files passed to
+	 * {@link #create(File, String, int, String, List)}, ignoring nulls.
+	 */
+	public static List<File> sources(File... files)
+	{
+		List<File> sources = new ArrayList<File>(files.length);
+		for (File file : files)
+		{
+			if (file != null)
+			{
+				sources.add(file);
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * Reads the data from a cache file. Buffers returned by this class are
+	 * views of the direct buffer holding the file's contents, and use the
+	 * native byte order. The cache file itself is closed once it has been
+	 * read.
+	 */
+	public static class Input
+	{
+		private final ByteBuffer buffer;
+
+		private Input(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		public int getInt()
+		{
+			return buffer.getInt();
+		}
+
+		public long getLong()
+		{
+			return buffer.getLong();
+		}
+
+		public float getFloat()
+		{
+			return buffer.getFloat();
+		}
+
+		public double getDouble()
+		{
+			return buffer.getDouble();
+		}
+
+		public boolean getBoolean()
+		{
+			return buffer.get() != 0;
+		}
+
+		/**
+		 * @return String written by {@link Output#putString(String)} (can be
+		 *         null)
+		 */
+		public String getString()
+		{
+			int length = buffer.getInt();
+			if (length < 0)
+			{
+				return null;
+			}
+			if (length > buffer.remaining())
+			{
+				throw new BufferUnderflowException();
+			}
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			try
+			{
+				return new String(bytes, CHARSET);
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * @return View of the float array written by
+		 *         {@link Output#putFloats(FloatBuffer)} (can be null)
+		 */
+		public FloatBuffer getFloatBuffer()
+		{
+			ByteBuffer slice = sliceArray(4);
+			return slice == null ? null : slice.asFloatBuffer();
+		}
+
+		/**
+		 * @return View of the int array written by
+		 *         {@link Output#putInts(IntBuffer)} (can be null)
+		 */
+		public IntBuffer getIntBuffer()
+		{
+			ByteBuffer slice = sliceArray(4);
+			return slice == null ? null : slice.asIntBuffer();
+		}
+
+		/**
+		 * @return Copy of the double array written by
+		 *         {@link Output#putDoubles(double[], int)} (can be null)
+		 */
+		public double[] getDoubles()
+		{
+			ByteBuffer slice = sliceArray(8);
+			if (slice == null)
+			{
+				return null;
+			}
+			DoubleBuffer doubles = slice.asDoubleBuffer();
+			double[] array = new double[doubles.remaining()];
+			doubles.get(array);
+			return array;
+		}
+
+		private ByteBuffer sliceArray(int elementSize)
+		{
+			int count = buffer.getInt();
+			if (count < 0)
+			{
+				return null;
+			}
+			align();
+			int length = count * elementSize;
+			ByteBuffer slice = buffer.slice();
+			slice.limit(length);
+			buffer.position(buffer.position() + length);
+			return slice.order(ByteOrder.nativeOrder());
+		}
+
+		private void align()
+		{
+			int remainder = buffer.position() % ALIGNMENT;
+			if (remainder != 0)
+			{
+				buffer.position(buffer.position() + ALIGNMENT - remainder);
+			}
+		}
+	}
+
+	/**
+	 * Writes the data to a new cache file.
+	 */
+	public static class Output
+	{
+		private final File file;
+		private final File tempFile;
+		private final FileOutputStream stream;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+		private long written = 0;
+
+		private Output(File file) throws IOException
+		{
+			this.file = file;
+			this.tempFile = new File(file.getPath() + TEMP_SUFFIX);
+			this.stream = new FileOutputStream(tempFile);
+			this.channel = stream.getChannel();
+		}
+
+		public void putInt(int value) throws IOException
+		{
+			ensureSpace(4);
+			buffer.putInt(value);
+		}
+
+		public void putLong(long value) throws IOException
+		{
+			ensureSpace(8);
+			buffer.putLong(value);
+		}
+
+		public void putFloat(float value) throws IOException
+		{
+			ensureSpace(4);
+			buffer.putFloat(value);
+		}
+
+		public void putDouble(double value) throws IOException
+		{
+			ensureSpace(8);
+			buffer.putDouble(value);
+		}
+
+		public void putBoolean(boolean value) throws IOException
+		{
+			ensureSpace(1);
+			buffer.put((byte) (value ? 1 : 0));
+		}
+
+		/**
+		 * Write a string (can be null).
+		 */
+		public void putString(String value) throws IOException
+		{
+			if (value == null)
+			{
+				putInt(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(CHARSET);
+			putInt(bytes.length);
+			for (int i = 0; i < bytes.length;)
+			{
+				ensureSpace(1);
+				int count = Math.min(bytes.length - i, buffer.remaining());
+				buffer.put(bytes, i, count);
+				i += count;
+			}
+		}
+
+		/**
+		 * Write the floats between 0 and the limit of the given buffer (can be
+		 * null). Doesn't modify the buffer's position.
+		 */
+		public void putFloats(FloatBuffer values) throws IOException
+		{
+			if (values == null)
+			{
+				putInt(-1);
+				return;
+			}
+			FloatBuffer source = values.duplicate();
+			source.rewind();
+			putInt(source.remaining());
+			align();
+			while (source.hasRemaining())
+			{
+				ensureSpace(4);
+				int count = Math.min(source.remaining(), buffer.remaining() / 4);
+				int limit = source.limit();
+				source.limit(source.position() + count);
+				buffer.asFloatBuffer().put(source);
+				source.limit(limit);
+				buffer.position(buffer.position() + count * 4);
+			}
+		}
+
+		/**
+		 * Write the ints between 0 and the limit of the given buffer (can be
+		 * null). Doesn't modify the buffer's position.
+		 */
+		public void putInts(IntBuffer values) throws IOException
+		{
+			if (values == null)
+			{
+				putInt(-1);
+				return;
+			}
+			IntBuffer source = values.duplicate();
+			source.rewind();
+			putInt(source.remaining());
+			align();
+			while (source.hasRemaining())
+			{
+				ensureSpace(4);
+				int count = Math.min(source.remaining(), buffer.remaining() / 4);
+				int limit = source.limit();
+				source.limit(source.position() + count);
+				buffer.asIntBuffer().put(source);
+				source.limit(limit);
+				buffer.position(buffer.position() + count * 4);
+			}
+		}
+
+		/**
+		 * Write the first length doubles of the given array (can be null).
+		 */
+		public void putDoubles(double[] values, int length) throws IOException
+		{
+			if (values == null)
+			{
+				putInt(-1);
+				return;
+			}
+			putInt(length);
+			align();
+			for (int i = 0; i < length;)
+			{
+				ensureSpace(8);
+				int count = Math.min(length - i, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().put(values, i, count);
+				buffer.position(buffer.position() + count * 8);
+				i += count;
+			}
+		}
+
+		/**
+		 * Flush and close the temporary file, and rename it to the cache file,
+		 * replacing any existing cache file.
+		 * 
+		 * @throws IOException
+		 *             If the file cannot be written or renamed
+		 */
+		public void commit() throws IOException
+		{
+			try
+			{
+				flush();
+				if (written > Integer.MAX_VALUE)
+				{
+					throw new IOException("Cache file too large to read into a direct buffer: " + written
+							+ " bytes (maximum " + Integer.MAX_VALUE + ")");
+				}
+				stream.close();
+				if (file.exists() && !file.delete())
+				{
+					throw new IOException("Could not replace cache file: " + file);
+				}
+				if (!tempFile.renameTo(file))
+				{
+					throw new IOException("Could not rename cache file: " + tempFile);
+				}
+			}
+			catch (IOException e)
+			{
+				abort();
+				throw e;
+			}
+		}
+
+		/**
+		 * Close and delete the temporary file, without replacing the cache
+		 * file.
+		 */
+		public void abort()
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+			}
+			tempFile.delete();
+		}
+
+		private void align() throws IOException
+		{
+			int remainder = (int) ((written + buffer.position()) % ALIGNMENT);
+			if (remainder != 0)
+			{
+				ensureSpace(ALIGNMENT);
+				for (int i = remainder; i < ALIGNMENT; i++)
+				{
+					buffer.put((byte) 0);
+				}
+			}
+		}
+
+		private void ensureSpace(int bytes) throws IOException
+		{
+			if (buffer.remaining() < bytes)
+			{
+				flush();
+			}
+		}
+
+		private void flush() throws IOException
+		{
+			buffer.flip();
+			while (buffer.hasRemaining())
+			{
+				written += channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -29,6 +29,7 @@ import au.gov.ga.worldwind.common.layers.delegate.render.ElevationOffsetRenderDe
 import au.gov.ga.worldwind.common.layers.delegate.render.IgnoreElevationRenderDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.retriever.HttpRetrieverFactoryDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.retriever.PassThroughZipRetrieverFactoryDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.retriever.PooledHttpRetrieverFactoryDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.transformer.ColorLimitTransformerDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.transformer.ColorToAlphaTransformerDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.transformer.FilterTransformerDelegate;
@@ -53,6 +54,7 @@ public abstract class AbstractDelegateFactory implements IDelegateFactory
 	{
 		registerDelegate(HttpRetrieverFactoryDelegate.class);
 		registerDelegate(PassThroughZipRetrieverFactoryDelegate.class);
+		registerDelegate(PooledHttpRetrieverFactoryDelegate.class);
 
 		registerDelegate(MaskImageReaderDelegate.class);
 
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.retriever;
+
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.w3c.dom.Element;
+
+import au.gov.ga.worldwind.common.downloader.HttpConnectionPool;
+import au.gov.ga.worldwind.common.downloader.PooledHTTPRetriever;
+import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.IRetrieverFactoryDelegate;
+
+/**
+ * Implementation of {@link IRetrieverFactoryDelegate} which creates
+ * {@link PooledHTTPRetriever}s, which keep connections to the tile server alive
+ * between requests and request compressed responses.
+ * <p/>
+ * <code>&lt;Delegate&gt;PooledHttpRetriever&lt;/Delegate&gt;</code> or
+ * <code>&lt;Delegate&gt;PooledHttpRetriever(n)&lt;/Delegate&gt;</code>
+ * <ul>
+ * <li>n = maximum concurrent connections to the layer's host (integer,
+ * defaults to {@link HttpConnectionPool#getMaxConnectionsPerHost()}); values
+ * above <code>http.maxConnections</code> allow more concurrent requests, but
+ * the extra connections are not kept alive
+ * </ul>
+ */
+public class PooledHttpRetrieverFactoryDelegate implements IRetrieverFactoryDelegate
+{
+	private final static String DEFINITION_STRING = "PooledHttpRetriever";
+
+	private final int maxConnectionsPerHost;
+
+	@SuppressWarnings("unused")
+	private PooledHttpRetrieverFactoryDelegate()
+	{
+		this(0);
+	}
+
+	public PooledHttpRetrieverFactoryDelegate(int maxConnectionsPerHost)
+	{
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	@Override
+	public Retriever createRetriever(URL url, RetrievalPostProcessor postProcessor)
+	{
+		return new PooledHTTPRetriever(url, null, postProcessor, true, maxConnectionsPerHost);
+	}
+
+	@Override
+	public IDelegate fromDefinition(String definition, Element layerElement, AVList params)
+	{
+		if (definition.equalsIgnoreCase(DEFINITION_STRING))
+			return new PooledHttpRetrieverFactoryDelegate(0);
+
+		if (definition.toLowerCase().startsWith(DEFINITION_STRING.toLowerCase()))
+		{
+			Pattern pattern = Pattern.compile("(?:\\((\\d+)\\))");
+			Matcher matcher = pattern.matcher(definition);
+			if (matcher.find())
+			{
+				int maxConnectionsPerHost = Integer.parseInt(matcher.group(1));
+				return new PooledHttpRetrieverFactoryDelegate(maxConnectionsPerHost);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toDefinition(Element layerElement)
+	{
+		if (maxConnectionsPerHost > 0)
+			return DEFINITION_STRING + "(" + maxConnectionsPerHost + ")";
+		return DEFINITION_STRING;
+	}
+}
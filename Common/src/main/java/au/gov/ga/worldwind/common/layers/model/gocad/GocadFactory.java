@@ -37,9 +37,6 @@ import au.gov.ga.worldwind.common.util.FastShape;
  */
 public class GocadFactory
 {
-	private static final String OBJECT_END_REGEX = "END\\s*";
-	private static final String COMMENT_REGEX = "\\s*#.*";
-
 	public static boolean isGocadFileSuffix(String suffix)
 	{
 		return suffix.equalsIgnoreCase("ts") || suffix.equalsIgnoreCase("gp") || suffix.equalsIgnoreCase("vo")
@@ -158,12 +155,12 @@ public class GocadFactory
 					{
 						throw new IllegalArgumentException("GOCAD file ended unexpectedly");
 					}
-					if (line.matches(COMMENT_REGEX))
+					if (GocadLineTokenizer.isComment(line))
 					{
 						//don't pass comment lines to the reader
 						continue;
 					}
-					if (line.matches(OBJECT_END_REGEX))
+					if (GocadLineTokenizer.isObjectEnd(line))
 					{
 						//object has ended, break out of the loop to parse the next object (if any)
 						break;
@@ -399,6 +399,7 @@ public class GocadGSurfReader implements GocadReader
 		CoordinateTransformation transformation = parameters.getCoordinateTransformation();
 
 		URL eFileUrl = new URL(context, file);
+		parameters.addDataFile(eFileUrl);
 		InputStream eis = new BufferedInputStream(eFileUrl.openStream());
 		eis.skip(offset);
 		boolean ieee = "IEEE".equals(etype);
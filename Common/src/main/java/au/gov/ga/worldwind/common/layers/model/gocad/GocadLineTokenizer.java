@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.model.gocad;
+
+/**
+ * Tokenizes the records of a GOCAD file (such as VRTX, TRGL and SEG lines)
+ * without using regular expressions, or creating a String for each token.
+ * <p/>
+ * Tokens are separated by whitespace or commas. Numbers are parsed directly
+ * from the line's characters; doubles with up to 18 significant digits and a
+ * small exponent are parsed exactly using a single multiplication or division
+ * by a power of ten, and all others fall back to
+ * {@link Double#parseDouble(String)}.
+ * <p/>
+ * Instances can be reused for each line by calling {@link #reset(String)}.
+ * Not thread-safe.
+ */
+public class GocadLineTokenizer
+{
+	//powers of ten that are exactly representable as doubles
+	private final static double[] POWERS_OF_TEN = new double[23];
+	static
+	{
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final static int MAX_MANTISSA_DIGITS = 18;
+	private final static long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private String line;
+	private int position;
+	private int length;
+
+	/**
+	 * Start tokenizing the given line.
+	 */
+	public void reset(String line)
+	{
+		this.line = line;
+		this.position = 0;
+		this.length = line.length();
+	}
+
+	/**
+	 * Check if the line starts with the given keyword, followed by whitespace
+	 * or the end of the line. If it does, the keyword is consumed.
+	 * 
+	 * @return True if the line starts with the keyword
+	 */
+	public boolean nextKeyword(String keyword)
+	{
+		int end = keyword.length();
+		if (!line.startsWith(keyword) || (end < length && !isWhitespace(line.charAt(end))))
+		{
+			return false;
+		}
+		position = end;
+		return true;
+	}
+
+	/**
+	 * @return True if there are more tokens on the line
+	 */
+	public boolean hasNext()
+	{
+		skipSeparators();
+		return position < length;
+	}
+
+	/**
+	 * Parse the next token as an integer.
+	 * 
+	 * @throws NumberFormatException
+	 *             If there is no next token, or it is not an integer
+	 */
+	public int nextInt()
+	{
+		skipSeparators();
+		int start = position;
+		boolean negative = false;
+		if (position < length && (line.charAt(position) == '-' || line.charAt(position) == '+'))
+		{
+			negative = line.charAt(position) == '-';
+			position++;
+		}
+
+		long value = 0;
+		int digitsStart = position;
+		while (position < length)
+		{
+			int digit = line.charAt(position) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				break;
+			}
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1)
+			{
+				throw numberFormatException(start);
+			}
+			position++;
+		}
+		if (position == digitsStart || !atTokenEnd())
+		{
+			throw numberFormatException(start);
+		}
+
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+		{
+			throw numberFormatException(start);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parse the next token as a double.
+	 * 
+	 * @throws NumberFormatException
+	 *             If there is no next token, or it is not a number
+	 */
+	public double nextDouble()
+	{
+		skipSeparators();
+		int start = position;
+		boolean negative = false;
+		if (position < length && (line.charAt(position) == '-' || line.charAt(position) == '+'))
+		{
+			negative = line.charAt(position) == '-';
+			position++;
+		}
+
+		long mantissa = 0;
+		int mantissaDigits = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean exact = true;
+
+		//integer part
+		while (position < length)
+		{
+			int digit = line.charAt(position) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				break;
+			}
+			if (mantissaDigits < MAX_MANTISSA_DIGITS)
+			{
+				mantissa = mantissa * 10 + digit;
+				if (mantissa > 0)
+				{
+					mantissaDigits++;
+				}
+			}
+			else
+			{
+				exponent++;
+				exact &= digit == 0;
+			}
+			digits++;
+			position++;
+		}
+
+		//fractional part
+		if (position < length && line.charAt(position) == '.')
+		{
+			position++;
+			while (position < length)
+			{
+				int digit = line.charAt(position) - '0';
+				if (digit < 0 || digit > 9)
+				{
+					break;
+				}
+				if (mantissaDigits < MAX_MANTISSA_DIGITS)
+				{
+					mantissa = mantissa * 10 + digit;
+					exponent--;
+					if (mantissa > 0)
+					{
+						mantissaDigits++;
+					}
+				}
+				else
+				{
+					exact &= digit == 0;
+				}
+				digits++;
+				position++;
+			}
+		}
+		if (digits == 0)
+		{
+			throw numberFormatException(start);
+		}
+
+		//exponent
+		if (position < length && (line.charAt(position) == 'e' || line.charAt(position) == 'E'))
+		{
+			position++;
+			boolean negativeExponent = false;
+			if (position < length && (line.charAt(position) == '-' || line.charAt(position) == '+'))
+			{
+				negativeExponent = line.charAt(position) == '-';
+				position++;
+			}
+			int exponentStart = position;
+			int explicitExponent = 0;
+			while (position < length)
+			{
+				int digit = line.charAt(position) - '0';
+				if (digit < 0 || digit > 9)
+				{
+					break;
+				}
+				explicitExponent = Math.min(explicitExponent * 10 + digit, 100000);
+				position++;
+			}
+			if (position == exponentStart)
+			{
+				throw numberFormatException(start);
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		if (!atTokenEnd())
+		{
+			throw numberFormatException(start);
+		}
+
+		double value;
+		if (exact && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22)
+		{
+			//both the mantissa and the power of ten are exact, so the result is correctly rounded
+			value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		}
+		else
+		{
+			value = Math.abs(Double.parseDouble(line.substring(start, position)));
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Get the n-th (starting at 1) of the remaining tokens on the line as a
+	 * double, consuming the tokens up to and including it.
+	 * 
+	 * @return The n-th remaining token, or NaN if there are fewer than n
+	 *         numeric tokens
+	 */
+	public double nextDouble(int n)
+	{
+		double value = Double.NaN;
+		for (int i = 0; i < n; i++)
+		{
+			if (!hasNext())
+			{
+				return Double.NaN;
+			}
+			try
+			{
+				value = nextDouble();
+			}
+			catch (NumberFormatException e)
+			{
+				return Double.NaN;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return Is the given line a GOCAD comment line (optional whitespace
+	 *         followed by a '#')?
+	 */
+	public static boolean isComment(String line)
+	{
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (!isWhitespace(c))
+			{
+				return c == '#';
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Is the given line a GOCAD object end line ('END' followed by
+	 *         optional whitespace)?
+	 */
+	public static boolean isObjectEnd(String line)
+	{
+		if (!line.startsWith("END"))
+		{
+			return false;
+		}
+		for (int i = 3; i < line.length(); i++)
+		{
+			if (!isWhitespace(line.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Is the given character whitespace, as matched by the regular
+	 *         expression \s?
+	 */
+	public static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static boolean isSeparator(char c)
+	{
+		return c == ',' || isWhitespace(c);
+	}
+
+	private void skipSeparators()
+	{
+		while (position < length && isSeparator(line.charAt(position)))
+		{
+			position++;
+		}
+	}
+
+	private boolean atTokenEnd()
+	{
+		return position >= length || isSeparator(line.charAt(position));
+	}
+
+	private NumberFormatException numberFormatException(int start)
+	{
+		int end = start;
+		while (end < length && !isSeparator(line.charAt(end)))
+		{
+			end++;
+		}
+		position = end;
+		return new NumberFormatException("Invalid number: '" + line.substring(start, end) + "'");
+	}
+}
@@ -16,29 +16,42 @@
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
 import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 
+import java.awt.Color;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import au.gov.ga.worldwind.common.layers.data.AbstractDataProvider;
+import au.gov.ga.worldwind.common.layers.data.BinaryCacheFile;
 import au.gov.ga.worldwind.common.layers.model.ModelLayer;
 import au.gov.ga.worldwind.common.layers.model.ModelProvider;
 import au.gov.ga.worldwind.common.util.FastShape;
+import au.gov.ga.worldwind.common.util.PositionList;
 import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * Implementation of a {@link ModelProvider} which reads data from a GOCAD file.
+ * <p/>
+ * The shapes read are cached in a {@link BinaryCacheFile} alongside the
+ * layer's data cache, so that later loads of the same (unmodified) GOCAD file
+ * with the same {@link GocadReaderParameters} don't need to parse it again.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class GocadModelProvider extends AbstractDataProvider<ModelLayer> implements ModelProvider
 {
+	private static final String CACHE_TYPE = "GocadModel";
+	private static final int CACHE_VERSION = 1;
+
 	private Sector sector = null;
 	private final GocadReaderParameters parameters;
 
@@ -56,8 +69,58 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 	@Override
 	protected boolean doLoadData(URL url, ModelLayer layer)
 	{
-		List<FastShape> shapes;
 		File file = URLUtil.urlToFile(url);
+		File cacheFile = null;
+		String cacheKey = parameters.getCacheKey();
+		if (cacheKey != null)
+		{
+			cacheFile = BinaryCacheFile.getCacheFile(getDataFileStore(), layer.getDataCacheName());
+			cacheKey = url.toExternalForm() + "|" + cacheKey;
+		}
+
+		List<FastShape> shapes = null;
+		if (cacheFile != null)
+		{
+			shapes = readCache(cacheFile, cacheKey);
+		}
+		if (shapes == null)
+		{
+			parameters.getDataFiles().clear();
+			shapes = readShapes(url, file);
+			if (cacheFile != null && shapes != null && !shapes.isEmpty())
+			{
+				writeCache(cacheFile, cacheKey, file, shapes);
+			}
+		}
+
+		if (shapes != null && !shapes.isEmpty())
+		{
+			for (FastShape shape : shapes)
+			{
+				layer.addShape(shape);
+				if(sector == null)
+				{
+					sector = shape.getSector();
+				}
+				else
+				{
+					sector = sector.union(shape.getSector());
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parse the shapes from the GOCAD file (or zip file containing GOCAD
+	 * files) at the given url.
+	 * 
+	 * @return Shapes read, or null if reading failed
+	 */
+	protected List<FastShape> readShapes(URL url, File file)
+	{
+		List<FastShape> shapes;
 		if (file.getName().endsWith(".zip"))
 		{
 			shapes = new ArrayList<FastShape>();
@@ -88,29 +151,148 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 			catch (Exception e)
 			{
 				e.printStackTrace();
-				return false;
+				return null;
 			}
 		}
 		else
 		{
 			shapes = GocadFactory.read(file, parameters);
 		}
-		if (shapes != null && !shapes.isEmpty())
+		return shapes;
+	}
+
+	/**
+	 * Read the shapes from the given cache file.
+	 * 
+	 * @return Cached shapes, or null if the cache file is missing or out of
+	 *         date
+	 */
+	protected List<FastShape> readCache(File cacheFile, String cacheKey)
+	{
+		try
 		{
+			BinaryCacheFile.Input input = BinaryCacheFile.open(cacheFile, CACHE_TYPE, CACHE_VERSION, cacheKey);
+			if (input == null)
+			{
+				return null;
+			}
+			int count = input.getInt();
+			List<FastShape> shapes = new ArrayList<FastShape>(count);
+			for (int i = 0; i < count; i++)
+			{
+				shapes.add(readShape(input));
+			}
+			return shapes;
+		}
+		catch (Exception e)
+		{
+			Logging.logger().log(Level.WARNING, "Error reading GOCAD cache file: " + cacheFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write the given shapes to the cache file. The cache is validated against
+	 * the GOCAD file and any data files it references. Nothing is written if
+	 * a data file is not a local file (or within the zip file).
+	 */
+	protected void writeCache(File cacheFile, String cacheKey, File file, List<FastShape> shapes)
+	{
+		List<File> sources = BinaryCacheFile.sources(file);
+		for (URL dataFile : parameters.getDataFiles())
+		{
+			if ("jar".equalsIgnoreCase(dataFile.getProtocol()))
+			{
+				//within the zip file
+				continue;
+			}
+			File source = URLUtil.urlToFile(dataFile);
+			if (source == null)
+			{
+				return;
+			}
+			sources.add(source);
+		}
+
+		BinaryCacheFile.Output output = null;
+		try
+		{
+			output = BinaryCacheFile.create(cacheFile, CACHE_TYPE, CACHE_VERSION, cacheKey, sources);
+			output.putInt(shapes.size());
 			for (FastShape shape : shapes)
 			{
-				layer.addShape(shape);
-				if(sector == null)
-				{
-					sector = shape.getSector();
-				}
-				else
-				{
-					sector = sector.union(shape.getSector());
-				}
+				writeShape(output, shape);
 			}
-			return true;
+			output.commit();
 		}
-		return false;
+		catch (IOException e)
+		{
+			if (output != null)
+			{
+				output.abort();
+			}
+			Logging.logger().log(Level.WARNING, "Error writing GOCAD cache file: " + cacheFile, e);
+		}
+	}
+
+	/**
+	 * Write the geometry and the properties set by the {@link GocadReader}s
+	 * of the given shape.
+	 */
+	protected static void writeShape(BinaryCacheFile.Output output, FastShape shape) throws IOException
+	{
+		PositionList positions;
+		if (shape.getPositions() instanceof PositionList)
+		{
+			positions = (PositionList) shape.getPositions();
+		}
+		else
+		{
+			positions = new PositionList(shape.getPositions().size());
+			positions.addAll(shape.getPositions());
+		}
+
+		output.putString(shape.getName());
+		output.putInt(shape.getMode());
+		output.putDoubles(positions.getCoordinates(), positions.size() * 3);
+		output.putInts(shape.getIndices());
+		output.putFloats(shape.getColorBuffer());
+		output.putInt(shape.getColorBufferElementSize());
+		output.putFloats(shape.getTextureCoordinateBuffer());
+		output.putBoolean(shape.getColor() != null);
+		output.putInt(shape.getColor() != null ? shape.getColor().getRGB() : 0);
+		output.putBoolean(shape.isLighted());
+		output.putBoolean(shape.isTwoSidedLighting());
+		output.putBoolean(shape.isCalculateNormals());
+		output.putBoolean(shape.isForceSortedPrimitives());
+		output.putBoolean(shape.isFollowTerrain());
+	}
+
+	/**
+	 * Read a shape written by
+	 * {@link #writeShape(BinaryCacheFile.Output, FastShape)}. The shape's
+	 * buffers are views of the buffer the cache file was read into.
+	 */
+	protected static FastShape readShape(BinaryCacheFile.Input input)
+	{
+		String name = input.getString();
+		int mode = input.getInt();
+		double[] coordinates = input.getDoubles();
+		PositionList positions = new PositionList(coordinates, coordinates.length / 3);
+
+		FastShape shape = new FastShape(positions, input.getIntBuffer(), mode);
+		shape.setName(name);
+		shape.setColorBuffer(input.getFloatBuffer());
+		shape.setColorBufferElementSize(input.getInt());
+		shape.setTextureCoordinateBuffer(input.getFloatBuffer());
+		boolean hasColor = input.getBoolean();
+		int rgba = input.getInt();
+		shape.setColor(hasColor ? new Color(rgba, true) : null);
+		shape.setLighted(input.getBoolean());
+		shape.setTwoSidedLighting(input.getBoolean());
+		shape.setCalculateNormals(input.getBoolean());
+		shape.setForceSortedPrimitives(input.getBoolean());
+		shape.setFollowTerrain(input.getBoolean());
+		return shape;
 	}
 }
@@ -15,22 +15,17 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL;
 
 import au.gov.ga.worldwind.common.util.FastShape;
+import au.gov.ga.worldwind.common.util.PositionList;
 
 import com.sun.opengl.util.BufferUtil;
 
@@ -43,138 +38,68 @@ public class GocadPLineReader implements GocadReader
 {
 	public final static String HEADER_REGEX = "(?i).*pline.*";
 
-	private final static Pattern segmentPattern = Pattern.compile("SEG\\s+(\\d+)\\s+(\\d+).*");
-
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
-	private List<Integer> segmentIds;
+	private PositionList positions;
+	private int[] segmentIds;
+	private int segmentIdCount;
 	private Color color;
-	private Map<Integer, Integer> vertexIdMap;
+	private GocadVertexIdMap vertexIdMap;
 	private String name;
 	private boolean zPositive = true;
-	private List<Float> values;
+	private float[] values;
 	private float min, max;
 	private String paintedVariableName;
 	private int paintedVariableId = 0;
 	private float noDataValue = -Float.MAX_VALUE;
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
+		positions = new PositionList();
+		values = new float[16];
 		min = Float.MAX_VALUE;
 		max = -Float.MAX_VALUE;
-		segmentIds = new ArrayList<Integer>();
-		vertexIdMap = new HashMap<Integer, Integer>();
+		segmentIds = new int[16];
+		segmentIdCount = 0;
+		vertexIdMap = new GocadVertexIdMap();
 		paintedVariableName = parameters.getPaintedVariable();
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
+		//vertex and element records make up almost all of the file, so parse them without regex
+		tokenizer.reset(line);
+		try
 		{
-			int id = Integer.parseInt(matcher.group(1));
-			if (vertexIdMap.containsKey(id))
+			if (tokenizer.nextKeyword("VRTX") || tokenizer.nextKeyword("PVRTX"))
 			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id);
+				addVertex();
+				return;
 			}
-
-			double x = Double.parseDouble(matcher.group(2));
-			double y = Double.parseDouble(matcher.group(3));
-			double z = Double.parseDouble(matcher.group(4));
-			z = zPositive ? z : -z;
-			if (parameters.getCoordinateTransformation() != null)
+			if (tokenizer.nextKeyword("ATOM") || tokenizer.nextKeyword("PATOM"))
 			{
-				double[] transformed = new double[3];
-				parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
-				x = transformed[0];
-				y = transformed[1];
-				z = transformed[2];
+				addAtom();
+				return;
 			}
-			Position position = Position.fromDegrees(y, x, z);
-			vertexIdMap.put(id, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
+			if (tokenizer.nextKeyword("SEG"))
 			{
-				value = (float) z;
+				int s1 = tokenizer.nextInt();
+				int s2 = tokenizer.nextInt();
+				addSegmentId(s1);
+				addSegmentId(s2);
+				return;
 			}
-			else
-			{
-				double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(5));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
-			return;
 		}
-		
-		matcher = atomPattern.matcher(line);
-		if (matcher.matches())
+		catch (NumberFormatException e)
 		{
-			int id1 = Integer.parseInt(matcher.group(1));
-			int id2 = Integer.parseInt(matcher.group(2));
-
-			if (vertexIdMap.containsKey(id1))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id1);
-			}
-			if (!vertexIdMap.containsKey(id2))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + id2);
-			}
-
-			Position position = positions.get(vertexIdMap.get(id2));
-			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) position.elevation;
-			}
-			else
-			{
-				double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(3));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
+			//malformed record, ignore it like any other unrecognised line
 			return;
 		}
 
-		matcher = segmentPattern.matcher(line);
-		if (matcher.matches())
-		{
-			int s1 = Integer.parseInt(matcher.group(1));
-			int s2 = Integer.parseInt(matcher.group(2));
-			segmentIds.add(s1);
-			segmentIds.add(s2);
-			return;
-		}
+		Matcher matcher;
 
 		matcher = lineColorPattern.matcher(line);
 		if (matcher.matches())
@@ -234,17 +159,94 @@ public class GocadPLineReader implements GocadReader
 		}
 	}
 
+	private void addVertex()
+	{
+		int id = tokenizer.nextInt();
+		if (vertexIdMap.containsKey(id))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id);
+		}
+
+		double x = tokenizer.nextDouble();
+		double y = tokenizer.nextDouble();
+		double z = tokenizer.nextDouble();
+		z = zPositive ? z : -z;
+		if (parameters.getCoordinateTransformation() != null)
+		{
+			double[] transformed = new double[3];
+			parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
+			x = transformed[0];
+			y = transformed[1];
+			z = transformed[2];
+		}
+		vertexIdMap.put(id, positions.size());
+		positions.add(y, x, z);
+
+		float value = paintedVariableId <= 0 ? (float) z : (float) tokenizer.nextDouble(paintedVariableId);
+		addValue(value);
+	}
+
+	private void addAtom()
+	{
+		int id1 = tokenizer.nextInt();
+		int id2 = tokenizer.nextInt();
+		if (vertexIdMap.containsKey(id1))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id1);
+		}
+		int index = vertexIdMap.get(id2);
+		if (index < 0)
+		{
+			throw new IllegalArgumentException("Unknown vertex id: " + id2);
+		}
+
+		double elevation = positions.getElevation(index);
+		vertexIdMap.put(id1, positions.size());
+		positions.add(positions.getLatitude(index), positions.getLongitude(index), elevation);
+
+		float value = paintedVariableId <= 0 ? (float) elevation : (float) tokenizer.nextDouble(paintedVariableId);
+		addValue(value);
+	}
+
+	/**
+	 * Store the value for the last added vertex.
+	 */
+	private void addValue(float value)
+	{
+		if (!Float.isNaN(value) && value != noDataValue)
+		{
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		int index = positions.size() - 1;
+		if (index >= values.length)
+		{
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[index] = value;
+	}
+
+	private void addSegmentId(int id)
+	{
+		if (segmentIdCount == segmentIds.length)
+		{
+			segmentIds = Arrays.copyOf(segmentIds, segmentIds.length * 2);
+		}
+		segmentIds[segmentIdCount++] = id;
+	}
+
 	@Override
 	public FastShape end(URL context)
 	{
-		IntBuffer indicesBuffer = BufferUtil.newIntBuffer(segmentIds.size());
-		for (Integer i : segmentIds)
+		IntBuffer indicesBuffer = BufferUtil.newIntBuffer(segmentIdCount);
+		for (int i = 0; i < segmentIdCount; i++)
 		{
-			if (!vertexIdMap.containsKey(i))
+			int index = vertexIdMap.get(segmentIds[i]);
+			if (index < 0)
 			{
-				throw new IllegalArgumentException("Unknown vertex id: " + i);
+				throw new IllegalArgumentException("Unknown vertex id: " + segmentIds[i]);
 			}
-			indicesBuffer.put(vertexIdMap.get(i));
+			indicesBuffer.put(index);
 		}
 
 		if (name == null)
@@ -257,8 +259,9 @@ public class GocadPLineReader implements GocadReader
 		if (parameters.getColorMap() != null)
 		{
 			FloatBuffer colorBuffer = BufferUtil.newFloatBuffer(positions.size() * 4);
-			for (float value : values)
+			for (int i = 0; i < positions.size(); i++)
 			{
+				float value = values[i];
 				if (Float.isNaN(value) || value == noDataValue)
 				{
 					colorBuffer.put(0).put(0).put(0).put(0);
@@ -18,7 +18,12 @@ package au.gov.ga.worldwind.common.layers.model.gocad;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 
+import java.awt.Color;
+import java.net.URL;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
 
 import org.gdal.osr.CoordinateTransformation;
 
@@ -43,9 +48,11 @@ public class GocadReaderParameters
 	private int dynamicSubsamplingSamplesPerAxis = 50;
 	private boolean bilinearMinification = false;
 	private CoordinateTransformation coordinateTransformation = null;
+	private String coordinateSystem = null;
 	private ColorMap colorMap = null;
 	private float maxVariance = 0;
 	private String paintedVariable;
+	private final List<URL> dataFiles = new ArrayList<URL>();
 
 	public GocadReaderParameters()
 	{
@@ -91,7 +98,7 @@ public class GocadReaderParameters
 
 		String s = (String) params.getValue(AVKey.COORDINATE_SYSTEM);
 		if (s != null)
-			setCoordinateTransformation(CoordinateTransformationUtil.getTransformationToWGS84(s));
+			setCoordinateSystem(s);
 
 		ColorMap cm = (ColorMap) params.getValue(AVKeyMore.COLOR_MAP);
 		if (cm != null)
@@ -263,6 +270,20 @@ public class GocadReaderParameters
 	public void setCoordinateTransformation(CoordinateTransformation coordinateTransformation)
 	{
 		this.coordinateTransformation = coordinateTransformation;
+		this.coordinateSystem = null;
+	}
+
+	/**
+	 * Set the map reprojection to use when reading GOCAD vertices, from the
+	 * given coordinate system definition (which is reprojected to WGS84).
+	 * 
+	 * @param coordinateSystem
+	 * @see CoordinateTransformationUtil#getTransformationToWGS84(String)
+	 */
+	public void setCoordinateSystem(String coordinateSystem)
+	{
+		this.coordinateTransformation = CoordinateTransformationUtil.getTransformationToWGS84(coordinateSystem);
+		this.coordinateSystem = coordinateSystem;
 	}
 
 	/**
@@ -323,4 +344,61 @@ public class GocadReaderParameters
 	{
 		this.paintedVariable = paintedVariable;
 	}
+
+	/**
+	 * @return Data files referenced by (and read along with) the GOCAD files
+	 *         read using these parameters, such as voxet property files. These
+	 *         are added by the {@link GocadReader}s.
+	 */
+	public List<URL> getDataFiles()
+	{
+		return dataFiles;
+	}
+
+	/**
+	 * Record a data file referenced by a GOCAD file read using these
+	 * parameters.
+	 * 
+	 * @param url
+	 */
+	public void addDataFile(URL url)
+	{
+		dataFiles.add(url);
+	}
+
+	/**
+	 * @return A string describing every parameter that affects the shapes read
+	 *         using these parameters, for use as a cache key. Null if the
+	 *         parameters cannot be described (if a coordinate transformation
+	 *         was set directly instead of from a coordinate system definition).
+	 */
+	public String getCacheKey()
+	{
+		if (coordinateTransformation != null && coordinateSystem == null)
+		{
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("byteOrder=").append(byteOrder);
+		sb.append(";subsampling=").append(subsamplingU).append(',').append(subsamplingV).append(',')
+				.append(subsamplingW);
+		sb.append(";dynamicSubsampling=").append(dynamicSubsampling).append(',')
+				.append(dynamicSubsamplingSamplesPerAxis);
+		sb.append(";bilinearMinification=").append(bilinearMinification);
+		sb.append(";coordinateSystem=").append(coordinateSystem);
+		sb.append(";maxVariance=").append(maxVariance);
+		sb.append(";paintedVariable=").append(paintedVariable);
+		sb.append(";colorMap=");
+		if (colorMap != null)
+		{
+			sb.append(colorMap.isInterpolateHue()).append(',').append(colorMap.isValuesPercentages());
+			for (Entry<Double, Color> entry : colorMap.entrySet())
+			{
+				sb.append(',').append(entry.getKey()).append(':')
+						.append(Integer.toHexString(entry.getValue().getRGB()));
+			}
+		}
+		return sb.toString();
+	}
 }
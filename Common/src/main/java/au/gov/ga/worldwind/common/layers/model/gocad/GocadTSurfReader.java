@@ -15,23 +15,17 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL;
 
 import au.gov.ga.worldwind.common.util.FastShape;
+import au.gov.ga.worldwind.common.util.PositionList;
 
 import com.sun.opengl.util.BufferUtil;
 
@@ -44,140 +38,70 @@ public class GocadTSurfReader implements GocadReader
 {
 	public final static String HEADER_REGEX = "(?i).*tsurf.*";
 
-	private final static Pattern trianglePattern = Pattern.compile("TRGL\\s+(\\d+)\\s+(\\d+)\\s+(\\d+).*");
-
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
-	private List<Float> values;
+	private PositionList positions;
+	private float[] values;
 	private float min, max;
-	private List<Integer> triangleIds;
+	private int[] triangleIds;
+	private int triangleIdCount;
 	private Color color;
-	private Map<Integer, Integer> vertexIdMap;
+	private GocadVertexIdMap vertexIdMap;
 	private String name;
 	private boolean zPositive = true;
 	private String paintedVariableName;
 	private int paintedVariableId = 0;
 	private float noDataValue = -Float.MAX_VALUE;
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
+		positions = new PositionList();
+		values = new float[16];
 		min = Float.MAX_VALUE;
 		max = -Float.MAX_VALUE;
-		triangleIds = new ArrayList<Integer>();
-		vertexIdMap = new HashMap<Integer, Integer>();
+		triangleIds = new int[16];
+		triangleIdCount = 0;
+		vertexIdMap = new GocadVertexIdMap();
 		paintedVariableName = parameters.getPaintedVariable();
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
+		//vertex and element records make up almost all of the file, so parse them without regex
+		tokenizer.reset(line);
+		try
 		{
-			int id = Integer.parseInt(matcher.group(1));
-			if (vertexIdMap.containsKey(id))
+			if (tokenizer.nextKeyword("VRTX") || tokenizer.nextKeyword("PVRTX"))
 			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id);
+				addVertex();
+				return;
 			}
-
-			double x = Double.parseDouble(matcher.group(2));
-			double y = Double.parseDouble(matcher.group(3));
-			double z = Double.parseDouble(matcher.group(4));
-			z = zPositive ? z : -z;
-			if (parameters.getCoordinateTransformation() != null)
+			if (tokenizer.nextKeyword("ATOM") || tokenizer.nextKeyword("PATOM"))
 			{
-				double[] transformed = new double[3];
-				parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
-				x = transformed[0];
-				y = transformed[1];
-				z = transformed[2];
+				addAtom();
+				return;
 			}
-			Position position = Position.fromDegrees(y, x, z);
-			vertexIdMap.put(id, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
+			if (tokenizer.nextKeyword("TRGL"))
 			{
-				value = (float) z;
+				int t1 = tokenizer.nextInt();
+				int t2 = tokenizer.nextInt();
+				int t3 = tokenizer.nextInt();
+				addTriangleId(t1);
+				addTriangleId(t2);
+				addTriangleId(t3);
+				return;
 			}
-			else
-			{
-				double[] values = splitStringToDoubles(matcher.group(5));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
-			return;
 		}
-
-		matcher = atomPattern.matcher(line);
-		if (matcher.matches())
+		catch (NumberFormatException e)
 		{
-			int id1 = Integer.parseInt(matcher.group(1));
-			int id2 = Integer.parseInt(matcher.group(2));
-
-			if (vertexIdMap.containsKey(id1))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id1);
-			}
-			if (!vertexIdMap.containsKey(id2))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + id2);
-			}
-
-			Position position = positions.get(vertexIdMap.get(id2));
-			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) position.elevation;
-			}
-			else
-			{
-				double[] values = splitStringToDoubles(matcher.group(3));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
+			//malformed record, ignore it like any other unrecognised line
 			return;
 		}
 
-		matcher = trianglePattern.matcher(line);
-		if (matcher.matches())
-		{
-			int t1 = Integer.parseInt(matcher.group(1));
-			int t2 = Integer.parseInt(matcher.group(2));
-			int t3 = Integer.parseInt(matcher.group(3));
-			triangleIds.add(t1);
-			triangleIds.add(t2);
-			triangleIds.add(t3);
-			return;
-		}
+		Matcher matcher;
 
 		matcher = solidColorPattern.matcher(line);
 		if (matcher.matches())
@@ -238,17 +162,94 @@ public class GocadTSurfReader implements GocadReader
 		}
 	}
 
+	private void addVertex()
+	{
+		int id = tokenizer.nextInt();
+		if (vertexIdMap.containsKey(id))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id);
+		}
+
+		double x = tokenizer.nextDouble();
+		double y = tokenizer.nextDouble();
+		double z = tokenizer.nextDouble();
+		z = zPositive ? z : -z;
+		if (parameters.getCoordinateTransformation() != null)
+		{
+			double[] transformed = new double[3];
+			parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
+			x = transformed[0];
+			y = transformed[1];
+			z = transformed[2];
+		}
+		vertexIdMap.put(id, positions.size());
+		positions.add(y, x, z);
+
+		float value = paintedVariableId <= 0 ? (float) z : (float) tokenizer.nextDouble(paintedVariableId);
+		addValue(value);
+	}
+
+	private void addAtom()
+	{
+		int id1 = tokenizer.nextInt();
+		int id2 = tokenizer.nextInt();
+		if (vertexIdMap.containsKey(id1))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id1);
+		}
+		int index = vertexIdMap.get(id2);
+		if (index < 0)
+		{
+			throw new IllegalArgumentException("Unknown vertex id: " + id2);
+		}
+
+		double elevation = positions.getElevation(index);
+		vertexIdMap.put(id1, positions.size());
+		positions.add(positions.getLatitude(index), positions.getLongitude(index), elevation);
+
+		float value = paintedVariableId <= 0 ? (float) elevation : (float) tokenizer.nextDouble(paintedVariableId);
+		addValue(value);
+	}
+
+	/**
+	 * Store the value for the last added vertex.
+	 */
+	private void addValue(float value)
+	{
+		if (!Float.isNaN(value) && value != noDataValue)
+		{
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		int index = positions.size() - 1;
+		if (index >= values.length)
+		{
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[index] = value;
+	}
+
+	private void addTriangleId(int id)
+	{
+		if (triangleIdCount == triangleIds.length)
+		{
+			triangleIds = Arrays.copyOf(triangleIds, triangleIds.length * 2);
+		}
+		triangleIds[triangleIdCount++] = id;
+	}
+
 	@Override
 	public FastShape end(URL context)
 	{
-		IntBuffer indicesBuffer = BufferUtil.newIntBuffer(triangleIds.size());
-		for (Integer i : triangleIds)
+		IntBuffer indicesBuffer = BufferUtil.newIntBuffer(triangleIdCount);
+		for (int i = 0; i < triangleIdCount; i++)
 		{
-			if (!vertexIdMap.containsKey(i))
+			int index = vertexIdMap.get(triangleIds[i]);
+			if (index < 0)
 			{
-				throw new IllegalArgumentException("Unknown vertex id: " + i);
+				throw new IllegalArgumentException("Unknown vertex id: " + triangleIds[i]);
 			}
-			indicesBuffer.put(vertexIdMap.get(i));
+			indicesBuffer.put(index);
 		}
 
 		if (name == null)
@@ -264,8 +265,9 @@ public class GocadTSurfReader implements GocadReader
 		if (parameters.getColorMap() != null)
 		{
 			FloatBuffer colorBuffer = BufferUtil.newFloatBuffer(positions.size() * 4);
-			for (float value : values)
+			for (int i = 0; i < positions.size(); i++)
 			{
+				float value = values[i];
 				if (Float.isNaN(value) || value == noDataValue)
 				{
 					colorBuffer.put(0).put(0).put(0).put(0);
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.model.gocad;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps GOCAD vertex ids to vertex indices, without boxing.
+ * <p/>
+ * GOCAD vertex ids are usually small and close to sequential, so they are
+ * stored in an array indexed by id. The array only grows to ids within a small
+ * multiple of the number of ids mapped (and never past {@link #MAX_DENSE_ID}),
+ * so that a few large ids don't allocate a huge array; other ids are stored in
+ * a {@link HashMap}.
+ */
+public class GocadVertexIdMap
+{
+	public final static int MAX_DENSE_ID = 1 << 26;
+	private final static int DENSE_SLACK = 1024;
+
+	private int[] dense = new int[DENSE_SLACK];
+	private Map<Integer, Integer> sparse;
+	private int size = 0;
+
+	public GocadVertexIdMap()
+	{
+		Arrays.fill(dense, -1);
+	}
+
+	/**
+	 * Map the given id to the given index. The index must not be negative.
+	 */
+	public void put(int id, int index)
+	{
+		if (id >= dense.length && id < MAX_DENSE_ID && id < 2 * size + DENSE_SLACK)
+		{
+			int oldLength = dense.length;
+			dense = Arrays.copyOf(dense, Math.min(MAX_DENSE_ID, Math.max(id + 1, oldLength * 2)));
+			Arrays.fill(dense, oldLength, dense.length, -1);
+		}
+
+		if (id >= 0 && id < dense.length)
+		{
+			if (dense[id] < 0)
+			{
+				size++;
+			}
+			dense[id] = index;
+		}
+		else
+		{
+			if (sparse == null)
+			{
+				sparse = new HashMap<Integer, Integer>();
+			}
+			if (sparse.put(id, index) == null)
+			{
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * @return The index mapped to the given id, or -1 if the id isn't mapped
+	 */
+	public int get(int id)
+	{
+		if (id >= 0 && id < dense.length && dense[id] >= 0)
+		{
+			return dense[id];
+		}
+		//ids larger than the dense array when they were mapped are in the sparse map
+		Integer index = sparse != null ? sparse.get(id) : null;
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * @return Is the given id mapped?
+	 */
+	public boolean containsKey(int id)
+	{
+		return get(id) >= 0;
+	}
+
+	/**
+	 * @return Length of the array used to store the dense ids
+	 */
+	int getDenseLength()
+	{
+		return dense.length;
+	}
+}
@@ -15,18 +15,21 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
 import java.awt.Color;
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +39,9 @@ import org.gdal.osr.CoordinateTransformation;
 
 import au.gov.ga.worldwind.common.util.FastShape;
 import au.gov.ga.worldwind.common.util.HSLColor;
+import au.gov.ga.worldwind.common.util.ParallelLoop;
+import au.gov.ga.worldwind.common.util.PositionList;
+import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.Validate;
 
 import com.sun.opengl.util.BufferUtil;
@@ -52,6 +58,16 @@ public class GocadVoxetReader implements GocadReader
 	private final static Pattern axisPattern = Pattern
 			.compile("AXIS_(\\S+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+).*");
 
+	//multiplier for the fraction of an IBM float, for each exponent: 16^(exponent - 64) / 2^24
+	private final static double[] IBM_EXPONENT_SCALE = new double[128];
+	static
+	{
+		for (int i = 0; i < IBM_EXPONENT_SCALE.length; i++)
+		{
+			IBM_EXPONENT_SCALE[i] = Math.pow(16.0, i - 64) / 16777216.0;
+		}
+	}
+
 	private String name;
 	private boolean zPositive = true;
 
@@ -234,30 +250,263 @@ public class GocadVoxetReader implements GocadReader
 		int vSamples = (int) (1 + (nv - 1) / strideV);
 		int wSamples = (int) (1 + (nw - 1) / strideW);
 
-		List<Position> positions = new ArrayList<Position>();
 		float[] values = new float[uSamples * vSamples * wSamples];
 		for (int i = 0; i < values.length; i++)
 		{
 			values[i] = Float.NaN;
 		}
+		//contains the number of values summed in each region, when using bilinear minification
+		int[] count = parameters.isBilinearMinification() ? new int[values.length] : null;
+
+		try
+		{
+			URL fileUrl = new URL(context, file);
+			parameters.addDataFile(fileUrl);
+			boolean ieee = "IEEE".equals(etype);
+			double noData = noDataValue != null ? noDataValue : Double.NaN;
+
+			File propertyFile = URLUtil.urlToFile(fileUrl);
+			if (propertyFile != null && propertyFile.isFile() && nu * nv * esize <= Integer.MAX_VALUE)
+			{
+				readValuesMapped(propertyFile, ieee, noData, (int) nu, (int) nv, (int) nw, strideU, strideV, strideW,
+						uSamples, vSamples, values, count);
+			}
+			else
+			{
+				readValuesStream(fileUrl, ieee, noData, nu, nv, nw, strideU, strideV, strideW, uSamples, vSamples,
+						values, count);
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+
+		float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+		for (int i = 0; i < values.length; i++)
+		{
+			if (count != null && count[i] > 0)
+			{
+				//divide all the sums by the number of values summed (basically, average)
+				values[i] /= count[i];
+			}
+			if (!Float.isNaN(values[i]))
+			{
+				min = Math.min(min, values[i]);
+				max = Math.max(max, values[i]);
+			}
+		}
 
+		//create points for each sample (or summed region) that has a value
 		double[] transformed = new double[3];
 		CoordinateTransformation transformation = parameters.getCoordinateTransformation();
+		PositionList positions = new PositionList();
+		for (int w = 0, wi = 0; w < nw; w += strideW, wi++)
+		{
+			int wOffset = wi * vSamples * uSamples;
+			for (int v = 0, vi = 0; v < nv; v += strideV, vi++)
+			{
+				int vOffset = vi * uSamples;
+				for (int u = 0, ui = 0; u < nu; u += strideU, ui++)
+				{
+					if (!Float.isNaN(values[wOffset + vOffset + ui]))
+					{
+						double x = origin.x + axisUStride.x * u + axisVStride.x * v + axisWStride.x * w;
+						double y = origin.y + axisUStride.y * u + axisVStride.y * v + axisWStride.y * w;
+						double z = origin.z + axisUStride.z * u + axisVStride.z * v + axisWStride.z * w;
+						if (transformation != null)
+						{
+							transformation.TransformPoint(transformed, x, y, zPositive ? z : -z);
+							positions.add(transformed[1], transformed[0], transformed[2]);
+						}
+						else
+						{
+							positions.add(y, x, zPositive ? z : -z);
+						}
+					}
+				}
+			}
+		}
 
-		float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+		//create a color buffer containing a color for each point
+		int colorBufferElementSize = parameters.getColorMap() != null ? 4 : 3;
+		FloatBuffer colorBuffer = BufferUtil.newFloatBuffer(positions.size() * colorBufferElementSize);
+		for (float value : values)
+		{
+			//check that this value is valid; only non-NaN floats have points associated
+			if (!Float.isNaN(value))
+			{
+				if (parameters.getColorMap() != null)
+				{
+					Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
+					colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
+							.put(color.getAlpha() / 255f);
+				}
+				else
+				{
+					float percent = (value - min) / (max - min);
+					HSLColor hsl = new HSLColor((1f - percent) * 300f, 100f, 50f);
+					Color color = hsl.getRGB();
+					colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
+				}
+			}
+		}
+
+		if (name == null)
+		{
+			name = "Voxet";
+		}
+
+		positions.trimToSize();
+		FastShape shape = new FastShape(positions, GL.GL_POINTS);
+		shape.setName(name);
+		shape.setColorBuffer(colorBuffer);
+		shape.setColorBufferElementSize(colorBufferElementSize);
+		shape.setForceSortedPrimitives(true);
+		shape.setFollowTerrain(true);
+		return shape;
+	}
+
+	/**
+	 * Read the property values from a local file, by memory-mapping each W
+	 * slab of the file and decoding it in bulk. Slabs are decoded in parallel.
+	 * <p/>
+	 * If count is null, the sample at the start of each stride is stored in
+	 * the values array (or left as NaN if it contains no data). Otherwise, the
+	 * valid values in each region are summed, and the number summed stored in
+	 * count.
+	 */
+	void readValuesMapped(File propertyFile, final boolean ieee, final double noData, final int nu,
+			final int nv, final int nw, final int strideU, final int strideV, final int strideW, final int uSamples,
+			final int vSamples, final float[] values, final int[] count) throws IOException
+	{
+		final long slabSize = (long) nu * nv * esize;
+		final ByteOrder order = getFileByteOrder(parameters.getByteOrder());
+		final RandomAccessFile raf = new RandomAccessFile(propertyFile, "r");
 		try
 		{
-			URL fileUrl = new URL(context, file);
-			InputStream is = new BufferedInputStream(fileUrl.openStream());
-			is.skip(offset);
+			if (raf.length() < offset + slabSize * nw)
+			{
+				throw new IOException("Voxet property file is truncated: " + propertyFile);
+			}
 
-			boolean ieee = "IEEE".equals(etype);
+			final FileChannel channel = raf.getChannel();
+			int wSamples = 1 + (nw - 1) / strideW;
+			ParallelLoop.run(wSamples, 1, new ParallelLoop.Body()
+			{
+				@Override
+				public void run(int start, int end)
+				{
+					float[] row = new float[nu];
+					int[] rawRow = ieee ? null : new int[nu];
+					try
+					{
+						for (int wi = start; wi < end; wi++)
+						{
+							int wOffset = wi * vSamples * uSamples;
+							//only the first slab of each stride contributes, unless summing regions
+							int wEnd = count != null ? Math.min(nw, (wi + 1) * strideW) : wi * strideW + 1;
+							for (int w = wi * strideW; w < wEnd; w++)
+							{
+								ByteBuffer slab = channel.map(MapMode.READ_ONLY, offset + slabSize * w, slabSize);
+								slab.order(order);
+								FloatBuffer floats = ieee ? slab.asFloatBuffer() : null;
+								IntBuffer ints = ieee ? null : slab.asIntBuffer();
 
-			if (parameters.isBilinearMinification())
+								int vStep = count != null ? 1 : strideV;
+								for (int v = 0; v < nv; v += vStep)
+								{
+									if (ieee)
+									{
+										floats.position(v * nu);
+										floats.get(row);
+									}
+									else
+									{
+										ints.position(v * nu);
+										ints.get(rawRow);
+										ibmToIeee(rawRow, row, nu);
+									}
+
+									int vOffset = wOffset + (v / strideV) * uSamples;
+									if (count != null)
+									{
+										sumRow(row, noData, nu, strideU, vOffset, values, count);
+									}
+									else
+									{
+										sampleRow(row, noData, nu, strideU, vOffset, values);
+									}
+								}
+							}
+						}
+					}
+					catch (IOException e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private static void sumRow(float[] row, double noData, int nu, int strideU, int offset, float[] values,
+			int[] count)
+	{
+		for (int u = 0; u < nu; u++)
+		{
+			float value = row[u];
+			if (!Float.isNaN(value) && value != noData)
+			{
+				int valueIndex = offset + u / strideU;
+
+				//if this is the first value for this region, set it, otherwise add it
+				if (count[valueIndex] == 0)
+				{
+					values[valueIndex] = value;
+				}
+				else
+				{
+					values[valueIndex] += value;
+				}
+				count[valueIndex]++;
+			}
+		}
+	}
+
+	private static void sampleRow(float[] row, double noData, int nu, int strideU, int offset, float[] values)
+	{
+		for (int u = 0, ui = 0; u < nu; u += strideU, ui++)
+		{
+			float value = row[u];
+			if (!Float.isNaN(value) && value != noData)
 			{
-				//contains the number of values summed
-				int[] count = new int[values.length];
+				values[offset + ui] = value;
+			}
+		}
+	}
+
+	/**
+	 * Read the property values from a stream, one value at a time. Used when
+	 * the property file is not a local file. See
+	 * {@link #readValuesMapped(File, boolean, double, int, int, int, int, int, int, int, int, float[], int[])}
+	 * for a description of the values and count arrays.
+	 */
+	void readValuesStream(URL fileUrl, boolean ieee, double noData, long nu, long nv, long nw, int strideU,
+			int strideV, int strideW, int uSamples, int vSamples, float[] values, int[] count) throws IOException
+	{
+		InputStream is = new BufferedInputStream(fileUrl.openStream());
+		try
+		{
+			skipBytes(is, offset);
 
+			if (count != null)
+			{
 				//read all the values, and sum them in regions
 				for (int w = 0; w < nw; w++)
 				{
@@ -268,7 +517,7 @@ public class GocadVoxetReader implements GocadReader
 						for (int u = 0; u < nu; u++)
 						{
 							float value = readNextFloat(is, parameters.getByteOrder(), ieee);
-							if (!Float.isNaN(value) && value != noDataValue)
+							if (!Float.isNaN(value) && value != noData)
 							{
 								int uRegion = (u / strideU);
 								int valueIndex = wRegion + vRegion + uRegion;
@@ -287,52 +536,6 @@ public class GocadVoxetReader implements GocadReader
 						}
 					}
 				}
-
-				//divide all the sums by the number of values summed (basically, average)
-				for (int i = 0; i < values.length; i++)
-				{
-					if (count[i] > 0)
-					{
-						values[i] /= count[i];
-						min = Math.min(min, values[i]);
-						max = Math.max(max, values[i]);
-					}
-				}
-
-				//create points for each summed region that has a value
-				for (int w = 0, wi = 0; w < nw; w += strideW, wi++)
-				{
-					int wOffset = wi * vSamples * uSamples;
-					Vec4 wAdd = axisWStride.multiply3(w);
-					for (int v = 0, vi = 0; v < nv; v += strideV, vi++)
-					{
-						int vOffset = vi * uSamples;
-						Vec4 vAdd = axisVStride.multiply3(v);
-						for (int u = 0, ui = 0; u < nu; u += strideU, ui++)
-						{
-							int uOffset = ui;
-							int valueIndex = wOffset + vOffset + uOffset;
-							float value = values[valueIndex];
-
-							if (!Float.isNaN(value))
-							{
-								Vec4 uAdd = axisUStride.multiply3(u);
-								Vec4 p =
-										new Vec4(origin.x + uAdd.x + vAdd.x + wAdd.x, origin.y + uAdd.y + vAdd.y
-												+ wAdd.y, origin.z + uAdd.z + vAdd.z + wAdd.z);
-								if (transformation != null)
-								{
-									transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-									positions.add(Position.fromDegrees(transformed[1], transformed[0], transformed[2]));
-								}
-								else
-								{
-									positions.add(Position.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z));
-								}
-							}
-						}
-					}
-				}
 			}
 			else
 			{
@@ -340,32 +543,14 @@ public class GocadVoxetReader implements GocadReader
 				int valueIndex = 0;
 				for (int w = 0; w < nw; w += strideW)
 				{
-					Vec4 wAdd = axisWStride.multiply3(w);
 					for (int v = 0; v < nv; v += strideV)
 					{
-						Vec4 vAdd = axisVStride.multiply3(v);
 						for (int u = 0; u < nu; u += strideU)
 						{
 							float value = readNextFloat(is, parameters.getByteOrder(), ieee);
-							if (!Float.isNaN(value) && value != noDataValue)
+							if (!Float.isNaN(value) && value != noData)
 							{
 								values[valueIndex] = value;
-								min = Math.min(min, value);
-								max = Math.max(max, value);
-
-								Vec4 uAdd = axisUStride.multiply3(u);
-								Vec4 p =
-										new Vec4(origin.x + uAdd.x + vAdd.x + wAdd.x, origin.y + uAdd.y + vAdd.y
-												+ wAdd.y, origin.z + uAdd.z + vAdd.z + wAdd.z);
-								if (transformation != null)
-								{
-									transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-									positions.add(Position.fromDegrees(transformed[1], transformed[0], transformed[2]));
-								}
-								else
-								{
-									positions.add(Position.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z));
-								}
 							}
 							valueIndex++;
 							skipBytes(is, esize * Math.min(strideU - 1, nu - u - 1));
@@ -376,48 +561,22 @@ public class GocadVoxetReader implements GocadReader
 				}
 			}
 		}
-		catch (Exception e)
+		finally
 		{
-			e.printStackTrace();
-			return null;
-		}
-
-		//create a color buffer containing a color for each point
-		int colorBufferElementSize = parameters.getColorMap() != null ? 4 : 3;
-		FloatBuffer colorBuffer = BufferUtil.newFloatBuffer(positions.size() * colorBufferElementSize);
-		for (float value : values)
-		{
-			//check that this value is valid; only non-NaN floats have points associated
-			if (!Float.isNaN(value))
-			{
-				if (parameters.getColorMap() != null)
-				{
-					Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
-					colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-							.put(color.getAlpha() / 255f);
-				}
-				else
-				{
-					float percent = (value - min) / (max - min);
-					HSLColor hsl = new HSLColor((1f - percent) * 300f, 100f, 50f);
-					Color color = hsl.getRGB();
-					colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
-				}
-			}
-		}
-
-		if (name == null)
-		{
-			name = "Voxet";
+			is.close();
 		}
+	}
 
-		FastShape shape = new FastShape(positions, GL.GL_POINTS);
-		shape.setName(name);
-		shape.setColorBuffer(colorBuffer);
-		shape.setColorBufferElementSize(colorBufferElementSize);
-		shape.setForceSortedPrimitives(true);
-		shape.setFollowTerrain(true);
-		return shape;
+	/**
+	 * @return The order of the bytes in the property file for the given byte
+	 *         order parameter, using the same interpretation as
+	 *         {@link #readNextFloat(InputStream, ByteOrder, boolean)} (which
+	 *         treats the first byte as the most significant when the parameter
+	 *         is {@link ByteOrder#LITTLE_ENDIAN})
+	 */
+	private static ByteOrder getFileByteOrder(ByteOrder byteOrder)
+	{
+		return byteOrder == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
 	}
 
 	public static void skipBytes(InputStream is, long n) throws IOException
@@ -461,23 +620,32 @@ public class GocadVoxetReader implements GocadReader
 		}
 		else
 		{
-			//ibm
-			byte S = (byte) ((b3 & 0x80) >> 7);
-			int E = (b3 & 0x7f);
-			long F = (b2 << 16) + (b1 << 8) + b0;
-
-			if (S == 0 && E == 0 && F == 0)
-				return 0;
-
-			double A = 16.0;
-			double B = 64.0;
-			double e24 = 16777216.0; // 2^24
-			double M = (double) F / e24;
-
-			double F1 = S == 0 ? 1.0 : -1.0;
-			return (float) (F1 * M * Math.pow(A, E - B));
+			return ibmToIeee((b0) | (b1 << 8) | (b2 << 16) | b3 << 24);
 		}
 	}
 
+	/**
+	 * Convert an IBM single precision float (1 sign bit, 7 bit base-16
+	 * exponent biased by 64, 24 bit fraction) to an IEEE float.
+	 */
+	public static float ibmToIeee(int bits)
+	{
+		//fraction * 16^(exponent - 64) / 2^24 is exact in a double, so the only rounding is the cast to float
+		double value = (bits & 0xffffff) * IBM_EXPONENT_SCALE[(bits >>> 24) & 0x7f];
+		return (float) (bits < 0 ? -value : value);
+	}
 
+	/**
+	 * Convert the first n IBM floats in the input array to IEEE floats in the
+	 * output array.
+	 */
+	public static void ibmToIeee(int[] input, float[] output, int n)
+	{
+		for (int i = 0; i < n; i++)
+		{
+			int bits = input[i];
+			double value = (bits & 0xffffff) * IBM_EXPONENT_SCALE[(bits >>> 24) & 0x7f];
+			output[i] = (float) (bits < 0 ? -value : value);
+		}
+	}
 }
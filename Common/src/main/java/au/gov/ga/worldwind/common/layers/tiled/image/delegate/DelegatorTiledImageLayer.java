@@ -587,6 +587,36 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		createAndRunRetriever(tile, postProcessor);
 	}
 
+	/**
+	 * Check whether a tile's texture is available without downloading it,
+	 * either in the memory cache or in a local file.
+	 * 
+	 * @param tile
+	 *            Tile to check
+	 * @return True if the tile's texture doesn't need to be downloaded
+	 */
+	public boolean isTextureAvailable(DelegatorTextureTile tile)
+	{
+		return TextureTile.getMemoryCache().getObject(tile.getTransformedTileKey()) != null
+				|| delegateKit.getLocalTileURL(tile, this, false) != null;
+	}
+
+	/**
+	 * Download a tile's texture to the file store ahead of it being required,
+	 * without loading the texture. The texture is loaded from the file store
+	 * when the tile is next requested.
+	 * 
+	 * @param tile
+	 *            Tile to download
+	 */
+	public void prefetchTexture(DelegatorTextureTile tile)
+	{
+		if (!tile.getSector().intersects(getSector()) || getLevels().isResourceAbsent(tile))
+			return;
+
+		createAndRunRetriever(tile, null);
+	}
+
 	protected void createAndRunRetriever(TextureTile tile, RetrievalPostProcessor postProcessor)
 	{
 		Retriever retriever = createRetriever(tile, postProcessor);
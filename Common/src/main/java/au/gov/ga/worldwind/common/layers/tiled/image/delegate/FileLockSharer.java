@@ -28,7 +28,10 @@ import java.util.Map;
  */
 public class FileLockSharer
 {
+	private static final int TILE_LOCK_STRIPES = 64;
+
 	private static Map<String, Object> locks = new HashMap<String, Object>();
+	private static Map<String, TileLocks> tileLocks = new HashMap<String, TileLocks>();
 
 	/**
 	 * Get an object on which to synchronize for reading/writing to the cache
@@ -38,7 +41,7 @@ public class FileLockSharer
 	 *            Cache location
 	 * @return Object on which to synchronize
 	 */
-	public static Object getLock(String dataCacheName)
+	public synchronized static Object getLock(String dataCacheName)
 	{
 		if (!locks.containsKey(dataCacheName))
 		{
@@ -46,4 +49,89 @@ public class FileLockSharer
 		}
 		return locks.get(dataCacheName);
 	}
+
+	/**
+	 * Get the set of per-tile locks for the cache location identified by
+	 * dataCacheName. Unlike {@link #getLock(String)}, reads and writes of
+	 * different tiles in the cache location don't block each other.
+	 * 
+	 * @param dataCacheName
+	 *            Cache location
+	 * @return Per-tile locks for the cache location
+	 */
+	public synchronized static TileLocks getTileLocks(String dataCacheName)
+	{
+		TileLocks locks = tileLocks.get(dataCacheName);
+		if (locks == null)
+		{
+			locks = new TileLocks(TILE_LOCK_STRIPES);
+			tileLocks.put(dataCacheName, locks);
+		}
+		return locks;
+	}
+
+	/**
+	 * A striped set of locks for the tiles in a single cache location. Each
+	 * tile maps to one of a fixed number of lock objects, so the same tile
+	 * always gets the same lock, and different tiles usually get different
+	 * locks.
+	 * <p/>
+	 * Tiles are identified by the last three segments of their path
+	 * (level/row/file), so a tile's cache path (such as
+	 * {@link gov.nasa.worldwind.util.Tile#getPath()}) and the path of the URL
+	 * of the file it was stored in map to the same lock.
+	 */
+	public static class TileLocks
+	{
+		private static final int KEY_SEGMENTS = 3;
+
+		private final Object[] locks;
+
+		public TileLocks(int stripes)
+		{
+			locks = new Object[stripes];
+			for (int i = 0; i < stripes; i++)
+			{
+				locks[i] = new Object();
+			}
+		}
+
+		/**
+		 * Get an object on which to synchronize for reading/writing the tile
+		 * with the given path.
+		 * 
+		 * @param tilePath
+		 *            Cache path, file path or URL path of the tile
+		 * @return Object on which to synchronize
+		 */
+		public Object getLock(String tilePath)
+		{
+			return locks[(hashTilePath(tilePath) & 0x7fffffff) % locks.length];
+		}
+
+		/**
+		 * Calculate a hash of the last three segments of the tile path, treating
+		 * '/' and '\' as equivalent separators.
+		 */
+		protected static int hashTilePath(String tilePath)
+		{
+			int start = tilePath.length();
+			for (int segments = 0; segments < KEY_SEGMENTS && start > 0; start--)
+			{
+				char c = tilePath.charAt(start - 1);
+				if ((c == '/' || c == '\\') && ++segments == KEY_SEGMENTS)
+				{
+					break;
+				}
+			}
+
+			int hash = 0;
+			for (int i = start; i < tilePath.length(); i++)
+			{
+				char c = tilePath.charAt(i);
+				hash = 31 * hash + (c == '\\' ? '/' : c);
+			}
+			return hash;
+		}
+	}
 }
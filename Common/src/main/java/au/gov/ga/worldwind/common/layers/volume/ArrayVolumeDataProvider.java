@@ -26,9 +26,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
 import java.util.zip.ZipInputStream;
 
+import au.gov.ga.worldwind.common.util.PositionList;
+
 /**
  * {@link VolumeDataProvider} which reads its data from a custom object array
  * file. Any {@link AbstractVolumeDataProvider} instance can be converted to a
@@ -72,16 +73,17 @@ public class ArrayVolumeDataProvider extends AbstractVolumeDataProvider
 			minValue = Float.MAX_VALUE;
 			maxValue = -Float.MAX_VALUE;
 
-			positions = new ArrayList<Position>(xSize * ySize);
+			PositionList positionList = new PositionList(xSize * ySize);
 			for (int y = 0; y < ySize; y++)
 			{
 				double latitude = minLatitude + (y / (double) (ySize - 1)) * (maxLatitude - minLatitude);
 				for (int x = 0; x < xSize; x++)
 				{
 					double longitude = minLongitude + (x / (double) (xSize - 1)) * (maxLongitude - minLongitude);
-					positions.add(Position.fromDegrees(latitude, longitude, ois.readDouble()));
+					positionList.add(latitude, longitude, ois.readDouble());
 				}
 			}
+			positions = positionList;
 
 			data = FloatBuffer.allocate(xSize * ySize * zSize);
 			for (int i = 0; i < data.limit(); i++)
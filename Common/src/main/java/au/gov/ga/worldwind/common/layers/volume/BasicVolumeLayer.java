@@ -15,6 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.volume;
 
+import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
@@ -41,10 +42,14 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.media.opengl.GL;
 
@@ -52,7 +57,9 @@ import org.gdal.osr.CoordinateTransformation;
 
 import au.gov.ga.worldwind.common.layers.Wireframeable;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.CoalescingExecutor;
 import au.gov.ga.worldwind.common.util.ColorMap;
+import au.gov.ga.worldwind.common.util.ColorMapLookupTable;
 import au.gov.ga.worldwind.common.util.CoordinateTransformationUtil;
 import au.gov.ga.worldwind.common.util.FastShape;
 import au.gov.ga.worldwind.common.util.GeometryUtil;
@@ -68,6 +75,10 @@ import com.sun.opengl.util.j2d.TextureRenderer;
  */
 public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wireframeable, SelectListener
 {
+	protected static final long DEFAULT_SLICE_CACHE_SIZE = 64 * 1024 * 1024;
+	protected static final int DEFAULT_SLICE_GENERATOR_THREADS = Math.max(1,
+			Runtime.getRuntime().availableProcessors() - 1);
+
 	protected URL context;
 	protected String url;
 	protected String dataCacheName;
@@ -75,7 +86,13 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected Double minimumDistance;
 	protected double maxVariance = 0;
 	protected CoordinateTransformation coordinateTransformation;
+	protected String coordinateSystem;
 	protected ColorMap colorMap;
+	protected ColorMapLookupTable colorMapLookupTable;
+	protected ColorMap colorMapLookupTableSource;
+	protected final VolumeSliceCache sliceCache = new VolumeSliceCache(Configuration.getLongValue(
+			AVKeyMore.VOLUME_SLICE_CACHE_SIZE, DEFAULT_SLICE_CACHE_SIZE));
+	protected final Map<Object, Integer> requestedSlices = new IdentityHashMap<Object, Integer>();
 	protected Color noDataColor;
 
 	protected final Object dataLock = new Object();
@@ -130,7 +147,10 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 		String s = (String) params.getValue(AVKey.COORDINATE_SYSTEM);
 		if (s != null)
+		{
 			coordinateTransformation = CoordinateTransformationUtil.getTransformationToWGS84(s);
+			coordinateSystem = s;
+		}
 
 		Integer i = (Integer) params.getValue(AVKeyMore.INITIAL_OFFSET_MIN_U);
 		if (i != null)
@@ -272,8 +292,13 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 	/**
 	 * Recalculate any surfaces that require recalculation. This includes
-	 * regenerating textures when the user has dragged a surface to a different
+	 * displaying the slices when the user has dragged a surface to a different
 	 * slice.
+	 * <p/>
+	 * Slices are generated in the background (see {@link #requestSlice}).
+	 * Until a requested slice is generated, the surface displays the nearest
+	 * slice that has already been generated, so the displayed offsets (the
+	 * last*Offset fields) can lag behind the requested offsets.
 	 */
 	protected void recalculateSurfaces()
 	{
@@ -288,98 +313,202 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		topOffset = Util.clamp(topOffset, 0, dataProvider.getZSize() - 1);
 		bottomOffset = Util.clamp(bottomOffset, 0, dataProvider.getZSize() - 1 - topOffset);
 
-		int maxLonSlice = dataProvider.getXSize() - 1 - maxLonOffset;
-		int maxLatSlice = dataProvider.getYSize() - 1 - maxLatOffset;
-		int bottomSlice = dataProvider.getZSize() - 1 - bottomOffset;
+		int lastX = dataProvider.getXSize() - 1;
+		int lastY = dataProvider.getYSize() - 1;
+		int lastZ = dataProvider.getZSize() - 1;
 
 		//only recalculate those that have changed
-		boolean recalculateMinLon = lastMinLonOffset != minLonOffset;
-		boolean recalculateMaxLon = lastMaxLonOffset != maxLonOffset;
-		boolean recalculateMinLat = lastMinLatOffset != minLatOffset;
-		boolean recalculateMaxLat = lastMaxLatOffset != maxLatOffset;
-		boolean recalculateTop = lastTopOffset != topOffset;
-		boolean recalculateBottom = lastBottomOffset != bottomOffset;
-
-		Rectangle lonRectangle = new Rectangle(0, 0, dataProvider.getYSize(), dataProvider.getZSize());
-		Rectangle latRectangle = new Rectangle(0, 0, dataProvider.getXSize(), dataProvider.getZSize());
-		Rectangle elevationRectangle = new Rectangle(0, 0, dataProvider.getXSize(), dataProvider.getYSize());
-		double topPercent = topOffset / (double) Math.max(dataProvider.getZSize() - 1, 1);
-		double bottomPercent = bottomSlice / (double) Math.max(dataProvider.getZSize() - 1, 1);
-
-		if (recalculateMinLon)
+		VolumeSlice minLon =
+				lastMinLonOffset != minLonOffset ? requestSlice(minLonCurtain, 0, minLonOffset, lastMinLonOffset)
+						: null;
+		VolumeSlice maxLon =
+				lastMaxLonOffset != maxLonOffset ? requestSlice(maxLonCurtain, 0, lastX - maxLonOffset,
+						lastMaxLonOffset < 0 ? -1 : lastX - lastMaxLonOffset) : null;
+		VolumeSlice minLat =
+				lastMinLatOffset != minLatOffset ? requestSlice(minLatCurtain, 1, minLatOffset, lastMinLatOffset)
+						: null;
+		VolumeSlice maxLat =
+				lastMaxLatOffset != maxLatOffset ? requestSlice(maxLatCurtain, 1, lastY - maxLatOffset,
+						lastMaxLatOffset < 0 ? -1 : lastY - lastMaxLatOffset) : null;
+		VolumeSlice top = lastTopOffset != topOffset ? requestSlice(topSurface, 2, topOffset, lastTopOffset) : null;
+		VolumeSlice bottom =
+				lastBottomOffset != bottomOffset ? requestSlice(bottomSurface, 2, lastZ - bottomOffset,
+						lastBottomOffset < 0 ? -1 : lastZ - lastBottomOffset) : null;
+
+		if (minLon != null)
 		{
 			minLonClipDirty = true;
-
-			TopBottomFastShape newMinLonCurtain = dataProvider.createLongitudeCurtain(minLonOffset);
-			minLonCurtain.setPositions(newMinLonCurtain.getPositions());
-
-			updateTexture(generateTexture(0, minLonOffset, lonRectangle), minLonTexture, minLonCurtain);
-			lastMinLonOffset = minLonOffset;
+			minLonCurtain.setPositions(minLon.getCurtainPositions());
+			updateTexture(minLon.getImage(), minLonTexture, minLonCurtain);
+			lastMinLonOffset = minLon.getPosition();
 		}
-		if (recalculateMaxLon)
+		if (maxLon != null)
 		{
 			maxLonClipDirty = true;
-
-			TopBottomFastShape newMaxLonCurtain =
-					dataProvider.createLongitudeCurtain(dataProvider.getXSize() - 1 - maxLonOffset);
-			maxLonCurtain.setPositions(newMaxLonCurtain.getPositions());
-
-			updateTexture(generateTexture(0, maxLonSlice, lonRectangle), maxLonTexture, maxLonCurtain);
-			lastMaxLonOffset = maxLonOffset;
+			maxLonCurtain.setPositions(maxLon.getCurtainPositions());
+			updateTexture(maxLon.getImage(), maxLonTexture, maxLonCurtain);
+			lastMaxLonOffset = lastX - maxLon.getPosition();
 		}
-		if (recalculateMinLat)
+		if (minLat != null)
 		{
 			minLatClipDirty = true;
-
-			TopBottomFastShape newMinLatCurtain = dataProvider.createLatitudeCurtain(minLatOffset);
-			minLatCurtain.setPositions(newMinLatCurtain.getPositions());
-
-			updateTexture(generateTexture(1, minLatOffset, latRectangle), minLatTexture, minLatCurtain);
-			lastMinLatOffset = minLatOffset;
+			minLatCurtain.setPositions(minLat.getCurtainPositions());
+			updateTexture(minLat.getImage(), minLatTexture, minLatCurtain);
+			lastMinLatOffset = minLat.getPosition();
 		}
-		if (recalculateMaxLat)
+		if (maxLat != null)
 		{
 			maxLatClipDirty = true;
-
-			TopBottomFastShape newMaxLatCurtain =
-					dataProvider.createLatitudeCurtain(dataProvider.getYSize() - 1 - maxLatOffset);
-			maxLatCurtain.setPositions(newMaxLatCurtain.getPositions());
-
-			updateTexture(generateTexture(1, maxLatSlice, latRectangle), maxLatTexture, maxLatCurtain);
-			lastMaxLatOffset = maxLatOffset;
+			maxLatCurtain.setPositions(maxLat.getCurtainPositions());
+			updateTexture(maxLat.getImage(), maxLatTexture, maxLatCurtain);
+			lastMaxLatOffset = lastY - maxLat.getPosition();
 		}
-		if (recalculateTop)
+		if (top != null)
 		{
 			topClipDirty = true;
-			double elevation = -dataProvider.getDepth() * topPercent;
+			updateTexture(top.getImage(), topTexture, topSurface);
+			lastTopOffset = top.getPosition();
+		}
+		if (bottom != null)
+		{
+			bottomClipDirty = true;
+			updateTexture(bottom.getImage(), bottomTexture, bottomSurface);
+			lastBottomOffset = lastZ - bottom.getPosition();
+		}
 
-			updateTexture(generateTexture(2, topOffset, elevationRectangle), topTexture, topSurface);
-			lastTopOffset = topOffset;
+		if (top != null || bottom != null)
+		{
+			double topPercent = lastTopOffset / (double) Math.max(lastZ, 1);
+			double bottomPercent = (lastZ - lastBottomOffset) / (double) Math.max(lastZ, 1);
 
-			topSurface.setElevation(elevation);
-			minLonCurtain.setTopElevationOffset(elevation);
-			maxLonCurtain.setTopElevationOffset(elevation);
-			minLatCurtain.setTopElevationOffset(elevation);
-			maxLatCurtain.setTopElevationOffset(elevation);
+			if (top != null)
+			{
+				double elevation = -dataProvider.getDepth() * topPercent;
+				topSurface.setElevation(elevation);
+				minLonCurtain.setTopElevationOffset(elevation);
+				maxLonCurtain.setTopElevationOffset(elevation);
+				minLatCurtain.setTopElevationOffset(elevation);
+				maxLatCurtain.setTopElevationOffset(elevation);
+			}
+			if (bottom != null)
+			{
+				double elevation = -dataProvider.getDepth() * bottomPercent;
+				bottomSurface.setElevation(elevation);
+				minLonCurtain.setBottomElevationOffset(elevation);
+				maxLonCurtain.setBottomElevationOffset(elevation);
+				minLatCurtain.setBottomElevationOffset(elevation);
+				maxLatCurtain.setBottomElevationOffset(elevation);
+			}
 
 			recalculateTextureMatrix(topPercent, bottomPercent);
 		}
-		if (recalculateBottom)
+	}
+
+	/**
+	 * Find the slice to display on a surface. If the requested slice is in the
+	 * {@link #sliceCache}, it is returned. Otherwise it is generated in the
+	 * background (replacing any slice still waiting to be generated for the
+	 * same surface), and the layer is redrawn once it is ready; in the
+	 * meantime, the nearest cached slice is returned if it is nearer than the
+	 * displayed slice. If the surface isn't displaying a slice yet, the slice
+	 * is generated immediately.
+	 * 
+	 * @param surface
+	 *            Surface that will display the slice
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice)
+	 * @param position
+	 *            Index of the requested slice along the axis
+	 * @param displayedPosition
+	 *            Index of the slice currently displayed by the surface (-1 if
+	 *            none)
+	 * @return Slice to display, or null if the displayed slice should be kept
+	 */
+	protected VolumeSlice requestSlice(final Object surface, final int axis, final int position,
+			int displayedPosition)
+	{
+		VolumeSlice slice = sliceCache.get(axis, position);
+		if (slice != null)
 		{
-			bottomClipDirty = true;
-			double elevation = -dataProvider.getDepth() * bottomPercent;
+			return slice;
+		}
 
-			updateTexture(generateTexture(2, bottomSlice, elevationRectangle), bottomTexture, bottomSurface);
-			lastBottomOffset = bottomOffset;
+		if (displayedPosition < 0)
+		{
+			slice = generateSlice(axis, position);
+			sliceCache.put(slice);
+			return slice;
+		}
 
-			bottomSurface.setElevation(elevation);
-			minLonCurtain.setBottomElevationOffset(elevation);
-			maxLonCurtain.setBottomElevationOffset(elevation);
-			minLatCurtain.setBottomElevationOffset(elevation);
-			maxLatCurtain.setBottomElevationOffset(elevation);
+		synchronized (requestedSlices)
+		{
+			Integer requested = requestedSlices.get(surface);
+			if (requested == null || requested != position)
+			{
+				requestedSlices.put(surface, position);
+				SliceGenerator.run(surface, new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						sliceCache.put(generateSlice(axis, position));
+						synchronized (requestedSlices)
+						{
+							Integer requested = requestedSlices.get(surface);
+							if (requested != null && requested == position)
+							{
+								requestedSlices.remove(surface);
+							}
+						}
+						if (wwd != null)
+						{
+							wwd.redraw();
+						}
+					}
+				});
+			}
+		}
 
-			recalculateTextureMatrix(topPercent, bottomPercent);
+		VolumeSlice nearest = sliceCache.getNearest(axis, position);
+		if (nearest != null && Math.abs(nearest.getPosition() - position) < Math.abs(displayedPosition - position))
+		{
+			return nearest;
 		}
+		return null;
+	}
+
+	/**
+	 * Generate a slice through the volume: its texture, and for longitude and
+	 * latitude slices, the positions of its curtain. Can be called from any
+	 * thread.
+	 * 
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice)
+	 * @param position
+	 *            Index of the slice along the axis
+	 * @return Generated slice
+	 */
+	protected VolumeSlice generateSlice(int axis, int position)
+	{
+		Rectangle rectangle;
+		List<Position> curtainPositions = null;
+		if (axis == 0)
+		{
+			rectangle = new Rectangle(0, 0, dataProvider.getYSize(), dataProvider.getZSize());
+			curtainPositions = dataProvider.createLongitudeCurtain(position).getPositions();
+		}
+		else if (axis == 1)
+		{
+			rectangle = new Rectangle(0, 0, dataProvider.getXSize(), dataProvider.getZSize());
+			curtainPositions = dataProvider.createLatitudeCurtain(position).getPositions();
+		}
+		else
+		{
+			rectangle = new Rectangle(0, 0, dataProvider.getXSize(), dataProvider.getYSize());
+		}
+		return new VolumeSlice(axis, position, generateTexture(axis, position, rectangle), curtainPositions);
 	}
 
 	/**
@@ -401,7 +530,8 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 	/**
 	 * Recalculate the clipping planes used to clip the surfaces when the user
-	 * drags them.
+	 * drags them. The planes are calculated from the displayed slices (which
+	 * can lag behind the requested slices, see {@link #recalculateSurfaces()}).
 	 * 
 	 * @param dc
 	 */
@@ -431,21 +561,21 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		if (!(minLon || maxLon || minLat || maxLat))
 			return;
 
-		int maxLonSlice = dataProvider.getXSize() - 1 - maxLonOffset;
-		int maxLatSlice = dataProvider.getYSize() - 1 - maxLatOffset;
-		int bottomSlice = dataProvider.getZSize() - 1 - bottomOffset;
+		int maxLonSlice = dataProvider.getXSize() - 1 - lastMaxLonOffset;
+		int maxLatSlice = dataProvider.getYSize() - 1 - lastMaxLatOffset;
+		int bottomSlice = dataProvider.getZSize() - 1 - lastBottomOffset;
 
 		double top = dataProvider.getTop();
 		double depth = dataProvider.getDepth();
 
-		double topPercent = topOffset / (double) Math.max(dataProvider.getZSize() - 1, 1);
+		double topPercent = lastTopOffset / (double) Math.max(dataProvider.getZSize() - 1, 1);
 		double bottomPercent = bottomSlice / (double) Math.max(dataProvider.getZSize() - 1, 1);
 		double topElevation = top - topPercent * depth;
 		double bottomElevation = top - bottomPercent * depth;
 
-		Position swPosTop = dataProvider.getPosition(minLonOffset, minLatOffset);
-		Position nwPosTop = dataProvider.getPosition(minLonOffset, maxLatSlice);
-		Position sePosTop = dataProvider.getPosition(maxLonSlice, minLatOffset);
+		Position swPosTop = dataProvider.getPosition(lastMinLonOffset, lastMinLatOffset);
+		Position nwPosTop = dataProvider.getPosition(lastMinLonOffset, maxLatSlice);
+		Position sePosTop = dataProvider.getPosition(maxLonSlice, lastMinLatOffset);
 		Position nePosTop = dataProvider.getPosition(maxLonSlice, maxLatSlice);
 
 		if (depth != 0 && dc.getVerticalExaggeration() > 0)
@@ -482,28 +612,28 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 		if (minLon)
 		{
-			Position middlePos = dataProvider.getPosition(minLonOffset, (maxLatSlice + minLatOffset) / 2);
+			Position middlePos = dataProvider.getPosition(lastMinLonOffset, (maxLatSlice + lastMinLatOffset) / 2);
 			middlePos = midpointPositionIfEqual(middlePos, nwPosTop, swPosTop);
 			insertClippingPlaneForLatLons(dc, topClippingPlanes, 0, middlePos, nwPosTop, swPosTop, topElevation);
 			insertClippingPlaneForLatLons(dc, bottomClippingPlanes, 0, middlePos, nwPosTop, swPosTop, bottomElevation);
 		}
 		if (maxLon)
 		{
-			Position middlePos = dataProvider.getPosition(maxLonSlice, (maxLatSlice + minLatOffset) / 2);
+			Position middlePos = dataProvider.getPosition(maxLonSlice, (maxLatSlice + lastMinLatOffset) / 2);
 			middlePos = midpointPositionIfEqual(middlePos, sePosTop, nePosTop);
 			insertClippingPlaneForLatLons(dc, topClippingPlanes, 4, middlePos, sePosTop, nePosTop, topElevation);
 			insertClippingPlaneForLatLons(dc, bottomClippingPlanes, 4, middlePos, sePosTop, nePosTop, bottomElevation);
 		}
 		if (minLat)
 		{
-			Position middlePos = dataProvider.getPosition((maxLonSlice + minLonOffset) / 2, minLatOffset);
+			Position middlePos = dataProvider.getPosition((maxLonSlice + lastMinLonOffset) / 2, lastMinLatOffset);
 			middlePos = midpointPositionIfEqual(middlePos, swPosTop, sePosTop);
 			insertClippingPlaneForLatLons(dc, topClippingPlanes, 8, middlePos, swPosTop, sePosTop, topElevation);
 			insertClippingPlaneForLatLons(dc, bottomClippingPlanes, 8, middlePos, swPosTop, sePosTop, bottomElevation);
 		}
 		if (maxLat)
 		{
-			Position middlePos = dataProvider.getPosition((maxLonSlice + minLonOffset) / 2, maxLatSlice);
+			Position middlePos = dataProvider.getPosition((maxLonSlice + lastMinLonOffset) / 2, maxLatSlice);
 			middlePos = midpointPositionIfEqual(middlePos, nePosTop, nwPosTop);
 			insertClippingPlaneForLatLons(dc, topClippingPlanes, 12, middlePos, nePosTop, nwPosTop, topElevation);
 			insertClippingPlaneForLatLons(dc, bottomClippingPlanes, 12, middlePos, nePosTop, nwPosTop, bottomElevation);
@@ -631,8 +761,14 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected BufferedImage generateTexture(int axis, int position, Rectangle rectangle)
 	{
 		BufferedImage image = new BufferedImage(rectangle.width, rectangle.height, BufferedImage.TYPE_INT_ARGB);
+		//write the colors straight into the image's raster, one row at a time
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		float[] row = new float[rectangle.width];
 		float minimum = dataProvider.getMinValue();
 		float maximum = dataProvider.getMaxValue();
+		float noDataValue = dataProvider.getNoDataValue();
+		int noDataRGB = noDataColor != null ? noDataColor.getRGB() : 0;
+		ColorMapLookupTable lookupTable = getColorMapLookupTable();
 		for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++)
 		{
 			for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++)
@@ -640,21 +776,50 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 				int vx = axis == 2 ? x : axis == 1 ? x : position;
 				int vy = axis == 2 ? y : axis == 1 ? position : x;
 				int vz = axis == 2 ? position : y;
-				float value = dataProvider.getValue(vx, vy, vz);
-				int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
-				if (value != dataProvider.getNoDataValue())
+				row[x - rectangle.x] = dataProvider.getValue(vx, vy, vz);
+			}
+
+			int offset = (y - rectangle.y) * rectangle.width;
+			if (lookupTable != null)
+			{
+				lookupTable.getRGBs(row, 0, pixels, offset, row.length, minimum, maximum, noDataValue, noDataRGB);
+			}
+			else
+			{
+				for (int i = 0; i < row.length; i++)
 				{
-					if (colorMap != null)
-						rgb = colorMap.calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
-					else
-						rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
+					float value = row[i];
+					pixels[offset + i] =
+							value != noDataValue ? Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f) : noDataRGB;
 				}
-				image.setRGB(x - rectangle.x, y - rectangle.y, rgb);
 			}
 		}
 		return image;
 	}
 
+	/**
+	 * @return Lookup table compiled from the {@link #colorMap}, used when
+	 *         generating textures. Null if there is no color map.
+	 */
+	protected synchronized ColorMapLookupTable getColorMapLookupTable()
+	{
+		if (colorMap == null)
+		{
+			return null;
+		}
+		if (colorMapLookupTable == null || colorMapLookupTableSource != colorMap)
+		{
+			if (colorMapLookupTable != null)
+			{
+				//cached slices were colored using the old color map
+				sliceCache.clear();
+			}
+			colorMapLookupTable = colorMap.createLookupTable();
+			colorMapLookupTableSource = colorMap;
+		}
+		return colorMapLookupTable;
+	}
+
 	/**
 	 * Update the given {@link TextureRenderer} with the provided image, and
 	 * sets the {@link FastShape}'s texture it.
@@ -692,6 +857,12 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		return coordinateTransformation;
 	}
 
+	@Override
+	public String getCoordinateSystem()
+	{
+		return coordinateSystem;
+	}
+
 	@Override
 	protected void doPick(DrawContext dc, Point point)
 	{
@@ -1201,4 +1372,30 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			return -Double.compare(d1, d2);
 		}
 	}
+
+	/**
+	 * Generates the volume slices of all volume layers in the background,
+	 * coalescing requests per surface. The number of threads can be configured
+	 * using {@link AVKeyMore#VOLUME_SLICE_GENERATOR_THREADS}.
+	 */
+	protected static class SliceGenerator
+	{
+		private static final CoalescingExecutor executor = new CoalescingExecutor(SliceGenerator.class.getName(),
+				Configuration.getIntegerValue(AVKeyMore.VOLUME_SLICE_GENERATOR_THREADS,
+						DEFAULT_SLICE_GENERATOR_THREADS));
+
+		public static void run(Object owner, Runnable runnable)
+		{
+			executor.run(owner, runnable);
+		}
+	}
+
+	/**
+	 * @return The executor used to generate the volume slices of all volume
+	 *         layers (for instrumentation)
+	 */
+	public static CoalescingExecutor getSliceGenerator()
+	{
+		return SliceGenerator.executor;
+	}
 }
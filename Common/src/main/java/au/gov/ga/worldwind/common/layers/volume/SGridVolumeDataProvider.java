@@ -17,6 +17,7 @@ package au.gov.ga.worldwind.common.layers.volume;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.Logging;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -29,6 +30,7 @@ import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -36,16 +38,25 @@ import java.util.zip.ZipFile;
 
 import org.gdal.osr.CoordinateTransformation;
 
+import au.gov.ga.worldwind.common.layers.data.BinaryCacheFile;
+import au.gov.ga.worldwind.common.util.PositionList;
 import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * {@link VolumeDataProvider} implementation which reads volume data from a
  * GOCAD SGrid (.sg) file.
+ * <p/>
+ * The parsed volume is cached in a {@link BinaryCacheFile} alongside the
+ * layer's data cache. Later loads of the same (unmodified) SGrid read the
+ * cache file into a direct buffer, and use the volume data directly from it.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 {
+	private final static String CACHE_TYPE = "SGridVolume";
+	private final static int CACHE_VERSION = 1;
+
 	private final static Pattern paintedVariablePattern = Pattern.compile("\\*painted\\*variable:\\s*(.*?)\\s*");
 	private final static Pattern axisPattern = Pattern
 			.compile("AXIS_(\\S+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+).*");
@@ -62,11 +73,37 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 
 	@Override
 	protected boolean doLoadData(URL url, VolumeLayer layer)
+	{
+		File cacheFile = BinaryCacheFile.getCacheFile(getDataFileStore(), layer.getDataCacheName());
+		String cacheKey = url.toExternalForm() + "|" + layer.getCoordinateSystem();
+		if (!readCache(cacheFile, cacheKey))
+		{
+			List<File> sources = readData(url, layer);
+			if (sources == null)
+			{
+				return false;
+			}
+			writeCache(cacheFile, cacheKey, sources);
+		}
+
+		layer.dataAvailable(this);
+		return true;
+	}
+
+	/**
+	 * Parse the volume from the SGrid file (or zip file containing an SGrid)
+	 * at the given url.
+	 * 
+	 * @return The files read (which the cache is validated against), or null
+	 *         if reading failed
+	 */
+	protected List<File> readData(URL url, VolumeLayer layer)
 	{
 		ZipFile zip = null;
+		File file = URLUtil.urlToFile(url);
+		File dataFile = null;
 		try
 		{
-			File file = URLUtil.urlToFile(url);
 
 			InputStream sgInputStream = null;
 			try
@@ -142,6 +179,7 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 					if (data.exists())
 					{
 						dataInputStream = new FileInputStream(data);
+						dataFile = data;
 					}
 				}
 				if (dataInputStream == null)
@@ -302,7 +340,7 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		catch (IOException e)
 		{
 			e.printStackTrace();
-			return false;
+			return null;
 		}
 		finally
 		{
@@ -328,8 +366,103 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 			e.printStackTrace();
 		}*/
 
-		layer.dataAvailable(this);
-		return true;
+		return BinaryCacheFile.sources(file, dataFile);
+	}
+
+	/**
+	 * Read the volume from the given cache file.
+	 * 
+	 * @return True if the cache file was valid and the volume was read
+	 */
+	protected boolean readCache(File cacheFile, String cacheKey)
+	{
+		try
+		{
+			BinaryCacheFile.Input input = BinaryCacheFile.open(cacheFile, CACHE_TYPE, CACHE_VERSION, cacheKey);
+			if (input == null)
+			{
+				return false;
+			}
+			int xSize = input.getInt(), ySize = input.getInt(), zSize = input.getInt();
+			double minLatitude = input.getDouble(), maxLatitude = input.getDouble();
+			double minLongitude = input.getDouble(), maxLongitude = input.getDouble();
+			double top = input.getDouble(), depth = input.getDouble();
+			float noDataValue = input.getFloat(), minValue = input.getFloat(), maxValue = input.getFloat();
+			boolean reverseX = input.getBoolean(), reverseY = input.getBoolean(), reverseZ = input.getBoolean();
+			double[] coordinates = input.getDoubles();
+			FloatBuffer data = input.getFloatBuffer();
+			if (coordinates.length != xSize * ySize * 3 || data.limit() != xSize * ySize * zSize)
+			{
+				return false;
+			}
+
+			this.xSize = xSize;
+			this.ySize = ySize;
+			this.zSize = zSize;
+			this.sector = Sector.fromDegrees(minLatitude, maxLatitude, minLongitude, maxLongitude);
+			this.top = top;
+			this.depth = depth;
+			this.noDataValue = noDataValue;
+			this.minValue = minValue;
+			this.maxValue = maxValue;
+			this.reverseX = reverseX;
+			this.reverseY = reverseY;
+			this.reverseZ = reverseZ;
+			this.positions = new PositionList(coordinates, xSize * ySize);
+			this.data = data;
+			return true;
+		}
+		catch (Exception e)
+		{
+			Logging.logger().log(Level.WARNING, "Error reading SGrid cache file: " + cacheFile, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Write the parsed volume to the given cache file.
+	 */
+	protected void writeCache(File cacheFile, String cacheKey, List<File> sources)
+	{
+		if (cacheFile == null)
+		{
+			return;
+		}
+
+		PositionList positionList = new PositionList(positions.size());
+		positionList.addAll(positions);
+
+		BinaryCacheFile.Output output = null;
+		try
+		{
+			output = BinaryCacheFile.create(cacheFile, CACHE_TYPE, CACHE_VERSION, cacheKey, sources);
+			output.putInt(xSize);
+			output.putInt(ySize);
+			output.putInt(zSize);
+			output.putDouble(sector.getMinLatitude().degrees);
+			output.putDouble(sector.getMaxLatitude().degrees);
+			output.putDouble(sector.getMinLongitude().degrees);
+			output.putDouble(sector.getMaxLongitude().degrees);
+			output.putDouble(top);
+			output.putDouble(depth);
+			output.putFloat(noDataValue);
+			output.putFloat(minValue);
+			output.putFloat(maxValue);
+			output.putBoolean(reverseX);
+			output.putBoolean(reverseY);
+			output.putBoolean(reverseZ);
+			output.putDoubles(positionList.getCoordinates(), positionList.size() * 3);
+			output.putFloats(data);
+			output.commit();
+		}
+		catch (IOException e)
+		{
+			if (output != null)
+			{
+				output.abort();
+			}
+			Logging.logger().log(Level.WARNING, "Error writing SGrid cache file: " + cacheFile, e);
+		}
 	}
 
 	protected void parseLine(String line)
@@ -42,4 +42,11 @@ public interface VolumeLayer extends DataLayer
 	 *         required.
 	 */
 	CoordinateTransformation getCoordinateTransformation();
+
+	/**
+	 * @return Definition of the coordinate system that the
+	 *         {@link #getCoordinateTransformation()} projects from. Null if no
+	 *         re-projection is required.
+	 */
+	String getCoordinateSystem();
 }
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A slice through a volume, generated by the {@link BasicVolumeLayer}.
+ * Contains the slice's texture, and for longitude and latitude slices, the
+ * positions of the curtain that displays the slice.
+ */
+public class VolumeSlice
+{
+	/**
+	 * Approximate size in bytes of each curtain position (a
+	 * {@link TopBottomPosition} and its angles).
+	 */
+	private final static int POSITION_SIZE = 128;
+
+	private final int axis;
+	private final int position;
+	private final BufferedImage image;
+	private final List<Position> curtainPositions;
+
+	/**
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice)
+	 * @param position
+	 *            Index of the slice along the axis
+	 * @param image
+	 *            Texture of the slice
+	 * @param curtainPositions
+	 *            Positions of the curtain that displays the slice (null for
+	 *            elevation slices)
+	 */
+	public VolumeSlice(int axis, int position, BufferedImage image, List<Position> curtainPositions)
+	{
+		this.axis = axis;
+		this.position = position;
+		this.image = image;
+		this.curtainPositions = curtainPositions;
+	}
+
+	public int getAxis()
+	{
+		return axis;
+	}
+
+	public int getPosition()
+	{
+		return position;
+	}
+
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	public List<Position> getCurtainPositions()
+	{
+		return curtainPositions;
+	}
+
+	/**
+	 * @return Approximate memory used by this slice, in bytes
+	 */
+	public long getSizeInBytes()
+	{
+		long size = (long) image.getWidth() * image.getHeight() * 4;
+		if (curtainPositions != null)
+		{
+			size += (long) curtainPositions.size() * POSITION_SIZE;
+		}
+		return size;
+	}
+}
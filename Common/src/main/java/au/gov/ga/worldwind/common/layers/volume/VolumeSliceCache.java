@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of recently generated {@link VolumeSlice}s, keyed by axis and
+ * position. When the total size of the slices exceeds the capacity, the least
+ * recently used slices are evicted.
+ * <p/>
+ * Thread-safe.
+ */
+public class VolumeSliceCache
+{
+	private final Map<Long, VolumeSlice> slices = new LinkedHashMap<Long, VolumeSlice>(16, 0.75f, true);
+	private final long capacity;
+	private long size = 0;
+
+	/**
+	 * @param capacity
+	 *            Maximum total size of the cached slices, in bytes
+	 */
+	public VolumeSliceCache(long capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return The cached slice at the given axis and position, or null if it
+	 *         is not cached
+	 */
+	public synchronized VolumeSlice get(int axis, int position)
+	{
+		return slices.get(key(axis, position));
+	}
+
+	/**
+	 * Find the cached slice along the given axis that is nearest to the given
+	 * position.
+	 * 
+	 * @return The nearest cached slice, or null if there are no cached slices
+	 *         along the axis
+	 */
+	public synchronized VolumeSlice getNearest(int axis, int position)
+	{
+		VolumeSlice nearest = null;
+		int nearestDistance = Integer.MAX_VALUE;
+		for (VolumeSlice slice : slices.values())
+		{
+			if (slice.getAxis() == axis)
+			{
+				int distance = Math.abs(slice.getPosition() - position);
+				if (distance < nearestDistance)
+				{
+					nearest = slice;
+					nearestDistance = distance;
+				}
+			}
+		}
+		if (nearest != null)
+		{
+			//mark the slice as recently used
+			slices.get(key(axis, nearest.getPosition()));
+		}
+		return nearest;
+	}
+
+	/**
+	 * Add a slice to the cache, replacing any slice at the same axis and
+	 * position, and evicting the least recently used slices if required.
+	 */
+	public synchronized void put(VolumeSlice slice)
+	{
+		VolumeSlice old = slices.put(key(slice.getAxis(), slice.getPosition()), slice);
+		if (old != null)
+		{
+			size -= old.getSizeInBytes();
+		}
+		size += slice.getSizeInBytes();
+
+		//evict the least recently used slices, but always keep the newest
+		Iterator<VolumeSlice> iterator = slices.values().iterator();
+		while (size > capacity && slices.size() > 1)
+		{
+			VolumeSlice eldest = iterator.next();
+			size -= eldest.getSizeInBytes();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Remove all slices from the cache.
+	 */
+	public synchronized void clear()
+	{
+		slices.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return Number of cached slices
+	 */
+	public synchronized int getCount()
+	{
+		return slices.size();
+	}
+
+	/**
+	 * @return Total size of the cached slices, in bytes
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	private static Long key(int axis, int position)
+	{
+		return ((long) axis << 32) | (position & 0xffffffffL);
+	}
+}
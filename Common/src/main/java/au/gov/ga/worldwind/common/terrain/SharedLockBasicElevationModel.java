@@ -45,12 +45,18 @@ import au.gov.ga.worldwind.common.util.IOUtil;
  * and write to the same data cache name and synchronize with each other on the
  * same fileLock object. (Note: this has not yet been added to Bulk Download
  * facility).
+ * <p/>
+ * Elevation tiles are read and written while synchronized on a per-tile lock
+ * from {@link FileLockSharer#getTileLocks(String)}, rather than the shared
+ * fileLock, so that loads of different tiles don't queue behind each other.
+ * The shared fileLock is still used for writing the configuration file.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class SharedLockBasicElevationModel extends URLTransformerBasicElevationModel
 {
 	protected final Object fileLock;
+	protected final FileLockSharer.TileLocks tileLocks;
 	protected boolean extractZipEntry = false;
 
 	public SharedLockBasicElevationModel(Element domElement, AVList params)
@@ -67,6 +73,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 			this.setExtractZipEntry(b);
 
 		fileLock = FileLockSharer.getLock(getLevels().getFirstLevel().getCacheName());
+		tileLocks = FileLockSharer.getTileLocks(getLevels().getFirstLevel().getCacheName());
 	}
 	
 	protected static AVList getMoreElevationModelConfigParams(Element domElement, AVList params)
@@ -100,30 +107,32 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 	}
 
 	/**
-	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * Extension to superclass' DownloadPostProcessor which returns the tile's
+	 * lock from this class' tileLocks instead of the superclass' fileLock.
 	 * 
 	 * @author Michael de Hoog
 	 */
 	protected static class DownloadPostProcessor extends BasicElevationModel.DownloadPostProcessor
 	{
 		private final SharedLockBasicElevationModel em;
+		private final Tile tile;
 
 		public DownloadPostProcessor(Tile tile, SharedLockBasicElevationModel em)
 		{
 			super(tile, em);
 			this.em = em;
+			this.tile = tile;
 		}
 
 		@Override
 		protected Object getFileLock()
 		{
-			return em.fileLock;
+			return em.tileLocks.getLock(tile.getPath());
 		}
 	}
 
 	/* ***************************************************************************************************
-	 * Below here is copied from BasicElevationModel, with some modifications to use the shared fileLock *
+	 * Below here is copied from BasicElevationModel, with some modifications to use the shared locks    *
 	 *************************************************************************************************** */
 
 	@Override
@@ -131,7 +140,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 	{
 		try
 		{
-			synchronized (this.fileLock)
+			synchronized (this.tileLocks.getLock(url.getPath()))
 			{
 				return IOUtil.readByteBuffer(url, getElevationDataType(), getElevationDataByteOrder());
 			}
@@ -27,10 +27,18 @@ public interface AVKeyMore extends AVKey
 {
 	final static String CONTEXT_URL = "au.gov.ga.worldwind.AVKeyMore.ContextURL";
 	final static String DELEGATE_KIT = "au.gov.ga.worldwind.AVKeyMore.DelegateKit";
+	final static String DOWNLOADER_CACHE_SIZE = "au.gov.ga.worldwind.AVKeyMore.DownloaderCacheSize";
 	final static String DOWNLOADER_CONNECT_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderConnectTimeout";
+	final static String DOWNLOADER_MAX_CONNECTIONS_PER_HOST = "au.gov.ga.worldwind.AVKeyMore.DownloaderMaxConnectionsPerHost";
+	final static String DOWNLOADER_QUEUE_SIZE = "au.gov.ga.worldwind.AVKeyMore.DownloaderQueueSize";
 	final static String DOWNLOADER_READ_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderReadTimeout";
+	final static String DOWNLOADER_STALE_REQUEST_LIMIT = "au.gov.ga.worldwind.AVKeyMore.DownloaderStaleRequestLimit";
 	final static String EXPIRY_TIMESPAN = "au.gov.ga.worldwind.AVKeyMore.ExpiryTimespan";
 	final static String EXPIRY_START_TIME = "au.gov.ga.worldwind.AVKeyMore.ExpiryStartTime";
+	final static String FAST_SHAPE_INDEX_UPDATER_THREADS = "au.gov.ga.worldwind.AVKeyMore.FastShapeIndexUpdaterThreads";
+	final static String FAST_SHAPE_VERTEX_UPDATER_THREADS = "au.gov.ga.worldwind.AVKeyMore.FastShapeVertexUpdaterThreads";
+	final static String VOLUME_SLICE_CACHE_SIZE = "au.gov.ga.worldwind.AVKeyMore.VolumeSliceCacheSize";
+	final static String VOLUME_SLICE_GENERATOR_THREADS = "au.gov.ga.worldwind.AVKeyMore.VolumeSliceGeneratorThreads";
 	final static String MINIMUM_DISTANCE = "au.gov.ga.worldwind.AVKeyMore.MinimumDistance";
 	final static String LINE_WIDTH = "au.gov.ga.worldwind.AVKeyMore.LineWidth";
 	final static String POINT_SIZE = "au.gov.ga.worldwind.AVKeyMore.PointSize";
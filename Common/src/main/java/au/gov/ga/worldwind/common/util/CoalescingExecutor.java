@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor that runs update tasks for a set of owners (eg shapes) on a pool of
+ * daemon threads. Tasks are coalesced per owner: if a task is submitted for an
+ * owner that already has a task waiting to run, the waiting task is replaced
+ * by the new one, so only the latest update is performed. Tasks for the same
+ * owner never run concurrently; tasks for different owners run in parallel.
+ * <p/>
+ * Counts and queue latencies are recorded for instrumentation.
+ */
+public class CoalescingExecutor
+{
+	private final ThreadPoolExecutor executor;
+	private final Map<Object, OwnerTask> tasks = new IdentityHashMap<Object, OwnerTask>();
+
+	private final AtomicLong submittedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicLong totalRunTime = new AtomicLong();
+
+	/**
+	 * @param name
+	 *            Name of the executor's threads
+	 * @param threads
+	 *            Number of threads
+	 */
+	public CoalescingExecutor(final String name, int threads)
+	{
+		threads = Math.max(1, threads);
+		executor =
+				new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+						new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+						{
+							private final AtomicInteger count = new AtomicInteger();
+
+							@Override
+							public Thread newThread(Runnable r)
+							{
+								Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+								thread.setDaemon(true);
+								return thread;
+							}
+						});
+	}
+
+	/**
+	 * Run the given task for the given owner. If the owner already has a task
+	 * waiting to run, it is replaced by this task. If the owner has a task
+	 * currently running, this task is run after it completes.
+	 * 
+	 * @param owner
+	 *            Owner of the task (compared by identity)
+	 * @param runnable
+	 *            Task to run
+	 */
+	public void run(Object owner, Runnable runnable)
+	{
+		submittedCount.incrementAndGet();
+		synchronized (tasks)
+		{
+			OwnerTask task = tasks.get(owner);
+			if (task == null)
+			{
+				task = new OwnerTask(owner);
+				tasks.put(owner, task);
+			}
+
+			if (task.pending != null)
+			{
+				coalescedCount.incrementAndGet();
+			}
+			else
+			{
+				task.pendingSince = System.nanoTime();
+			}
+			task.pending = runnable;
+
+			if (!task.scheduled)
+			{
+				task.scheduled = true;
+				executor.execute(task);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of threads
+	 */
+	public int getThreadCount()
+	{
+		return executor.getCorePoolSize();
+	}
+
+	/**
+	 * @return Number of owners waiting for a thread to run their task
+	 */
+	public int getQueueLength()
+	{
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return Number of tasks currently running
+	 */
+	public int getActiveCount()
+	{
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return Number of tasks submitted
+	 */
+	public long getSubmittedCount()
+	{
+		return submittedCount.get();
+	}
+
+	/**
+	 * @return Number of tasks that were replaced by a newer task for the same
+	 *         owner before they ran
+	 */
+	public long getCoalescedCount()
+	{
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return Number of tasks that have been run
+	 */
+	public long getCompletedCount()
+	{
+		return completedCount.get();
+	}
+
+	/**
+	 * @return Average time (in milliseconds) between a task being submitted
+	 *         for an idle owner and it starting to run
+	 */
+	public double getAverageLatency()
+	{
+		long completed = completedCount.get();
+		return completed == 0 ? 0 : totalLatency.get() / (completed * 1e6);
+	}
+
+	/**
+	 * @return Maximum time (in milliseconds) between a task being submitted
+	 *         for an idle owner and it starting to run
+	 */
+	public double getMaxLatency()
+	{
+		return maxLatency.get() / 1e6;
+	}
+
+	/**
+	 * @return Average time (in milliseconds) taken to run a task
+	 */
+	public double getAverageRunTime()
+	{
+		long completed = completedCount.get();
+		return completed == 0 ? 0 : totalRunTime.get() / (completed * 1e6);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("threads=%d queued=%d active=%d submitted=%d coalesced=%d completed=%d "
+				+ "latency(avg/max)=%.1f/%.1fms run(avg)=%.1fms", getThreadCount(), getQueueLength(),
+				getActiveCount(), getSubmittedCount(), getCoalescedCount(), getCompletedCount(),
+				getAverageLatency(), getMaxLatency(), getAverageRunTime());
+	}
+
+	private void recordLatency(long latency)
+	{
+		totalLatency.addAndGet(latency);
+		long max;
+		while ((max = maxLatency.get()) < latency && !maxLatency.compareAndSet(max, latency))
+		{
+		}
+	}
+
+	/**
+	 * Runs the pending task of a single owner. Rescheduled (rather than
+	 * looping) if a new task is submitted while running, so that a frequently
+	 * updated owner can't starve the others.
+	 */
+	private class OwnerTask implements Runnable
+	{
+		private final Object owner;
+		private Runnable pending;
+		private long pendingSince;
+		private boolean scheduled;
+
+		public OwnerTask(Object owner)
+		{
+			this.owner = owner;
+		}
+
+		@Override
+		public void run()
+		{
+			Runnable runnable;
+			long start = System.nanoTime();
+			synchronized (tasks)
+			{
+				runnable = pending;
+				pending = null;
+				recordLatency(start - pendingSince);
+			}
+
+			try
+			{
+				runnable.run();
+			}
+			catch (Throwable t)
+			{
+				t.printStackTrace();
+			}
+			finally
+			{
+				totalRunTime.addAndGet(System.nanoTime() - start);
+				completedCount.incrementAndGet();
+
+				synchronized (tasks)
+				{
+					if (pending != null)
+					{
+						executor.execute(this);
+					}
+					else
+					{
+						scheduled = false;
+						tasks.remove(owner);
+					}
+				}
+			}
+		}
+	}
+}
@@ -28,6 +28,12 @@ import java.util.TreeMap;
  */
 public class ColorMap extends TreeMap<Double, Color>
 {
+	/**
+	 * Default number of entries in the table created by
+	 * {@link #createLookupTable()}.
+	 */
+	public final static int DEFAULT_LOOKUP_TABLE_SIZE = 4096;
+
 	private boolean interpolateHue = true;
 	private boolean valuesPercentages = false;
 
@@ -129,4 +135,29 @@ public class ColorMap extends TreeMap<Double, Color>
 			return calculateColorAsPercentage(value, minimum, maximum);
 		return calculateColor(value);
 	}
+
+	/**
+	 * Compile this color map into a lookup table of packed ARGB colors, with
+	 * {@link #DEFAULT_LOOKUP_TABLE_SIZE} entries.
+	 * 
+	 * @return Lookup table for this color map
+	 */
+	public ColorMapLookupTable createLookupTable()
+	{
+		return createLookupTable(DEFAULT_LOOKUP_TABLE_SIZE);
+	}
+
+	/**
+	 * Compile this color map into a lookup table of packed ARGB colors. This
+	 * should be used instead of the calculateColor functions when coloring a
+	 * large number of values.
+	 * 
+	 * @param size
+	 *            Number of entries in the table
+	 * @return Lookup table for this color map
+	 */
+	public ColorMapLookupTable createLookupTable(int size)
+	{
+		return new ColorMapLookupTable(this, size);
+	}
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+/**
+ * A {@link ColorMap} compiled into a fixed resolution table of packed ARGB
+ * colors, evenly spaced between the map's first and last values. The colors
+ * are calculated using the map's interpolation (so hue interpolation is baked
+ * into the table).
+ * <p/>
+ * Looking up a color in the table is a multiply and an array access, and
+ * doesn't create any objects, so this should be used when coloring large
+ * numbers of values. The color returned for a value is the color at the
+ * nearest table entry, so the table should have enough entries to make the
+ * quantization invisible.
+ * <p/>
+ * A lookup table is a snapshot: changes to the {@link ColorMap} after the
+ * table is created are not reflected in the table.
+ */
+public class ColorMapLookupTable
+{
+	private final int[] colors;
+	private final double minimum;
+	private final double maximum;
+	private final double scale;
+	private final boolean valuesPercentages;
+
+	/**
+	 * Compile a lookup table from the given color map.
+	 * 
+	 * @param colorMap
+	 *            Color map to compile
+	 * @param size
+	 *            Number of entries in the table
+	 */
+	public ColorMapLookupTable(ColorMap colorMap, int size)
+	{
+		if (size < 1)
+			throw new IllegalArgumentException("Lookup table size must be positive: " + size);
+
+		valuesPercentages = colorMap.isValuesPercentages();
+		if (colorMap.isEmpty())
+		{
+			minimum = maximum = 0;
+		}
+		else
+		{
+			minimum = colorMap.firstKey();
+			maximum = colorMap.lastKey();
+		}
+		if (maximum <= minimum)
+		{
+			size = 1;
+		}
+
+		colors = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			double value = size == 1 ? minimum : minimum + (maximum - minimum) * i / (size - 1);
+			colors[i] = colorMap.calculateColor(value).getRGB();
+		}
+		scale = size == 1 ? 0 : (size - 1) / (maximum - minimum);
+	}
+
+	/**
+	 * @return Number of entries in this table
+	 */
+	public int getSize()
+	{
+		return colors.length;
+	}
+
+	/**
+	 * Lookup the packed ARGB color for the given value. Values outside the
+	 * range of the color map get the first or last color, as in
+	 * {@link ColorMap#calculateColor(double)}.
+	 * 
+	 * @param value
+	 * @return Packed ARGB color at value
+	 */
+	public int getRGB(double value)
+	{
+		if (value > minimum)
+		{
+			if (value < maximum)
+			{
+				return colors[(int) ((value - minimum) * scale + 0.5)];
+			}
+			return colors[colors.length - 1];
+		}
+		if (value <= minimum)
+		{
+			return colors[0];
+		}
+		//NaN, which the color map sorts after all other values
+		return colors[colors.length - 1];
+	}
+
+	/**
+	 * Lookup the packed ARGB color for the given value. If the color map's
+	 * values are percentages, the value is first scaled between 0 and 1 using
+	 * the given minimum and maximum.
+	 * 
+	 * @param value
+	 * @param minimum
+	 * @param maximum
+	 * @return Packed ARGB color at value
+	 * @see ColorMap#calculateColorNotingIsValuesPercentages(double, double,
+	 *      double)
+	 */
+	public int getRGBNotingIsValuesPercentages(double value, double minimum, double maximum)
+	{
+		if (valuesPercentages)
+			return getRGB((value - minimum) / (maximum - minimum));
+		return getRGB(value);
+	}
+
+	/**
+	 * Convert an array of values to packed ARGB colors, scaling the values
+	 * between the given minimum and maximum if the color map's values are
+	 * percentages.
+	 * 
+	 * @param values
+	 *            Values to color
+	 * @param valuesOffset
+	 *            Index of the first value in the values array
+	 * @param rgbs
+	 *            Array to store the colors in (such as the data array of a
+	 *            {@link java.awt.image.DataBufferInt})
+	 * @param rgbsOffset
+	 *            Index in the rgbs array to store the first color in
+	 * @param count
+	 *            Number of values to color
+	 * @param minimum
+	 *            Value that maps to 0% if the values are percentages
+	 * @param maximum
+	 *            Value that maps to 100% if the values are percentages
+	 * @param noDataValue
+	 *            Values equal to this are given the noDataRGB color
+	 * @param noDataRGB
+	 *            Packed ARGB color to use for no-data values
+	 */
+	public void getRGBs(float[] values, int valuesOffset, int[] rgbs, int rgbsOffset, int count, double minimum,
+			double maximum, float noDataValue, int noDataRGB)
+	{
+		double offset = 0, multiplier = 1;
+		if (valuesPercentages)
+		{
+			offset = minimum;
+			multiplier = 1d / (maximum - minimum);
+		}
+		for (int i = 0; i < count; i++)
+		{
+			float value = values[valuesOffset + i];
+			rgbs[rgbsOffset + i] =
+					value == noDataValue ? noDataRGB : getRGB(valuesPercentages ? (value - offset) * multiplier
+							: value);
+		}
+	}
+}
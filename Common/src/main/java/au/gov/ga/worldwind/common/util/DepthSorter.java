@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Sorts primitives (points, triangles) by depth, farthest first, for
+ * rendering transparent geometry. Works on primitive arrays, and reuses its
+ * buffers between sorts.
+ * <p/>
+ * A full sort is a stable LSD radix sort on the float keys. If the previous
+ * sort was for the same number of primitives, the new keys are first sorted
+ * incrementally from the previous order using an insertion sort, which is
+ * close to O(n) when the order has changed little (ie the eye has only moved
+ * slightly). If the insertion sort needs too many moves, it is abandoned for a
+ * full radix sort.
+ * <p/>
+ * Not thread-safe.
+ */
+public class DepthSorter
+{
+	private static final int RADIX_BITS = 11;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+	private static final int MAX_INCREMENTAL_MOVES_PER_PRIMITIVE = 4;
+
+	private float[] keys = new float[0];
+	private int[] sortKeys = new int[0];
+	private int[] tempKeys = new int[0];
+	private int[] order = new int[0];
+	private int[] tempOrder = new int[0];
+	private final int[] counts = new int[RADIX_SIZE];
+	private int sortedCount = -1;
+
+	private long incrementalSortCount;
+	private long fullSortCount;
+
+	/**
+	 * Get the array to fill with the sort keys (eg squared distances from the
+	 * eye) of the given number of primitives, indexed by primitive. The
+	 * returned array may be longer than count.
+	 */
+	public float[] getKeys(int count)
+	{
+		if (keys.length < count)
+		{
+			keys = new float[count];
+			sortKeys = new int[count];
+			tempKeys = new int[count];
+			order = new int[count];
+			tempOrder = new int[count];
+			sortedCount = -1;
+		}
+		return keys;
+	}
+
+	/**
+	 * Sort the primitives by the keys in the array returned by
+	 * {@link #getKeys(int)}, largest key first.
+	 * 
+	 * @param count
+	 *            Number of primitives
+	 * @return Array containing the primitive indices in sorted order (only the
+	 *         first count elements are valid); owned by this sorter, and only
+	 *         valid until the next sort
+	 */
+	public int[] sort(int count)
+	{
+		getKeys(count);
+		if (count == sortedCount && sortIncremental(count))
+		{
+			incrementalSortCount++;
+		}
+		else
+		{
+			sortRadix(count);
+			fullSortCount++;
+		}
+		sortedCount = count;
+		return order;
+	}
+
+	/**
+	 * Forget the previous order, so that the next sort is a full sort.
+	 */
+	public void reset()
+	{
+		sortedCount = -1;
+	}
+
+	/**
+	 * @return Number of sorts that were performed incrementally from the
+	 *         previous order
+	 */
+	public long getIncrementalSortCount()
+	{
+		return incrementalSortCount;
+	}
+
+	/**
+	 * @return Number of sorts that required a full radix sort
+	 */
+	public long getFullSortCount()
+	{
+		return fullSortCount;
+	}
+
+	/**
+	 * Convert a float to an int whose unsigned order is the reverse of the
+	 * float's order (so that an ascending unsigned sort puts the largest keys
+	 * first).
+	 */
+	private static int toDescendingKey(float f)
+	{
+		int bits = Float.floatToIntBits(f);
+		int ascending = bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE;
+		return ~ascending;
+	}
+
+	private boolean sortIncremental(int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			sortKeys[i] = toDescendingKey(keys[order[i]]) ^ Integer.MIN_VALUE; //signed comparable
+		}
+
+		long maxMoves = (long) count * MAX_INCREMENTAL_MOVES_PER_PRIMITIVE;
+		long moves = 0;
+		for (int i = 1; i < count; i++)
+		{
+			int key = sortKeys[i];
+			if (sortKeys[i - 1] <= key)
+				continue;
+
+			int index = order[i];
+			int j = i - 1;
+			do
+			{
+				sortKeys[j + 1] = sortKeys[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+			while (j >= 0 && sortKeys[j] > key);
+			sortKeys[j + 1] = key;
+			order[j + 1] = index;
+
+			moves += i - 1 - j;
+			if (moves > maxMoves)
+				return false;
+		}
+		return true;
+	}
+
+	private void sortRadix(int count)
+	{
+		if (count == 0)
+			return;
+
+		int[] k = sortKeys, o = order, tk = tempKeys, to = tempOrder;
+		for (int i = 0; i < count; i++)
+		{
+			k[i] = toDescendingKey(keys[i]);
+			o[i] = i;
+		}
+
+		for (int shift = 0; shift < 32; shift += RADIX_BITS)
+		{
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < count; i++)
+			{
+				counts[(k[i] >>> shift) & RADIX_MASK]++;
+			}
+			if (counts[(k[0] >>> shift) & RADIX_MASK] == count)
+				continue; //all keys have the same digit; nothing to do for this pass
+
+			int total = 0;
+			for (int d = 0; d < RADIX_SIZE; d++)
+			{
+				int c = counts[d];
+				counts[d] = total;
+				total += c;
+			}
+			for (int i = 0; i < count; i++)
+			{
+				int dst = counts[(k[i] >>> shift) & RADIX_MASK]++;
+				tk[dst] = k[i];
+				to[dst] = o[i];
+			}
+
+			int[] swap = k;
+			k = tk;
+			tk = swap;
+			swap = o;
+			o = to;
+			to = swap;
+		}
+
+		sortKeys = k;
+		tempKeys = tk;
+		order = o;
+		tempOrder = to;
+	}
+}
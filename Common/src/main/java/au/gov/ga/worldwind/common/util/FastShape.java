@@ -15,6 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.util;
 
+import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.cache.Cacheable;
 import gov.nasa.worldwind.geom.Extent;
 import gov.nasa.worldwind.geom.LatLon;
@@ -22,6 +23,8 @@ import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Sphere;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.FlatGlobe;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.BasicWWTexture;
 import gov.nasa.worldwind.render.DrawContext;
@@ -37,12 +40,8 @@ import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.RandomAccess;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -65,6 +64,13 @@ import com.sun.opengl.util.texture.Texture;
  */
 public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 {
+	protected static final int DEFAULT_UPDATER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	//same conversion factor as Angle.fromDegrees()
+	private static final double DEGREES_TO_RADIANS = Math.PI / 180d;
+
+	//shapes with at least this many positions calculate their vertices in parallel chunks
+	protected static final int PARALLEL_CHUNK_SIZE = 32768;
+
 	//TODO add VBO support
 
 	protected final ReadWriteLock frontLock = new ReentrantReadWriteLock();
@@ -98,6 +104,17 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 	protected boolean verticesDirty = true;
 	protected Vec4 lastEyePoint = null;
 
+	//per-position terms cached by the ellipsoidal vertex calculation
+	protected double[] geodeticTerms;
+	protected Globe geodeticTermsGlobe;
+	protected LatLon geodeticTermsOffset;
+	//scratch arrays reused by the normal calculation
+	protected double[] normalSums;
+	protected int[] normalCounts;
+	//depth sorting state reused by the index sorting
+	protected final DepthSorter depthSorter = new DepthSorter();
+	protected float[] vertexDistances;
+
 	protected double elevation = 0d;
 	protected boolean elevationChanged = false;
 	protected boolean calculateNormals = false;
@@ -502,30 +519,194 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		}
 	}
 
+	/**
+	 * Calculate the vertices for the positions, and the bounding sphere, and
+	 * store them in the modVertexBuffer (relative to the bounding sphere
+	 * center).
+	 * <p/>
+	 * On an ellipsoidal globe (and when not following terrain), vertices are
+	 * calculated directly from cached per-position terms, without allocating
+	 * any objects per position. This path uses the
+	 * {@link #calculateElevationOffset(int)} and
+	 * {@link #calculateLatLonOffset()} hooks, but not
+	 * {@link #calculateVertex(DrawContext, LatLon)}; subclasses that override
+	 * that should also override this method.
+	 */
 	protected void calculateVertices(DrawContext dc)
 	{
-		modVertexBuffer.rewind();
-		for (LatLon position : positions)
+		Globe globe = dc.getGlobe();
+		if (!followTerrain && globe instanceof EllipsoidalGlobe && !(globe instanceof FlatGlobe))
 		{
-			Vec4 v = calculateVertex(dc, position);
-			modVertexBuffer.put((float) v.x).put((float) v.y).put((float) v.z);
+			calculateEllipsoidalVertices(dc, (EllipsoidalGlobe) globe);
+		}
+		else
+		{
+			modVertexBuffer.rewind();
+			for (LatLon position : positions)
+			{
+				Vec4 v = calculateVertex(dc, position);
+				modVertexBuffer.put((float) v.x).put((float) v.y).put((float) v.z);
+			}
 		}
 
-		modVertexBuffer.rewind();
-		BufferWrapper wrapper = new BufferWrapper.FloatBufferWrapper(modVertexBuffer);
-		modBoundingSphere = createBoundingSphere(wrapper);
+		modBoundingSphere = createBoundingSphere(modVertexBuffer);
 
 		//prevent NullPointerExceptions when there's no vertices:
 		if (modBoundingSphere == null)
 			modBoundingSphere = new Sphere(Vec4.ZERO, 1);
 
+		float cx = (float) modBoundingSphere.getCenter().x;
+		float cy = (float) modBoundingSphere.getCenter().y;
+		float cz = (float) modBoundingSphere.getCenter().z;
+		for (int i = 0; i + 2 < modVertexBuffer.limit(); i += 3)
+		{
+			modVertexBuffer.put(i + 0, modVertexBuffer.get(i + 0) - cx);
+			modVertexBuffer.put(i + 1, modVertexBuffer.get(i + 1) - cy);
+			modVertexBuffer.put(i + 2, modVertexBuffer.get(i + 2) - cz);
+		}
 		modVertexBuffer.rewind();
-		for (int i = 0; modVertexBuffer.remaining() >= 3; i += 3)
+	}
+
+	/**
+	 * Calculate the vertices using the same geodetic to cartesian conversion
+	 * as {@link EllipsoidalGlobe}, using the cached per-position terms from
+	 * {@link #getGeodeticTerms(EllipsoidalGlobe, LatLon)}.
+	 */
+	protected void calculateEllipsoidalVertices(DrawContext dc, EllipsoidalGlobe globe)
+	{
+		final double[] terms = getGeodeticTerms(globe, calculateLatLonOffset());
+		final double verticalExaggeration = dc.getVerticalExaggeration();
+		final double minElevation = -globe.getMaximumRadius();
+		final double polarFactor = 1.0 - globe.getEccentricitySquared();
+
+		if (positions instanceof RandomAccess)
+		{
+			ParallelLoop.run(positions.size(), PARALLEL_CHUNK_SIZE, new ParallelLoop.Body()
+			{
+				@Override
+				public void run(int start, int end)
+				{
+					for (int i = start; i < end; i++)
+					{
+						calculateEllipsoidalVertex(i, calculateElevationOffset(i), terms, verticalExaggeration,
+								minElevation, polarFactor);
+					}
+				}
+			});
+		}
+		else
+		{
+			int i = 0;
+			for (LatLon position : positions)
+			{
+				calculateEllipsoidalVertex(i++, calculateElevationOffset(position), terms, verticalExaggeration,
+						minElevation, polarFactor);
+			}
+		}
+	}
+
+	private void calculateEllipsoidalVertex(int i, double elevationOffset, double[] terms,
+			double verticalExaggeration, double minElevation, double polarFactor)
+	{
+		double elevation = (this.elevation + elevationOffset) * verticalExaggeration;
+		elevation = Math.max(elevation, minElevation);
+
+		int t = i * 4;
+		double rpm = terms[t + 3];
+		double r = rpm + elevation;
+		modVertexBuffer.put(i * 3 + 0, (float) (r * terms[t + 0]));
+		modVertexBuffer.put(i * 3 + 1, (float) ((rpm * polarFactor + elevation) * terms[t + 1]));
+		modVertexBuffer.put(i * 3 + 2, (float) (r * terms[t + 2]));
+	}
+
+	/**
+	 * Get the terms of the geodetic to cartesian conversion that don't depend
+	 * on elevation, for each position: cos(lat)sin(lon), sin(lat),
+	 * cos(lat)cos(lon), and the radius of the prime vertical. These are only
+	 * recalculated when the positions, globe or lat/lon offset change.
+	 */
+	protected double[] getGeodeticTerms(EllipsoidalGlobe globe, LatLon offset)
+	{
+		double[] terms = geodeticTerms;
+		if (terms != null && terms.length == positions.size() * 4 && globe == geodeticTermsGlobe
+				&& offset.equals(geodeticTermsOffset))
+		{
+			return terms;
+		}
+
+		final double[] newTerms = new double[positions.size() * 4];
+		final double equatorialRadius = globe.getEquatorialRadius();
+		final double es = globe.getEccentricitySquared();
+		final double offsetLatitude = offset.getLatitude().degrees;
+		final double offsetLongitude = offset.getLongitude().radians;
+		if (positions instanceof PositionList)
+		{
+			final PositionList list = (PositionList) positions;
+			ParallelLoop.run(list.size(), PARALLEL_CHUNK_SIZE, new ParallelLoop.Body()
+			{
+				@Override
+				public void run(int start, int end)
+				{
+					for (int i = start; i < end; i++)
+					{
+						calculateGeodeticTerms(i, list.getLatitude(i), list.getLongitude(i) * DEGREES_TO_RADIANS,
+								newTerms, equatorialRadius, es, offsetLatitude, offsetLongitude);
+					}
+				}
+			});
+		}
+		else if (positions instanceof RandomAccess)
 		{
-			modVertexBuffer.put(i + 0, modVertexBuffer.get() - (float) modBoundingSphere.getCenter().x);
-			modVertexBuffer.put(i + 1, modVertexBuffer.get() - (float) modBoundingSphere.getCenter().y);
-			modVertexBuffer.put(i + 2, modVertexBuffer.get() - (float) modBoundingSphere.getCenter().z);
+			ParallelLoop.run(positions.size(), PARALLEL_CHUNK_SIZE, new ParallelLoop.Body()
+			{
+				@Override
+				public void run(int start, int end)
+				{
+					for (int i = start; i < end; i++)
+					{
+						LatLon position = positions.get(i);
+						calculateGeodeticTerms(i, position.getLatitude().degrees, position.getLongitude().radians,
+								newTerms, equatorialRadius, es, offsetLatitude, offsetLongitude);
+					}
+				}
+			});
+		}
+		else
+		{
+			int i = 0;
+			for (LatLon position : positions)
+			{
+				calculateGeodeticTerms(i++, position.getLatitude().degrees, position.getLongitude().radians,
+						newTerms, equatorialRadius, es, offsetLatitude, offsetLongitude);
+			}
 		}
+		geodeticTerms = newTerms;
+		geodeticTermsGlobe = globe;
+		geodeticTermsOffset = offset;
+		return newTerms;
+	}
+
+	private static void calculateGeodeticTerms(int i, double latitudeDegrees, double longitudeRadians,
+			double[] terms, double equatorialRadius, double es, double offsetLatitude, double offsetLongitude)
+	{
+		//same normalization as LatLon.add()
+		double lat = normalizedDegreesLatitude(latitudeDegrees + offsetLatitude);
+		double lon = longitudeRadians + offsetLongitude;
+		double latRadians = Math.toRadians(lat);
+		double cosLat = Math.cos(latRadians);
+		double sinLat = Math.sin(latRadians);
+
+		int t = i * 4;
+		terms[t + 0] = cosLat * Math.sin(lon);
+		terms[t + 1] = sinLat;
+		terms[t + 2] = cosLat * Math.cos(lon);
+		terms[t + 3] = equatorialRadius / Math.sqrt(1.0 - es * sinLat * sinLat);
+	}
+
+	private static double normalizedDegreesLatitude(double degrees)
+	{
+		double lat = degrees % 180;
+		return lat > 90 ? 180 - lat : lat < -90 ? -180 - lat : lat;
 	}
 
 	protected Vec4 calculateVertex(DrawContext dc, LatLon position)
@@ -550,6 +731,23 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		return 0;
 	}
 
+	/**
+	 * Calculate the elevation offset of the position at the given index. If
+	 * the positions are a {@link PositionList}, the elevation is read directly
+	 * from the list, otherwise this calls
+	 * {@link #calculateElevationOffset(LatLon)}. Subclasses that override that
+	 * method and may be given a {@link PositionList} should also override this
+	 * one.
+	 */
+	protected double calculateElevationOffset(int index)
+	{
+		if (positions instanceof PositionList)
+		{
+			return ((PositionList) positions).getElevation(index);
+		}
+		return calculateElevationOffset(positions.get(index));
+	}
+
 	protected LatLon calculateLatLonOffset()
 	{
 		return LatLon.ZERO;
@@ -568,71 +766,156 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		return new Sphere(center, radius);
 	}
 
+	/**
+	 * Create a bounding sphere for the xyz vertices in the given buffer (from
+	 * 0 to the buffer's limit), with a radius of at least 1.
+	 * 
+	 * @return Bounding sphere, or null if the buffer contains no vertices
+	 */
+	protected static Sphere createBoundingSphere(FloatBuffer vertices)
+	{
+		int limit = vertices.limit() - vertices.limit() % 3;
+		if (limit == 0)
+			return null;
+
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int i = 0; i < limit; i += 3)
+		{
+			double x = vertices.get(i + 0);
+			double y = vertices.get(i + 1);
+			double z = vertices.get(i + 2);
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+		}
+
+		Vec4 center = new Vec4((minX + maxX) / 2.0, (minY + maxY) / 2.0, (minZ + maxZ) / 2.0);
+		double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		double radius = Math.max(1, Math.sqrt(dx * dx + dy * dy + dz * dz) / 2.0);
+		return new Sphere(center, radius);
+	}
+
 	protected void calculateNormals()
 	{
 		if (willCalculateNormals())
 		{
 			int size = modNormalBuffer.limit() / 3;
-			int[] count = new int[size];
-			Vec4[] vertices = new Vec4[size];
-			Vec4[] normals = new Vec4[size];
-
-			int j = 0;
-			modVertexBuffer.rewind();
-			while (modVertexBuffer.hasRemaining())
+			if (normalSums == null || normalSums.length != size * 3)
 			{
-				vertices[j] = new Vec4(modVertexBuffer.get(), modVertexBuffer.get(), modVertexBuffer.get());
-				normals[j] = new Vec4(0);
-				j++;
+				normalSums = new double[size * 3];
+				normalCounts = new int[size];
 			}
+			calculateNormals(modVertexBuffer, indices, mode, reverseNormals, modNormalBuffer, normalSums,
+					normalCounts);
+		}
+	}
 
-			boolean hasIndices = indices != null;
-			int loopLimit = hasIndices ? indices.limit() : size;
-			int loopIncrement = 3;
-			if (mode == GL.GL_TRIANGLE_STRIP)
+	/**
+	 * Calculate smooth vertex normals for a triangle mesh, by averaging the
+	 * normals of the triangles that share each vertex. Works directly on the
+	 * buffers, without allocating.
+	 * 
+	 * @param vertices
+	 *            xyz vertices (read from 0 to the normals buffer's limit)
+	 * @param indices
+	 *            Triangle indices into vertices (null if the vertices are not
+	 *            indexed); the buffer's position is not modified
+	 * @param mode
+	 *            {@link GL#GL_TRIANGLES} or {@link GL#GL_TRIANGLE_STRIP}
+	 * @param reverseNormals
+	 *            Should the normals face the opposite direction?
+	 * @param normals
+	 *            Buffer to store the xyz normals in
+	 * @param sums
+	 *            Scratch array of at least the length of the normals buffer
+	 * @param counts
+	 *            Scratch array of at least a third of the length of the
+	 *            normals buffer
+	 */
+	protected static void calculateNormals(FloatBuffer vertices, IntBuffer indices, int mode,
+			boolean reverseNormals, FloatBuffer normals, double[] sums, int[] counts)
+	{
+		int size = normals.limit() / 3;
+		Arrays.fill(sums, 0, size * 3, 0d);
+		Arrays.fill(counts, 0, size, 0);
+
+		boolean hasIndices = indices != null;
+		int loopLimit = hasIndices ? indices.limit() : size;
+		int loopIncrement = 3;
+		if (mode == GL.GL_TRIANGLE_STRIP)
+		{
+			loopLimit -= 2;
+			loopIncrement = 1;
+		}
+
+		for (int i = 0; i < loopLimit; i += loopIncrement)
+		{
+			//don't touch indices's position/mark, because it may currently be in use by OpenGL thread
+			int index0 = hasIndices ? indices.get(i + 0) : i + 0;
+			int index1 = hasIndices ? indices.get(i + 1) : i + 1;
+			int index2 = hasIndices ? indices.get(i + 2) : i + 2;
+
+			double v0x = vertices.get(index0 * 3 + 0), v0y = vertices.get(index0 * 3 + 1);
+			double v0z = vertices.get(index0 * 3 + 2);
+			double e1x = vertices.get(index1 * 3 + 0) - v0x;
+			double e1y = vertices.get(index1 * 3 + 1) - v0y;
+			double e1z = vertices.get(index1 * 3 + 2) - v0z;
+			double e2x = vertices.get(index2 * 3 + 0) - v0x;
+			double e2y = vertices.get(index2 * 3 + 1) - v0y;
+			double e2z = vertices.get(index2 * 3 + 2) - v0z;
+			if (mode == GL.GL_TRIANGLE_STRIP && i % 2 == 0)
 			{
-				loopLimit -= 2;
-				loopIncrement = 1;
+				e2x = -e2x;
+				e2y = -e2y;
+				e2z = -e2z;
 			}
 
-			for (int i = 0; i < loopLimit; i += loopIncrement)
+			double nx = e1y * e2z - e1z * e2y;
+			double ny = e1z * e2x - e1x * e2z;
+			double nz = e1x * e2y - e1y * e2x;
+			if (reverseNormals)
 			{
-				//don't touch indices's position/mark, because it may currently be in use by OpenGL thread
-				int index0 = hasIndices ? indices.get(i + 0) : i + 0;
-				int index1 = hasIndices ? indices.get(i + 1) : i + 1;
-				int index2 = hasIndices ? indices.get(i + 2) : i + 2;
-				Vec4 v0 = vertices[index0];
-				Vec4 v1 = vertices[index1];
-				Vec4 v2 = vertices[index2];
-
-				Vec4 e1 = v1.subtract3(v0);
-				Vec4 e2 = mode == GL.GL_TRIANGLE_STRIP && i % 2 == 0 ? v0.subtract3(v2) : v2.subtract3(v0);
-				Vec4 N = reverseNormals ? e2.cross3(e1).normalize3() : e1.cross3(e2).normalize3();
-
-				// if N is 0, the triangle is degenerate
-				if (N.getLength3() > 0)
-				{
-					normals[index0] = normals[index0].add3(N);
-					normals[index1] = normals[index1].add3(N);
-					normals[index2] = normals[index2].add3(N);
-
-					count[index0]++;
-					count[index1]++;
-					count[index2]++;
-				}
+				nx = -nx;
+				ny = -ny;
+				nz = -nz;
 			}
 
-			j = 0;
-			modNormalBuffer.rewind();
-			while (modNormalBuffer.hasRemaining())
+			// if N is 0, the triangle is degenerate
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length > 0)
 			{
-				int c = count[j] > 0 ? count[j] : 1; //prevent divide by zero
-				modNormalBuffer.put((float) normals[j].x / c);
-				modNormalBuffer.put((float) normals[j].y / c);
-				modNormalBuffer.put((float) normals[j].z / c);
-				j++;
+				nx /= length;
+				ny /= length;
+				nz /= length;
+
+				sums[index0 * 3 + 0] += nx;
+				sums[index0 * 3 + 1] += ny;
+				sums[index0 * 3 + 2] += nz;
+				sums[index1 * 3 + 0] += nx;
+				sums[index1 * 3 + 1] += ny;
+				sums[index1 * 3 + 2] += nz;
+				sums[index2 * 3 + 0] += nx;
+				sums[index2 * 3 + 1] += ny;
+				sums[index2 * 3 + 2] += nz;
+
+				counts[index0]++;
+				counts[index1]++;
+				counts[index2]++;
 			}
 		}
+
+		for (int j = 0; j < size; j++)
+		{
+			int c = counts[j] > 0 ? counts[j] : 1; //prevent divide by zero
+			normals.put(j * 3 + 0, (float) sums[j * 3 + 0] / c);
+			normals.put(j * 3 + 1, (float) sums[j * 3 + 1] / c);
+			normals.put(j * 3 + 2, (float) sums[j * 3 + 2] / c);
+		}
+		normals.rewind();
 	}
 
 	protected synchronized void resortIndices(final DrawContext dc, final Vec4 eyePoint)
@@ -675,64 +958,83 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		IndexUpdater.run(this, runnable);
 	}
 
+	/**
+	 * Sort the primitives (triangles or points) by their distance from the
+	 * eye point, farthest first, and store the sorted indices in the
+	 * modSortedIndices buffer. The {@link DepthSorter} reuses its buffers, and
+	 * sorts incrementally from the previous order when possible.
+	 */
 	protected void sortIndices(DrawContext dc, Vec4 eyePoint)
 	{
+		//vertices are relative to the bounding sphere center
+		Vec4 center = boundingSphere != null ? boundingSphere.getCenter() : Vec4.ZERO;
+		double eyeX = eyePoint.x - center.x;
+		double eyeY = eyePoint.y - center.y;
+		double eyeZ = eyePoint.z - center.z;
 		int size = vertexBuffer.limit() / 3;
-		Vec4[] vertices = new Vec4[size];
-
-		for (int i = 0; i < size; i++)
-		{
-			vertices[i] =
-					new Vec4(vertexBuffer.get(i * 3 + 0), vertexBuffer.get(i * 3 + 1), vertexBuffer.get(i * 3 + 2));
-		}
 
 		if (mode == GL.GL_TRIANGLES)
 		{
-			boolean hasIndices = indices != null;
-			int triangleCountBy3 = hasIndices ? indices.limit() : size;
-			IndexAndDistance[] distances = new IndexAndDistance[triangleCountBy3 / 3];
+			if (vertexDistances == null || vertexDistances.length < size)
+			{
+				vertexDistances = new float[size];
+			}
+			calculateDistances(vertexBuffer, eyeX, eyeY, eyeZ, vertexDistances, size);
 
-			for (int i = 0; i < triangleCountBy3; i += 3)
+			boolean hasIndices = indices != null;
+			int triangleCount = (hasIndices ? indices.limit() : size) / 3;
+			float[] keys = depthSorter.getKeys(triangleCount);
+			for (int t = 0, i = 0; t < triangleCount; t++, i += 3)
 			{
 				int index0 = hasIndices ? indices.get(i + 0) : i + 0;
 				int index1 = hasIndices ? indices.get(i + 1) : i + 1;
 				int index2 = hasIndices ? indices.get(i + 2) : i + 2;
-				Vec4 v0 = vertices[index0];
-				Vec4 v1 = vertices[index1];
-				Vec4 v2 = vertices[index2];
-				double distance =
-						v0.distanceToSquared3(eyePoint) + v1.distanceToSquared3(eyePoint)
-								+ v2.distanceToSquared3(eyePoint);
-				distances[i / 3] = new IndexAndDistance(distance, i);
+				keys[t] = vertexDistances[index0] + vertexDistances[index1] + vertexDistances[index2];
 			}
 
-			Arrays.sort(distances);
+			int[] order = depthSorter.sort(triangleCount);
 
 			modSortedIndices.rewind();
-			for (IndexAndDistance distance : distances)
+			for (int t = 0; t < triangleCount; t++)
 			{
-				modSortedIndices.put(hasIndices ? indices.get(distance.index + 0) : distance.index + 0);
-				modSortedIndices.put(hasIndices ? indices.get(distance.index + 1) : distance.index + 1);
-				modSortedIndices.put(hasIndices ? indices.get(distance.index + 2) : distance.index + 2);
+				int i = order[t] * 3;
+				modSortedIndices.put(hasIndices ? indices.get(i + 0) : i + 0);
+				modSortedIndices.put(hasIndices ? indices.get(i + 1) : i + 1);
+				modSortedIndices.put(hasIndices ? indices.get(i + 2) : i + 2);
 			}
 		}
 		else if (mode == GL.GL_POINTS)
 		{
-			IndexAndDistance[] distances = new IndexAndDistance[size];
-			for (int i = 0; i < size; i++)
-			{
-				double distance = vertices[i].distanceToSquared3(eyePoint);
-				distances[i] = new IndexAndDistance(distance, i);
-			}
+			float[] keys = depthSorter.getKeys(size);
+			calculateDistances(vertexBuffer, eyeX, eyeY, eyeZ, keys, size);
 
-			Arrays.sort(distances);
+			int[] order = depthSorter.sort(size);
 
 			modSortedIndices.rewind();
-			for (IndexAndDistance distance : distances)
+			modSortedIndices.put(order, 0, size);
+		}
+	}
+
+	/**
+	 * Calculate the squared distance of each vertex from the given point.
+	 */
+	protected static void calculateDistances(final FloatBuffer vertices, final double x, final double y,
+			final double z, final float[] distances, int size)
+	{
+		ParallelLoop.run(size, PARALLEL_CHUNK_SIZE, new ParallelLoop.Body()
+		{
+			@Override
+			public void run(int start, int end)
 			{
-				modSortedIndices.put(distance.index);
+				for (int i = start; i < end; i++)
+				{
+					double dx = vertices.get(i * 3 + 0) - x;
+					double dy = vertices.get(i * 3 + 1) - y;
+					double dz = vertices.get(i * 3 + 2) - z;
+					distances[i] = (float) (dx * dx + dy * dy + dz * dz);
+				}
 			}
-		}
+		});
 	}
 
 	public String getName()
@@ -856,15 +1158,10 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		try
 		{
 			this.positions = positions;
+			geodeticTerms = null;
 			verticesDirty = true;
 
-			sector = null;
-			for (Position position : positions)
-			{
-				sector =
-						sector != null ? sector.union(position.latitude, position.longitude) : new Sector(
-								position.latitude, position.latitude, position.longitude, position.longitude);
-			}
+			sector = calculateSector(positions);
 		}
 		finally
 		{
@@ -872,6 +1169,44 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		}
 	}
 
+	/**
+	 * @return The sector bounding the given positions, or null if empty
+	 */
+	protected static Sector calculateSector(List<Position> positions)
+	{
+		if (positions.isEmpty())
+		{
+			return null;
+		}
+
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		if (positions instanceof PositionList)
+		{
+			PositionList list = (PositionList) positions;
+			for (int i = 0; i < list.size(); i++)
+			{
+				double lat = list.getLatitude(i), lon = list.getLongitude(i);
+				minLat = Math.min(minLat, lat);
+				maxLat = Math.max(maxLat, lat);
+				minLon = Math.min(minLon, lon);
+				maxLon = Math.max(maxLon, lon);
+			}
+		}
+		else
+		{
+			for (Position position : positions)
+			{
+				double lat = position.latitude.degrees, lon = position.longitude.degrees;
+				minLat = Math.min(minLat, lat);
+				maxLat = Math.max(maxLat, lat);
+				minLon = Math.min(minLon, lon);
+				maxLon = Math.max(maxLon, lon);
+			}
+		}
+		return Sector.fromDegrees(minLat, maxLat, minLon, maxLon);
+	}
+
 	public IntBuffer getIndices()
 	{
 		return indices;
@@ -1348,143 +1683,53 @@ public class FastShape implements Renderable, Cacheable, Bounded, Wireframeable
 		return buffer;
 	}
 
-	protected static class IndexAndDistance implements Comparable<IndexAndDistance>
+	/**
+	 * Runs the vertex recalculation tasks of all shapes, coalescing tasks per
+	 * shape. The number of threads can be configured using
+	 * {@link AVKeyMore#FAST_SHAPE_VERTEX_UPDATER_THREADS}.
+	 */
+	protected static class VertexUpdater
 	{
-		public final double distance;
-		public final int index;
+		private static final CoalescingExecutor executor = new CoalescingExecutor(VertexUpdater.class.getName(),
+				Configuration.getIntegerValue(AVKeyMore.FAST_SHAPE_VERTEX_UPDATER_THREADS, DEFAULT_UPDATER_THREADS));
 
-		public IndexAndDistance(double distance, int index)
+		public static void run(Object owner, Runnable runnable)
 		{
-			this.distance = distance;
-			this.index = index;
-		}
-
-		@Override
-		public int compareTo(IndexAndDistance o)
-		{
-			return -Double.compare(distance, o.distance);
+			executor.run(owner, runnable);
 		}
 	}
 
-	protected static class OwnerRunnable
+	/**
+	 * Runs the index sorting tasks of all shapes, coalescing tasks per shape.
+	 * The number of threads can be configured using
+	 * {@link AVKeyMore#FAST_SHAPE_INDEX_UPDATER_THREADS}.
+	 */
+	protected static class IndexUpdater
 	{
-		public final Object owner;
-		public final Runnable runnable;
+		private static final CoalescingExecutor executor = new CoalescingExecutor(IndexUpdater.class.getName(),
+				Configuration.getIntegerValue(AVKeyMore.FAST_SHAPE_INDEX_UPDATER_THREADS, DEFAULT_UPDATER_THREADS));
 
-		public OwnerRunnable(Object owner, Runnable runnable)
+		public static void run(Object owner, Runnable runnable)
 		{
-			this.owner = owner;
-			this.runnable = runnable;
-		}
-
-		@Override
-		public int hashCode()
-		{
-			return owner.hashCode();
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (obj == null)
-				return false;
-			if (obj.equals(owner))
-				return true;
-			return super.equals(obj);
+			executor.run(owner, runnable);
 		}
 	}
 
-	protected static class VertexUpdater
+	/**
+	 * @return The executor used to recalculate the vertices of all shapes
+	 *         (for instrumentation)
+	 */
+	public static CoalescingExecutor getVertexUpdater()
 	{
-		private static BlockingQueue<OwnerRunnable> queue = new LinkedBlockingQueue<OwnerRunnable>();
-		private static Set<OwnerRunnable> set = Collections.synchronizedSet(new HashSet<OwnerRunnable>());
-		private static final int THREAD_COUNT = 1;
-
-		static
-		{
-			for (int i = 0; i < THREAD_COUNT; i++)
-			{
-				Thread thread = new Thread(new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						while (true)
-						{
-							try
-							{
-								OwnerRunnable or = queue.take();
-								or.runnable.run();
-								set.remove(or);
-							}
-							catch (Throwable t)
-							{
-								t.printStackTrace();
-							}
-						}
-					}
-				});
-				thread.setName(VertexUpdater.class.getName());
-				thread.setDaemon(true);
-				thread.start();
-			}
-		}
-
-		public synchronized static void run(Object owner, Runnable runnable)
-		{
-			OwnerRunnable or = new OwnerRunnable(owner, runnable);
-			if (!set.contains(or))
-			{
-				set.add(or);
-				queue.add(or);
-			}
-		}
+		return VertexUpdater.executor;
 	}
 
-	protected static class IndexUpdater
+	/**
+	 * @return The executor used to sort the indices of all shapes (for
+	 *         instrumentation)
+	 */
+	public static CoalescingExecutor getIndexUpdater()
 	{
-		private static BlockingQueue<OwnerRunnable> queue = new LinkedBlockingQueue<OwnerRunnable>();
-		private static Set<OwnerRunnable> set = Collections.synchronizedSet(new HashSet<OwnerRunnable>());
-		private static final int THREAD_COUNT = 1;
-
-		static
-		{
-			for (int i = 0; i < THREAD_COUNT; i++)
-			{
-				Thread thread = new Thread(new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						while (true)
-						{
-							try
-							{
-								OwnerRunnable or = queue.take();
-								or.runnable.run();
-								set.remove(or);
-							}
-							catch (Throwable t)
-							{
-								t.printStackTrace();
-							}
-						}
-					}
-				});
-				thread.setName(VertexUpdater.class.getName());
-				thread.setDaemon(true);
-				thread.start();
-			}
-		}
-
-		public synchronized static void run(Object owner, Runnable runnable)
-		{
-			OwnerRunnable or = new OwnerRunnable(owner, runnable);
-			if (!set.contains(or))
-			{
-				set.add(or);
-				queue.add(or);
-			}
-		}
+		return IndexUpdater.executor;
 	}
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits a loop over a range of indices into chunks, and runs the chunks in
+ * parallel on a shared pool of helper threads.
+ * <p/>
+ * The calling thread also processes chunks, and only waits for chunks that
+ * helper threads have already started, so loops can safely be run from
+ * threads of any other pool (or nested) without the risk of deadlock.
+ */
+public class ParallelLoop
+{
+	private static final int HELPER_COUNT = Math.max(0, Runtime.getRuntime().availableProcessors() - 1);
+	private static final ExecutorService helpers = HELPER_COUNT > 0 ? Executors.newFixedThreadPool(HELPER_COUNT,
+			new ThreadFactory()
+			{
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, ParallelLoop.class.getName() + " " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			}) : null;
+
+	/**
+	 * Loop body, called for a chunk of indices.
+	 */
+	public static interface Body
+	{
+		/**
+		 * Process the indices from start (inclusive) to end (exclusive).
+		 */
+		void run(int start, int end);
+	}
+
+	/**
+	 * Run the body for the indices from 0 (inclusive) to size (exclusive),
+	 * splitting it into chunks of at least minChunkSize indices that may be
+	 * processed in parallel. Returns when all chunks have completed.
+	 * 
+	 * @throws RuntimeException
+	 *             If the body throws an exception for any chunk
+	 */
+	public static void run(int size, int minChunkSize, final Body body)
+	{
+		//split into a few chunks per thread, so that threads that finish early can take more
+		final int chunkSize = Math.max(minChunkSize, size / ((HELPER_COUNT + 1) * 4) + 1);
+		final int chunkCount = (size + chunkSize - 1) / chunkSize;
+		if (chunkCount <= 1 || helpers == null)
+		{
+			body.run(0, size);
+			return;
+		}
+
+		final int total = size;
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final CountDownLatch remaining = new CountDownLatch(chunkCount);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Runnable worker = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int chunk;
+				while ((chunk = nextChunk.getAndIncrement()) < chunkCount)
+				{
+					try
+					{
+						int start = chunk * chunkSize;
+						body.run(start, Math.min(total, start + chunkSize));
+					}
+					catch (Throwable t)
+					{
+						error.compareAndSet(null, t);
+					}
+					finally
+					{
+						remaining.countDown();
+					}
+				}
+			}
+		};
+
+		for (int i = 0; i < Math.min(HELPER_COUNT, chunkCount - 1); i++)
+		{
+			helpers.execute(worker);
+		}
+		worker.run();
+
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				remaining.await();
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (error.get() != null)
+		{
+			throw new RuntimeException("Error in parallel loop", error.get());
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of positions packed into a single double array, storing the latitude
+ * and longitude (in degrees) and the elevation of each position. This uses 24
+ * bytes per position, instead of the ~100 bytes used by a {@link Position}
+ * (and its two Angles) in an ArrayList.
+ * <p/>
+ * The {@link Position}s returned by {@link #get(int)} are created on demand,
+ * so this class can be used wherever a List&lt;Position&gt; is expected.
+ * Code that iterates large lists should check for this class and use the
+ * primitive accessors (such as {@link #getLatitude(int)}) instead, to avoid
+ * creating an object per position.
+ * <p/>
+ * Not thread-safe for modification.
+ */
+public class PositionList extends AbstractList<Position> implements RandomAccess
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private double[] coords;
+	private int size;
+
+	public PositionList()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PositionList(int initialCapacity)
+	{
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		coords = new double[initialCapacity * 3];
+	}
+
+	/**
+	 * Create a list backed by the given array of coordinates (latitude,
+	 * longitude and elevation of each position). The array is not copied.
+	 * 
+	 * @param coordinates
+	 *            Packed coordinates
+	 * @param size
+	 *            Number of positions in the array to include in the list
+	 */
+	public PositionList(double[] coordinates, int size)
+	{
+		if (size < 0 || size * 3 > coordinates.length)
+			throw new IllegalArgumentException("Illegal size: " + size);
+		this.coords = coordinates;
+		this.size = size;
+	}
+
+	/**
+	 * Add a position to the end of this list.
+	 * 
+	 * @param latitude
+	 *            Latitude in degrees
+	 * @param longitude
+	 *            Longitude in degrees
+	 * @param elevation
+	 *            Elevation in meters
+	 */
+	public void add(double latitude, double longitude, double elevation)
+	{
+		ensureCapacity(size + 1);
+		int i = size * 3;
+		coords[i + 0] = latitude;
+		coords[i + 1] = longitude;
+		coords[i + 2] = elevation;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public boolean add(Position position)
+	{
+		add(position.getLatitude().degrees, position.getLongitude().degrees, position.getElevation());
+		return true;
+	}
+
+	@Override
+	public void add(int index, Position position)
+	{
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		ensureCapacity(size + 1);
+		System.arraycopy(coords, index * 3, coords, (index + 1) * 3, (size - index) * 3);
+		int i = index * 3;
+		coords[i + 0] = position.getLatitude().degrees;
+		coords[i + 1] = position.getLongitude().degrees;
+		coords[i + 2] = position.getElevation();
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Position get(int index)
+	{
+		checkIndex(index);
+		int i = index * 3;
+		return Position.fromDegrees(coords[i + 0], coords[i + 1], coords[i + 2]);
+	}
+
+	@Override
+	public Position set(int index, Position position)
+	{
+		Position old = get(index);
+		int i = index * 3;
+		coords[i + 0] = position.getLatitude().degrees;
+		coords[i + 1] = position.getLongitude().degrees;
+		coords[i + 2] = position.getElevation();
+		return old;
+	}
+
+	@Override
+	public Position remove(int index)
+	{
+		Position old = get(index);
+		System.arraycopy(coords, (index + 1) * 3, coords, index * 3, (size - index - 1) * 3);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear()
+	{
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return Latitude (in degrees) of the position at the given index
+	 */
+	public double getLatitude(int index)
+	{
+		checkIndex(index);
+		return coords[index * 3 + 0];
+	}
+
+	/**
+	 * @return Longitude (in degrees) of the position at the given index
+	 */
+	public double getLongitude(int index)
+	{
+		checkIndex(index);
+		return coords[index * 3 + 1];
+	}
+
+	/**
+	 * @return Elevation of the position at the given index
+	 */
+	public double getElevation(int index)
+	{
+		checkIndex(index);
+		return coords[index * 3 + 2];
+	}
+
+	/**
+	 * Set the elevation of the position at the given index.
+	 */
+	public void setElevation(int index, double elevation)
+	{
+		checkIndex(index);
+		coords[index * 3 + 2] = elevation;
+	}
+
+	/**
+	 * @return The array backing this list, containing the latitude, longitude
+	 *         and elevation of each position. Only the first {@link #size()} * 3
+	 *         values are used. This array is replaced when the list grows.
+	 */
+	public double[] getCoordinates()
+	{
+		return coords;
+	}
+
+	/**
+	 * Ensure this list can hold at least the given number of positions without
+	 * growing.
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity * 3 > coords.length)
+		{
+			int newCapacity = Math.max(capacity, (coords.length / 3) * 3 / 2 + 1);
+			coords = Arrays.copyOf(coords, newCapacity * 3);
+		}
+	}
+
+	/**
+	 * Shrink the backing array to the current size of this list.
+	 */
+	public void trimToSize()
+	{
+		if (coords.length > size * 3)
+		{
+			coords = Arrays.copyOf(coords, size * 3);
+		}
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+}
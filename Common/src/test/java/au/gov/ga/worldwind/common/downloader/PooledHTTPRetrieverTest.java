@@ -0,0 +1,241 @@
+package au.gov.ga.worldwind.common.downloader;
+
+import static org.junit.Assert.*;
+
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link PooledHTTPRetriever} class, using a local stub HTTP
+ * server
+ */
+public class PooledHTTPRetrieverTest
+{
+	private HttpServer server;
+	private byte[] tile;
+
+	private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger concurrentRequests = new AtomicInteger();
+	private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+	private volatile String lastAcceptEncoding;
+	private volatile long requestDelay = 0;
+
+	private final RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+	{
+		@Override
+		public ByteBuffer run(Retriever retriever)
+		{
+			return retriever.getBuffer();
+		}
+	};
+
+	@Before
+	public void setup() throws Exception
+	{
+		tile = new byte[20 * 1024];
+		for (int i = 0; i < tile.length; i++)
+		{
+			tile[i] = (byte) (i % 13);
+		}
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/tile", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				int concurrent = concurrentRequests.incrementAndGet();
+				synchronized (maxConcurrentRequests)
+				{
+					maxConcurrentRequests.set(Math.max(maxConcurrentRequests.get(), concurrent));
+				}
+				try
+				{
+					clientPorts.add(exchange.getRemoteAddress().getPort());
+					requestCount.incrementAndGet();
+					lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+					if (requestDelay > 0)
+					{
+						Thread.sleep(requestDelay);
+					}
+
+					byte[] body = tile;
+					if (lastAcceptEncoding != null && lastAcceptEncoding.contains("gzip"))
+					{
+						ByteArrayOutputStream baos = new ByteArrayOutputStream();
+						GZIPOutputStream gzip = new GZIPOutputStream(baos);
+						gzip.write(tile);
+						gzip.close();
+						body = baos.toByteArray();
+						exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+					}
+					exchange.getResponseHeaders().set("Content-Type", "image/png");
+					exchange.sendResponseHeaders(200, body.length);
+					OutputStream os = exchange.getResponseBody();
+					os.write(body);
+					os.close();
+				}
+				catch (InterruptedException e)
+				{
+					throw new IOException(e.getMessage());
+				}
+				finally
+				{
+					concurrentRequests.decrementAndGet();
+				}
+			}
+		});
+		server.createContext("/missing", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				requestCount.incrementAndGet();
+				byte[] body = "Not found".getBytes();
+				exchange.sendResponseHeaders(404, body.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void teardown()
+	{
+		server.stop(0);
+	}
+
+	private URL url(String path) throws Exception
+	{
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private ByteBuffer retrieve(URL url, int maxConnections) throws Exception
+	{
+		PooledHTTPRetriever retriever = new PooledHTTPRetriever(url, null, postProcessor, true, maxConnections);
+		retriever.call();
+		return retriever.getBuffer();
+	}
+
+	private static byte[] toArray(ByteBuffer buffer)
+	{
+		byte[] array = new byte[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+
+	@Test
+	public void testSequentialRequestsReuseConnection() throws Exception
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			ByteBuffer buffer = retrieve(url("/tile?i=" + i), 0);
+			assertNotNull(buffer);
+			assertArrayEquals(tile, toArray(buffer));
+		}
+
+		assertEquals(10, requestCount.get());
+		assertEquals(1, clientPorts.size());
+	}
+
+	@Test
+	public void testCompressedResponseIsDecoded() throws Exception
+	{
+		ByteBuffer buffer = retrieve(url("/tile"), 0);
+
+		assertNotNull(lastAcceptEncoding);
+		assertTrue(lastAcceptEncoding.contains("gzip"));
+		assertNotNull(buffer);
+		assertArrayEquals(tile, toArray(buffer));
+	}
+
+	@Test
+	public void testErrorResponseDoesNotCloseConnection() throws Exception
+	{
+		PooledHTTPRetriever missing = new PooledHTTPRetriever(url("/missing"), null, postProcessor, true, 0);
+		try
+		{
+			missing.call();
+		}
+		catch (Exception e)
+		{
+			//expected; the retriever reports the 404 as an error
+		}
+		assertEquals(404, missing.getResponseCode());
+
+		ByteBuffer buffer = retrieve(url("/tile"), 0);
+		assertNotNull(buffer);
+
+		assertEquals(2, requestCount.get());
+		assertEquals(1, clientPorts.size());
+	}
+
+	@Test
+	public void testConcurrentRequestsAreLimitedPerHost() throws Exception
+	{
+		requestDelay = 50;
+		final URL url = url("/tile");
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < 3; j++)
+						{
+							assertArrayEquals(tile, toArray(retrieve(url, 2)));
+						}
+					}
+					catch (Throwable t)
+					{
+						errors.add(t);
+					}
+				}
+			});
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join(30000);
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(24, requestCount.get());
+		assertTrue(maxConcurrentRequests.get() <= 2);
+		assertTrue(clientPorts.size() <= 2);
+	}
+}
@@ -0,0 +1,220 @@
+package au.gov.ga.worldwind.common.layers.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BinaryCacheFile} class
+ */
+public class BinaryCacheFileTest
+{
+	private static final String TYPE = "Test";
+	private static final int VERSION = 1;
+	private static final String KEY = "file:/test.ts|key";
+
+	private File cacheFile;
+	private File sourceFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		cacheFile = File.createTempFile("binarycache", BinaryCacheFile.SUFFIX);
+		cacheFile.delete();
+		sourceFile = File.createTempFile("binarycache", ".ts");
+		writeSource(sourceFile, 10);
+	}
+
+	@After
+	public void cleanup()
+	{
+		cacheFile.delete();
+		sourceFile.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		int count = 300000; //larger than the write buffer
+		float[] floats = new float[count];
+		int[] ints = new int[count];
+		double[] doubles = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			floats[i] = i * 0.5f;
+			ints[i] = -i;
+			doubles[i] = i * 0.25;
+		}
+
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putBoolean(true);
+		output.putString("name");
+		output.putString(null);
+		output.putInt(42);
+		output.putLong(Long.MAX_VALUE);
+		output.putFloat(1.5f);
+		output.putDouble(-2.25);
+		output.putFloats(FloatBuffer.wrap(floats));
+		output.putInts(IntBuffer.wrap(ints));
+		output.putDoubles(doubles, count - 1);
+		output.putFloats(null);
+		output.putInt(7);
+		output.commit();
+
+		BinaryCacheFile.Input input = BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY);
+		assertNotNull(input);
+		assertTrue(input.getBoolean());
+		assertEquals("name", input.getString());
+		assertNull(input.getString());
+		assertEquals(42, input.getInt());
+		assertEquals(Long.MAX_VALUE, input.getLong());
+		assertEquals(1.5f, input.getFloat(), 0);
+		assertEquals(-2.25, input.getDouble(), 0);
+
+		FloatBuffer floatBuffer = input.getFloatBuffer();
+		assertEquals(count, floatBuffer.limit());
+		assertTrue(floatBuffer.isDirect());
+		for (int i = 0; i < count; i++)
+		{
+			assertEquals(floats[i], floatBuffer.get(i), 0);
+		}
+
+		IntBuffer intBuffer = input.getIntBuffer();
+		assertEquals(count, intBuffer.limit());
+		for (int i = 0; i < count; i++)
+		{
+			assertEquals(ints[i], intBuffer.get(i));
+		}
+
+		double[] doubleArray = input.getDoubles();
+		assertEquals(count - 1, doubleArray.length);
+		for (int i = 0; i < count - 1; i++)
+		{
+			assertEquals(doubles[i], doubleArray[i], 0);
+		}
+
+		assertNull(input.getFloatBuffer());
+		assertEquals(7, input.getInt());
+	}
+
+	@Test
+	public void testMissingFile() throws IOException
+	{
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+		assertNull(BinaryCacheFile.open(null, TYPE, VERSION, KEY));
+	}
+
+	@Test
+	public void testHeaderMismatch() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putInt(1);
+		output.commit();
+
+		assertNotNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+		assertNull(BinaryCacheFile.open(cacheFile, "Other", VERSION, KEY));
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION + 1, KEY));
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY + "2"));
+	}
+
+	@Test
+	public void testModifiedSource() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putInt(1);
+		output.commit();
+
+		writeSource(sourceFile, 11);
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+	}
+
+	@Test
+	public void testDeletedSource() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putInt(1);
+		output.commit();
+
+		sourceFile.delete();
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+	}
+
+	@Test
+	public void testCorruptFile() throws IOException
+	{
+		writeSource(cacheFile, 5);
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+	}
+
+	@Test
+	public void testAbort() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putInt(1);
+		output.abort();
+
+		assertFalse(cacheFile.exists());
+		assertNull(BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY));
+	}
+
+	@Test
+	public void testCommitReplacesExisting() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putInt(1);
+		output.commit();
+
+		output = createCache(KEY);
+		output.putInt(2);
+		output.commit();
+
+		BinaryCacheFile.Input input = BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY);
+		assertEquals(2, input.getInt());
+	}
+
+	@Test
+	public void testCommitReplacesOpenCache() throws IOException
+	{
+		BinaryCacheFile.Output output = createCache(KEY);
+		output.putFloats(FloatBuffer.wrap(new float[] { 1, 2, 3 }));
+		output.commit();
+
+		//buffers read from the cache must not keep the cache file open
+		FloatBuffer floatBuffer = BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY).getFloatBuffer();
+
+		output = createCache(KEY);
+		output.putFloats(FloatBuffer.wrap(new float[] { 4, 5, 6 }));
+		output.commit();
+
+		assertEquals(2, floatBuffer.get(1), 0);
+		assertEquals(5, BinaryCacheFile.open(cacheFile, TYPE, VERSION, KEY).getFloatBuffer().get(1), 0);
+	}
+
+	private BinaryCacheFile.Output createCache(String key) throws IOException
+	{
+		List<File> sources = BinaryCacheFile.sources(sourceFile, null);
+		return BinaryCacheFile.create(cacheFile, TYPE, VERSION, key, sources);
+	}
+
+	private static void writeSource(File file, int length) throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			fos.write(new byte[length]);
+		}
+		finally
+		{
+			fos.close();
+		}
+	}
+}
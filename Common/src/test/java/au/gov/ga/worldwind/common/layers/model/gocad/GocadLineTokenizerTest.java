@@ -0,0 +1,129 @@
+package au.gov.ga.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GocadLineTokenizer} class
+ */
+public class GocadLineTokenizerTest
+{
+	@Test
+	public void testVertexRecord()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("PVRTX      12 147.99040361 -23.49954940     -672.122 5 1e-30 CNXYZ");
+
+		assertFalse(tokenizer.nextKeyword("VRTX"));
+		assertTrue(tokenizer.nextKeyword("PVRTX"));
+		assertEquals(12, tokenizer.nextInt());
+		assertEquals(147.99040361, tokenizer.nextDouble(), 0);
+		assertEquals(-23.49954940, tokenizer.nextDouble(), 0);
+		assertEquals(-672.122, tokenizer.nextDouble(), 0);
+		assertEquals(1e-30, tokenizer.nextDouble(2), 0);
+		assertTrue(tokenizer.hasNext());
+	}
+
+	@Test
+	public void testKeywordMustBeFollowedByWhitespace()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("SEGMENT 1 2");
+		assertFalse(tokenizer.nextKeyword("SEG"));
+
+		tokenizer.reset("SEG\t1 2");
+		assertTrue(tokenizer.nextKeyword("SEG"));
+		assertEquals(1, tokenizer.nextInt());
+		assertEquals(2, tokenizer.nextInt());
+		assertFalse(tokenizer.hasNext());
+	}
+
+	@Test
+	public void testNextDoubleOfMissingValueIsNaN()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("1,2, 3");
+		assertEquals(3, tokenizer.nextDouble(3), 0);
+
+		tokenizer.reset("1 2 3");
+		assertTrue(Double.isNaN(tokenizer.nextDouble(4)));
+
+		tokenizer.reset("1 abc 3");
+		assertTrue(Double.isNaN(tokenizer.nextDouble(3)));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidInt()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("1.5");
+		tokenizer.nextInt();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntOverflow()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("2147483648");
+		tokenizer.nextInt();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidDouble()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("1.2.3");
+		tokenizer.nextDouble();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testMissingDouble()
+	{
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		tokenizer.reset("   ");
+		tokenizer.nextDouble();
+	}
+
+	@Test
+	public void testDoublesMatchParseDouble()
+	{
+		String[] strings =
+				{ "0", "-0", "0.1", ".5", "5.", "-672.122", "1e-30", "1E+5", "123456789012345678901234",
+						"0.000000000000000000000000001", "9007199254740993", "3.141592653589793238", "1e400",
+						"-2.5e-320", "6000000.123", "+42" };
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
+		for (String s : strings)
+		{
+			tokenizer.reset(s);
+			assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+					Double.doubleToLongBits(tokenizer.nextDouble()));
+		}
+
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++)
+		{
+			double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 4);
+			String s = random.nextBoolean() ? Double.toString(d) : String.format("%.6f", d);
+			tokenizer.reset(s);
+			assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+					Double.doubleToLongBits(tokenizer.nextDouble()));
+		}
+	}
+
+	@Test
+	public void testCommentAndObjectEnd()
+	{
+		assertTrue(GocadLineTokenizer.isComment("# comment"));
+		assertTrue(GocadLineTokenizer.isComment(" \t#"));
+		assertFalse(GocadLineTokenizer.isComment("VRTX 1 2 3 4 # comment"));
+		assertFalse(GocadLineTokenizer.isComment(""));
+
+		assertTrue(GocadLineTokenizer.isObjectEnd("END"));
+		assertTrue(GocadLineTokenizer.isObjectEnd("END  "));
+		assertFalse(GocadLineTokenizer.isObjectEnd("END_ORIGINAL_COORDINATE_SYSTEM"));
+		assertFalse(GocadLineTokenizer.isObjectEnd(" END"));
+	}
+}
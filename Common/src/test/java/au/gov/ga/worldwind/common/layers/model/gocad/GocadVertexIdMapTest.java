@@ -0,0 +1,66 @@
+package au.gov.ga.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GocadVertexIdMap} class
+ */
+public class GocadVertexIdMapTest
+{
+	@Test
+	public void testSequentialIds()
+	{
+		GocadVertexIdMap classToBeTested = new GocadVertexIdMap();
+		for (int i = 0; i < 100000; i++)
+		{
+			classToBeTested.put(i + 1, i);
+		}
+		for (int i = 0; i < 100000; i++)
+		{
+			assertEquals(i, classToBeTested.get(i + 1));
+		}
+		assertFalse(classToBeTested.containsKey(0));
+		assertFalse(classToBeTested.containsKey(100001));
+		assertTrue(classToBeTested.getDenseLength() > 100000);
+	}
+
+	@Test
+	public void testLargeIdsDontGrowDenseArray()
+	{
+		GocadVertexIdMap classToBeTested = new GocadVertexIdMap();
+		for (int i = 0; i < 10; i++)
+		{
+			classToBeTested.put(50000000 + i, i);
+		}
+		for (int i = 0; i < 10; i++)
+		{
+			assertEquals(i, classToBeTested.get(50000000 + i));
+		}
+		assertEquals(-1, classToBeTested.get(50000010));
+		assertTrue(classToBeTested.getDenseLength() < 10000);
+	}
+
+	@Test
+	public void testSparseIdsBelowGrownArray()
+	{
+		GocadVertexIdMap classToBeTested = new GocadVertexIdMap();
+		//mapped to the sparse map while the dense array is small
+		classToBeTested.put(5000, 1);
+		classToBeTested.put(-3, 2);
+		for (int i = 0; i < 5000; i++)
+		{
+			classToBeTested.put(i, 100 + i);
+		}
+		assertTrue(classToBeTested.getDenseLength() > 5000);
+
+		assertEquals(1, classToBeTested.get(5000));
+		assertEquals(2, classToBeTested.get(-3));
+		assertEquals(100, classToBeTested.get(0));
+
+		//remapping an id moves it into the dense array
+		classToBeTested.put(5000, 3);
+		assertEquals(3, classToBeTested.get(5000));
+	}
+}
@@ -0,0 +1,195 @@
+package au.gov.ga.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GocadVoxetReader} class
+ */
+public class GocadVoxetReaderTest
+{
+	private static final int NU = 7;
+	private static final int NV = 5;
+	private static final int NW = 4;
+	private static final float NO_DATA = -99999f;
+
+	private GocadVoxetReader classToBeTested;
+	private File file;
+
+	@Before
+	public void setup() throws IOException
+	{
+		classToBeTested = new GocadVoxetReader();
+		classToBeTested.begin(new GocadReaderParameters());
+		file = File.createTempFile("voxet", ".vo@@");
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testIbmToIeeeEdgeValues()
+	{
+		int[] edges =
+				{ 0x00000000, 0x80000000, 0x41100000, 0xc1100000, 0x00000001, 0x80000001, 0x00ffffff, 0x00100000,
+						0x40000001, 0x3f100000, 0x7f000001, 0x7fffffff, 0xffffffff, 0x7f800000, 0x21100000,
+						0x61ffffff, 0xc276a000 };
+		for (int bits : edges)
+		{
+			assertSameFloat(bits, oldIbmToIeee(bits), GocadVoxetReader.ibmToIeee(bits));
+		}
+
+		float[] output = new float[edges.length];
+		GocadVoxetReader.ibmToIeee(edges, output, edges.length);
+		for (int i = 0; i < edges.length; i++)
+		{
+			assertSameFloat(edges[i], oldIbmToIeee(edges[i]), output[i]);
+		}
+	}
+
+	@Test
+	public void testIbmToIeeeAllExponents()
+	{
+		Random random = new Random(0);
+		for (int exponent = 0; exponent < 128; exponent++)
+		{
+			for (int i = 0; i < 1000; i++)
+			{
+				int sign = random.nextBoolean() ? 0x80000000 : 0;
+				int bits = sign | (exponent << 24) | random.nextInt(0x1000000);
+				assertSameFloat(bits, oldIbmToIeee(bits), GocadVoxetReader.ibmToIeee(bits));
+			}
+		}
+	}
+
+	@Test
+	public void testMappedMatchesStreamIeee() throws IOException
+	{
+		writeVoxet(true);
+		assertReadersMatch(true, 1, 1, 1, false);
+		assertReadersMatch(true, 2, 2, 3, false);
+		assertReadersMatch(true, 2, 2, 3, true);
+	}
+
+	@Test
+	public void testMappedMatchesStreamIbm() throws IOException
+	{
+		writeVoxet(false);
+		assertReadersMatch(false, 1, 1, 1, false);
+		assertReadersMatch(false, 3, 2, 2, false);
+		assertReadersMatch(false, 3, 2, 2, true);
+	}
+
+	private void assertReadersMatch(boolean ieee, int strideU, int strideV, int strideW, boolean bilinear)
+			throws IOException
+	{
+		int uSamples = 1 + (NU - 1) / strideU;
+		int vSamples = 1 + (NV - 1) / strideV;
+		int wSamples = 1 + (NW - 1) / strideW;
+		int length = uSamples * vSamples * wSamples;
+
+		float[] mappedValues = newValues(length);
+		int[] mappedCount = bilinear ? new int[length] : null;
+		classToBeTested.readValuesMapped(file, ieee, NO_DATA, NU, NV, NW, strideU, strideV, strideW, uSamples,
+				vSamples, mappedValues, mappedCount);
+
+		float[] streamValues = newValues(length);
+		int[] streamCount = bilinear ? new int[length] : null;
+		classToBeTested.readValuesStream(file.toURI().toURL(), ieee, NO_DATA, NU, NV, NW, strideU, strideV, strideW,
+				uSamples, vSamples, streamValues, streamCount);
+
+		assertArrayEquals(streamValues, mappedValues, 0f);
+		if (bilinear)
+		{
+			assertArrayEquals(streamCount, mappedCount);
+		}
+	}
+
+	private void writeVoxet(boolean ieee) throws IOException
+	{
+		//the default LITTLE_ENDIAN byte order parameter reads the most significant byte first
+		assertEquals(ByteOrder.LITTLE_ENDIAN, new GocadReaderParameters().getByteOrder());
+
+		Random random = new Random(1);
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			for (int i = 0; i < NU * NV * NW; i++)
+			{
+				boolean noData = i % 5 == 0;
+				if (ieee)
+				{
+					dos.writeFloat(noData ? NO_DATA : random.nextFloat() * 1000f - 500f);
+				}
+				else
+				{
+					//0xc51869f0 is the IBM encoding of NO_DATA
+					int bits =
+							(random.nextInt(2) << 31) | ((60 + random.nextInt(8)) << 24) | random.nextInt(0x1000000);
+					dos.writeInt(noData ? 0xc51869f0 : bits);
+				}
+			}
+		}
+		finally
+		{
+			dos.close();
+		}
+	}
+
+	private static float[] newValues(int length)
+	{
+		float[] values = new float[length];
+		for (int i = 0; i < length; i++)
+		{
+			values[i] = Float.NaN;
+		}
+		return values;
+	}
+
+	private static void assertSameFloat(int bits, float expected, float actual)
+	{
+		assertEquals("IBM bits 0x" + Integer.toHexString(bits), Float.floatToIntBits(expected),
+				Float.floatToIntBits(actual));
+	}
+
+	/**
+	 * The IBM to IEEE conversion used before the exponent lookup table was
+	 * introduced.
+	 */
+	private static float oldIbmToIeee(int bits)
+	{
+		int b0 = bits & 0xff;
+		int b1 = (bits >>> 8) & 0xff;
+		int b2 = (bits >>> 16) & 0xff;
+		int b3 = (bits >>> 24) & 0xff;
+
+		byte S = (byte) ((b3 & 0x80) >> 7);
+		int E = (b3 & 0x7f);
+		long F = (b2 << 16) + (b1 << 8) + b0;
+
+		if (S == 0 && E == 0 && F == 0)
+			return 0;
+
+		double A = 16.0;
+		double B = 64.0;
+		double e24 = 16777216.0; // 2^24
+		double M = (double) F / e24;
+
+		double F1 = S == 0 ? 1.0 : -1.0;
+		return (float) (F1 * M * Math.pow(A, E - B));
+	}
+}
@@ -0,0 +1,96 @@
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the tiles/sec that parallel threads can read and write through a
+ * single lock (the old shared fileLock) compared with the striped
+ * {@link FileLockSharer} tile locks.
+ * <p/>
+ * This is a wall-clock benchmark, so it is not part of the unit tests; run its
+ * {@link #main(String[])} method manually.
+ */
+public class FileLockSharerBenchmark
+{
+	private static final int THREADS = 8;
+	private static final long STRESS_MILLIS = 1000;
+
+	public static void main(String[] args) throws Exception
+	{
+		File directory = File.createTempFile("filelocksharer", "");
+		directory.delete();
+		directory.mkdirs();
+		try
+		{
+			for (int i = 0; i < FileLockSharerTest.TILE_COUNT; i++)
+			{
+				FileLockSharerTest.writeTile(FileLockSharerTest.tileFile(directory, i), (byte) 0);
+			}
+
+			double single = measureTilesPerSecond(new FileLockSharer.TileLocks(1), directory);
+			double striped = measureTilesPerSecond(FileLockSharer.getTileLocks(directory.getPath()), directory);
+			System.out.println(String.format("Parallel tile reads/writes with %d threads: single lock %.0f tiles/sec, "
+					+ "striped locks %.0f tiles/sec", THREADS, single, striped));
+		}
+		finally
+		{
+			File[] files = directory.listFiles();
+			if (files != null)
+			{
+				for (File file : files)
+				{
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+
+	private static double measureTilesPerSecond(final FileLockSharer.TileLocks locks, final File directory)
+			throws InterruptedException, IOException
+	{
+		final long end = System.currentTimeMillis() + STRESS_MILLIS;
+		final AtomicInteger tiles = new AtomicInteger();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++)
+		{
+			final Random random = new Random(t);
+			threads[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						byte[] buffer = new byte[FileLockSharerTest.TILE_SIZE];
+						while (System.currentTimeMillis() < end)
+						{
+							FileLockSharerTest.accessTile(locks, directory, random, buffer);
+							tiles.incrementAndGet();
+						}
+					}
+					catch (Throwable e)
+					{
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		if (error.get() != null)
+		{
+			throw new IOException("Error during benchmark", error.get());
+		}
+		return tiles.get() * 1000d / STRESS_MILLIS;
+	}
+}
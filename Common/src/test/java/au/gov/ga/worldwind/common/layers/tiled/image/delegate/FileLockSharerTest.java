@@ -0,0 +1,335 @@
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FileLockSharer} class
+ */
+public class FileLockSharerTest
+{
+	static final int TILE_COUNT = 64;
+	static final int TILE_SIZE = 150 * 150 * 2;
+	private static final int THREADS = 8;
+	private static final int REQUESTS_PER_THREAD = 200;
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("filelocksharer", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void cleanup()
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testSharedLock()
+	{
+		assertSame(FileLockSharer.getLock("cache/a"), FileLockSharer.getLock("cache/a"));
+		assertNotSame(FileLockSharer.getLock("cache/a"), FileLockSharer.getLock("cache/b"));
+	}
+
+	@Test
+	public void testSharedTileLocks()
+	{
+		assertSame(FileLockSharer.getTileLocks("cache/a"), FileLockSharer.getTileLocks("cache/a"));
+		assertNotSame(FileLockSharer.getTileLocks("cache/a"), FileLockSharer.getTileLocks("cache/b"));
+	}
+
+	@Test
+	public void testTilePathAndFileURLShareLock()
+	{
+		FileLockSharer.TileLocks locks = new FileLockSharer.TileLocks(1024);
+		Object lock = locks.getLock("Earth/SRTM/5/12/12_34.bil");
+		assertSame(lock, locks.getLock("/C:/Data/WorldWind%20Cache/Earth/SRTM/5/12/12_34.bil"));
+		assertSame(lock, locks.getLock("C:\\Data\\WorldWind Cache\\Earth\\SRTM\\5\\12\\12_34.bil"));
+		assertSame(lock, locks.getLock("5/12/12_34.bil"));
+	}
+
+	@Test
+	public void testDifferentTilesDontBlock() throws Exception
+	{
+		final FileLockSharer.TileLocks locks = new FileLockSharer.TileLocks(64);
+		final String tile = "cache/0/0/0_0.bil";
+		String otherTile = null;
+		for (int i = 1; otherTile == null; i++)
+		{
+			String path = "cache/0/0/0_" + i + ".bil";
+			if (locks.getLock(path) != locks.getLock(tile))
+			{
+				otherTile = path;
+			}
+		}
+
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized (locks.getLock(tile))
+				{
+					locked.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			}
+		});
+		holder.setDaemon(true);
+		holder.start();
+		assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+		try
+		{
+			//another tile's lock must be available while the first tile is locked
+			final CountDownLatch acquired = new CountDownLatch(1);
+			final String finalOtherTile = otherTile;
+			Thread other = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					synchronized (locks.getLock(finalOtherTile))
+					{
+						acquired.countDown();
+					}
+				}
+			});
+			other.setDaemon(true);
+			other.start();
+			assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		}
+		finally
+		{
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void testSameTileSerialized() throws Exception
+	{
+		final FileLockSharer.TileLocks locks = new FileLockSharer.TileLocks(64);
+		final String tile = "cache/0/0/0_0.bil";
+
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized (locks.getLock(tile))
+				{
+					locked.countDown();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			}
+		});
+		holder.setDaemon(true);
+		holder.start();
+		assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+		final CountDownLatch acquired = new CountDownLatch(1);
+		Thread other = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				//same tile, referenced by its file path
+				synchronized (locks.getLock("/C:/cache/0/0/0_0.bil"))
+				{
+					acquired.countDown();
+				}
+			}
+		});
+		other.setDaemon(true);
+		try
+		{
+			other.start();
+
+			//the second thread must block on the tile's lock until the first releases it
+			long timeout = System.currentTimeMillis() + 5000;
+			while (other.getState() != Thread.State.BLOCKED && System.currentTimeMillis() < timeout)
+			{
+				Thread.sleep(1);
+			}
+			assertEquals(Thread.State.BLOCKED, other.getState());
+			assertEquals(1, acquired.getCount());
+		}
+		finally
+		{
+			release.countDown();
+		}
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Reads and writes tiles from parallel threads, checking that no reader
+	 * sees a partially written tile.
+	 */
+	@Test
+	public void testParallelTileReadsAndWrites() throws Exception
+	{
+		for (int i = 0; i < TILE_COUNT; i++)
+		{
+			writeTile(tileFile(directory, i), (byte) 0);
+		}
+
+		final FileLockSharer.TileLocks locks = FileLockSharer.getTileLocks(directory.getPath());
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++)
+		{
+			final Random random = new Random(t);
+			threads[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						byte[] buffer = new byte[TILE_SIZE];
+						for (int i = 0; i < REQUESTS_PER_THREAD; i++)
+						{
+							accessTile(locks, directory, random, buffer);
+						}
+					}
+					catch (Throwable e)
+					{
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		if (error.get() != null)
+		{
+			throw new AssertionError(error.get());
+		}
+	}
+
+	/**
+	 * Read or write (one in ten requests) a random tile in the given
+	 * directory, synchronizing on the tile's lock. Throws an
+	 * {@link AssertionError} if a partially written tile is read.
+	 */
+	static void accessTile(FileLockSharer.TileLocks locks, File directory, Random random, byte[] buffer)
+			throws IOException
+	{
+		File file = tileFile(directory, random.nextInt(TILE_COUNT));
+		boolean write = random.nextInt(10) == 0;
+		synchronized (locks.getLock(file.getPath()))
+		{
+			if (write)
+			{
+				writeTile(file, (byte) random.nextInt());
+			}
+			else
+			{
+				readTile(file, buffer);
+			}
+		}
+		if (!write)
+		{
+			for (int i = 1; i < buffer.length; i++)
+			{
+				if (buffer[i] != buffer[0])
+				{
+					throw new AssertionError("Partially written tile read: " + file);
+				}
+			}
+		}
+	}
+
+	static File tileFile(File directory, int index)
+	{
+		return new File(directory, index + "_" + index + ".bil");
+	}
+
+	static void writeTile(File file, byte value) throws IOException
+	{
+		byte[] data = new byte[TILE_SIZE];
+		Arrays.fill(data, value);
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			//write in chunks, so that unsynchronized readers could see a partial tile
+			for (int i = 0; i < data.length; i += 4096)
+			{
+				fos.write(data, i, Math.min(4096, data.length - i));
+			}
+		}
+		finally
+		{
+			fos.close();
+		}
+	}
+
+	static void readTile(File file, byte[] buffer) throws IOException
+	{
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			int offset = 0;
+			while (offset < buffer.length)
+			{
+				int read = is.read(buffer, offset, buffer.length - offset);
+				if (read < 0)
+				{
+					throw new IOException("Tile truncated: " + file + " (" + offset + " bytes)");
+				}
+				offset += read;
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+}
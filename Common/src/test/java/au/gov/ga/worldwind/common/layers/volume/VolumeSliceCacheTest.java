@@ -0,0 +1,108 @@
+package au.gov.ga.worldwind.common.layers.volume;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VolumeSliceCache} class
+ */
+public class VolumeSliceCacheTest
+{
+	private static final int SLICE_SIZE = 10 * 10 * 4;
+
+	@Test
+	public void testGet()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE * 10);
+		VolumeSlice slice = createSlice(0, 5);
+		cache.put(slice);
+		cache.put(createSlice(1, 5));
+
+		assertSame(slice, cache.get(0, 5));
+		assertNull(cache.get(0, 6));
+		assertNull(cache.get(2, 5));
+		assertEquals(2, cache.getCount());
+		assertEquals(SLICE_SIZE * 2, cache.getSize());
+	}
+
+	@Test
+	public void testReplace()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE * 10);
+		cache.put(createSlice(2, 3));
+		VolumeSlice slice = createSlice(2, 3);
+		cache.put(slice);
+
+		assertSame(slice, cache.get(2, 3));
+		assertEquals(1, cache.getCount());
+		assertEquals(SLICE_SIZE, cache.getSize());
+	}
+
+	@Test
+	public void testGetNearest()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE * 10);
+		assertNull(cache.getNearest(0, 5));
+
+		cache.put(createSlice(0, 2));
+		cache.put(createSlice(0, 9));
+		cache.put(createSlice(1, 5));
+
+		assertEquals(2, cache.getNearest(0, 4).getPosition());
+		assertEquals(9, cache.getNearest(0, 7).getPosition());
+		assertEquals(9, cache.getNearest(0, 100).getPosition());
+		assertEquals(5, cache.getNearest(1, 0).getPosition());
+		assertNull(cache.getNearest(2, 5));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE * 3);
+		cache.put(createSlice(0, 0));
+		cache.put(createSlice(0, 1));
+		cache.put(createSlice(0, 2));
+
+		//use slice 0, so that slice 1 is the least recently used
+		cache.get(0, 0);
+		cache.put(createSlice(0, 3));
+
+		assertEquals(3, cache.getCount());
+		assertNotNull(cache.get(0, 0));
+		assertNull(cache.get(0, 1));
+		assertNotNull(cache.get(0, 2));
+		assertNotNull(cache.get(0, 3));
+		assertEquals(SLICE_SIZE * 3, cache.getSize());
+	}
+
+	@Test
+	public void testKeepsNewestSliceLargerThanCapacity()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE / 2);
+		cache.put(createSlice(0, 0));
+		cache.put(createSlice(0, 1));
+
+		assertEquals(1, cache.getCount());
+		assertNotNull(cache.get(0, 1));
+	}
+
+	@Test
+	public void testClear()
+	{
+		VolumeSliceCache cache = new VolumeSliceCache(SLICE_SIZE * 10);
+		cache.put(createSlice(0, 0));
+		cache.clear();
+
+		assertEquals(0, cache.getCount());
+		assertEquals(0, cache.getSize());
+		assertNull(cache.get(0, 0));
+	}
+
+	private static VolumeSlice createSlice(int axis, int position)
+	{
+		return new VolumeSlice(axis, position, new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB), null);
+	}
+}
@@ -0,0 +1,134 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CoalescingExecutor} class
+ */
+public class CoalescingExecutorTest
+{
+	@Test
+	public void testWaitingTaskIsReplaced() throws Exception
+	{
+		CoalescingExecutor executor = new CoalescingExecutor("test", 1);
+		Object owner = new Object();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocking = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicInteger lastRun = new AtomicInteger();
+		final AtomicInteger runCount = new AtomicInteger();
+
+		executor.run(owner, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				started.countDown();
+				awaitQuietly(blocking);
+				runCount.incrementAndGet();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i <= 10; i++)
+		{
+			final int value = i;
+			executor.run(owner, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					lastRun.set(value);
+					runCount.incrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+		blocking.countDown();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertEquals(10, lastRun.get());
+		assertEquals(2, runCount.get());
+		assertEquals(9, executor.getCoalescedCount());
+		assertEquals(11, executor.getSubmittedCount());
+	}
+
+	@Test
+	public void testTasksForSameOwnerDontOverlap() throws Exception
+	{
+		CoalescingExecutor executor = new CoalescingExecutor("test", 4);
+		final Object owner = new Object();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+
+		for (int i = 0; i < 100; i++)
+		{
+			executor.run(owner, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (running.incrementAndGet() > 1)
+						overlaps.incrementAndGet();
+					Thread.yield();
+					running.decrementAndGet();
+				}
+			});
+		}
+
+		waitForIdle(executor);
+		assertEquals(0, overlaps.get());
+	}
+
+	@Test
+	public void testDifferentOwnersRunInParallel() throws Exception
+	{
+		CoalescingExecutor executor = new CoalescingExecutor("test", 2);
+		final CountDownLatch bothRunning = new CountDownLatch(2);
+		final CountDownLatch done = new CountDownLatch(2);
+
+		for (int i = 0; i < 2; i++)
+		{
+			executor.run(new Object(), new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bothRunning.countDown();
+					if (awaitQuietly(bothRunning))
+						done.countDown();
+				}
+			});
+		}
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	private static boolean awaitQuietly(CountDownLatch latch)
+	{
+		try
+		{
+			return latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			return false;
+		}
+	}
+
+	private static void waitForIdle(CoalescingExecutor executor) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 5000;
+		while ((executor.getActiveCount() > 0 || executor.getQueueLength() > 0)
+				&& System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ColorMapLookupTable} class
+ */
+public class ColorMapLookupTableTest
+{
+	private ColorMap colorMap;
+
+	@Before
+	public void setup()
+	{
+		colorMap = new ColorMap();
+		colorMap.put(-10d, Color.red);
+		colorMap.put(0d, Color.green);
+		colorMap.put(30d, new Color(0, 0, 255, 128));
+	}
+
+	@Test
+	public void testColorsAtKeys()
+	{
+		ColorMapLookupTable table = colorMap.createLookupTable(41);
+		assertEquals(41, table.getSize());
+		assertEquals(Color.red.getRGB(), table.getRGB(-10));
+		assertEquals(Color.green.getRGB(), table.getRGB(0));
+		assertEquals(new Color(0, 0, 255, 128).getRGB(), table.getRGB(30));
+	}
+
+	@Test
+	public void testOutOfRange()
+	{
+		ColorMapLookupTable table = colorMap.createLookupTable();
+		assertEquals(Color.red.getRGB(), table.getRGB(-1000));
+		assertEquals(Color.red.getRGB(), table.getRGB(Double.NEGATIVE_INFINITY));
+		assertEquals(new Color(0, 0, 255, 128).getRGB(), table.getRGB(1000));
+		assertEquals(colorMap.calculateColor(Double.NaN).getRGB(), table.getRGB(Double.NaN));
+	}
+
+	@Test
+	public void testMatchesColorMapWithHue()
+	{
+		colorMap.setInterpolateHue(true);
+		assertMatchesColorMap(colorMap.createLookupTable());
+	}
+
+	@Test
+	public void testMatchesColorMapWithoutHue()
+	{
+		colorMap.setInterpolateHue(false);
+		assertMatchesColorMap(colorMap.createLookupTable());
+	}
+
+	@Test
+	public void testPercentages()
+	{
+		ColorMap percentages = new ColorMap();
+		percentages.setValuesPercentages(true);
+		percentages.put(0d, Color.black);
+		percentages.put(1d, Color.white);
+		ColorMapLookupTable table = percentages.createLookupTable();
+
+		assertEquals(Color.black.getRGB(), table.getRGBNotingIsValuesPercentages(100, 100, 200));
+		assertEquals(Color.white.getRGB(), table.getRGBNotingIsValuesPercentages(200, 100, 200));
+		assertEquals(percentages.calculateColorNotingIsValuesPercentages(150, 100, 200).getRGB(),
+				table.getRGBNotingIsValuesPercentages(150, 100, 200));
+	}
+
+	@Test
+	public void testGetRGBs()
+	{
+		ColorMapLookupTable table = colorMap.createLookupTable();
+		float[] values = { 5, -10, -999, 30, 12.5f };
+		int[] rgbs = new int[values.length + 2];
+		table.getRGBs(values, 1, rgbs, 2, 4, 0, 0, -999, 0x01020304);
+
+		assertEquals(0, rgbs[0]);
+		assertEquals(0, rgbs[1]);
+		assertEquals(Color.red.getRGB(), rgbs[2]);
+		assertEquals(0x01020304, rgbs[3]);
+		assertEquals(new Color(0, 0, 255, 128).getRGB(), rgbs[4]);
+		assertEquals(table.getRGB(12.5), rgbs[5]);
+		assertEquals(0, rgbs[6]);
+	}
+
+	@Test
+	public void testSingleEntry()
+	{
+		ColorMap single = new ColorMap();
+		single.put(5d, Color.orange);
+		ColorMapLookupTable table = single.createLookupTable();
+
+		assertEquals(1, table.getSize());
+		assertEquals(Color.orange.getRGB(), table.getRGB(-5));
+		assertEquals(Color.orange.getRGB(), table.getRGB(5));
+		assertEquals(Color.orange.getRGB(), table.getRGB(50));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		ColorMapLookupTable table = new ColorMap().createLookupTable();
+		assertEquals(Color.black.getRGB(), table.getRGB(1));
+	}
+
+	private void assertMatchesColorMap(ColorMapLookupTable table)
+	{
+		//the table is quantized, so allow each channel to differ slightly
+		for (double value = -12; value <= 32; value += 0.01)
+		{
+			int expected = colorMap.calculateColor(value).getRGB();
+			int actual = table.getRGB(value);
+			for (int shift = 0; shift < 32; shift += 8)
+			{
+				int difference = ((expected >>> shift) & 0xff) - ((actual >>> shift) & 0xff);
+				assertTrue("Value " + value, Math.abs(difference) <= 2);
+			}
+		}
+	}
+}
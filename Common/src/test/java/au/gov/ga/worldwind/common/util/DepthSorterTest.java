@@ -0,0 +1,139 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link DepthSorter} class
+ */
+public class DepthSorterTest
+{
+	@Test
+	public void testSortFarthestFirst()
+	{
+		DepthSorter sorter = new DepthSorter();
+		float[] keys = sorter.getKeys(5);
+		keys[0] = 3f;
+		keys[1] = 10f;
+		keys[2] = 0f;
+		keys[3] = 7.5f;
+		keys[4] = 1e9f;
+
+		int[] order = sorter.sort(5);
+
+		assertArrayEquals(new int[] { 4, 1, 3, 0, 2 }, copy(order, 5));
+	}
+
+	@Test
+	public void testSortIsStable()
+	{
+		DepthSorter sorter = new DepthSorter();
+		float[] keys = sorter.getKeys(6);
+		keys[0] = 1f;
+		keys[1] = 2f;
+		keys[2] = 1f;
+		keys[3] = 2f;
+		keys[4] = 1f;
+		keys[5] = 2f;
+
+		int[] order = sorter.sort(6);
+
+		assertArrayEquals(new int[] { 1, 3, 5, 0, 2, 4 }, copy(order, 6));
+	}
+
+	@Test
+	public void testSortNegativeKeys()
+	{
+		DepthSorter sorter = new DepthSorter();
+		float[] keys = sorter.getKeys(4);
+		keys[0] = -1f;
+		keys[1] = 2f;
+		keys[2] = Float.NEGATIVE_INFINITY;
+		keys[3] = -0.5f;
+
+		int[] order = sorter.sort(4);
+
+		assertArrayEquals(new int[] { 1, 3, 0, 2 }, copy(order, 4));
+	}
+
+	@Test
+	public void testSortEmpty()
+	{
+		DepthSorter sorter = new DepthSorter();
+		sorter.getKeys(0);
+		sorter.sort(0);
+		assertEquals(1, sorter.getFullSortCount());
+	}
+
+	@Test
+	public void testIncrementalSortAfterSmallChange()
+	{
+		int count = 10000;
+		Random random = new Random(0);
+		DepthSorter sorter = new DepthSorter();
+		float[] keys = sorter.getKeys(count);
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = random.nextFloat() * count;
+		}
+		sorter.sort(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] += random.nextFloat() * 0.1f;
+		}
+		int[] order = sorter.sort(count);
+
+		assertSorted(keys, order, count);
+		assertEquals(1, sorter.getIncrementalSortCount());
+		assertEquals(1, sorter.getFullSortCount());
+	}
+
+	@Test
+	public void testFullSortAfterLargeChange()
+	{
+		int count = 10000;
+		Random random = new Random(0);
+		DepthSorter sorter = new DepthSorter();
+		float[] keys = sorter.getKeys(count);
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = i;
+		}
+		sorter.sort(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = random.nextFloat();
+		}
+		int[] order = sorter.sort(count);
+
+		assertSorted(keys, order, count);
+		assertEquals(0, sorter.getIncrementalSortCount());
+		assertEquals(2, sorter.getFullSortCount());
+	}
+
+	private static void assertSorted(float[] keys, int[] order, int count)
+	{
+		boolean[] seen = new boolean[count];
+		for (int i = 0; i < count; i++)
+		{
+			assertFalse(seen[order[i]]);
+			seen[order[i]] = true;
+			if (i > 0)
+			{
+				assertTrue(keys[order[i - 1]] >= keys[order[i]]);
+			}
+		}
+	}
+
+	private static int[] copy(int[] array, int length)
+	{
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+}
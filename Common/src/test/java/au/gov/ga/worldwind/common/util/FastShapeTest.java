@@ -0,0 +1,159 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.Sphere;
+import gov.nasa.worldwind.util.BufferWrapper;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import javax.media.opengl.GL;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FastShape} vertex and normal calculations
+ */
+public class FastShapeTest
+{
+	private static final float EPSILON = 1e-6f;
+
+	@Test
+	public void testCalculateNormalsFlatGrid()
+	{
+		int gridSize = 10;
+		FloatBuffer vertices = createGrid(gridSize);
+		IntBuffer indices = createGridIndices(gridSize);
+		FloatBuffer normals = FloatBuffer.allocate(vertices.limit());
+
+		FastShape.calculateNormals(vertices, indices, GL.GL_TRIANGLES, false, normals, new double[normals.limit()],
+				new int[normals.limit() / 3]);
+
+		for (int i = 0; i < normals.limit(); i += 3)
+		{
+			assertEquals(0f, normals.get(i + 0), EPSILON);
+			assertEquals(0f, normals.get(i + 1), EPSILON);
+			assertEquals(1f, normals.get(i + 2), EPSILON);
+		}
+	}
+
+	@Test
+	public void testCalculateNormalsReversed()
+	{
+		int gridSize = 10;
+		FloatBuffer vertices = createGrid(gridSize);
+		IntBuffer indices = createGridIndices(gridSize);
+		FloatBuffer normals = FloatBuffer.allocate(vertices.limit());
+
+		FastShape.calculateNormals(vertices, indices, GL.GL_TRIANGLES, true, normals, new double[normals.limit()],
+				new int[normals.limit() / 3]);
+
+		for (int i = 0; i < normals.limit(); i += 3)
+		{
+			assertEquals(-1f, normals.get(i + 2), EPSILON);
+		}
+	}
+
+	@Test
+	public void testCalculateNormalsDegenerateTriangle()
+	{
+		FloatBuffer vertices = FloatBuffer.wrap(new float[] { 0, 0, 0, 1, 1, 1, 2, 2, 2 });
+		FloatBuffer normals = FloatBuffer.allocate(vertices.limit());
+
+		FastShape.calculateNormals(vertices, null, GL.GL_TRIANGLES, false, normals, new double[9], new int[3]);
+
+		for (int i = 0; i < normals.limit(); i++)
+		{
+			assertEquals(0f, normals.get(i), 0f);
+		}
+	}
+
+	@Test
+	public void testCalculateNormalsTriangleStripWinding()
+	{
+		//strip of two triangles; every second triangle has reversed winding
+		FloatBuffer vertices = FloatBuffer.wrap(new float[] { 0, 0, 0, 0, 1, 0, 1, 0, 0, 1, 1, 0 });
+		FloatBuffer normals = FloatBuffer.allocate(vertices.limit());
+
+		FastShape.calculateNormals(vertices, null, GL.GL_TRIANGLE_STRIP, false, normals, new double[12], new int[4]);
+
+		for (int i = 0; i < normals.limit(); i += 3)
+		{
+			assertEquals(1f, Math.abs(normals.get(i + 2)), EPSILON);
+			assertEquals(Math.signum(normals.get(2)), Math.signum(normals.get(i + 2)), 0f);
+		}
+	}
+
+	@Test
+	public void testCalculateNormalsReusesScratchArrays()
+	{
+		int gridSize = 5;
+		FloatBuffer vertices = createGrid(gridSize);
+		IntBuffer indices = createGridIndices(gridSize);
+		FloatBuffer first = FloatBuffer.allocate(vertices.limit());
+		FloatBuffer second = FloatBuffer.allocate(vertices.limit());
+		double[] sums = new double[vertices.limit()];
+		int[] counts = new int[vertices.limit() / 3];
+
+		FastShape.calculateNormals(vertices, indices, GL.GL_TRIANGLES, false, first, sums, counts);
+		FastShape.calculateNormals(vertices, indices, GL.GL_TRIANGLES, false, second, sums, counts);
+
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void testCreateBoundingSphereMatchesBufferWrapper()
+	{
+		Random random = new Random(0);
+		FloatBuffer vertices = FloatBuffer.allocate(3000);
+		for (int i = 0; i < vertices.limit(); i++)
+		{
+			vertices.put(i, random.nextFloat() * 1000f - 500f);
+		}
+
+		Sphere expected = FastShape.createBoundingSphere(new BufferWrapper.FloatBufferWrapper(vertices));
+		Sphere actual = FastShape.createBoundingSphere(vertices);
+
+		assertEquals(expected.getRadius(), actual.getRadius(), 1e-9);
+		assertEquals(expected.getCenter().x, actual.getCenter().x, 1e-9);
+		assertEquals(expected.getCenter().y, actual.getCenter().y, 1e-9);
+		assertEquals(expected.getCenter().z, actual.getCenter().z, 1e-9);
+	}
+
+	@Test
+	public void testCreateBoundingSphereEmpty()
+	{
+		assertNull(FastShape.createBoundingSphere(FloatBuffer.allocate(0)));
+	}
+
+	private static FloatBuffer createGrid(int gridSize)
+	{
+		FloatBuffer vertices = FloatBuffer.allocate(gridSize * gridSize * 3);
+		for (int y = 0; y < gridSize; y++)
+		{
+			for (int x = 0; x < gridSize; x++)
+			{
+				vertices.put(x).put(y).put(0);
+			}
+		}
+		vertices.rewind();
+		return vertices;
+	}
+
+	private static IntBuffer createGridIndices(int gridSize)
+	{
+		IntBuffer indices = IntBuffer.allocate((gridSize - 1) * (gridSize - 1) * 6);
+		for (int y = 0; y < gridSize - 1; y++)
+		{
+			for (int x = 0; x < gridSize - 1; x++)
+			{
+				int i = y * gridSize + x;
+				indices.put(i).put(i + 1).put(i + gridSize);
+				indices.put(i + 1).put(i + gridSize + 1).put(i + gridSize);
+			}
+		}
+		indices.rewind();
+		return indices;
+	}
+}
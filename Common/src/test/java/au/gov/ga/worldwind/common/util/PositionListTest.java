@@ -0,0 +1,122 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PositionList} class
+ */
+public class PositionListTest
+{
+	private static final double ALLOWABLE_ERROR = 0.000001;
+
+	@Test
+	public void testAddPrimitives()
+	{
+		PositionList list = new PositionList(1);
+		list.add(-35.5, 149.25, -1200);
+		list.add(10, -20, 30);
+		list.add(0, 0, 0);
+
+		assertEquals(3, list.size());
+		assertEquals(-35.5, list.getLatitude(0), ALLOWABLE_ERROR);
+		assertEquals(149.25, list.getLongitude(0), ALLOWABLE_ERROR);
+		assertEquals(-1200, list.getElevation(0), ALLOWABLE_ERROR);
+		assertEquals(Position.fromDegrees(10, -20, 30), list.get(1));
+	}
+
+	@Test
+	public void testAddPositions()
+	{
+		PositionList list = new PositionList();
+		list.add(Position.fromDegrees(1, 2, 3));
+		list.add(0, Position.fromDegrees(4, 5, 6));
+		list.add(1, Position.fromDegrees(7, 8, 9));
+
+		List<Position> expected = new ArrayList<Position>();
+		expected.add(Position.fromDegrees(4, 5, 6));
+		expected.add(Position.fromDegrees(7, 8, 9));
+		expected.add(Position.fromDegrees(1, 2, 3));
+
+		assertEquals(expected, list);
+	}
+
+	@Test
+	public void testSetAndRemove()
+	{
+		PositionList list = new PositionList();
+		list.add(1, 1, 1);
+		list.add(2, 2, 2);
+		list.add(3, 3, 3);
+
+		Position old = list.set(1, Position.fromDegrees(5, 5, 5));
+		assertEquals(Position.fromDegrees(2, 2, 2), old);
+		assertEquals(5, list.getLatitude(1), ALLOWABLE_ERROR);
+
+		list.setElevation(2, -10);
+		assertEquals(-10, list.getElevation(2), ALLOWABLE_ERROR);
+
+		Position removed = list.remove(0);
+		assertEquals(Position.fromDegrees(1, 1, 1), removed);
+		assertEquals(2, list.size());
+		assertEquals(5, list.getLatitude(0), ALLOWABLE_ERROR);
+		assertEquals(3, list.getLatitude(1), ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testGrowAndTrim()
+	{
+		PositionList list = new PositionList(0);
+		for (int i = 0; i < 1000; i++)
+		{
+			list.add(i / 100d, -i / 100d, i);
+		}
+		list.trimToSize();
+
+		assertEquals(1000, list.size());
+		for (int i = 0; i < 1000; i++)
+		{
+			assertEquals(i / 100d, list.getLatitude(i), ALLOWABLE_ERROR);
+			assertEquals(-i / 100d, list.getLongitude(i), ALLOWABLE_ERROR);
+			assertEquals(i, list.getElevation(i), ALLOWABLE_ERROR);
+		}
+	}
+
+	@Test
+	public void testClear()
+	{
+		PositionList list = new PositionList();
+		list.add(1, 1, 1);
+		list.clear();
+
+		assertTrue(list.isEmpty());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutOfBounds()
+	{
+		PositionList list = new PositionList(10);
+		list.add(1, 1, 1);
+		list.getElevation(1);
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testIteratorFailsOnModification()
+	{
+		PositionList list = new PositionList();
+		list.add(1, 1, 1);
+		list.add(2, 2, 2);
+		Iterator<Position> iterator = list.iterator();
+		iterator.next();
+		list.add(3, 3, 3);
+		iterator.next();
+	}
+}
@@ -205,6 +205,9 @@ public class Application implements UncaughtExceptionHandler
 	private JComboBox bandCombo;
 	private JCheckBox overrideLevelsCheck;
 	private JSpinner overrideLevelsSpinner;
+	private JLabel threadsLabel;
+	private JSpinner threadsSpinner;
+	private JCheckBox archiveCheck;
 
 	private JTextField outputDirectory;
 	private JButton outputButton;
@@ -1056,6 +1059,31 @@ public class Application implements UncaughtExceptionHandler
 		c.insets = new Insets(0, 0, SPACING, 0);
 		panel.add(overrideLevelsSpinner, c);
 
+		threadsLabel = new JLabel("Tiling threads:");
+		c = new GridBagConstraints();
+		c.gridx = 0;
+		c.gridy = ++row;
+		c.anchor = GridBagConstraints.EAST;
+		c.insets = new Insets(0, 0, SPACING, SPACING);
+		trPanel.add(threadsLabel, c);
+
+		threadsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 256, 1));
+		c = new GridBagConstraints();
+		c.gridx = 1;
+		c.gridy = row;
+		c.anchor = GridBagConstraints.WEST;
+		c.insets = new Insets(0, 0, SPACING, 0);
+		trPanel.add(threadsSpinner, c);
+
+		archiveCheck = new JCheckBox("Write each level to a single archive file");
+		c = new GridBagConstraints();
+		c.gridx = 0;
+		c.gridy = ++row;
+		c.gridwidth = 2;
+		c.anchor = GridBagConstraints.WEST;
+		c.insets = new Insets(0, 0, SPACING, 0);
+		trPanel.add(archiveCheck, c);
+
 		outsideCheck = new JCheckBox("");
 		outsideCheck.setSelected(true);
 		c = new GridBagConstraints();
@@ -2140,6 +2168,9 @@ public class Application implements UncaughtExceptionHandler
 			qualityField.setEnabled(jpegRadio.isSelected() && standard && !mapnik);
 			bandCombo.setEnabled(bandCount > 1 && standard);
 			overrideLevelsSpinner.setEnabled(overrideLevelsCheck.isSelected() && standard);
+			threadsLabel.setEnabled(standard);
+			threadsSpinner.setEnabled(standard);
+			archiveCheck.setEnabled(standard);
 
 			for (JTextField field : outsideFields)
 			{
@@ -2383,6 +2414,8 @@ public class Application implements UncaughtExceptionHandler
 				Double lonOrigin = longitudeOriginField.getValue();
 				LatLon origin = new LatLon(latOrigin, lonOrigin);
 				boolean resume = true;
+				int threads = (Integer) threadsSpinner.getModel().getValue();
+				boolean archive = archiveCheck.isSelected();
 
 				LogWriter logWriter = null;
 				try
@@ -2398,7 +2431,7 @@ public class Application implements UncaughtExceptionHandler
 								null, null, null, false);
 
 						Tiler.tileMapnik(mapFile, sector, origin, level, tilesize, lzts, imageFormat, ignoreBlank,
-								reproject, outDir, resume, reporter);
+								reproject, outDir, archive, resume, threads, reporter);
 						if (overviews && !reporter.isCancelled())
 						{
 							if (mapnikOverviews)
@@ -2410,13 +2443,14 @@ public class Application implements UncaughtExceptionHandler
 										break;
 									}
 									Tiler.tileMapnik(mapFile, sector, origin, l, tilesize, lzts, imageFormat,
-											ignoreBlank, reproject, outDir, resume, reporter);
+											ignoreBlank, reproject, outDir, archive, resume, threads, reporter);
 								}
 							}
 							else
 							{
 								Overviewer.createImageOverviews(outDir, imageFormat, tilesize, tilesize, null, sector,
-										origin, lzts, bilinearOverviews, ignoreBlank, jpegQuality, reporter);
+										origin, lzts, bilinearOverviews, ignoreBlank, jpegQuality, archive, threads,
+										reporter);
 							}
 						}
 					}
@@ -2483,11 +2517,12 @@ public class Application implements UncaughtExceptionHandler
 
 							Tiler.tileImages(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
 									imageFormat, addAlpha, jpegQuality, outsideValues, ignoreBlank, minMaxReplaces,
-									replace, otherwise, outDir, resume, reporter);
+									replace, otherwise, outDir, archive, resume, threads, reporter);
 							if (overviews && !reporter.isCancelled())
 							{
 								Overviewer.createImageOverviews(outDir, imageFormat, tilesize, tilesize, outsideValues,
-										sector, origin, lzts, bilinearOverviews, ignoreBlank, jpegQuality, reporter);
+										sector, origin, lzts, bilinearOverviews, ignoreBlank, jpegQuality, archive,
+										threads, reporter);
 							}
 						}
 						else if (elevationRadio.isSelected())
@@ -2514,13 +2549,14 @@ public class Application implements UncaughtExceptionHandler
 
 							Tiler.tileElevations(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
 									bufferType, band, outsideValues, minMaxReplaces, replace, otherwise, minmax,
-									outDir, resume, reporter);
+									outDir, archive, resume, threads, reporter);
 
 							if (overviews && !reporter.isCancelled())
 							{
 								Overviewer.createElevationOverviews(outDir, tilesize, tilesize, bufferType,
 										ByteOrder.LITTLE_ENDIAN, /*TODO remove hardcoded byteorder*/
-										outsideValues, sector, origin, lzts, bilinearOverviews, ignoreBlank, reporter);
+										outsideValues, sector, origin, lzts, bilinearOverviews, ignoreBlank, archive,
+										threads, reporter);
 							}
 
 							if (isFloat)
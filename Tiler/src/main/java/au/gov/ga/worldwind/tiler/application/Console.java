@@ -65,6 +65,7 @@ public class Console
 						+ "       [{-q,--quality} qual] [{-o,--setoutside} \"value[,value...]]\"\n"
 						+ "       [{-r,--replacevalues} \"min1[,min1...] max1[,max1...] min2[,min2...]\n"
 						+ "                              max2[,max2...] with[,with...] else[,else...]\"\n"
+						+ "       [{-x,--threads} threads] [{-c,--archive}]\n"
 						+ "       input_file output_directory\n"
 						+ "\n"
 						+ "General switches:\n"
@@ -89,6 +90,9 @@ public class Console
 						+ "             number of output bands, blanks permitted)\n"
 						+ "  -r \"...\"   Replace values between (number of values in each group must\n"
 						+ "             equal the number of output bands, blanks permitted)\n"
+						+ "  -x threads Number of threads to generate tiles and overviews with (default: 1)\n"
+						+ "  -c         Write each level to a single tile archive file (LEVEL.tilepack)\n"
+						+ "             instead of a directory of tile files\n"
 						+ "Image specific switches:\n"
 						+ "  -f format  Image output format (default: JPG)\n"
 						+ "  -a         Add alpha band to image tiles if input has no alpha band\n"
@@ -128,6 +132,8 @@ public class Console
 		//-r --replacevalues "n,n,n n,n,n n,n,n n,n,n n,n,n n,n,n"
 		//-k --includeblank
 		//-s --origin n,n
+		//-x --threads n
+		//-c --archive
 
 		CmdLineParser parser = new CmdLineParser();
 
@@ -147,6 +153,8 @@ public class Console
 		Option bilinearOverviewsO = parser.addBooleanOption('g', "nominification");
 		Option includeBlankO = parser.addBooleanOption('k', "includeblank");
 		Option qualityO = parser.addDoubleOption('q', "quality");
+		Option threadsO = parser.addIntegerOption('x', "threads");
+		Option archiveO = parser.addBooleanOption('c', "archive");
 		Option originO = new Option('s', "origin", true)
 		{
 			@Override
@@ -219,6 +227,12 @@ public class Console
 		boolean bilinearOverviews = !nobilinearOverviews;
 		Boolean includeBlank = (Boolean) parser.getOptionValue(includeBlankO, false);
 		Double quality = (Double) parser.getOptionValue(qualityO, 0.75);
+		Boolean archive = (Boolean) parser.getOptionValue(archiveO, false);
+		Integer threads = (Integer) parser.getOptionValue(threadsO, 1);
+		if (threads < 1)
+		{
+			exitWithMessage("Thread count must be at least 1");
+		}
 
 		Integer tilesize = (Integer) parser.getOptionValue(tilesizeO, elevations ? 150 : 512);
 		LatLon origin = (LatLon) parser.getOptionValue(originO, LatLon.DEFAULT_ORIGIN);
@@ -304,12 +318,12 @@ public class Console
 					NumberArray minMax = new NumberArray(2);
 					Tiler.tileElevations(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
 							bufferType, band, outside, replaces.replaceMinMaxs, replaces.replace, replaces.otherwise,
-							minMax, output, true, reporter);
+							minMax, output, archive, true, threads, reporter);
 					if (!nooverviews)
 					{
 						Overviewer.createElevationOverviews(output, tilesize, tilesize, bufferType,
 								ByteOrder.LITTLE_ENDIAN, outside, sector, origin, lzts, bilinearOverviews,
-								!includeBlank, reporter);
+								!includeBlank, archive, threads, reporter);
 					}
 					logWriter.logMinMax(minMax, isFloat);
 				}
@@ -321,11 +335,12 @@ public class Console
 
 					Tiler.tileImages(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts, imageFormat,
 							addAlpha, quality.floatValue(), outside, !includeBlank, replaces.replaceMinMaxs,
-							replaces.replace, replaces.otherwise, output, true, reporter);
+							replaces.replace, replaces.otherwise, output, archive, true, threads, reporter);
 					if (!nooverviews)
 					{
 						Overviewer.createImageOverviews(output, imageFormat, tilesize, tilesize, outside, sector,
-								origin, lzts, bilinearOverviews, !includeBlank, quality.floatValue(), reporter);
+								origin, lzts, bilinearOverviews, !includeBlank, quality.floatValue(), archive, threads,
+								reporter);
 					}
 				}
 			}
@@ -26,34 +26,37 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 
 import org.gdal.gdal.gdal;
 
+import au.gov.ga.worldwind.tiler.archive.TileArchive;
+import au.gov.ga.worldwind.tiler.archive.TileStore;
+import au.gov.ga.worldwind.tiler.archive.TileStoreUtil;
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
-import au.gov.ga.worldwind.tiler.util.FileFilters.DirectoryFileFilter;
-import au.gov.ga.worldwind.tiler.util.FileFilters.ExtensionFileFilter;
-import au.gov.ga.worldwind.tiler.util.FileUtil;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.ProgressReporter;
 import au.gov.ga.worldwind.tiler.util.Sector;
-import au.gov.ga.worldwind.tiler.util.Util;
 
 /**
  * This class is used to generate the overviews of the lowest level of tiles.
@@ -96,8 +99,35 @@ public class Overviewer
 			NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts, boolean bilinear,
 			boolean ignoreBlank, float jpegQuality, ProgressReporter reporter)
 	{
-		OverviewCreator overviewCreator = new ImageOverviewCreator(width, height, outsideValues, bilinear, jpegQuality);
-		createOverviews(overviewCreator, directory, extension, sector, origin, lzts, ignoreBlank, reporter);
+		createImageOverviews(directory, extension, width, height, outsideValues, sector, origin, lzts, bilinear,
+				ignoreBlank, jpegQuality, false, 1, reporter);
+	}
+
+	/**
+	 * Create the overviews of a set of image tiles, using multiple threads.
+	 * 
+	 * @param archive
+	 *            Are the levels stored in tile archive files, instead of
+	 *            directories of tile files?
+	 * @param threads
+	 *            Maximum number of overview tiles to generate concurrently
+	 * @see #createImageOverviews(File, String, int, int, NullableNumberArray,
+	 *      Sector, LatLon, double, boolean, boolean, float, ProgressReporter)
+	 */
+	public static void createImageOverviews(File directory, String extension, int width, int height,
+			NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts, boolean bilinear,
+			boolean ignoreBlank, float jpegQuality, boolean archive, int threads, ProgressReporter reporter)
+	{
+		// fix extension
+		if (extension.startsWith("."))
+		{
+			extension = extension.substring(1);
+		}
+
+		OverviewCreator overviewCreator =
+				new ImageOverviewCreator(width, height, extension, outsideValues, bilinear, jpegQuality);
+		createOverviews(overviewCreator, directory, extension, sector, origin, lzts, ignoreBlank, archive, threads,
+				reporter);
 	}
 
 	/**
@@ -132,128 +162,417 @@ public class Overviewer
 	public static void createElevationOverviews(File directory, int width, int height, int bufferType,
 			ByteOrder byteOrder, NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts,
 			boolean bilinear, boolean ignoreBlank, ProgressReporter reporter)
+	{
+		createElevationOverviews(directory, width, height, bufferType, byteOrder, outsideValues, sector, origin, lzts,
+				bilinear, ignoreBlank, false, 1, reporter);
+	}
+
+	/**
+	 * Create the overviews of a set of elevation tiles, using multiple threads.
+	 * 
+	 * @param archive
+	 *            Are the levels stored in tile archive files, instead of
+	 *            directories of tile files?
+	 * @param threads
+	 *            Maximum number of overview tiles to generate concurrently
+	 * @see #createElevationOverviews(File, int, int, int, ByteOrder,
+	 *      NullableNumberArray, Sector, LatLon, double, boolean, boolean,
+	 *      ProgressReporter)
+	 */
+	public static void createElevationOverviews(File directory, int width, int height, int bufferType,
+			ByteOrder byteOrder, NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts,
+			boolean bilinear, boolean ignoreBlank, boolean archive, int threads, ProgressReporter reporter)
 	{
 		int bands = 1;
 		OverviewCreator overviewCreator =
 				new ElevationOverviewCreator(width, height, bands, bufferType, byteOrder, outsideValues, bilinear);
-		createOverviews(overviewCreator, directory, "bil", sector, origin, lzts, ignoreBlank, reporter);
+		createOverviews(overviewCreator, directory, "bil", sector, origin, lzts, ignoreBlank, archive, threads,
+				reporter);
 	}
 
+	/**
+	 * Create overviews for every level above the highest level in the given
+	 * directory.
+	 * <p/>
+	 * Each overview tile is scheduled as soon as all of its (up to four) child
+	 * tiles have been generated, so the levels are filled in as a pipeline
+	 * rather than one complete level at a time. The number of overviews
+	 * generated concurrently is limited by both the thread count and the
+	 * memory each overview requires.
+	 */
 	private static void createOverviews(OverviewCreator overviewCreator, File directory, String extension,
-			Sector sector, LatLon origin, double lzts, boolean ignoreBlank, ProgressReporter progress)
+			Sector sector, LatLon origin, double lzts, boolean ignoreBlank, boolean archive, int threads,
+			ProgressReporter progress)
 	{
 		progress.getLogger().info("Generating overviews...");
 
 		if (directory.isDirectory())
 		{
-			// fix extension
-			if (extension.startsWith("."))
+			int maxlevel = TileStoreUtil.getMaxLevel(directory, archive);
+			TileStore[] stores = new TileStore[Math.max(0, maxlevel + 1)];
+			try
 			{
-				extension = extension.substring(1);
-			}
+				for (int level = maxlevel; level >= 0; level--)
+				{
+					TileArchive layout =
+							archive ? TileStoreUtil.getLayout(sector, origin, level, lzts, extension) : null;
+					stores[level] = TileStoreUtil.open(directory, level, extension, archive, layout);
+				}
 
-			File[] dirs = directory.listFiles(new DirectoryFileFilter());
-			int maxlevel = Integer.MIN_VALUE;
-			for (File dir : dirs)
+				createOverviews(overviewCreator, stores, ignoreBlank, threads, progress);
+			}
+			catch (IOException e)
 			{
-				try
+				progress.getLogger().severe("Could not open tiles: " + e.getMessage());
+			}
+			finally
+			{
+				for (TileStore store : stores)
 				{
-					int num = Integer.parseInt(dir.getName());
-					if (num > maxlevel)
+					try
+					{
+						if (store != null)
+							store.close();
+					}
+					catch (IOException e)
 					{
-						maxlevel = num;
+						progress.getLogger().severe("Error closing tiles: " + e.getMessage());
 					}
 				}
-				catch (NumberFormatException e)
+			}
+		}
+
+		progress.getLogger().info("Overview generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+	}
+
+	private static void createOverviews(OverviewCreator overviewCreator, TileStore[] stores, boolean ignoreBlank,
+			int threads, ProgressReporter progress)
+	{
+		int maxlevel = stores.length - 1;
+
+		// build the tree of overview tasks, from the highest level down to level 0
+		LevelStatistics[] statistics = new LevelStatistics[Math.max(0, maxlevel)];
+		List<OverviewTask> ready = new ArrayList<OverviewTask>();
+		Map<Long, OverviewTask> children = null;
+		int size = 0;
+		for (int level = maxlevel; level > 0; level--)
+		{
+			statistics[level - 1] = new LevelStatistics(level - 1);
+			Map<Long, OverviewTask> parents = new HashMap<Long, OverviewTask>();
+
+			if (children != null)
+			{
+				for (OverviewTask child : children.values())
 				{
+					OverviewTask parent =
+							getOrCreateTask(parents, stores[level], stores[level - 1], child.row, child.col,
+									statistics[level - 1]);
+					parent.pending++;
+					child.parent = parent;
 				}
 			}
 
-			int count = 0;
-			int size = 0;
-			for (int i = 0; i < maxlevel; i++)
+			// tiles that already exist (and aren't regenerated) are already complete
+			for (int[] rowcol : stores[level].list())
 			{
-				size += Util.tileCount(sector, origin, i, lzts);
+				if (children == null || !children.containsKey(tileKey(rowcol[0], rowcol[1])))
+				{
+					getOrCreateTask(parents, stores[level], stores[level - 1], rowcol[0], rowcol[1],
+							statistics[level - 1]);
+				}
 			}
 
-			for (int level = maxlevel; level > 0; level--)
+			for (OverviewTask task : parents.values())
 			{
-				if (progress.isCancelled())
-					break;
+				if (task.pending == 0)
+				{
+					ready.add(task);
+				}
+			}
+
+			size += parents.size();
+			children = parents;
+		}
+
+		if (size > 0)
+		{
+			// limit the number of overviews in memory at once to half of the available heap
+			long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+			long taskMemory = Math.max(1, overviewCreator.getMemoryRequired());
+			int concurrency = (int) Math.max(1, Math.min(threads, memoryBudget / taskMemory));
+			progress.getLogger().info("Generating " + size + " overviews with " + concurrency + " threads");
+
+			OverviewScheduler scheduler =
+					new OverviewScheduler(overviewCreator, ignoreBlank, concurrency, size, progress);
+			for (OverviewTask task : ready)
+			{
+				scheduler.submit(task);
+			}
+
+			try
+			{
+				scheduler.await();
+			}
+			catch (InterruptedException e)
+			{
+				progress.getLogger().warning("Overview generation interrupted");
+				progress.cancel();
+			}
+			finally
+			{
+				scheduler.shutdown();
+			}
+		}
+	}
+
+	private static OverviewTask getOrCreateTask(Map<Long, OverviewTask> tasks, TileStore src, TileStore dst, int row,
+			int col, LevelStatistics statistics)
+	{
+		int rowabove = row / 2;
+		int colabove = col / 2;
+		Long key = tileKey(rowabove, colabove);
+		OverviewTask task = tasks.get(key);
+		if (task == null)
+		{
+			task = new OverviewTask(rowabove, colabove, src, dst, statistics);
+			tasks.put(key, task);
+			statistics.taskCount++;
+		}
+		return task;
+	}
+
+	private static long tileKey(int row, int col)
+	{
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	/**
+	 * A single overview tile to generate, and the child tiles it is generated
+	 * from. Also links to its own parent overview, which can be generated once
+	 * all of its pending children are complete.
+	 */
+	private static class OverviewTask
+	{
+		public final int row;
+		public final int col;
+		public final TileStore src;
+		public final TileStore dst;
+		public final LevelStatistics statistics;
+		public OverviewTask parent;
+		public int pending = 0;
+
+		public OverviewTask(int row, int col, TileStore src, TileStore dst, LevelStatistics statistics)
+		{
+			this.row = row;
+			this.col = col;
+			this.src = src;
+			this.dst = dst;
+			this.statistics = statistics;
+		}
 
-				// level directory
-				File dir = new File(directory.getAbsolutePath() + "/" + level);
+		/**
+		 * Mark one of this task's children as complete.
+		 * 
+		 * @return True if this was the last pending child (and this task can
+		 *         be scheduled)
+		 */
+		public synchronized boolean childComplete()
+		{
+			return --pending == 0;
+		}
+	}
 
-				// create a list of files to process
-				ExtensionFileFilter fileFilter = new ExtensionFileFilter(extension);
-				Set<File> sourceFiles = new HashSet<File>();
-				FileUtil.recursivelyAddFiles(sourceFiles, dir, fileFilter);
+	/**
+	 * Executes {@link OverviewTask}s on a pool of threads, scheduling each
+	 * task's parent as soon as the parent's children are all complete.
+	 */
+	private static class OverviewScheduler
+	{
+		private final OverviewCreator overviewCreator;
+		private final boolean ignoreBlank;
+		private final ProgressReporter progress;
+		private final ExecutorService executor;
+		private final CountDownLatch latch;
+		private final AtomicInteger count = new AtomicInteger(0);
+		private final int size;
+
+		public OverviewScheduler(OverviewCreator overviewCreator, boolean ignoreBlank, int threads, int size,
+				ProgressReporter progress)
+		{
+			this.overviewCreator = overviewCreator;
+			this.ignoreBlank = ignoreBlank;
+			this.progress = progress;
+			this.size = size;
+			executor = Executors.newFixedThreadPool(threads);
+			latch = new CountDownLatch(size);
+		}
 
-				while (!sourceFiles.isEmpty())
+		public void submit(final OverviewTask task)
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
 				{
-					if (progress.isCancelled())
-						break;
-
-					count++;
-					progress.getLogger().fine("Overview " + count + "/" + size + " (" + (count * 100 / size) + "%)");
-					progress.progress(count / (double) size);
-
-					File file = sourceFiles.iterator().next();
-					String path = file.getName();
-					Pattern pattern = Pattern.compile("\\d+");
-					Matcher matcher = pattern.matcher(path);
-					matcher.find();
-					int row = Integer.parseInt(matcher.group());
-					matcher.find(matcher.end());
-					int col = Integer.parseInt(matcher.group());
-
-					int rowabove = row / 2;
-					int colabove = col / 2;
-
-					final File src0 = tileFile(dir, extension, rowabove * 2, colabove * 2);
-					final File src1 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2);
-					final File src2 = tileFile(dir, extension, rowabove * 2, colabove * 2 + 1);
-					final File src3 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2 + 1);
-
-					sourceFiles.remove(src0);
-					sourceFiles.remove(src1);
-					sourceFiles.remove(src2);
-					sourceFiles.remove(src3);
-
-					final File dst =
-							tileFile(new File(dir.getParent() + "/" + (level - 1)), extension, rowabove, colabove);
-					dst.getParentFile().mkdirs();
-					if (dst.exists())
-					{
-						progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
-					}
-					else
+					try
 					{
-						try
-						{
-							overviewCreator.mix(src0, src1, src2, src3, dst, ignoreBlank);
-						}
-						catch (IOException e)
+						if (!progress.isCancelled())
 						{
-							progress.getLogger().severe(e.getMessage());
+							generate(task);
 						}
 					}
+					finally
+					{
+						complete(task);
+					}
 				}
+			});
+		}
+
+		public void await() throws InterruptedException
+		{
+			latch.await();
+		}
+
+		public void shutdown()
+		{
+			executor.shutdownNow();
+		}
+
+		private void generate(OverviewTask task)
+		{
+			task.statistics.started();
+			if (task.dst.exists(task.row, task.col))
+			{
+				progress.getLogger().warning(task.dst.getName(task.row, task.col) + " already exists");
+				return;
+			}
+
+			try
+			{
+				// +--+--+
+				// |s1|s3|
+				// +--+--+
+				// |s0|s2|
+				// +--+--+
+				ByteBuffer src0 = read(task.src, task.row * 2, task.col * 2);
+				ByteBuffer src1 = read(task.src, task.row * 2 + 1, task.col * 2);
+				ByteBuffer src2 = read(task.src, task.row * 2, task.col * 2 + 1);
+				ByteBuffer src3 = read(task.src, task.row * 2 + 1, task.col * 2 + 1);
+
+				if (src0 == null && src1 == null && src2 == null && src3 == null)
+				{
+					if (!ignoreBlank)
+						throw new IOException("No children tiles exist for " + task.dst.getName(task.row, task.col));
+					return;
+				}
+
+				ByteBuffer data = overviewCreator.mix(src0, src1, src2, src3);
+				task.dst.write(task.row, task.col, data);
+			}
+			catch (Exception e)
+			{
+				progress.getLogger().severe(e.getMessage());
 			}
 		}
 
-		progress.getLogger().info("Overview generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+		private ByteBuffer read(TileStore store, int row, int col) throws IOException
+		{
+			try
+			{
+				return store.read(row, col);
+			}
+			catch (IOException e)
+			{
+				throw new IOException("Error reading " + store.getName(row, col), e);
+			}
+		}
+
+		private void complete(OverviewTask task)
+		{
+			int c = count.incrementAndGet();
+			progress.getLogger().fine("Overview " + c + "/" + size + " (" + (c * 100 / size) + "%)");
+			synchronized (progress)
+			{
+				progress.progress(count.get() / (double) size);
+			}
+
+			if (task.statistics.completed() && !progress.isCancelled())
+			{
+				progress.getLogger().info(task.statistics.toString());
+			}
+
+			OverviewTask parent = task.parent;
+			task.parent = null;
+			if (parent != null && parent.childComplete())
+			{
+				submit(parent);
+			}
+			latch.countDown();
+		}
 	}
 
-	private static File tileFile(File dir, String extension, int row, int col)
+	/**
+	 * Records the number of overviews generated for a level, and the time
+	 * taken to generate them.
+	 */
+	private static class LevelStatistics
 	{
-		return new File(dir.getAbsolutePath() + "/" + FileUtil.paddedInt(row, 4) + "/" + FileUtil.paddedInt(row, 4)
-				+ "_" + FileUtil.paddedInt(col, 4) + "." + extension);
+		public final int level;
+		public int taskCount = 0;
+		private final AtomicInteger completed = new AtomicInteger(0);
+		private final AtomicLong startTime = new AtomicLong(0);
+		private volatile long endTime;
+
+		public LevelStatistics(int level)
+		{
+			this.level = level;
+		}
+
+		public void started()
+		{
+			startTime.compareAndSet(0, System.currentTimeMillis());
+		}
+
+		/**
+		 * Mark one of this level's overviews as complete.
+		 * 
+		 * @return True if this was the last overview in the level
+		 */
+		public boolean completed()
+		{
+			if (completed.incrementAndGet() == taskCount)
+			{
+				endTime = System.currentTimeMillis();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString()
+		{
+			double seconds = Math.max(1, endTime - startTime.get()) / 1000d;
+			return "Level " + level + ": " + taskCount + " overviews in " + String.format("%.1f", seconds) + "s ("
+					+ String.format("%.1f", taskCount / seconds) + " tiles/s)";
+		}
 	}
 
 	private interface OverviewCreator
 	{
-		void mix(File src0, File src1, File src2, File src3, File dst, boolean ignoreBlank) throws IOException;
+		/**
+		 * Generate an overview tile from the data of its four child tiles. At
+		 * least one child must exist.
+		 * 
+		 * @return Data of the overview tile
+		 */
+		ByteBuffer mix(ByteBuffer src0, ByteBuffer src1, ByteBuffer src2, ByteBuffer src3) throws IOException;
+
+		/**
+		 * @return Approximate number of bytes of memory required to generate a
+		 *         single overview tile
+		 */
+		long getMemoryRequired();
 	}
 
 	private static class ImageOverviewCreator implements OverviewCreator
@@ -261,14 +580,16 @@ public class Overviewer
 		private BufferedImage outsideImage;
 		private int width;
 		private int height;
+		private String imageFormat;
 		private boolean bilinear;
 		private float jpegQuality;
 
-		public ImageOverviewCreator(int width, int height, NullableNumberArray outsideValues, boolean bilinear,
-				float jpegQuality)
+		public ImageOverviewCreator(int width, int height, String imageFormat, NullableNumberArray outsideValues,
+				boolean bilinear, float jpegQuality)
 		{
 			this.width = width;
 			this.height = height;
+			this.imageFormat = imageFormat.toLowerCase();
 			this.bilinear = bilinear;
 			this.jpegQuality = jpegQuality;
 
@@ -309,58 +630,19 @@ public class Overviewer
 		}
 
 		@Override
-		public void mix(File src0, File src1, File src2, File src3, File dst, boolean ignoreBlank) throws IOException
+		public ByteBuffer mix(ByteBuffer src0, ByteBuffer src1, ByteBuffer src2, ByteBuffer src3) throws IOException
 		{
-			if (dst.exists())
-				throw new IllegalArgumentException("Destination already exists");
-
-			BufferedImage i0 = null, i1 = null, i2 = null, i3 = null;
-
-			try
-			{
-				if (src0.exists())
-					i0 = ImageIO.read(src0);
-			}
-			catch (Exception e)
-			{
-				throw new IOException("Error reading " + src0, e);
-			}
-			try
-			{
-				if (src1.exists())
-					i1 = ImageIO.read(src1);
-			}
-			catch (Exception e)
-			{
-				throw new IOException("Error reading " + src1, e);
-			}
-			try
-			{
-				if (src2.exists())
-					i2 = ImageIO.read(src2);
-			}
-			catch (Exception e)
-			{
-				throw new IOException("Error reading " + src2, e);
-			}
-			try
-			{
-				if (src3.exists())
-					i3 = ImageIO.read(src3);
-			}
-			catch (Exception e)
-			{
-				throw new IOException("Error reading " + src3, e);
-			}
+			BufferedImage i0 = readImage(src0);
+			BufferedImage i1 = readImage(src1);
+			BufferedImage i2 = readImage(src2);
+			BufferedImage i3 = readImage(src3);
 
 			BufferedImage image = i0 != null ? i0 : i1 != null ? i1 : i2 != null ? i2 : i3 != null ? i3 : null;
 
 			//if no images exist
 			if (image == null)
 			{
-				if (ignoreBlank)
-					return;
-				throw new IOException("No children images exist for " + dst);
+				throw new IOException("No children images exist");
 			}
 
 			int type = image != null && image.getType() != 0 ? image.getType() : BufferedImage.TYPE_INT_ARGB;
@@ -409,9 +691,26 @@ public class Overviewer
 
 			g.dispose();
 
-			dst.getParentFile().mkdirs();
-			String imageformat = dst.getName().substring(dst.getName().lastIndexOf('.') + 1).toLowerCase();
-			Tiler.writeImage(id, imageformat, dst, jpegQuality);
+			return Tiler.encodeImage(id, imageFormat, jpegQuality);
+		}
+
+		private BufferedImage readImage(ByteBuffer buffer) throws IOException
+		{
+			if (buffer == null)
+				return null;
+			BufferedImage image =
+					ImageIO.read(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(),
+							buffer.remaining()));
+			if (image == null)
+				throw new IOException("Unsupported image format");
+			return image;
+		}
+
+		@Override
+		public long getMemoryRequired()
+		{
+			//four source images and the destination image, at up to 4 bytes per pixel
+			return 5L * width * height * 4;
 		}
 	}
 
@@ -424,7 +723,7 @@ public class Overviewer
 		private int width;
 		private int height;
 		private int bands;
-		private TypeHandler typeHandler;
+		private OverviewKernel kernel;
 		private boolean bilinear;
 
 		public ElevationOverviewCreator(int width, int height, int bands, int bufferType, ByteOrder byteOrder,
@@ -444,7 +743,7 @@ public class Overviewer
 			if (outsideValues != null && outsideValues.length() != bands)
 				throw new IllegalArgumentException("Outside values array length doesn't equal the number of bands");
 
-			typeHandler = createTypeHandler();
+			kernel = createKernel(width, height, bilinear);
 
 			this.outsideValues = outsideValues;
 			this.byteOrder = byteOrder;
@@ -454,293 +753,456 @@ public class Overviewer
 			this.bilinear = bilinear;
 		}
 
-		private TypeHandler createTypeHandler()
+		private OverviewKernel createKernel(int width, int height, boolean bilinear)
 		{
 			switch (bufferTypeSize)
 			{
 			case 1:
-				return new ByteTypeHandler();
+				return new ByteOverviewKernel(width, height, bilinear);
 			case 2:
-				return new ShortTypeHandler();
+				return new ShortOverviewKernel(width, height, bilinear);
 			case 4:
-				return floatingPoint ? new FloatTypeHandler() : new IntTypeHandler();
+				return floatingPoint ? new FloatOverviewKernel(width, height, bilinear) : new IntOverviewKernel(
+						width, height, bilinear);
 			case 8:
-				return new DoubleTypeHandler();
+				return new DoubleOverviewKernel(width, height, bilinear);
 			}
 			return null;
 		}
 
 		@Override
-		public void mix(File src0, File src1, File src2, File src3, File dst, boolean ignoreBlank) throws IOException
+		public ByteBuffer mix(ByteBuffer src0, ByteBuffer src1, ByteBuffer src2, ByteBuffer src3) throws IOException
 		{
-			if (dst.exists())
-				throw new IllegalArgumentException("Destination already exists");
+			int length = width * height * bands * bufferTypeSize;
+			checkLength(src0, length);
+			checkLength(src1, length);
+			checkLength(src2, length);
+			checkLength(src3, length);
 
-			RandomAccessFile dstraf = null;
-			FileInputStream src0fis = null, src1fis = null, src2fis = null, src3fis = null;
-			try
-			{
-				src0 = src0 != null && src0.exists() ? src0 : null;
-				src1 = src1 != null && src1.exists() ? src1 : null;
-				src2 = src2 != null && src2.exists() ? src2 : null;
-				src3 = src3 != null && src3.exists() ? src3 : null;
-
-				long length =
-						src0 != null ? src0.length() : src1 != null ? src1.length() : src2 != null ? src2.length()
-								: src3 != null ? src3.length() : -1;
-
-				if ((src1 != null && src1.length() != length) || (src2 != null && src2.length() != length)
-						|| (src3 != null && src3.length() != length))
-					throw new IllegalArgumentException("Source file(s) don't have equal sizes");
+			ByteBuffer dst = ByteBuffer.allocate(length);
+			dst.order(byteOrder);
 
-				if (length > 0 && length != width * height * bands * bufferTypeSize)
-					throw new IllegalArgumentException("Source file(s) have an invalid size");
-
-				if (src0 == null && src1 == null && src2 == null && src3 == null)
-				{
-					if (ignoreBlank)
-						return;
-					throw new IOException("No children elevation files exist for " + dst);
-				}
-
-				dstraf = new RandomAccessFile(dst, "rw");
-				FileChannel dstfc = dstraf.getChannel();
-				MappedByteBuffer dstbb = dstfc.map(MapMode.READ_WRITE, 0, width * height * bands * bufferTypeSize);
-				dstbb.order(byteOrder);
-
-				src0fis = src0 != null ? new FileInputStream(src0) : null;
-				src1fis = src1 != null ? new FileInputStream(src1) : null;
-				src2fis = src2 != null ? new FileInputStream(src2) : null;
-				src3fis = src3 != null ? new FileInputStream(src3) : null;
-
-				ByteBuffer src0bb =
-						src0fis != null ? getFileChannelAsByteBuffer(src0fis.getChannel(), (int) src0.length(),
-								byteOrder) : null;
-				ByteBuffer src1bb =
-						src1fis != null ? getFileChannelAsByteBuffer(src1fis.getChannel(), (int) src1.length(),
-								byteOrder) : null;
-				ByteBuffer src2bb =
-						src2fis != null ? getFileChannelAsByteBuffer(src2fis.getChannel(), (int) src2.length(),
-								byteOrder) : null;
-				ByteBuffer src3bb =
-						src3fis != null ? getFileChannelAsByteBuffer(src3fis.getChannel(), (int) src3.length(),
-								byteOrder) : null;
-
-				for (int b = 0; b < bands; b++)
-				{
-					int offset = b * width * height * bufferTypeSize;
-					Object outsideValue =
-							outsideValues == null ? null : typeHandler.getNumberArrayValue(b, outsideValues);
-
-					for (int y = 0; y < height; y++)
-					{
-						int sy = y % (height / 2);
-						for (int x = 0; x < width; x++)
-						{
-							int sx = x % (width / 2);
-							ByteBuffer buffer = selectBuffer(src0bb, src1bb, src2bb, src3bb, x, y, width, height);
-							Object value = outsideValue;
-							if (buffer != null)
-							{
-								int index0 = ((sy * 2) * width + (sx * 2)) * bufferTypeSize + offset;
-								Object v0 = typeHandler.getBufferValue(index0, buffer);
-
-								if (bilinear)
-								{
-									int index1 = ((sy * 2) * width + (sx * 2 + 1)) * bufferTypeSize + offset;
-									int index2 = ((sy * 2 + 1) * width + sx * 2) * bufferTypeSize + offset;
-									int index3 = ((sy * 2 + 1) * width + (sx * 2 + 1)) * bufferTypeSize + offset;
-
-									Object v1 = typeHandler.getBufferValue(index1, buffer);
-									Object v2 = typeHandler.getBufferValue(index2, buffer);
-									Object v3 = typeHandler.getBufferValue(index3, buffer);
-
-									if (outsideValue == null
-											|| !(v0.equals(outsideValue) || v1.equals(outsideValue)
-													|| v2.equals(outsideValue) || v3.equals(outsideValue)))
-									{
-										value = typeHandler.average(v0, v1, v2, v3);
-									}
-								}
-								else
-								{
-									if (outsideValue == null || !v0.equals(outsideValue))
-									{
-										value = v0;
-									}
-								}
-							}
-							if (value == null)
-								dstbb.position(dstbb.position() + bufferTypeSize);
-							else
-								typeHandler.putBufferValue(dstbb, value);
-						}
-					}
-				}
-			}
-			finally
+			for (int b = 0; b < bands; b++)
 			{
-				if (dstraf != null)
-					dstraf.close();
-				if (src0fis != null)
-					src0fis.close();
-				if (src1fis != null)
-					src1fis.close();
-				if (src2fis != null)
-					src2fis.close();
-				if (src3fis != null)
-					src3fis.close();
+				kernel.mix(order(src0), order(src1), order(src2), order(src3), dst, b, outsideValues);
 			}
+
+			dst.rewind();
+			return dst;
 		}
 
-		private ByteBuffer getFileChannelAsByteBuffer(FileChannel fileChannel, int length, ByteOrder byteOrder)
-				throws IOException
+		@Override
+		public long getMemoryRequired()
 		{
-			ByteBuffer bb = ByteBuffer.allocate(length);
-			bb.order(byteOrder);
-			fileChannel.read(bb);
-			bb.rewind();
-			return bb;
+			//four source buffers and the destination buffer
+			return 5L * width * height * bands * bufferTypeSize;
 		}
 
-		private <E extends Buffer> E selectBuffer(E src0, E src1, E src2, E src3, int x, int y, int w, int h)
+		private void checkLength(ByteBuffer buffer, int length)
 		{
-			// +--+--+
-			// |i1|i3|
-			// +--+--+
-			// |i0|i2|
-			// +--+--+
-			return (x < w / 2) ? (y < h / 2 ? src1 : src0) : (y < h / 2 ? src3 : src2);
+			if (buffer != null && buffer.remaining() != length)
+				throw new IllegalArgumentException("Source tile(s) have an invalid size");
 		}
-	}
 
-	private interface TypeHandler
-	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na);
-
-		public Object getBufferValue(int index, ByteBuffer buffer);
-
-		public void putBufferValue(ByteBuffer buffer, Object value);
-
-		public Object average(Object v0, Object v1, Object v2, Object v3);
+		private ByteBuffer order(ByteBuffer buffer)
+		{
+			return buffer == null ? null : buffer.slice().order(byteOrder);
+		}
 	}
 
-	private static class ByteTypeHandler implements TypeHandler
+	/**
+	 * Downsamples a single band of four child tiles into their parent tile.
+	 * Subclasses are specialised for a single primitive data type, and access
+	 * the tiles through typed buffer views so that no samples are boxed.
+	 */
+	private static abstract class OverviewKernel
 	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na)
-		{
-			return na.getByte(index);
-		}
+		protected final int width;
+		protected final int height;
+		protected final boolean bilinear;
 
-		public Object getBufferValue(int index, ByteBuffer buffer)
+		public OverviewKernel(int width, int height, boolean bilinear)
 		{
-			return buffer.get(index);
+			this.width = width;
+			this.height = height;
+			this.bilinear = bilinear;
 		}
 
-		public void putBufferValue(ByteBuffer buffer, Object value)
+		/**
+		 * Mix the given band of the child tiles into the destination tile.
+		 * Child buffers are null if the child tile doesn't exist, in which
+		 * case that quarter of the destination is set to the band's outside
+		 * value (or left untouched if there isn't one).
+		 */
+		public void mix(ByteBuffer src0, ByteBuffer src1, ByteBuffer src2, ByteBuffer src3, ByteBuffer dst,
+				int band, NullableNumberArray outsideValues)
 		{
-			buffer.put((Byte) value);
-		}
+			int offset = band * width * height;
+			int w2 = width / 2;
+			int h2 = height / 2;
 
-		public Object average(Object v0, Object v1, Object v2, Object v3)
-		{
-			return (byte) ((((Byte) v0).shortValue() + ((Byte) v1).shortValue() + ((Byte) v2).shortValue() + ((Byte) v3)
-					.shortValue()) / (short) 4);
+			// +--+--+ 0
+			// |s1|s3|
+			// +--+--+ h2
+			// |s0|s2|
+			// +--+--+ h
+			// 0 w2 w
+
+			mixQuadrant(src1, dst, offset, 0, 0, band, outsideValues);
+			mixQuadrant(src0, dst, offset, 0, h2, band, outsideValues);
+			mixQuadrant(src3, dst, offset, w2, 0, band, outsideValues);
+			mixQuadrant(src2, dst, offset, w2, h2, band, outsideValues);
 		}
+
+		/**
+		 * Downsample a single child tile into the quarter of the destination
+		 * tile starting at (dstX, dstY). Offsets are in samples, not bytes.
+		 */
+		protected abstract void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY,
+				int band, NullableNumberArray outsideValues);
 	}
 
-	private static class ShortTypeHandler implements TypeHandler
+	private static class ByteOverviewKernel extends OverviewKernel
 	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na)
-		{
-			return na.getShort(index);
-		}
-
-		public Object getBufferValue(int index, ByteBuffer buffer)
+		public ByteOverviewKernel(int width, int height, boolean bilinear)
 		{
-			return buffer.getShort(index);
+			super(width, height, bilinear);
 		}
 
-		public void putBufferValue(ByteBuffer buffer, Object value)
+		@Override
+		protected void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY, int band,
+				NullableNumberArray outsideValues)
 		{
-			buffer.putShort((Short) value);
-		}
+			Byte outsideValue = outsideValues == null ? null : outsideValues.getByte(band);
+			boolean hasOutside = outsideValue != null;
+			byte outside = hasOutside ? outsideValue : 0;
+			ByteBuffer d = dst;
+			int w2 = width / 2;
+			int h2 = height / 2;
+
+			if (src == null)
+			{
+				if (hasOutside)
+				{
+					for (int y = 0; y < h2; y++)
+					{
+						int di = offset + (dstY + y) * width + dstX;
+						for (int x = 0; x < w2; x++)
+						{
+							d.put(di + x, outside);
+						}
+					}
+				}
+				return;
+			}
 
-		public Object average(Object v0, Object v1, Object v2, Object v3)
-		{
-			return (short) ((((Short) v0).intValue() + ((Short) v1).intValue() + ((Short) v2).intValue() + ((Short) v3)
-					.intValue()) / 4);
+			ByteBuffer s = src;
+			for (int y = 0; y < h2; y++)
+			{
+				int di = offset + (dstY + y) * width + dstX;
+				int si0 = offset + (y * 2) * width;
+				int si1 = si0 + width;
+				for (int x = 0; x < w2; x++)
+				{
+					byte v0 = s.get(si0 + x * 2);
+					if (bilinear)
+					{
+						byte v1 = s.get(si0 + x * 2 + 1);
+						byte v2 = s.get(si1 + x * 2);
+						byte v3 = s.get(si1 + x * 2 + 1);
+						if (hasOutside && (v0 == outside || v1 == outside || v2 == outside || v3 == outside))
+						{
+							d.put(di + x, outside);
+						}
+						else
+						{
+							d.put(di + x, (byte) ((v0 + v1 + v2 + v3) / 4));
+						}
+					}
+					else
+					{
+						d.put(di + x, v0);
+					}
+				}
+			}
 		}
 	}
 
-	private static class IntTypeHandler implements TypeHandler
+	private static class ShortOverviewKernel extends OverviewKernel
 	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na)
+		public ShortOverviewKernel(int width, int height, boolean bilinear)
 		{
-			return na.getInt(index);
+			super(width, height, bilinear);
 		}
 
-		public Object getBufferValue(int index, ByteBuffer buffer)
+		@Override
+		protected void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY, int band,
+				NullableNumberArray outsideValues)
 		{
-			return buffer.getInt(index);
+			Short outsideValue = outsideValues == null ? null : outsideValues.getShort(band);
+			boolean hasOutside = outsideValue != null;
+			short outside = hasOutside ? outsideValue : 0;
+			ShortBuffer d = dst.asShortBuffer();
+			int w2 = width / 2;
+			int h2 = height / 2;
+
+			if (src == null)
+			{
+				if (hasOutside)
+				{
+					for (int y = 0; y < h2; y++)
+					{
+						int di = offset + (dstY + y) * width + dstX;
+						for (int x = 0; x < w2; x++)
+						{
+							d.put(di + x, outside);
+						}
+					}
+				}
+				return;
+			}
+
+			ShortBuffer s = src.asShortBuffer();
+			for (int y = 0; y < h2; y++)
+			{
+				int di = offset + (dstY + y) * width + dstX;
+				int si0 = offset + (y * 2) * width;
+				int si1 = si0 + width;
+				for (int x = 0; x < w2; x++)
+				{
+					short v0 = s.get(si0 + x * 2);
+					if (bilinear)
+					{
+						short v1 = s.get(si0 + x * 2 + 1);
+						short v2 = s.get(si1 + x * 2);
+						short v3 = s.get(si1 + x * 2 + 1);
+						if (hasOutside && (v0 == outside || v1 == outside || v2 == outside || v3 == outside))
+						{
+							d.put(di + x, outside);
+						}
+						else
+						{
+							d.put(di + x, (short) ((v0 + v1 + v2 + v3) / 4));
+						}
+					}
+					else
+					{
+						d.put(di + x, v0);
+					}
+				}
+			}
 		}
+	}
 
-		public void putBufferValue(ByteBuffer buffer, Object value)
+	private static class IntOverviewKernel extends OverviewKernel
+	{
+		public IntOverviewKernel(int width, int height, boolean bilinear)
 		{
-			buffer.putInt((Integer) value);
+			super(width, height, bilinear);
 		}
 
-		public Object average(Object v0, Object v1, Object v2, Object v3)
+		@Override
+		protected void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY, int band,
+				NullableNumberArray outsideValues)
 		{
-			return (int) ((((Integer) v0).longValue() + ((Integer) v1).longValue() + ((Integer) v2).longValue() + ((Integer) v3)
-					.longValue()) / 4l);
+			Integer outsideValue = outsideValues == null ? null : outsideValues.getInt(band);
+			boolean hasOutside = outsideValue != null;
+			int outside = hasOutside ? outsideValue : 0;
+			IntBuffer d = dst.asIntBuffer();
+			int w2 = width / 2;
+			int h2 = height / 2;
+
+			if (src == null)
+			{
+				if (hasOutside)
+				{
+					for (int y = 0; y < h2; y++)
+					{
+						int di = offset + (dstY + y) * width + dstX;
+						for (int x = 0; x < w2; x++)
+						{
+							d.put(di + x, outside);
+						}
+					}
+				}
+				return;
+			}
+
+			IntBuffer s = src.asIntBuffer();
+			for (int y = 0; y < h2; y++)
+			{
+				int di = offset + (dstY + y) * width + dstX;
+				int si0 = offset + (y * 2) * width;
+				int si1 = si0 + width;
+				for (int x = 0; x < w2; x++)
+				{
+					int v0 = s.get(si0 + x * 2);
+					if (bilinear)
+					{
+						int v1 = s.get(si0 + x * 2 + 1);
+						int v2 = s.get(si1 + x * 2);
+						int v3 = s.get(si1 + x * 2 + 1);
+						if (hasOutside && (v0 == outside || v1 == outside || v2 == outside || v3 == outside))
+						{
+							d.put(di + x, outside);
+						}
+						else
+						{
+							d.put(di + x, (int) (((long) v0 + v1 + v2 + v3) / 4l));
+						}
+					}
+					else
+					{
+						d.put(di + x, v0);
+					}
+				}
+			}
 		}
 	}
 
-	private static class FloatTypeHandler implements TypeHandler
+	private static class FloatOverviewKernel extends OverviewKernel
 	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na)
+		public FloatOverviewKernel(int width, int height, boolean bilinear)
 		{
-			return na.getFloat(index);
+			super(width, height, bilinear);
 		}
 
-		public Object getBufferValue(int index, ByteBuffer buffer)
+		@Override
+		protected void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY, int band,
+				NullableNumberArray outsideValues)
 		{
-			return buffer.getFloat(index);
-		}
+			Float outsideValue = outsideValues == null ? null : outsideValues.getFloat(band);
+			boolean hasOutside = outsideValue != null;
+			float outside = hasOutside ? outsideValue : 0;
+			boolean outsideNaN = hasOutside && Float.isNaN(outside);
+			FloatBuffer d = dst.asFloatBuffer();
+			int w2 = width / 2;
+			int h2 = height / 2;
+
+			if (src == null)
+			{
+				if (hasOutside)
+				{
+					for (int y = 0; y < h2; y++)
+					{
+						int di = offset + (dstY + y) * width + dstX;
+						for (int x = 0; x < w2; x++)
+						{
+							d.put(di + x, outside);
+						}
+					}
+				}
+				return;
+			}
 
-		public void putBufferValue(ByteBuffer buffer, Object value)
-		{
-			buffer.putFloat((Float) value);
+			FloatBuffer s = src.asFloatBuffer();
+			for (int y = 0; y < h2; y++)
+			{
+				int di = offset + (dstY + y) * width + dstX;
+				int si0 = offset + (y * 2) * width;
+				int si1 = si0 + width;
+				for (int x = 0; x < w2; x++)
+				{
+					float v0 = s.get(si0 + x * 2);
+					if (bilinear)
+					{
+						float v1 = s.get(si0 + x * 2 + 1);
+						float v2 = s.get(si1 + x * 2);
+						float v3 = s.get(si1 + x * 2 + 1);
+						if (hasOutside && (isOutside(v0, outside, outsideNaN) || isOutside(v1, outside, outsideNaN)
+								|| isOutside(v2, outside, outsideNaN) || isOutside(v3, outside, outsideNaN)))
+						{
+							d.put(di + x, outside);
+						}
+						else
+						{
+							d.put(di + x, (float) (((double) v0 + v1 + v2 + v3) / 4d));
+						}
+					}
+					else
+					{
+						d.put(di + x, v0);
+					}
+				}
+			}
 		}
 
-		public Object average(Object v0, Object v1, Object v2, Object v3)
+		private static boolean isOutside(float value, float outside, boolean outsideNaN)
 		{
-			return (float) ((((Float) v0).doubleValue() + ((Float) v1).doubleValue() + ((Float) v2).doubleValue() + ((Float) v3)
-					.doubleValue()) / 4d);
+			return value == outside || (outsideNaN && value != value);
 		}
 	}
 
-	private static class DoubleTypeHandler implements TypeHandler
+	private static class DoubleOverviewKernel extends OverviewKernel
 	{
-		public Object getNumberArrayValue(int index, NullableNumberArray na)
+		public DoubleOverviewKernel(int width, int height, boolean bilinear)
 		{
-			return na.getDouble(index);
+			super(width, height, bilinear);
 		}
 
-		public Object getBufferValue(int index, ByteBuffer buffer)
+		@Override
+		protected void mixQuadrant(ByteBuffer src, ByteBuffer dst, int offset, int dstX, int dstY, int band,
+				NullableNumberArray outsideValues)
 		{
-			return buffer.getDouble(index);
-		}
+			Double outsideValue = outsideValues == null ? null : outsideValues.getDouble(band);
+			boolean hasOutside = outsideValue != null;
+			double outside = hasOutside ? outsideValue : 0;
+			boolean outsideNaN = hasOutside && Double.isNaN(outside);
+			DoubleBuffer d = dst.asDoubleBuffer();
+			int w2 = width / 2;
+			int h2 = height / 2;
+
+			if (src == null)
+			{
+				if (hasOutside)
+				{
+					for (int y = 0; y < h2; y++)
+					{
+						int di = offset + (dstY + y) * width + dstX;
+						for (int x = 0; x < w2; x++)
+						{
+							d.put(di + x, outside);
+						}
+					}
+				}
+				return;
+			}
 
-		public void putBufferValue(ByteBuffer buffer, Object value)
-		{
-			buffer.putDouble((Double) value);
+			DoubleBuffer s = src.asDoubleBuffer();
+			for (int y = 0; y < h2; y++)
+			{
+				int di = offset + (dstY + y) * width + dstX;
+				int si0 = offset + (y * 2) * width;
+				int si1 = si0 + width;
+				for (int x = 0; x < w2; x++)
+				{
+					double v0 = s.get(si0 + x * 2);
+					if (bilinear)
+					{
+						double v1 = s.get(si0 + x * 2 + 1);
+						double v2 = s.get(si1 + x * 2);
+						double v3 = s.get(si1 + x * 2 + 1);
+						if (hasOutside && (isOutside(v0, outside, outsideNaN) || isOutside(v1, outside, outsideNaN)
+								|| isOutside(v2, outside, outsideNaN) || isOutside(v3, outside, outsideNaN)))
+						{
+							d.put(di + x, outside);
+						}
+						else
+						{
+							d.put(di + x, (v0 + v1 + v2 + v3) / 4d);
+						}
+					}
+					else
+					{
+						d.put(di + x, v0);
+					}
+				}
+			}
 		}
 
-		public Object average(Object v0, Object v1, Object v2, Object v3)
+		private static boolean isOutside(double value, double outside, boolean outsideNaN)
 		{
-			return ((Double) v0 + (Double) v1 + (Double) v2 + (Double) v3) / 4d;
+			return value == outside || (outsideNaN && value != value);
 		}
 	}
 }
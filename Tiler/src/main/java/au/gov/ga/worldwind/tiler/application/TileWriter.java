@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.application;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.tiler.archive.TileStore;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
+
+/**
+ * Asynchronous encoding and writing stage of the tiling pipeline. Tiles are
+ * encoded and written to the {@link TileStore} by a pool of writer threads, so
+ * that encoding and disk I/O overlap with the reading of the next tiles from
+ * the dataset. Encoders are borrowed from the {@link ImageEncoder} pool.
+ * <p/>
+ * The queue of pending tiles is bounded; when it is full, the tiling thread
+ * encodes and writes the tile itself, which stops tiling from getting too far
+ * ahead of the writers.
+ * <p/>
+ * Tiles are encoded in parallel, so they normally finish out of order. Serial
+ * tiling resumes from the tile after the last tile written, which is only
+ * safe if every earlier tile has been written, so in ordered mode (see
+ * {@link #setOrdered(boolean)}) tiles are still encoded in parallel but are
+ * written to the store in the order they were queued.
+ */
+public class TileWriter
+{
+	private final static int QUEUED_TILES_PER_THREAD = 4;
+
+	private final TileStore store;
+	private final String imageFormat;
+	private final float jpegQuality;
+	private final Logger logger;
+	private final ThreadPoolExecutor executor;
+
+	private volatile boolean ordered = false;
+	private final AtomicLong queuedCount = new AtomicLong();
+	private final Object orderLock = new Object();
+	private long nextToWrite = 0;
+
+	private final AtomicInteger encodeCount = new AtomicInteger();
+	private final AtomicInteger writeCount = new AtomicInteger();
+	private final AtomicInteger errorCount = new AtomicInteger();
+	private final AtomicLong encodeTime = new AtomicLong();
+	private final AtomicLong writeTime = new AtomicLong();
+
+	/**
+	 * @param store
+	 *            Store to write tiles to
+	 * @param imageFormat
+	 *            Format to encode images in (must be supported by
+	 *            {@link javax.imageio.ImageIO})
+	 * @param jpegQuality
+	 *            JPEG compression to use (if using the JPEG image format)
+	 * @param threads
+	 *            Number of writer threads
+	 * @param logger
+	 *            Logger to report errors to
+	 */
+	public TileWriter(TileStore store, String imageFormat, float jpegQuality, int threads, Logger logger)
+	{
+		this.store = store;
+		this.imageFormat = imageFormat;
+		this.jpegQuality = jpegQuality;
+		this.logger = logger;
+
+		threads = Math.max(1, threads);
+		executor =
+				new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						threads * QUEUED_TILES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * @return Store that tiles are written to
+	 */
+	public TileStore getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * Set whether tiles are written to the store in the order they were
+	 * queued. Must be called before any tiles are queued.
+	 */
+	public void setOrdered(boolean ordered)
+	{
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Queue an image tile to be encoded and written. The image must not be
+	 * modified afterwards.
+	 */
+	public void writeImage(final int row, final int col, final BufferedImage image)
+	{
+		final long sequence = nextSequence();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ByteBuffer data = null;
+				long start = System.nanoTime();
+				ImageEncoder encoder = ImageEncoder.acquire();
+				try
+				{
+					data = encoder.encode(image, imageFormat, jpegQuality);
+					encodeCount.incrementAndGet();
+				}
+				catch (Exception e)
+				{
+					error(row, col, e);
+				}
+				finally
+				{
+					ImageEncoder.release(encoder);
+					encodeTime.addAndGet(System.nanoTime() - start);
+				}
+				writeInOrder(row, col, data, sequence);
+			}
+		});
+	}
+
+	/**
+	 * Queue already encoded tile data to be written. The buffer must not be
+	 * modified afterwards.
+	 */
+	public void write(final int row, final int col, final ByteBuffer data)
+	{
+		final long sequence = nextSequence();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeInOrder(row, col, data, sequence);
+			}
+		});
+	}
+
+	/**
+	 * Wait for all queued tiles to be written, and stop the writer threads.
+	 * Doesn't close the store.
+	 */
+	public void close()
+	{
+		executor.shutdown();
+		try
+		{
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				//wait for the queued tiles to be written
+			}
+		}
+		catch (InterruptedException e)
+		{
+			logger.warning("Interrupted while waiting for tiles to be written");
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return Number of tiles that failed to encode or write
+	 */
+	public int getErrorCount()
+	{
+		return errorCount.get();
+	}
+
+	/**
+	 * @return Summary of the number of tiles encoded and written, and the time
+	 *         spent (summed over all writer threads)
+	 */
+	public String getStatistics()
+	{
+		StringBuilder sb = new StringBuilder();
+		if (encodeCount.get() > 0)
+		{
+			sb.append("Encoded ").append(encodeCount.get()).append(" tiles in ")
+					.append(encodeTime.get() / 1000000L).append("ms, ");
+		}
+		sb.append("wrote ").append(writeCount.get()).append(" tiles in ").append(writeTime.get() / 1000000L)
+				.append("ms");
+		if (errorCount.get() > 0)
+		{
+			sb.append(", ").append(errorCount.get()).append(" errors");
+		}
+		return sb.toString();
+	}
+
+	private long nextSequence()
+	{
+		return ordered ? queuedCount.getAndIncrement() : -1;
+	}
+
+	/**
+	 * Write the tile data (if not null) once every tile queued before it has
+	 * been written (or has failed). Tiles queued in unordered mode (sequence
+	 * -1) are written immediately.
+	 * <p/>
+	 * The pool takes tasks in the order they were queued, and tasks run by the
+	 * tiling thread are always queued after every task in the pool, so a task
+	 * never waits for a task that hasn't started.
+	 */
+	private void writeInOrder(int row, int col, ByteBuffer data, long sequence)
+	{
+		if (sequence < 0)
+		{
+			if (data != null)
+			{
+				doWrite(row, col, data);
+			}
+			return;
+		}
+
+		try
+		{
+			synchronized (orderLock)
+			{
+				while (nextToWrite != sequence)
+				{
+					orderLock.wait();
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			//writer is being shut down; don't write out of order
+			logger.warning("Interrupted before writing " + store.getName(row, col));
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		try
+		{
+			if (data != null)
+			{
+				doWrite(row, col, data);
+			}
+		}
+		finally
+		{
+			synchronized (orderLock)
+			{
+				nextToWrite++;
+				orderLock.notifyAll();
+			}
+		}
+	}
+
+	private void doWrite(int row, int col, ByteBuffer data)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			store.write(row, col, data);
+			writeCount.incrementAndGet();
+		}
+		catch (Exception e)
+		{
+			error(row, col, e);
+		}
+		finally
+		{
+			writeTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	private void error(int row, int col, Exception e)
+	{
+		errorCount.incrementAndGet();
+		logger.severe("Error writing " + store.getName(row, col) + ": " + e.getMessage());
+	}
+}
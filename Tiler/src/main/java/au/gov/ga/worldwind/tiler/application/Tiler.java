@@ -18,31 +18,35 @@ package au.gov.ga.worldwind.tiler.application;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel.MapMode;
-import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
 
 import org.gdal.gdal.Dataset;
 
+import au.gov.ga.worldwind.tiler.archive.DirectoryTileStore;
+import au.gov.ga.worldwind.tiler.archive.TileArchive;
+import au.gov.ga.worldwind.tiler.archive.TileStore;
+import au.gov.ga.worldwind.tiler.archive.TileStoreUtil;
+import au.gov.ga.worldwind.tiler.gdal.GDALException;
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
+import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
 import au.gov.ga.worldwind.tiler.mapnik.MapnikUtil;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.NumberArray;
 import au.gov.ga.worldwind.tiler.util.ProgressReporter;
 import au.gov.ga.worldwind.tiler.util.Sector;
-import au.gov.ga.worldwind.tiler.util.Util;
+import au.gov.ga.worldwind.tiler.util.TilerException;
 
 /**
  * Helper class used to generate the tiles.
@@ -119,10 +123,35 @@ public class Tiler
 			float jpegQuality, NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
 			NullableNumberArray replace, NullableNumberArray otherwise, File outputDirectory, boolean resume,
 			ProgressReporter progress)
+	{
+		tileImages(dataset, reprojectIfRequired, linearInterpolationIfRequired, sector, origin, level, tilesize, lzts,
+				imageFormat, addAlpha, jpegQuality, outsideValues, ignoreBlank, replaceMinMaxs, replace, otherwise,
+				outputDirectory, false, resume, 1, progress);
+	}
+
+	/**
+	 * Tile the given image dataset at the given level, using multiple threads.
+	 * 
+	 * @param archive
+	 *            Should the level be written to a single tile archive file,
+	 *            instead of a directory of tile files?
+	 * @param threads
+	 *            Number of tiling threads (each thread opens its own handle to
+	 *            the dataset)
+	 * @see #tileImages(Dataset, boolean, boolean, Sector, LatLon, int, int,
+	 *      double, String, boolean, float, NullableNumberArray, boolean,
+	 *      MinMaxArray[], NullableNumberArray, NullableNumberArray, File,
+	 *      boolean, ProgressReporter)
+	 */
+	public static void tileImages(Dataset dataset, boolean reprojectIfRequired, boolean linearInterpolationIfRequired,
+			Sector sector, LatLon origin, int level, int tilesize, double lzts, String imageFormat, boolean addAlpha,
+			float jpegQuality, NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
+			NullableNumberArray replace, NullableNumberArray otherwise, File outputDirectory, boolean archive,
+			boolean resume, int threads, ProgressReporter progress)
 	{
 		tile(TilingType.Images, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
 				level, tilesize, lzts, imageFormat, addAlpha, jpegQuality, -1, -1, outsideValues, ignoreBlank,
-				replaceMinMaxs, replace, otherwise, null, outputDirectory, resume, progress);
+				replaceMinMaxs, replace, otherwise, null, outputDirectory, archive, resume, threads, progress);
 	}
 
 	/**
@@ -178,10 +207,36 @@ public class Tiler
 			int bufferType, int band, NullableNumberArray outsideValues, MinMaxArray[] replaceMinMaxs,
 			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, File outputDirectory,
 			boolean resume, ProgressReporter progress)
+	{
+		tileElevations(dataset, reprojectIfRequired, linearInterpolationIfRequired, sector, origin, level, tilesize,
+				lzts, bufferType, band, outsideValues, replaceMinMaxs, replace, otherwise, minMax, outputDirectory,
+				false, resume, 1, progress);
+	}
+
+	/**
+	 * Tile the given elevation dataset at the given level, using multiple
+	 * threads.
+	 * 
+	 * @param archive
+	 *            Should the level be written to a single tile archive file,
+	 *            instead of a directory of tile files?
+	 * @param threads
+	 *            Number of tiling threads (each thread opens its own handle to
+	 *            the dataset)
+	 * @see #tileElevations(Dataset, boolean, boolean, Sector, LatLon, int, int,
+	 *      double, int, int, NullableNumberArray, MinMaxArray[],
+	 *      NullableNumberArray, NullableNumberArray, NumberArray, File, boolean,
+	 *      ProgressReporter)
+	 */
+	public static void tileElevations(Dataset dataset, boolean reprojectIfRequired,
+			boolean linearInterpolationIfRequired, Sector sector, LatLon origin, int level, int tilesize, double lzts,
+			int bufferType, int band, NullableNumberArray outsideValues, MinMaxArray[] replaceMinMaxs,
+			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, File outputDirectory,
+			boolean archive, boolean resume, int threads, ProgressReporter progress)
 	{
 		tile(TilingType.Elevations, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
 				level, tilesize, lzts, null, false, -1, bufferType, band, outsideValues, false, replaceMinMaxs,
-				replace, otherwise, minMax, outputDirectory, resume, progress);
+				replace, otherwise, minMax, outputDirectory, archive, resume, threads, progress);
 	}
 
 	/**
@@ -218,10 +273,29 @@ public class Tiler
 	public static void tileMapnik(File mapFile, Sector sector, LatLon origin, int level, int tilesize, double lzts,
 			String imageFormat, boolean ignoreBlank, boolean reprojectIfRequired, File outputDirectory, boolean resume,
 			ProgressReporter progress)
+	{
+		tileMapnik(mapFile, sector, origin, level, tilesize, lzts, imageFormat, ignoreBlank, reprojectIfRequired,
+				outputDirectory, false, resume, 1, progress);
+	}
+
+	/**
+	 * Tile the given Mapnik XML dataset, using multiple threads.
+	 * 
+	 * @param archive
+	 *            Should the level be written to a single tile archive file,
+	 *            instead of a directory of tile files?
+	 * @param threads
+	 *            Number of tiling threads
+	 * @see #tileMapnik(File, Sector, LatLon, int, int, double, String, boolean,
+	 *      boolean, File, boolean, ProgressReporter)
+	 */
+	public static void tileMapnik(File mapFile, Sector sector, LatLon origin, int level, int tilesize, double lzts,
+			String imageFormat, boolean ignoreBlank, boolean reprojectIfRequired, File outputDirectory, boolean archive,
+			boolean resume, int threads, ProgressReporter progress)
 	{
 		tile(TilingType.Mapnik, null, reprojectIfRequired, false, mapFile, sector, origin, level, tilesize, lzts,
-				imageFormat, false, -1, -1, -1, null, ignoreBlank, null, null, null, null, outputDirectory, resume,
-				progress);
+				imageFormat, false, -1, -1, -1, null, ignoreBlank, null, null, null, null, outputDirectory, archive,
+				resume, threads, progress);
 	}
 
 	private static void tile(TilingType type, Dataset dataset, boolean reprojectIfRequired,
@@ -229,177 +303,432 @@ public class Tiler
 			double lzts, String imageFormat, boolean addAlpha, float jpegQuality, int bufferType, int band,
 			NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
 			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, File outputDirectory,
-			boolean resume, ProgressReporter progress)
+			boolean archive, boolean resume, int threads, ProgressReporter progress)
 	{
 		progress.getLogger().info("Generating tiles...");
 
 		String outputExt = type == TilingType.Elevations ? "bil" : imageFormat;
 
 		double tilesizedegrees = Math.pow(0.5, level) * lzts;
-		int minX = Util.getTileX(sector.getMinLongitude() + 1e-10, origin, level, lzts);
-		int maxX = Util.getTileX(sector.getMaxLongitude() - 1e-10, origin, level, lzts);
-		int minY = Util.getTileY(sector.getMinLatitude() + 1e-10, origin, level, lzts);
-		int maxY = Util.getTileY(sector.getMaxLatitude() - 1e-10, origin, level, lzts);
+		TileArchive layout = TileStoreUtil.getLayout(sector, origin, level, lzts, outputExt);
+		int minX = layout.minCol;
+		int maxX = layout.minCol + layout.cols - 1;
+		int minY = layout.minRow;
+		int maxY = layout.minRow + layout.rows - 1;
+
+		TileStore store;
+		try
+		{
+			store = TileStoreUtil.open(outputDirectory, level, outputExt, archive, layout);
+		}
+		catch (IOException e)
+		{
+			progress.getLogger().severe("Could not open tile output: " + e.getMessage());
+			return;
+		}
 
-		File levelDir = new File(outputDirectory, String.valueOf(level));
+		TileWriter writer = new TileWriter(store, imageFormat, jpegQuality, threads, progress.getLogger());
+		TileGenerator generator =
+				new TileGenerator(type, reprojectIfRequired, linearInterpolationIfRequired, mapFile, tilesize,
+						imageFormat, addAlpha, jpegQuality, bufferType, band, outsideValues, ignoreBlank,
+						replaceMinMaxs, replace, otherwise, minMax, writer, progress);
 
-		int startX = minX;
-		int startY = minY;
-		if (resume)
+		try
 		{
-			//check if this data has been tiled before; if so, start from previous position
-			for (int Y = minY; Y <= maxY; Y++)
+			if (threads > 1)
 			{
-				File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
-				if (rowDir.exists())
-				{
-					startY = Y;
-				}
+				tileParallel(generator, dataset, origin, tilesizedegrees, minX, maxX, minY, maxY, writer, resume,
+						threads, progress);
 			}
-
-			File rowDir = new File(levelDir, Util.paddedInt(startY, 4));
-			if (rowDir.exists())
+			else
 			{
-				for (int X = minX; X <= maxX; X++)
-				{
-					final File dst =
-							new File(rowDir, Util.paddedInt(startY, 4) + "_" + Util.paddedInt(X, 4) + "." + outputExt);
-					if (dst.exists())
-					{
-						startX = X + 1;
-					}
-				}
+				tileSerial(generator, dataset, origin, tilesizedegrees, minX, maxX, minY, maxY, writer, resume,
+						progress);
+			}
+		}
+		finally
+		{
+			writer.close();
+			progress.getLogger().info(writer.getStatistics());
+			try
+			{
+				store.close();
+			}
+			catch (IOException e)
+			{
+				progress.getLogger().severe("Error closing tile output: " + e.getMessage());
 			}
 		}
 
+		progress.getLogger().info("Tile generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+	}
+
+	private static void tileSerial(TileGenerator generator, Dataset dataset, LatLon origin, double tilesizedegrees,
+			int minX, int maxX, int minY, int maxY, TileWriter writer, boolean resume, ProgressReporter progress)
+	{
+		//tiles must be written in order, so that all tiles before the last tile written exist when resuming
+		writer.setOrdered(true);
+		TileStore store = writer.getStore();
+
 		int xsize = maxX - minX + 1;
 		int ysize = maxY - minY + 1;
 		int size = xsize * ysize;
-		int count = (startY - minY) * xsize + (startX - minX);
-		for (int Y = startY; Y <= maxY; Y++)
+
+		int start = 0;
+		if (resume)
+		{
+			//check if this data has been tiled before; if so, start from the tile after the last tile written
+			int[] last = store.findLastTile(minY, minX, maxY, maxX);
+			if (last != null)
+			{
+				start = (last[0] - minY) * xsize + (last[1] - minX) + 1;
+			}
+		}
+
+		int count = start;
+		for (int index = start; index < size; index++)
 		{
 			if (progress.isCancelled())
 				break;
 
-			File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
-			if (!rowDir.exists())
+			int X = minX + index % xsize;
+			int Y = minY + index / xsize;
+
+			count++;
+			progress.getLogger().fine(
+					"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size) + "%) (column "
+							+ (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1) + "/" + ysize + ")");
+			progress.progress(count / (double) size);
+
+			if (store.exists(Y, X))
+			{
+				progress.getLogger().warning(store.getName(Y, X) + " already exists");
+			}
+			else
 			{
-				rowDir.mkdirs();
+				generator.generate(dataset, tileSector(X, Y, origin, tilesizedegrees), store, Y, X);
 			}
+		}
+	}
+
+	/**
+	 * Tile the level using a pool of worker threads. Workers pull the next
+	 * tile index from a shared counter, so faster workers simply take more
+	 * tiles. GDAL datasets are not thread-safe, so each worker reopens its own
+	 * handle to the dataset.
+	 * <p/>
+	 * Tiles finish out of order, so resuming skips every tile that already
+	 * exists rather than starting from the last tile written.
+	 */
+	private static void tileParallel(final TileGenerator generator, Dataset dataset, final LatLon origin,
+			final double tilesizedegrees, final int minX, int maxX, final int minY, int maxY, TileWriter writer,
+			final boolean resume, int threads, final ProgressReporter progress)
+	{
+		final TileStore store = writer.getStore();
+		final int xsize = maxX - minX + 1;
+		final int ysize = maxY - minY + 1;
+		final int size = xsize * ysize;
+		threads = Math.min(threads, size);
 
-			for (int X = (Y == startY ? startX : minX); X <= maxX; X++)
+		final Dataset[] datasets = new Dataset[threads];
+		if (dataset != null)
+		{
+			try
 			{
-				if (progress.isCancelled())
-					break;
-
-				count++;
-				progress.getLogger().fine(
-						"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size)
-								+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1) + "/"
-								+ ysize + ")");
-				progress.progress(count / (double) size);
-
-				final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
-				final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
-				final double lat2 = lat1 + tilesizedegrees;
-				final double lon2 = lon1 + tilesizedegrees;
-				Sector s = new Sector(lat1, lon1, lat2, lon2);
-
-				final File dst = new File(rowDir, Util.paddedInt(Y, 4) + "_" + Util.paddedInt(X, 4) + "." + outputExt);
-				if (dst.exists())
+				for (int i = 0; i < threads; i++)
 				{
-					progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
+					datasets[i] = GDALUtil.reopen(dataset);
 				}
-				else
+			}
+			catch (GDALException e)
+			{
+				progress.getLogger().warning(
+						"Could not reopen dataset for parallel tiling, falling back to a single thread");
+				closeDatasets(datasets);
+				tileSerial(generator, dataset, origin, tilesizedegrees, minX, maxX, minY, maxY, writer, resume,
+						progress);
+				return;
+			}
+		}
+
+		progress.getLogger().info("Tiling with " + threads + " threads");
+
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicInteger count = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			for (int i = 0; i < threads; i++)
+			{
+				final Dataset workerDataset = datasets[i];
+				executor.execute(new Runnable()
 				{
-					try
+					@Override
+					public void run()
 					{
-						if (type == TilingType.Mapnik)
-						{
-							MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, dst,
-									progress.getLogger());
-						}
-						else
+						int index;
+						while (!progress.isCancelled() && (index = next.getAndIncrement()) < size)
 						{
-							GDALTileParameters parameters =
-									new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
-							parameters.addAlpha = addAlpha;
-							parameters.selectedBand = band;
-							parameters.reprojectIfRequired = reprojectIfRequired;
-							parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
-							parameters.noData = outsideValues;
-							parameters.minMaxs = replaceMinMaxs;
-							parameters.replacement = replace;
-							parameters.otherwise = otherwise;
-
-							GDALTile tile = new GDALTile(parameters);
-							if (type == TilingType.Elevations)
-							{
-								tile = tile.convertToType(bufferType);
+							int X = minX + index % xsize;
+							int Y = minY + index / xsize;
 
-								tile.updateMinMax(minMax, outsideValues);
-
-								ByteBuffer bb = tile.getBuffer();
-								bb.rewind();
-								RandomAccessFile raf = null;
-								try
-								{
-									raf = new RandomAccessFile(dst, "rw");
-									MappedByteBuffer mbb = raf.getChannel().map(MapMode.READ_WRITE, 0, bb.limit());
-									mbb.order(bb.order());
-									mbb.put(bb);
-								}
-								finally
+							if (store.exists(Y, X))
+							{
+								if (!resume)
 								{
-									if (raf != null)
-										raf.close();
+									progress.getLogger().warning(store.getName(Y, X) + " already exists");
 								}
 							}
 							else
 							{
-								if (!(ignoreBlank && tile.isBlank()))
-								{
-									BufferedImage image = tile.getAsImage();
-									writeImage(image, imageFormat, dst, jpegQuality);
-								}
+								generator.generate(workerDataset, tileSector(X, Y, origin, tilesizedegrees), store,
+										Y, X);
+							}
+
+							int c = count.incrementAndGet();
+							progress.getLogger().fine(
+									"Tile (" + X + "," + Y + "), " + c + "/" + size + " (" + (c * 100 / size)
+											+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row "
+											+ (Y - minY + 1) + "/" + ysize + ")");
+							synchronized (progress)
+							{
+								progress.progress(count.get() / (double) size);
 							}
 						}
 					}
-					catch (Exception e)
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				//wait for the workers to finish or notice the cancellation
+			}
+		}
+		catch (InterruptedException e)
+		{
+			progress.getLogger().warning("Tiling interrupted");
+			progress.cancel();
+			executor.shutdownNow();
+		}
+		finally
+		{
+			closeDatasets(datasets);
+		}
+	}
+
+	private static void closeDatasets(Dataset[] datasets)
+	{
+		for (int i = 0; i < datasets.length; i++)
+		{
+			if (datasets[i] != null)
+			{
+				datasets[i].delete();
+				datasets[i] = null;
+			}
+		}
+	}
+
+	private static Sector tileSector(int X, int Y, LatLon origin, double tilesizedegrees)
+	{
+		final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
+		final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
+		final double lat2 = lat1 + tilesizedegrees;
+		final double lon2 = lon1 + tilesizedegrees;
+		return new Sector(lat1, lon1, lat2, lon2);
+	}
+
+	/**
+	 * Generates and saves single tiles using a fixed set of tiling parameters.
+	 * Holds no per-tile state, so can be shared between tiling threads, as long
+	 * as each thread passes its own {@link Dataset}.
+	 */
+	private static class TileGenerator
+	{
+		private final TilingType type;
+		private final boolean reprojectIfRequired;
+		private final boolean linearInterpolationIfRequired;
+		private final File mapFile;
+		private final int tilesize;
+		private final String imageFormat;
+		private final boolean addAlpha;
+		private final float jpegQuality;
+		private final int bufferType;
+		private final int band;
+		private final NullableNumberArray outsideValues;
+		private final boolean ignoreBlank;
+		private final MinMaxArray[] replaceMinMaxs;
+		private final NullableNumberArray replace;
+		private final NullableNumberArray otherwise;
+		private final NumberArray minMax;
+		private final TileWriter writer;
+		private final ProgressReporter progress;
+
+		public TileGenerator(TilingType type, boolean reprojectIfRequired, boolean linearInterpolationIfRequired,
+				File mapFile, int tilesize, String imageFormat, boolean addAlpha, float jpegQuality, int bufferType,
+				int band, NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
+				NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, TileWriter writer,
+				ProgressReporter progress)
+		{
+			this.type = type;
+			this.reprojectIfRequired = reprojectIfRequired;
+			this.linearInterpolationIfRequired = linearInterpolationIfRequired;
+			this.mapFile = mapFile;
+			this.tilesize = tilesize;
+			this.imageFormat = imageFormat;
+			this.addAlpha = addAlpha;
+			this.jpegQuality = jpegQuality;
+			this.bufferType = bufferType;
+			this.band = band;
+			this.outsideValues = outsideValues;
+			this.ignoreBlank = ignoreBlank;
+			this.replaceMinMaxs = replaceMinMaxs;
+			this.replace = replace;
+			this.otherwise = otherwise;
+			this.minMax = minMax;
+			this.writer = writer;
+			this.progress = progress;
+		}
+
+		public void generate(Dataset dataset, Sector s, TileStore store, int row, int col)
+		{
+			try
+			{
+				if (type == TilingType.Mapnik)
+				{
+					generateMapnik(s, store, row, col);
+				}
+				else
+				{
+					GDALTileParameters parameters =
+							new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
+					parameters.addAlpha = addAlpha;
+					parameters.selectedBand = band;
+					parameters.reprojectIfRequired = reprojectIfRequired;
+					parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
+					parameters.noData = outsideValues;
+					parameters.minMaxs = replaceMinMaxs;
+					parameters.replacement = replace;
+					parameters.otherwise = otherwise;
+
+					GDALTile tile = new GDALTile(parameters);
+					if (type == TilingType.Elevations)
 					{
-						progress.getLogger().severe(e.getMessage());
-						try
+						tile = tile.convertToType(bufferType);
+
+						if (minMax != null)
 						{
-							Thread.sleep(1);
+							synchronized (minMax)
+							{
+								tile.updateMinMax(minMax, outsideValues);
+							}
 						}
-						catch (InterruptedException e1)
+
+						ByteBuffer bb = tile.getBuffer();
+						bb.rewind();
+						writer.write(row, col, bb);
+					}
+					else
+					{
+						if (!(ignoreBlank && tile.isBlank()))
 						{
-							e1.printStackTrace();
+							writer.writeImage(row, col, getImage(tile));
 						}
 					}
 				}
 			}
+			catch (Exception e)
+			{
+				progress.getLogger().severe(e.getMessage());
+				try
+				{
+					Thread.sleep(1);
+				}
+				catch (InterruptedException e1)
+				{
+					e1.printStackTrace();
+				}
+			}
 		}
 
-		progress.getLogger().info("Tile generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+		/**
+		 * Wrap the tile's data in an image directly where possible, rather
+		 * than converting it to a packed pixel image. JPEG doesn't support
+		 * alpha, so tiles with an alpha band are left to
+		 * {@link GDALTile#getAsImage()} to convert.
+		 */
+		private BufferedImage getImage(GDALTile tile) throws TilerException
+		{
+			BufferedImage image = null;
+			if (!("jpg".equalsIgnoreCase(imageFormat) && tile.getBandCount() == 4))
+			{
+				image = tile.getAsComponentImage();
+			}
+			return image != null ? image : tile.getAsImage();
+		}
+
+		/**
+		 * Mapnik can only render to a file, so if the store doesn't keep tiles
+		 * as individual files, render to a temporary file and copy that into
+		 * the store.
+		 */
+		private void generateMapnik(Sector s, TileStore store, int row, int col) throws Exception
+		{
+			File dst = store.getFile(row, col);
+			if (dst != null)
+			{
+				dst.getParentFile().mkdirs();
+				MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, dst,
+						progress.getLogger());
+				return;
+			}
+
+			File temp = File.createTempFile("tile", "." + imageFormat);
+			try
+			{
+				temp.delete();
+				MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, temp,
+						progress.getLogger());
+				if (temp.exists())
+				{
+					store.write(row, col, DirectoryTileStore.readFile(temp));
+				}
+			}
+			finally
+			{
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Encode an image into a buffer, in the given image format.
+	 * 
+	 * @param image
+	 *            Image to encode
+	 * @param format
+	 *            Image format (must be supported by {@link ImageIO})
+	 * @param jpegQuality
+	 *            JPEG compression to use (if using the JPEG image format)
+	 * @return Buffer containing the encoded image
+	 * @throws IOException
+	 * @see ImageEncoder
+	 */
+	public static ByteBuffer encodeImage(BufferedImage image, String format, float jpegQuality) throws IOException
+	{
+		return ImageEncoder.encodeImage(image, format, jpegQuality);
 	}
 
 	public static void writeImage(BufferedImage image, String format, File file, float jpegQuality) throws IOException
 	{
-		if ("jpg".equalsIgnoreCase(format))
+		ByteBuffer buffer = encodeImage(image, format, jpegQuality);
+		FileOutputStream fos = new FileOutputStream(file);
+		try
 		{
-			Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-			ImageWriter writer = writers.next();
-			ImageWriteParam iwp = writer.getDefaultWriteParam();
-			iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-			iwp.setCompressionQuality(jpegQuality);
-			writer.setOutput(new FileImageOutputStream(file));
-			IIOImage iioimage = new IIOImage(image, null, null);
-			writer.write(null, iioimage, iwp);
+			fos.getChannel().write(buffer);
 		}
-		else
+		finally
 		{
-			ImageIO.write(image, format, file);
+			fos.close();
 		}
 	}
 }
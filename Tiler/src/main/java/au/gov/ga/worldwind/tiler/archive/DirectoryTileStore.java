@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import au.gov.ga.worldwind.tiler.util.FileFilters.ExtensionFileFilter;
+import au.gov.ga.worldwind.tiler.util.FileUtil;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+/**
+ * {@link TileStore} that stores each tile in its own file, in the standard
+ * <code>level/row/row_col.ext</code> directory layout.
+ */
+public class DirectoryTileStore implements TileStore
+{
+	private final static Pattern TILE_NUMBER_PATTERN = Pattern.compile("\\d+");
+
+	private final File levelDirectory;
+	private final String extension;
+
+	public DirectoryTileStore(File levelDirectory, String extension)
+	{
+		this.levelDirectory = levelDirectory;
+		this.extension = extension;
+	}
+
+	@Override
+	public boolean exists(int row, int col)
+	{
+		return getFile(row, col).exists();
+	}
+
+	@Override
+	public ByteBuffer read(int row, int col) throws IOException
+	{
+		File file = getFile(row, col);
+		if (!file.isFile())
+			return null;
+		return readFile(file);
+	}
+
+	@Override
+	public void write(int row, int col, ByteBuffer data) throws IOException
+	{
+		File file = getFile(row, col);
+		file.getParentFile().mkdirs();
+
+		FileOutputStream fos = null;
+		try
+		{
+			fos = new FileOutputStream(file);
+			FileChannel channel = fos.getChannel();
+			ByteBuffer buffer = data.duplicate();
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+		finally
+		{
+			if (fos != null)
+				fos.close();
+		}
+	}
+
+	@Override
+	public List<int[]> list()
+	{
+		List<File> files = new ArrayList<File>();
+		FileUtil.recursivelyAddFiles(files, levelDirectory, new ExtensionFileFilter(extension));
+
+		List<int[]> tiles = new ArrayList<int[]>(files.size());
+		for (File file : files)
+		{
+			Matcher matcher = TILE_NUMBER_PATTERN.matcher(file.getName());
+			if (!matcher.find())
+				continue;
+			int row = Integer.parseInt(matcher.group());
+			if (!matcher.find(matcher.end()))
+				continue;
+			int col = Integer.parseInt(matcher.group());
+			tiles.add(new int[] { row, col });
+		}
+		return tiles;
+	}
+
+	@Override
+	public int[] findLastTile(int minRow, int minCol, int maxRow, int maxCol)
+	{
+		//find the last row directory, then the last tile in that row
+		for (int row = maxRow; row >= minRow; row--)
+		{
+			if (!getRowDirectory(row).isDirectory())
+				continue;
+
+			for (int col = maxCol; col >= minCol; col--)
+			{
+				if (exists(row, col))
+				{
+					return new int[] { row, col };
+				}
+			}
+			//an empty row directory (created before its first tile was written)
+			return new int[] { row, minCol - 1 };
+		}
+		return null;
+	}
+
+	@Override
+	public File getFile(int row, int col)
+	{
+		String paddedRow = Util.paddedInt(row, 4);
+		return new File(getRowDirectory(row), paddedRow + "_" + Util.paddedInt(col, 4) + "." + extension);
+	}
+
+	private File getRowDirectory(int row)
+	{
+		return new File(levelDirectory, Util.paddedInt(row, 4));
+	}
+
+	@Override
+	public String getName(int row, int col)
+	{
+		return getFile(row, col).getAbsolutePath();
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	/**
+	 * Read the entire contents of a file into a buffer.
+	 * 
+	 * @throws IOException
+	 */
+	public static ByteBuffer readFile(File file) throws IOException
+	{
+		FileInputStream fis = null;
+		try
+		{
+			fis = new FileInputStream(file);
+			FileChannel channel = fis.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+			{
+			}
+			buffer.flip();
+			return buffer;
+		}
+		finally
+		{
+			if (fis != null)
+				fis.close();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Describes the layout of a tile archive: a single file containing all the
+ * tiles of a level.
+ * <p/>
+ * An archive starts with a fixed size header, followed by a fixed size index
+ * containing one entry for each (row, col) in the level's tile grid, followed
+ * by the tile data. Each index entry contains the offset and length of the
+ * tile's data; tiles that don't exist have a length of 0. All values are big
+ * endian.
+ * 
+ * <pre>
+ * 0   magic 'WWTA'
+ * 4   int version
+ * 8   int minimum row
+ * 12  int minimum column
+ * 16  int row count
+ * 20  int column count
+ * 24  8 byte ASCII tile extension, zero padded
+ * 32  index: row count * column count entries, row major, each a long offset and int length
+ * ... tile data
+ * </pre>
+ */
+public class TileArchive
+{
+	public final static String EXTENSION = "tilepack";
+
+	public final static int MAGIC = 0x57575441; //'WWTA'
+	public final static int VERSION = 1;
+	public final static int HEADER_SIZE = 32;
+	public final static int INDEX_ENTRY_SIZE = 12;
+	public final static ByteOrder BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+
+	private final static int MAX_EXTENSION_LENGTH = 8;
+
+	public final int minRow;
+	public final int minCol;
+	public final int rows;
+	public final int cols;
+	public final String extension;
+
+	public TileArchive(int minRow, int minCol, int rows, int cols, String extension)
+	{
+		if (rows <= 0 || cols <= 0)
+			throw new IllegalArgumentException("Archive must contain at least one row and column");
+		if ((long) rows * cols * INDEX_ENTRY_SIZE > Integer.MAX_VALUE - HEADER_SIZE)
+			throw new IllegalArgumentException("Too many tiles for a single archive: " + rows + "x" + cols);
+		if (extension.length() > MAX_EXTENSION_LENGTH)
+			throw new IllegalArgumentException("Extension too long: " + extension);
+
+		this.minRow = minRow;
+		this.minCol = minCol;
+		this.rows = rows;
+		this.cols = cols;
+		this.extension = extension;
+	}
+
+	/**
+	 * @return The archive file for the given level within a tileset directory
+	 */
+	public static File getArchiveFile(File directory, int level)
+	{
+		return new File(directory, level + "." + EXTENSION);
+	}
+
+	/**
+	 * @return The level of the given archive file, or -1 if the file is not a
+	 *         level archive
+	 */
+	public static int getArchiveLevel(File file)
+	{
+		String name = file.getName();
+		if (!name.endsWith("." + EXTENSION))
+			return -1;
+		try
+		{
+			return Integer.parseInt(name.substring(0, name.length() - EXTENSION.length() - 1));
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * @return Number of entries in the index
+	 */
+	public int getTileCount()
+	{
+		return rows * cols;
+	}
+
+	/**
+	 * @return Position of the first byte after the index (where tile data
+	 *         starts)
+	 */
+	public int getDataStart()
+	{
+		return HEADER_SIZE + getTileCount() * INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * @return Is the given row/column inside this archive's tile grid?
+	 */
+	public boolean contains(int row, int col)
+	{
+		return row >= minRow && row < minRow + rows && col >= minCol && col < minCol + cols;
+	}
+
+	/**
+	 * @return Index entry number for the given row/column
+	 */
+	public int getIndex(int row, int col)
+	{
+		return (row - minRow) * cols + (col - minCol);
+	}
+
+	/**
+	 * @return Position in the file of the index entry for the given entry
+	 *         number
+	 */
+	public static int getIndexPosition(int index)
+	{
+		return HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * @return Is the given archive's grid and extension equal to this one's?
+	 */
+	public boolean matches(TileArchive other)
+	{
+		return minRow == other.minRow && minCol == other.minCol && rows == other.rows && cols == other.cols
+				&& extension.equals(other.extension);
+	}
+
+	/**
+	 * Write this header into the given buffer, at its current position.
+	 */
+	public void writeHeader(ByteBuffer buffer)
+	{
+		buffer.order(BYTE_ORDER);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(minRow);
+		buffer.putInt(minCol);
+		buffer.putInt(rows);
+		buffer.putInt(cols);
+		for (int i = 0; i < MAX_EXTENSION_LENGTH; i++)
+		{
+			buffer.put(i < extension.length() ? (byte) extension.charAt(i) : 0);
+		}
+	}
+
+	/**
+	 * Read a header from the given buffer, starting at its current position.
+	 * 
+	 * @throws IOException
+	 *             If the buffer doesn't contain a valid header
+	 */
+	public static TileArchive readHeader(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.remaining() < HEADER_SIZE)
+			throw new IOException("Tile archive header is truncated");
+
+		buffer.order(BYTE_ORDER);
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("Not a tile archive");
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported tile archive version: " + version);
+
+		int minRow = buffer.getInt();
+		int minCol = buffer.getInt();
+		int rows = buffer.getInt();
+		int cols = buffer.getInt();
+		StringBuilder extension = new StringBuilder();
+		for (int i = 0; i < MAX_EXTENSION_LENGTH; i++)
+		{
+			byte b = buffer.get();
+			if (b != 0)
+				extension.append((char) b);
+		}
+
+		try
+		{
+			return new TileArchive(minRow, minCol, rows, cols, extension.toString());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Invalid tile archive header: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Fill the given buffer from the channel, starting at the given file
+	 * position. Doesn't modify the channel's position.
+	 * 
+	 * @throws IOException
+	 *             If the end of the file is reached before the buffer is full
+	 */
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of tile archive");
+			position += read;
+		}
+	}
+
+	/**
+	 * Write the remaining bytes in the given buffer to the channel, starting at
+	 * the given file position. Doesn't modify the channel's position.
+	 * 
+	 * @throws IOException
+	 */
+	static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+}
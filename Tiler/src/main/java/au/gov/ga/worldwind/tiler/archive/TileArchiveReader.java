@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Read-only access to a {@link TileArchive} file, for serving tiles.
+ * <p/>
+ * The archive's index is memory mapped when the reader is opened, so looking
+ * up a tile doesn't touch the disk, and reading a tile requires a single
+ * positioned read of the tile's data. Readers are safe to share between
+ * threads.
+ */
+public class TileArchiveReader
+{
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final TileArchive archive;
+	private final MappedByteBuffer index;
+
+	public TileArchiveReader(File file) throws IOException
+	{
+		this.file = file;
+		raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(TileArchive.HEADER_SIZE);
+			TileArchive.readFully(channel, header, 0);
+			header.flip();
+			archive = TileArchive.readHeader(header);
+
+			if (channel.size() < archive.getDataStart())
+				throw new IOException("Tile archive " + file + " has a truncated index");
+			index = channel.map(MapMode.READ_ONLY, 0, archive.getDataStart());
+			index.order(TileArchive.BYTE_ORDER);
+		}
+		catch (IOException e)
+		{
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The archive file being read
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return The layout of this archive
+	 */
+	public TileArchive getArchive()
+	{
+		return archive;
+	}
+
+	/**
+	 * @return Does the given tile exist in this archive?
+	 */
+	public boolean exists(int row, int col)
+	{
+		return getLength(row, col) > 0;
+	}
+
+	/**
+	 * @return Length of the given tile's data, or 0 if it doesn't exist
+	 */
+	public int getLength(int row, int col)
+	{
+		if (!archive.contains(row, col))
+			return 0;
+		return index.getInt(TileArchive.getIndexPosition(archive.getIndex(row, col)) + 8);
+	}
+
+	/**
+	 * Read a tile's data.
+	 * 
+	 * @return Buffer containing the tile data, or null if the tile doesn't
+	 *         exist
+	 * @throws IOException
+	 */
+	public ByteBuffer read(int row, int col) throws IOException
+	{
+		int length = getLength(row, col);
+		if (length <= 0)
+			return null;
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		TileArchive.readFully(channel, buffer, getOffset(row, col));
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Copy a tile's data directly to the given channel, without copying it
+	 * through the Java heap where the platform supports it.
+	 * 
+	 * @return Number of bytes transferred, or -1 if the tile doesn't exist
+	 * @throws IOException
+	 */
+	public long transferTo(int row, int col, WritableByteChannel target) throws IOException
+	{
+		int length = getLength(row, col);
+		if (length <= 0)
+			return -1;
+
+		long offset = getOffset(row, col);
+		long transferred = 0;
+		while (transferred < length)
+		{
+			long count = channel.transferTo(offset + transferred, length - transferred, target);
+			if (count <= 0)
+				throw new IOException("Unexpected end of tile archive " + file);
+			transferred += count;
+		}
+		return transferred;
+	}
+
+	/**
+	 * Close this reader, releasing the file handle.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		raf.close();
+	}
+
+	private long getOffset(int row, int col)
+	{
+		return index.getLong(TileArchive.getIndexPosition(archive.getIndex(row, col)));
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TileStore} that writes the tiles of a level into a single
+ * {@link TileArchive} file.
+ * <p/>
+ * Tile data is appended to the end of the file, and then the tile's index
+ * entry is updated, so a tile is never visible in the index before its data
+ * has been written. Writes use positional channel operations, so multiple
+ * threads can write (and read back) tiles concurrently. Rewriting an existing
+ * tile appends the new data and leaves the old data unreferenced.
+ * <p/>
+ * Opening an existing archive reads its index, so that tiling can be resumed.
+ */
+public class TileArchiveWriter implements TileStore
+{
+	private final static int ZERO_BLOCK_SIZE = 64 * 1024;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final TileArchive archive;
+	private final long[] offsets;
+	private final int[] lengths;
+	private final AtomicLong end;
+
+	/**
+	 * Open a tile archive for writing.
+	 * 
+	 * @param file
+	 *            Archive file
+	 * @param archive
+	 *            Layout of the archive to create. If the file already exists,
+	 *            its layout must match this layout, or this can be null to use
+	 *            the existing file's layout.
+	 * @throws IOException
+	 *             If the archive can't be opened, or the existing file's
+	 *             layout doesn't match
+	 */
+	public TileArchiveWriter(File file, TileArchive archive) throws IOException
+	{
+		this.file = file;
+		boolean exists = file.isFile() && file.length() > 0;
+		if (!exists && archive == null)
+			throw new IOException("Tile archive " + file + " does not exist");
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		try
+		{
+			if (exists)
+			{
+				ByteBuffer header = ByteBuffer.allocate(TileArchive.HEADER_SIZE);
+				TileArchive.readFully(channel, header, 0);
+				header.flip();
+				TileArchive existing = TileArchive.readHeader(header);
+				if (archive != null && !archive.matches(existing))
+					throw new IOException("Tile archive " + file
+							+ " has a different layout to the tiles being written");
+				archive = existing;
+			}
+			this.archive = archive;
+
+			offsets = new long[archive.getTileCount()];
+			lengths = new int[archive.getTileCount()];
+			if (exists)
+			{
+				readIndex();
+			}
+			else
+			{
+				writeEmptyIndex();
+			}
+			end = new AtomicLong(Math.max(channel.size(), archive.getDataStart()));
+		}
+		catch (IOException e)
+		{
+			raf.close();
+			throw e;
+		}
+	}
+
+	private void readIndex() throws IOException
+	{
+		MappedByteBuffer index =
+				channel.map(MapMode.READ_ONLY, TileArchive.HEADER_SIZE, archive.getDataStart()
+						- TileArchive.HEADER_SIZE);
+		index.order(TileArchive.BYTE_ORDER);
+		for (int i = 0; i < lengths.length; i++)
+		{
+			offsets[i] = index.getLong();
+			lengths[i] = index.getInt();
+		}
+	}
+
+	private void writeEmptyIndex() throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(TileArchive.HEADER_SIZE);
+		archive.writeHeader(header);
+		header.flip();
+		TileArchive.writeFully(channel, header, 0);
+
+		ByteBuffer zeros = ByteBuffer.allocate(ZERO_BLOCK_SIZE);
+		long position = TileArchive.HEADER_SIZE;
+		while (position < archive.getDataStart())
+		{
+			zeros.clear();
+			zeros.limit((int) Math.min(ZERO_BLOCK_SIZE, archive.getDataStart() - position));
+			TileArchive.writeFully(channel, zeros, position);
+			position += zeros.limit();
+		}
+	}
+
+	/**
+	 * @return The layout of this archive
+	 */
+	public TileArchive getArchive()
+	{
+		return archive;
+	}
+
+	@Override
+	public boolean exists(int row, int col)
+	{
+		if (!archive.contains(row, col))
+			return false;
+		synchronized (lengths)
+		{
+			return lengths[archive.getIndex(row, col)] > 0;
+		}
+	}
+
+	@Override
+	public ByteBuffer read(int row, int col) throws IOException
+	{
+		if (!archive.contains(row, col))
+			return null;
+
+		long offset;
+		int length;
+		int index = archive.getIndex(row, col);
+		synchronized (lengths)
+		{
+			offset = offsets[index];
+			length = lengths[index];
+		}
+		if (length <= 0)
+			return null;
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		TileArchive.readFully(channel, buffer, offset);
+		buffer.flip();
+		return buffer;
+	}
+
+	@Override
+	public void write(int row, int col, ByteBuffer data) throws IOException
+	{
+		if (!archive.contains(row, col))
+			throw new IllegalArgumentException("Tile (" + row + "," + col + ") is outside the extents of " + file);
+
+		int length = data.remaining();
+		if (length <= 0)
+			throw new IOException("Cannot write empty tile (" + row + "," + col + ") to " + file);
+
+		long offset = end.getAndAdd(length);
+		TileArchive.writeFully(channel, data.duplicate(), offset);
+
+		ByteBuffer entry = ByteBuffer.allocate(TileArchive.INDEX_ENTRY_SIZE);
+		entry.order(TileArchive.BYTE_ORDER);
+		entry.putLong(offset);
+		entry.putInt(length);
+		entry.flip();
+
+		int index = archive.getIndex(row, col);
+		synchronized (lengths)
+		{
+			TileArchive.writeFully(channel, entry, TileArchive.getIndexPosition(index));
+			offsets[index] = offset;
+			lengths[index] = length;
+		}
+	}
+
+	@Override
+	public List<int[]> list()
+	{
+		List<int[]> tiles = new ArrayList<int[]>();
+		synchronized (lengths)
+		{
+			for (int i = 0; i < lengths.length; i++)
+			{
+				if (lengths[i] > 0)
+				{
+					tiles.add(new int[] { archive.minRow + i / archive.cols, archive.minCol + i % archive.cols });
+				}
+			}
+		}
+		return tiles;
+	}
+
+	@Override
+	public int[] findLastTile(int minRow, int minCol, int maxRow, int maxCol)
+	{
+		//tiles are appended to the archive, so the last tile written has the largest offset
+		int last = -1;
+		synchronized (lengths)
+		{
+			for (int i = 0; i < lengths.length; i++)
+			{
+				int row = archive.minRow + i / archive.cols;
+				int col = archive.minCol + i % archive.cols;
+				if (lengths[i] > 0 && row >= minRow && row <= maxRow && col >= minCol && col <= maxCol
+						&& (last < 0 || offsets[i] > offsets[last]))
+				{
+					last = i;
+				}
+			}
+		}
+		if (last < 0)
+			return null;
+		return new int[] { archive.minRow + last / archive.cols, archive.minCol + last % archive.cols };
+	}
+
+	@Override
+	public File getFile(int row, int col)
+	{
+		return null;
+	}
+
+	@Override
+	public String getName(int row, int col)
+	{
+		return file.getAbsolutePath() + " (" + row + "," + col + ")";
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		raf.close();
+	}
+}
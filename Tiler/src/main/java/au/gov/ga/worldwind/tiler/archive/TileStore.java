@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Storage for the tiles of a single level. Tiles are addressed by row and
+ * column, and stored as encoded blobs (image files, raw elevation data, etc).
+ * Implementations must be safe to use from multiple tiling threads at once.
+ */
+public interface TileStore
+{
+	/**
+	 * @return Does the given tile exist in this store?
+	 */
+	boolean exists(int row, int col);
+
+	/**
+	 * Read a tile's data.
+	 * 
+	 * @return Buffer containing the tile data (position 0, limit the tile
+	 *         length), or null if the tile doesn't exist
+	 * @throws IOException
+	 */
+	ByteBuffer read(int row, int col) throws IOException;
+
+	/**
+	 * Write a tile's data. The data between the buffer's position and limit is
+	 * written; the buffer's position is not modified.
+	 * 
+	 * @throws IOException
+	 */
+	void write(int row, int col, ByteBuffer data) throws IOException;
+
+	/**
+	 * @return List of the {row, col} of every tile in this store
+	 */
+	List<int[]> list();
+
+	/**
+	 * Find the last tile written within the given extents, so that serial
+	 * tiling (which writes tiles in row-major order) can resume after it.
+	 * 
+	 * @return {row, col} of the last tile written, or null if no tiles within
+	 *         the extents have been written
+	 */
+	int[] findLastTile(int minRow, int minCol, int maxRow, int maxCol);
+
+	/**
+	 * @return The file the given tile is stored in, or null if this store
+	 *         doesn't store tiles as individual files
+	 */
+	File getFile(int row, int col);
+
+	/**
+	 * @return Human readable name of the given tile, for log messages
+	 */
+	String getName(int row, int col);
+
+	/**
+	 * Close this store, releasing any open file handles.
+	 * 
+	 * @throws IOException
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.archive;
+
+import java.io.File;
+import java.io.IOException;
+
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+/**
+ * Helper functions for opening the {@link TileStore}s of a tileset.
+ */
+public class TileStoreUtil
+{
+	/**
+	 * Open the store for a single level of a tileset.
+	 * 
+	 * @param directory
+	 *            Tileset directory (parent of the level directories/archives)
+	 * @param level
+	 *            Level to open
+	 * @param extension
+	 *            Tile file extension
+	 * @param archive
+	 *            Should the level be stored in a single {@link TileArchive}
+	 *            file, instead of a directory of tile files?
+	 * @param layout
+	 *            Layout of the archive to create, if the archive doesn't exist
+	 *            yet; ignored for directories
+	 * @return Opened {@link TileStore}
+	 * @throws IOException
+	 */
+	public static TileStore open(File directory, int level, String extension, boolean archive, TileArchive layout)
+			throws IOException
+	{
+		if (archive)
+		{
+			return new TileArchiveWriter(TileArchive.getArchiveFile(directory, level), layout);
+		}
+		return new DirectoryTileStore(new File(directory, String.valueOf(level)), extension);
+	}
+
+	/**
+	 * Calculate the layout of the archive containing every tile that
+	 * intersects the given sector at the given level.
+	 */
+	public static TileArchive getLayout(Sector sector, LatLon origin, int level, double lzts, String extension)
+	{
+		int minX = Util.getTileX(sector.getMinLongitude() + 1e-10, origin, level, lzts);
+		int maxX = Util.getTileX(sector.getMaxLongitude() - 1e-10, origin, level, lzts);
+		int minY = Util.getTileY(sector.getMinLatitude() + 1e-10, origin, level, lzts);
+		int maxY = Util.getTileY(sector.getMaxLatitude() - 1e-10, origin, level, lzts);
+		return new TileArchive(minY, minX, maxY - minY + 1, maxX - minX + 1, extension);
+	}
+
+	/**
+	 * @return The highest level in the given tileset directory, or
+	 *         {@link Integer#MIN_VALUE} if the directory contains no levels
+	 */
+	public static int getMaxLevel(File directory, boolean archive)
+	{
+		int maxlevel = Integer.MIN_VALUE;
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				int level = -1;
+				if (archive)
+				{
+					if (file.isFile())
+						level = TileArchive.getArchiveLevel(file);
+				}
+				else if (file.isDirectory())
+				{
+					try
+					{
+						level = Integer.parseInt(file.getName());
+					}
+					catch (NumberFormatException e)
+					{
+					}
+				}
+				if (level >= 0)
+					maxlevel = Math.max(maxlevel, level);
+			}
+		}
+		return maxlevel;
+	}
+}
@@ -18,7 +18,11 @@ package au.gov.ga.worldwind.tiler.gdal;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
@@ -656,6 +660,71 @@ public class GDALTile
 		return img;
 	}
 
+	/**
+	 * Create an image that wraps a copy of this tile's data directly, without
+	 * converting it to a packed pixel image like {@link #getAsImage()} does.
+	 * This is cheaper to create and encode. Only byte tiles with 1, 3 or 4
+	 * bands are supported; 4 band tiles are treated as premultiplied RGBA, the
+	 * same as {@link #getAsImage()}.
+	 * 
+	 * @return Image containing this tile's data, or null if this tile's data
+	 *         type or band count is not supported
+	 */
+	public BufferedImage getAsComponentImage()
+	{
+		if (bufferType != gdalconstConstants.GDT_Byte)
+			return null;
+
+		int width = parameters.size.width;
+		int height = parameters.size.height;
+		int pixels = width * height;
+		int bandCount = bufferBandCount;
+
+		ColorModel colorModel;
+		if (bandCount == 1 && indexColorModel != null)
+		{
+			colorModel = indexColorModel;
+		}
+		else if (bandCount == 1 && !indexed)
+		{
+			colorModel =
+					new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+							Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+		}
+		else if (bandCount == 3)
+		{
+			colorModel =
+					new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+							Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+		}
+		else if (bandCount == 4)
+		{
+			colorModel =
+					new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, true,
+							Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+		}
+		else
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[pixels * bandCount];
+		ByteBuffer source = buffer.duplicate();
+		source.rewind();
+		source.get(bytes);
+
+		int[] offsets = new int[bandCount];
+		for (int b = 0; b < bandCount; b++)
+		{
+			offsets[b] = b * pixels;
+		}
+
+		SampleModel sampleModel = new ComponentSampleModel(DataBuffer.TYPE_BYTE, width, height, 1, width, offsets);
+		WritableRaster raster =
+				Raster.createWritableRaster(sampleModel, new DataBufferByte(bytes, bytes.length), null);
+		return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+	}
+
 	private boolean isEqual(ByteBuffer buffer, NullableNumberArray values)
 	{
 		if (values == null)
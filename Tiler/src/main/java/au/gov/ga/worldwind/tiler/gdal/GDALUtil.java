@@ -94,6 +94,27 @@ public class GDALUtil
 		return dataset;
 	}
 
+	/**
+	 * Open a new, independent handle to the file that the given dataset was
+	 * opened from. GDAL datasets are not thread-safe, so each thread reading
+	 * from a dataset requires its own handle.
+	 * 
+	 * @param dataset
+	 *            Dataset to reopen
+	 * @return New {@link Dataset} handle to the same file
+	 * @throws GDALException
+	 *             When the open fails
+	 */
+	public static Dataset reopen(Dataset dataset) throws GDALException
+	{
+		String description = dataset.GetDescription();
+		if (description == null || description.length() == 0)
+		{
+			throw new GDALException(0, 0, "Dataset has no filename to reopen");
+		}
+		return open(new File(description));
+	}
+
 	/**
 	 * Calculate the sector of the given dataset.
 	 * 
@@ -20,14 +20,20 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Date;
 
 import javax.imageio.ImageIO;
 
 import org.gdal.gdal.Dataset;
 
+import au.gov.ga.worldwind.tiler.archive.TileArchive;
+import au.gov.ga.worldwind.tiler.archive.TileStore;
+import au.gov.ga.worldwind.tiler.archive.TileStoreUtil;
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
 import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
@@ -169,23 +175,17 @@ public class RibbonTiler
 		int yStrips = Math.max(1, context.getTilesize() / height);
 		int rows = (height - 1) / (context.getTilesize() * xStrips) + 1;
 		int cols = (width - 1) / (context.getTilesize() * yStrips) + 1;
-		File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
+		TileStore store = openLevel(context, levels - 1, rows, cols);
 
 		//create top level tiles
 		log(context, "Creating top level tiles...", false);
 		for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
 		{
-			//create row directory
-			String rowPadded = Util.paddedInt(row, 4);
-			File rowDir = new File(levelDir, rowPadded);
-			rowDir.mkdirs();
-
 			int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
 
 			for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
 			{
-				File imageFile = tileFile(levelDir, row, col, context.getFormat());
-				if (imageFile.exists())
+				if (store.exists(row, col))
 				{
 					continue;
 				}
@@ -204,7 +204,7 @@ public class RibbonTiler
 									height, context.isMask());
 				}
 
-				ImageIO.write(image, context.getFormat(), imageFile);
+				writeTile(store, row, col, image, context.getFormat());
 			}
 		}
 
@@ -235,9 +235,8 @@ public class RibbonTiler
 			log(context, "xStrips,yStrips = " + xStrips + "," + yStrips, true);
 			log(context, "", true);
 
-			File lastLevelDir = levelDir;
-			levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
-			levelDir.mkdirs();
+			TileStore lastStore = store;
+			store = openLevel(context, level, rows, cols);
 
 			int rowMultiplier = lastRows == 1 ? 0 : 1;
 			int rowDivisor = lastCols == 1 ? 1 : 2;
@@ -250,10 +249,6 @@ public class RibbonTiler
 				//if lastCols == 1: 0,1,2,3 / 4,5,6,7
 				//            else: 0,0,1,1 / 2,2,3,3
 
-				String rowPadded = Util.paddedInt(row, 4);
-				File rowDir = new File(levelDir, rowPadded);
-				rowDir.mkdirs();
-
 				int firstRow = row * 4;
 				int r0 = rowMultiplier * (firstRow + 0) / rowDivisor;
 				int r1 = rowMultiplier * (firstRow + 1) / rowDivisor;
@@ -266,8 +261,7 @@ public class RibbonTiler
 					//if lastRows == 1: 0,1,2,3 / 4,5,6,7
 					//            else: 0,1,0,1 / 2,3,2,3
 
-					File imageFile = tileFile(levelDir, row, col, context.getFormat());
-					if (imageFile.exists())
+					if (store.exists(row, col))
 					{
 						continue;
 					}
@@ -278,15 +272,10 @@ public class RibbonTiler
 					int c2 = colMultiplier * (firstCol + colDelta);
 					int c3 = colMultiplier * (firstCol + colDelta + 1);
 
-					File src0 = tileFile(lastLevelDir, r0, c0, context.getFormat());
-					File src1 = tileFile(lastLevelDir, r1, c1, context.getFormat());
-					File src2 = tileFile(lastLevelDir, r2, c2, context.getFormat());
-					File src3 = tileFile(lastLevelDir, r3, c3, context.getFormat());
-
-					BufferedImage img0 = src0.exists() ? ImageIO.read(src0) : null;
-					BufferedImage img1 = src1.exists() ? ImageIO.read(src1) : null;
-					BufferedImage img2 = src2.exists() ? ImageIO.read(src2) : null;
-					BufferedImage img3 = src3.exists() ? ImageIO.read(src3) : null;
+					BufferedImage img0 = readTile(lastStore, r0, c0);
+					BufferedImage img1 = readTile(lastStore, r1, c1);
+					BufferedImage img2 = readTile(lastStore, r2, c2);
+					BufferedImage img3 = readTile(lastStore, r3, c3);
 
 					int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
 					int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
@@ -331,10 +320,12 @@ public class RibbonTiler
 					}
 
 					g.dispose();
-					ImageIO.write(image, context.getFormat(), imageFile);
+					writeTile(store, row, col, image, context.getFormat());
 				}
 			}
+			lastStore.close();
 		}
+		store.close();
 
 		if (context.isCopySource())
 		{
@@ -384,12 +375,29 @@ public class RibbonTiler
 		return levels;
 	}
 
-	private static File tileFile(File levelDir, int row, int col, String ext)
+	private static TileStore openLevel(RibbonTilingContext context, int level, int rows, int cols) throws IOException
+	{
+		TileArchive layout = new TileArchive(0, 0, rows, cols, context.getFormat());
+		return TileStoreUtil.open(context.getTilesetRoot(), level, context.getFormat(), context.isArchive(), layout);
+	}
+
+	private static BufferedImage readTile(TileStore store, int row, int col) throws IOException
+	{
+		ByteBuffer buffer = store.read(row, col);
+		if (buffer == null)
+		{
+			return null;
+		}
+		return ImageIO.read(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(),
+				buffer.remaining()));
+	}
+
+	private static void writeTile(TileStore store, int row, int col, BufferedImage image, String format)
+			throws IOException
 	{
-		String paddedRow = Util.paddedInt(row, 4);
-		String paddedCol = Util.paddedInt(col, 4);
-		File rowDir = new File(levelDir, paddedRow);
-		return new File(rowDir, paddedRow + "_" + paddedCol + "." + ext);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, format, baos);
+		store.write(row, col, ByteBuffer.wrap(baos.toByteArray()));
 	}
 
 	private static BufferedImage removeConstantColumns(BufferedImage image, int[] constantPixelsFromTop,
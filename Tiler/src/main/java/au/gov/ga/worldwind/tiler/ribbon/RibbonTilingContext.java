@@ -69,6 +69,8 @@ public class RibbonTilingContext {
 	private boolean hideStdOut = false;
 	@Parameter(names="-noLayerDef", description="Suppress the generation of a layer definition file?")
 	private boolean suppressLayerDefinition = false;
+	@Parameter(names="-archive", description="Write each level to a single tile archive file?")
+	private boolean archive = false;
 	
 	// Layer definition parameters
 	@Parameter(names="-elementCreators", description="The fully qualified classname of element creators to use", converter=CommaSeparatedConverter.class)
@@ -192,6 +194,14 @@ public class RibbonTilingContext {
 		this.mask = mask;
 	}
 
+	public boolean isArchive() {
+		return archive;
+	}
+
+	public void setArchive(boolean archive) {
+		this.archive = archive;
+	}
+
 	public int getTilesize() {
 		return tilesize;
 	}
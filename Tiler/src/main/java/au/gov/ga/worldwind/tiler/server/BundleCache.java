@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of assembled tile bundles (such as the image+mask
+ * zips built for F=zip requests), bounded by the total size of the cached
+ * bundles.
+ * <p/>
+ * Each bundle is cached against its tile key (dataset/level/row/col), along
+ * with a version built from the modification times of the source files it was
+ * assembled from. A bundle is only returned if its version matches the
+ * current sources; stale bundles are replaced.
+ */
+public class BundleCache
+{
+	private final LinkedHashMap<String, Bundle> bundles = new LinkedHashMap<String, Bundle>(16, 0.75f, true);
+	private final long maxBytes;
+	private final long maxBundleBytes;
+	private long bytes;
+
+	/**
+	 * @param maxBytes
+	 *            Maximum total size of the cached bundles
+	 */
+	public BundleCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		//don't let a single bundle flush a large part of the cache
+		this.maxBundleBytes = maxBytes / 16;
+	}
+
+	/**
+	 * Get the cached bundle for a tile.
+	 * 
+	 * @param key
+	 *            Tile key
+	 * @param version
+	 *            Version of the bundle's sources
+	 * @return Bundle contents, or null if there's no cached bundle matching the
+	 *         version
+	 */
+	public synchronized byte[] get(String key, String version)
+	{
+		Bundle bundle = bundles.get(key);
+		if (bundle == null)
+			return null;
+		if (!bundle.version.equals(version))
+		{
+			remove(key);
+			return null;
+		}
+		return bundle.data;
+	}
+
+	/**
+	 * Cache the bundle for a tile, evicting the least recently used bundles if
+	 * required to stay within the size limit. Bundles larger than a fraction of
+	 * the cache size are not cached.
+	 * 
+	 * @param key
+	 *            Tile key
+	 * @param version
+	 *            Version of the bundle's sources
+	 * @param data
+	 *            Bundle contents (must not be modified after caching)
+	 */
+	public synchronized void put(String key, String version, byte[] data)
+	{
+		if (data.length > maxBundleBytes)
+			return;
+
+		remove(key);
+		bundles.put(key, new Bundle(version, data));
+		bytes += data.length;
+
+		Iterator<Map.Entry<String, Bundle>> iterator = bundles.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext())
+		{
+			bytes -= iterator.next().getValue().data.length;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Remove all cached bundles.
+	 */
+	public synchronized void clear()
+	{
+		bundles.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return Total size of the cached bundles
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * @return Number of cached bundles
+	 */
+	public synchronized int size()
+	{
+		return bundles.size();
+	}
+
+	private void remove(String key)
+	{
+		Bundle bundle = bundles.remove(key);
+		if (bundle != null)
+		{
+			bytes -= bundle.data.length;
+		}
+	}
+
+	private static class Bundle
+	{
+		public final String version;
+		public final byte[] data;
+
+		public Bundle(String version, byte[] data)
+		{
+			this.version = version;
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a bounded number of file handles (such as open zip files or tile
+ * archives) open between requests, evicting the least recently used handle
+ * when the limit is reached.
+ * <p/>
+ * Handles are reference counted: a handle is acquired for the duration of a
+ * request, and an evicted handle isn't closed until every request using it
+ * has released it. If a file's modification time or length changes, the next
+ * acquire (after the check interval) reopens it.
+ */
+public abstract class HandleCache<H>
+{
+	private final int maxHandles;
+	private final long checkInterval;
+	private final Map<File, Handle<H>> handles = new LinkedHashMap<File, Handle<H>>(16, 0.75f, true);
+
+	/**
+	 * @param maxHandles
+	 *            Maximum number of handles to keep open
+	 * @param checkInterval
+	 *            Minimum time in milliseconds between checks of whether a
+	 *            cached handle's file has been modified
+	 */
+	public HandleCache(int maxHandles, long checkInterval)
+	{
+		this.maxHandles = Math.max(1, maxHandles);
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Open a new handle to the given file.
+	 */
+	protected abstract H open(File file) throws IOException;
+
+	/**
+	 * Close a handle that is no longer in use.
+	 */
+	protected abstract void close(H handle) throws IOException;
+
+	/**
+	 * Acquire a handle to the given file, opening it if it isn't already open.
+	 * The returned handle must be passed to {@link #release(Handle)} once it is
+	 * no longer being used.
+	 */
+	public Handle<H> acquire(File file) throws IOException
+	{
+		long now = System.currentTimeMillis();
+		synchronized (this)
+		{
+			Handle<H> handle = handles.get(file);
+			if (handle != null)
+			{
+				if (now - handle.checked < checkInterval
+						|| (file.lastModified() == handle.lastModified && file.length() == handle.length))
+				{
+					handle.checked = now;
+					handle.references++;
+					return handle;
+				}
+				handles.remove(file);
+				evict(handle);
+			}
+		}
+
+		long lastModified = file.lastModified();
+		long length = file.length();
+		Handle<H> handle = new Handle<H>(open(file), lastModified, length, now);
+
+		List<Handle<H>> evicted = new ArrayList<Handle<H>>();
+		synchronized (this)
+		{
+			Handle<H> previous = handles.put(file, handle);
+			if (previous != null)
+			{
+				evicted.add(previous);
+			}
+			Iterator<Handle<H>> iterator = handles.values().iterator();
+			while (handles.size() > maxHandles && iterator.hasNext())
+			{
+				Handle<H> oldest = iterator.next();
+				if (oldest != handle)
+				{
+					iterator.remove();
+					evicted.add(oldest);
+				}
+			}
+			for (Handle<H> h : evicted)
+			{
+				evict(h);
+			}
+		}
+		return handle;
+	}
+
+	/**
+	 * Release a handle acquired by {@link #acquire(File)}.
+	 */
+	public void release(Handle<H> handle)
+	{
+		boolean close;
+		synchronized (this)
+		{
+			handle.references--;
+			close = handle.evicted && handle.references == 0;
+		}
+		if (close)
+		{
+			closeQuietly(handle);
+		}
+	}
+
+	/**
+	 * Close all cached handles that aren't currently in use, and mark the rest
+	 * to be closed when they are released.
+	 */
+	public void clear()
+	{
+		synchronized (this)
+		{
+			for (Handle<H> handle : handles.values())
+			{
+				evict(handle);
+			}
+			handles.clear();
+		}
+	}
+
+	/**
+	 * @return Number of open handles in the cache
+	 */
+	public synchronized int size()
+	{
+		return handles.size();
+	}
+
+	private void evict(Handle<H> handle)
+	{
+		handle.evicted = true;
+		if (handle.references == 0)
+		{
+			closeQuietly(handle);
+		}
+	}
+
+	private void closeQuietly(Handle<H> handle)
+	{
+		try
+		{
+			close(handle.value);
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	/**
+	 * A cached, reference counted handle.
+	 */
+	public static class Handle<H>
+	{
+		public final H value;
+		private final long lastModified;
+		private final long length;
+		private long checked;
+		private int references = 1;
+		private boolean evicted = false;
+
+		private Handle(H value, long lastModified, long length, long checked)
+		{
+			this.value = value;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.checked = checked;
+		}
+
+		/**
+		 * @return Modification time of the file when this handle was opened
+		 */
+		public long getLastModified()
+		{
+			return lastModified;
+		}
+	}
+}
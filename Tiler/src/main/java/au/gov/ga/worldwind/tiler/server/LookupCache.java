@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoises the results of lookups (such as filesystem existence checks) for a
+ * fixed time, so that repeated requests for the same lookup don't repeatedly
+ * hit the filesystem. Null results are cached too.
+ * <p/>
+ * The cache can optionally be bounded; when it grows past its maximum size,
+ * expired results are dropped, and if that isn't enough, all results are
+ * dropped.
+ */
+public class LookupCache<K, V>
+{
+	/**
+	 * Performs the lookup when the cache doesn't contain a current result.
+	 */
+	public interface Loader<K, V>
+	{
+		V load(K key);
+	}
+
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+	private final long timeToLive;
+	private final int maxSize;
+
+	/**
+	 * @param timeToLive
+	 *            Time in milliseconds for which a lookup result is reused
+	 */
+	public LookupCache(long timeToLive)
+	{
+		this(timeToLive, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param timeToLive
+	 *            Time in milliseconds for which a lookup result is reused
+	 * @param maxSize
+	 *            Maximum number of results to keep
+	 */
+	public LookupCache(long timeToLive, int maxSize)
+	{
+		this.timeToLive = timeToLive;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Get the cached result of a lookup, or perform the lookup with the given
+	 * loader if there is no current result.
+	 */
+	public V get(K key, Loader<K, V> loader)
+	{
+		long now = System.currentTimeMillis();
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.expiry > now)
+		{
+			return entry.value;
+		}
+
+		V value = loader.load(key);
+		put(key, value, now);
+		return value;
+	}
+
+	/**
+	 * @return Is there a current result for the given key?
+	 */
+	public boolean contains(K key)
+	{
+		Entry<V> entry = entries.get(key);
+		return entry != null && entry.expiry > System.currentTimeMillis();
+	}
+
+	/**
+	 * Cache the result of a lookup performed elsewhere.
+	 */
+	public void put(K key, V value)
+	{
+		put(key, value, System.currentTimeMillis());
+	}
+
+	private void put(K key, V value, long now)
+	{
+		if (entries.size() >= maxSize)
+		{
+			for (Iterator<Entry<V>> iterator = entries.values().iterator(); iterator.hasNext();)
+			{
+				if (iterator.next().expiry <= now)
+				{
+					iterator.remove();
+				}
+			}
+			if (entries.size() >= maxSize)
+			{
+				entries.clear();
+			}
+		}
+		entries.put(key, new Entry<V>(value, now + timeToLive));
+	}
+
+	/**
+	 * Remove all cached results.
+	 */
+	public void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * @return Number of cached results (including expired results that haven't
+	 *         been replaced yet)
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	private static class Entry<V>
+	{
+		public final V value;
+		public final long expiry;
+
+		public Entry(V value, long expiry)
+		{
+			this.value = value;
+			this.expiry = expiry;
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import au.gov.ga.worldwind.tiler.archive.TileArchive;
+import au.gov.ga.worldwind.tiler.archive.TileArchiveReader;
+import au.gov.ga.worldwind.tiler.server.HandleCache.Handle;
+import au.gov.ga.worldwind.tiler.server.TileResource.ArchiveTileResource;
+import au.gov.ga.worldwind.tiler.server.TileResource.FileTileResource;
+import au.gov.ga.worldwind.tiler.server.TileResource.ZipTileResource;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+/**
+ * Finds tiles under a tile root directory. Datasets can be stored as
+ * directories of levels, with each level stored as a directory of tiles, a
+ * zip file or a tile archive; or as a single zip file containing the level
+ * directories. This is the same layout supported by the TileServer JSPs.
+ * <p/>
+ * The existence of dataset and level directories/files is memoised for a
+ * short time, and zip files and tile archives are kept open between
+ * requests, so that most tile requests only require a single file open (or
+ * none at all). Tiles that don't exist are also remembered, so that repeated
+ * requests for missing tiles (such as empty ocean tiles) are answered without
+ * searching the filesystem. The memoised lookups are keyed by request
+ * parameters, so each cache is bounded in size.
+ */
+public class TileRepository
+{
+	private enum FileType
+	{
+		DIRECTORY,
+		FILE,
+		MISSING
+	}
+
+	private static final int DEFAULT_MAX_ENTRIES = 100000;
+
+	private final File root;
+	private final String[] extensions;
+	private final LookupCache<File, FileType> fileTypes;
+	private final LookupCache<String, Boolean> zipEntries;
+	private final LookupCache<String, Boolean> missingTiles;
+	private final HandleCache<ZipFile> zipFiles;
+	private final HandleCache<TileArchiveReader> archives;
+
+	private final LookupCache.Loader<File, FileType> fileTypeLoader = new LookupCache.Loader<File, FileType>()
+	{
+		@Override
+		public FileType load(File file)
+		{
+			return file.isDirectory() ? FileType.DIRECTORY : file.isFile() ? FileType.FILE : FileType.MISSING;
+		}
+	};
+
+	/**
+	 * @param root
+	 *            Root directory of the tiles
+	 * @param extensions
+	 *            Tile file extensions to search for (in order) when a tile is
+	 *            requested without a format
+	 * @param lookupTimeToLive
+	 *            Time in milliseconds to memoise filesystem lookups for
+	 * @param maxOpenFiles
+	 *            Maximum number of zip files and tile archives to keep open
+	 */
+	public TileRepository(File root, String[] extensions, long lookupTimeToLive, int maxOpenFiles)
+	{
+		this(root, extensions, lookupTimeToLive, maxOpenFiles, lookupTimeToLive, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param root
+	 *            Root directory of the tiles
+	 * @param extensions
+	 *            Tile file extensions to search for (in order) when a tile is
+	 *            requested without a format
+	 * @param lookupTimeToLive
+	 *            Time in milliseconds to memoise filesystem lookups for
+	 * @param maxOpenFiles
+	 *            Maximum number of zip files and tile archives to keep open
+	 * @param missingTimeToLive
+	 *            Time in milliseconds to remember that a tile doesn't exist
+	 * @param maxMissingTiles
+	 *            Maximum number of missing tiles to remember
+	 */
+	public TileRepository(File root, String[] extensions, long lookupTimeToLive, int maxOpenFiles,
+			long missingTimeToLive, int maxMissingTiles)
+	{
+		this(root, extensions, lookupTimeToLive, DEFAULT_MAX_ENTRIES, maxOpenFiles, missingTimeToLive,
+				maxMissingTiles);
+	}
+
+	/**
+	 * @param root
+	 *            Root directory of the tiles
+	 * @param extensions
+	 *            Tile file extensions to search for (in order) when a tile is
+	 *            requested without a format
+	 * @param lookupTimeToLive
+	 *            Time in milliseconds to memoise filesystem lookups for
+	 * @param maxLookups
+	 *            Maximum number of file and zip entry lookups to memoise
+	 *            (each)
+	 * @param maxOpenFiles
+	 *            Maximum number of zip files and tile archives to keep open
+	 * @param missingTimeToLive
+	 *            Time in milliseconds to remember that a tile doesn't exist
+	 * @param maxMissingTiles
+	 *            Maximum number of missing tiles to remember
+	 */
+	public TileRepository(File root, String[] extensions, long lookupTimeToLive, int maxLookups, int maxOpenFiles,
+			long missingTimeToLive, int maxMissingTiles)
+	{
+		this.root = root;
+		this.extensions = extensions;
+		fileTypes = new LookupCache<File, FileType>(lookupTimeToLive, maxLookups);
+		zipEntries = new LookupCache<String, Boolean>(lookupTimeToLive, maxLookups);
+		missingTiles = new LookupCache<String, Boolean>(missingTimeToLive, maxMissingTiles);
+		zipFiles = new HandleCache<ZipFile>(maxOpenFiles, lookupTimeToLive)
+		{
+			@Override
+			protected ZipFile open(File file) throws IOException
+			{
+				return new ZipFile(file);
+			}
+
+			@Override
+			protected void close(ZipFile handle) throws IOException
+			{
+				handle.close();
+			}
+		};
+		archives = new HandleCache<TileArchiveReader>(maxOpenFiles, lookupTimeToLive)
+		{
+			@Override
+			protected TileArchiveReader open(File file) throws IOException
+			{
+				return new TileArchiveReader(file);
+			}
+
+			@Override
+			protected void close(TileArchiveReader handle) throws IOException
+			{
+				handle.close();
+			}
+		};
+	}
+
+	/**
+	 * @return Root directory of the tiles
+	 */
+	public File getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Find a tile.
+	 * 
+	 * @param T
+	 *            Tile dataset
+	 * @param L
+	 *            Tile level
+	 * @param row
+	 *            Tile row (Y)
+	 * @param col
+	 *            Tile column (X)
+	 * @param extension
+	 *            File extension (if null, searches all possible extensions)
+	 * @param mask
+	 *            Should we search in the 'mask' dataset (the dataset's last
+	 *            path segment replaced with 'mask')?
+	 * @return The tile if it exists, else null
+	 * @throws IOException
+	 */
+	public TileResource findTile(String T, String L, int row, int col, String extension, boolean mask)
+			throws IOException
+	{
+		if (mask)
+		{
+			T = T.substring(0, T.lastIndexOf('/') + 1) + "mask";
+		}
+
+		String key = T + "/" + L + "/" + row + "/" + col + "." + (extension == null ? "*" : extension);
+		if (missingTiles.contains(key))
+			return null;
+
+		TileResource result = null;
+		if (extension == null)
+		{
+			for (int i = 0; i < extensions.length && result == null; i++)
+			{
+				result = findTile(T, L, row, col, extensions[i]);
+			}
+		}
+		else
+		{
+			result = findTile(T, L, row, col, extension);
+		}
+
+		if (result == null)
+		{
+			missingTiles.put(key, Boolean.TRUE);
+		}
+		return result;
+	}
+
+	private TileResource findTile(String T, String L, int row, int col, String extension) throws IOException
+	{
+		String rowDirectory = Util.paddedInt(row, 4);
+		String namePath = rowDirectory + "/" + rowDirectory + "_" + Util.paddedInt(col, 4) + "." + extension;
+
+		File parent = new File(root, T);
+		if (getFileType(parent) == FileType.DIRECTORY)
+		{
+			File levelDirectory = new File(parent, L);
+			if (getFileType(levelDirectory) == FileType.DIRECTORY)
+			{
+				try
+				{
+					return new FileTileResource(new File(levelDirectory, namePath), extension);
+				}
+				catch (FileNotFoundException e)
+				{
+				}
+			}
+
+			File levelZip = new File(parent, L + ".zip");
+			if (getFileType(levelZip) == FileType.FILE)
+			{
+				return getTileFromZip(levelZip, namePath, extension);
+			}
+
+			File levelArchive = new File(parent, L + "." + TileArchive.EXTENSION);
+			if (getFileType(levelArchive) == FileType.FILE)
+			{
+				return getTileFromArchive(levelArchive, row, col, extension);
+			}
+		}
+		else
+		{
+			File zip = getDatasetZip(parent);
+			if (getFileType(zip) == FileType.FILE)
+			{
+				return getTileFromZip(zip, L + "/" + namePath, extension);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find the blank tile for the given extension, in the root directory.
+	 * 
+	 * @return The blank tile if it exists, else null
+	 * @throws IOException
+	 */
+	public TileResource findBlank(String extension) throws IOException
+	{
+		File file = new File(root, "blank." + extension);
+		if (getFileType(file) == FileType.FILE)
+		{
+			try
+			{
+				return new FileTileResource(file, extension);
+			}
+			catch (FileNotFoundException e)
+			{
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Does the dataset/level exist?
+	 * 
+	 * @param T
+	 *            Tile dataset
+	 * @param L
+	 *            Tile level
+	 * @return true if the level exists, else false
+	 * @throws IOException
+	 */
+	public boolean levelExists(String T, String L) throws IOException
+	{
+		File parent = new File(root, T);
+		if (getFileType(parent) == FileType.DIRECTORY)
+		{
+			return getFileType(new File(parent, L)) == FileType.DIRECTORY
+					|| getFileType(new File(parent, L + ".zip")) == FileType.FILE
+					|| getFileType(new File(parent, L + "." + TileArchive.EXTENSION)) == FileType.FILE;
+		}
+
+		final File zip = getDatasetZip(parent);
+		if (getFileType(zip) == FileType.FILE)
+		{
+			final String entry = L + "/";
+			return zipEntries.get(zip.getPath() + "!" + entry, new LookupCache.Loader<String, Boolean>()
+			{
+				@Override
+				public Boolean load(String key)
+				{
+					try
+					{
+						Handle<ZipFile> handle = zipFiles.acquire(zip);
+						try
+						{
+							return handle.value.getEntry(entry) != null;
+						}
+						finally
+						{
+							zipFiles.release(handle);
+						}
+					}
+					catch (IOException e)
+					{
+						return false;
+					}
+				}
+			});
+		}
+		return false;
+	}
+
+	/**
+	 * Close all cached file handles.
+	 */
+	public void close()
+	{
+		missingTiles.clear();
+		zipFiles.clear();
+		archives.clear();
+	}
+
+	private File getDatasetZip(File parent)
+	{
+		if (getFileType(parent) == FileType.FILE && parent.getName().toLowerCase().endsWith(".zip"))
+			return parent;
+		return new File(parent.getPath() + ".zip");
+	}
+
+	private FileType getFileType(File file)
+	{
+		return fileTypes.get(file, fileTypeLoader);
+	}
+
+	private TileResource getTileFromZip(File zipFile, String entryName, String extension) throws IOException
+	{
+		Handle<ZipFile> handle = zipFiles.acquire(zipFile);
+		ZipEntry entry = handle.value.getEntry(entryName);
+		if (entry == null)
+		{
+			zipFiles.release(handle);
+			return null;
+		}
+		return new ZipTileResource(zipFiles, handle, entry, extension);
+	}
+
+	private TileResource getTileFromArchive(File archiveFile, int row, int col, String extension) throws IOException
+	{
+		Handle<TileArchiveReader> handle = archives.acquire(archiveFile);
+		TileArchiveReader reader = handle.value;
+		if (!reader.getArchive().extension.equals(extension) || !reader.exists(row, col))
+		{
+			archives.release(handle);
+			return null;
+		}
+		return new ArchiveTileResource(archives, handle, row, col, extension);
+	}
+}
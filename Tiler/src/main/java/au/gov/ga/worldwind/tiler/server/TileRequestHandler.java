@@ -0,0 +1,487 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Handles tile requests for both imagery and elevation tiles, using the same
+ * X/Y/L/T/F query parameters and lookup rules as the TileServer JSPs.
+ * <p/>
+ * If the F parameter is null, any file that matches the X/Y/L/T parameters is
+ * returned, with the content type matching its extension.
+ * <p/>
+ * If the F parameter is zip, a zip file matching the X/Y/L/T parameters is
+ * returned if it exists. Otherwise any file matching the X/Y/L/T parameters,
+ * and the matching file in the dataset's 'mask' directory (if searching for
+ * masks), are zipped together and returned.
+ * <p/>
+ * For other F parameters, a file matching the X/Y/L/T/F parameters is
+ * returned. Assembled zips are cached in a {@link BundleCache} (if provided),
+ * so that popular tiles aren't re-zipped for every request.
+ * <p/>
+ * If no file is found, the L/T parameters are valid, and blankOnError is
+ * true, a blank tile is returned; otherwise a 404 is returned.
+ * <p/>
+ * Responses include ETag and Last-Modified headers, and conditional requests
+ * (If-None-Match/If-Modified-Since) are answered with a 304 if the tile hasn't
+ * changed.
+ */
+public class TileRequestHandler implements HttpHandler
+{
+	private static final Logger logger = Logger.getLogger(TileRequestHandler.class.getName());
+
+	private static final Map<String, String> extensions = new HashMap<String, String>();
+	private static final Map<String, String> contentTypes = new LinkedHashMap<String, String>();
+
+	static
+	{
+		addFormat("zip", "application/zip");
+		addFormat("jpg", "image/jpeg", "image/jpg");
+		addFormat("png", "image/png");
+		addFormat("bil", "application/bil", "application/bil16", "application/bil32");
+	}
+
+	private static final ThreadLocal<SimpleDateFormat> httpDateFormat = new ThreadLocal<SimpleDateFormat>()
+	{
+		@Override
+		protected SimpleDateFormat initialValue()
+		{
+			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return format;
+		}
+	};
+
+	private final TileRepository repository;
+	private final boolean blankOnError;
+	private final boolean searchForMask;
+	private final BundleCache bundleCache;
+
+	/**
+	 * @param repository
+	 *            Repository to find tiles in
+	 * @param blankOnError
+	 *            If the file is not found, should a blank file be returned?
+	 * @param searchForMask
+	 *            Should a corresponding mask file be searched for to return in
+	 *            a zip?
+	 */
+	public TileRequestHandler(TileRepository repository, boolean blankOnError, boolean searchForMask)
+	{
+		this(repository, blankOnError, searchForMask, null);
+	}
+
+	/**
+	 * @param repository
+	 *            Repository to find tiles in
+	 * @param blankOnError
+	 *            If the file is not found, should a blank file be returned?
+	 * @param searchForMask
+	 *            Should a corresponding mask file be searched for to return in
+	 *            a zip?
+	 * @param bundleCache
+	 *            Cache for assembled zips (can be null)
+	 */
+	public TileRequestHandler(TileRepository repository, boolean blankOnError, boolean searchForMask,
+			BundleCache bundleCache)
+	{
+		this.repository = repository;
+		this.blankOnError = blankOnError;
+		this.searchForMask = searchForMask;
+		this.bundleCache = bundleCache;
+	}
+
+	/**
+	 * @return Extensions of the known tile formats, in search order
+	 */
+	public static String[] getExtensions()
+	{
+		return contentTypes.keySet().toArray(new String[contentTypes.size()]);
+	}
+
+	private static void addFormat(String extension, String contentType, String... alternateMimeTypes)
+	{
+		extensions.put(extension, extension);
+		extensions.put(contentType, extension);
+		for (String alternateMimeType : alternateMimeTypes)
+		{
+			extensions.put(alternateMimeType, extension);
+		}
+		contentTypes.put(extension, contentType);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			String method = exchange.getRequestMethod();
+			if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method))
+			{
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			handleRequest(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.FINE, "Error handling " + exchange.getRequestURI(), e);
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			logger.log(Level.SEVERE, "Error handling " + exchange.getRequestURI(), e);
+			throw e;
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void handleRequest(HttpExchange exchange, Map<String, String> parameters) throws IOException
+	{
+		String X = parameters.get("X"); //col
+		String Y = parameters.get("Y"); //row
+		String L = parameters.get("L"); //level
+		String T = parameters.get("T"); //dataset
+		String F = parameters.get("F"); //format
+
+		if (X == null || Y == null || L == null || T == null)
+		{
+			//if the essential parameters are not defined, just return
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+
+		if (!isValidLevel(L) || !isValidDataset(T))
+		{
+			exchange.sendResponseHeaders(400, -1);
+			return;
+		}
+
+		//tiles with non-numeric rows/columns never exist, but may still be answered with a blank
+		Integer row = parseInteger(Y);
+		Integer col = parseInteger(X);
+		String filename = paddedString(Y, 4) + "_" + paddedString(X, 4);
+
+		TileResource file = null, mask = null;
+		boolean needsZip = false;
+		String contentType = null;
+
+		try
+		{
+			if (F == null)
+			{
+				//if no format has been specified, search for a file using any known extension
+				file = findTile(T, L, row, col, null, false);
+				if (file != null)
+				{
+					contentType = contentTypes.get(file.getExtension());
+				}
+				else if (blankOnError && repository.levelExists(T, L))
+				{
+					//if no file has been found and a blank should be returned, return a blank file (default to jpg)
+					String extension = "jpg";
+					file = repository.findBlank(extension);
+					contentType = contentTypes.get(extension);
+				}
+			}
+			else
+			{
+				String extension = extensions.get(F.toLowerCase());
+				if (extension == null)
+				{
+					//if the format is unknown, return a 400 error
+					exchange.sendResponseHeaders(400, -1);
+					return;
+				}
+
+				contentType = contentTypes.get(extension);
+				boolean isZip = extension.equals("zip");
+
+				file = findTile(T, L, row, col, extension, false);
+
+				if (file == null && isZip)
+				{
+					//if no zip has been found, zip up the image and mask (if any)
+					needsZip = true;
+					file = findTile(T, L, row, col, null, false);
+					if (searchForMask)
+					{
+						mask = findTile(T, L, row, col, null, true);
+					}
+				}
+
+				if (file == null && blankOnError && repository.levelExists(T, L))
+				{
+					if (isZip)
+					{
+						//if a zip is requested, find blank files for the image and mask (default to jpg and png)
+						file = repository.findBlank("jpg");
+						if (searchForMask)
+						{
+							mask = repository.findBlank("png");
+						}
+					}
+					else
+					{
+						file = repository.findBlank(extension);
+					}
+				}
+			}
+
+			if (file == null)
+			{
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			if (needsZip)
+			{
+				sendZip(exchange, T + "/" + L + "/" + filename, filename, contentType, file, mask);
+			}
+			else
+			{
+				sendTile(exchange, filename, contentType, file);
+			}
+		}
+		finally
+		{
+			if (file != null)
+				file.close();
+			if (mask != null)
+				mask.close();
+		}
+	}
+
+	private TileResource findTile(String T, String L, Integer row, Integer col, String extension, boolean mask)
+			throws IOException
+	{
+		if (row == null || col == null)
+			return null;
+		return repository.findTile(T, L, row, col, extension, mask);
+	}
+
+	private void sendTile(HttpExchange exchange, String filename, String contentType, TileResource file)
+			throws IOException
+	{
+		String etag = "\"" + file.getVersion() + "\"";
+		if (notModified(exchange, etag, file.getLastModified()))
+			return;
+
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", contentType);
+		headers.set("Content-disposition", "inline; filename=" + filename + "." + file.getExtension());
+
+		boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+		long length = file.getLength();
+		exchange.sendResponseHeaders(200, head ? -1 : length >= 0 ? length : 0);
+		if (!head)
+		{
+			OutputStream os = exchange.getResponseBody();
+			file.writeTo(os);
+			os.flush();
+		}
+	}
+
+	private void sendZip(HttpExchange exchange, String key, String filename, String contentType, TileResource file,
+			TileResource mask) throws IOException
+	{
+		String version = file.getVersion() + (mask != null ? "+" + mask.getVersion() : "");
+		long lastModified = Math.max(file.getLastModified(), mask != null ? mask.getLastModified() : 0);
+		if (notModified(exchange, "\"" + version + "\"", lastModified))
+			return;
+
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", contentType);
+		headers.set("Content-disposition", "inline; filename=" + filename + ".zip");
+
+		if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod()))
+		{
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+
+		if (bundleCache == null)
+		{
+			exchange.sendResponseHeaders(200, 0);
+			writeZip(exchange.getResponseBody(), filename, file, mask);
+			return;
+		}
+
+		byte[] data = bundleCache.get(key, version);
+		if (data == null)
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			writeZip(baos, filename, file, mask);
+			data = baos.toByteArray();
+			bundleCache.put(key, version, data);
+		}
+		exchange.sendResponseHeaders(200, data.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(data);
+		os.flush();
+	}
+
+	private void writeZip(OutputStream os, String filename, TileResource file, TileResource mask) throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(os);
+		try
+		{
+			zos.putNextEntry(new ZipEntry(filename + "." + file.getExtension()));
+			file.writeTo(zos);
+			zos.closeEntry();
+
+			if (mask != null)
+			{
+				zos.putNextEntry(new ZipEntry(filename + "_mask." + mask.getExtension()));
+				mask.writeTo(zos);
+				zos.closeEntry();
+			}
+		}
+		finally
+		{
+			zos.close();
+		}
+	}
+
+	/**
+	 * Add the cache validation headers to the response, and if the request's
+	 * conditional headers show the client's copy is current, send a 304.
+	 * 
+	 * @return True if a 304 was sent
+	 */
+	private boolean notModified(HttpExchange exchange, String etag, long lastModified) throws IOException
+	{
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("ETag", etag);
+		headers.set("Last-Modified", httpDateFormat.get().format(new Date(lastModified)));
+
+		Headers request = exchange.getRequestHeaders();
+		String ifNoneMatch = request.getFirst("If-None-Match");
+		boolean notModified;
+		if (ifNoneMatch != null)
+		{
+			notModified = ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag);
+		}
+		else
+		{
+			String ifModifiedSince = request.getFirst("If-Modified-Since");
+			notModified = false;
+			if (ifModifiedSince != null)
+			{
+				try
+				{
+					Date since = httpDateFormat.get().parse(ifModifiedSince);
+					notModified = lastModified / 1000 <= since.getTime() / 1000;
+				}
+				catch (ParseException e)
+				{
+				}
+			}
+		}
+
+		if (notModified)
+		{
+			exchange.sendResponseHeaders(304, -1);
+		}
+		return notModified;
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query == null)
+			return parameters;
+
+		for (String pair : query.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			String name = URLDecoder.decode(equals >= 0 ? pair.substring(0, equals) : pair, "UTF-8");
+			String value = equals >= 0 ? URLDecoder.decode(pair.substring(equals + 1), "UTF-8") : "";
+			if (!parameters.containsKey(name))
+			{
+				parameters.put(name, value);
+			}
+		}
+		return parameters;
+	}
+
+	private static boolean isValidLevel(String L)
+	{
+		return parseInteger(L) != null;
+	}
+
+	/**
+	 * Datasets are relative paths under the tile root; don't allow requests to
+	 * escape the root.
+	 */
+	private static boolean isValidDataset(String T)
+	{
+		if (T.length() == 0 || T.startsWith("/") || T.indexOf('\\') >= 0 || T.indexOf(':') >= 0)
+			return false;
+		for (String segment : T.split("/"))
+		{
+			if (segment.equals(".."))
+				return false;
+		}
+		return true;
+	}
+
+	private static Integer parseInteger(String value)
+	{
+		try
+		{
+			return Integer.valueOf(value);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private static String paddedString(String value, int charcount)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = value.length(); i < charcount; i++)
+		{
+			sb.append('0');
+		}
+		return sb.append(value).toString();
+	}
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import au.gov.ga.worldwind.tiler.archive.TileArchiveReader;
+import au.gov.ga.worldwind.tiler.server.HandleCache.Handle;
+
+/**
+ * A tile (or blank tile) found by the {@link TileRepository}, ready to be
+ * written to a response. Resources hold open file handles, so must be closed
+ * after use.
+ */
+public abstract class TileResource
+{
+	private final String extension;
+
+	protected TileResource(String extension)
+	{
+		this.extension = extension;
+	}
+
+	/**
+	 * @return File extension of this tile
+	 */
+	public String getExtension()
+	{
+		return extension;
+	}
+
+	/**
+	 * @return Length of this tile's data in bytes, or -1 if unknown
+	 */
+	public abstract long getLength();
+
+	/**
+	 * @return Modification time of this tile, in milliseconds since the epoch
+	 */
+	public abstract long getLastModified();
+
+	/**
+	 * @return Opaque string that changes whenever this tile's data changes
+	 */
+	public abstract String getVersion();
+
+	/**
+	 * Write this tile's data to the given stream. The stream is not closed.
+	 */
+	public abstract void writeTo(OutputStream os) throws IOException;
+
+	/**
+	 * Release the file handles held by this resource.
+	 */
+	public abstract void close();
+
+	/**
+	 * Write the given region of a file channel to a stream, using
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so that
+	 * the data isn't copied through the Java heap.
+	 */
+	protected static void transfer(FileChannel channel, long position, long length, OutputStream os)
+			throws IOException
+	{
+		WritableByteChannel target = Channels.newChannel(os);
+		long transferred = 0;
+		while (transferred < length)
+		{
+			long count = channel.transferTo(position + transferred, length - transferred, target);
+			if (count <= 0)
+				throw new IOException("Unexpected end of file");
+			transferred += count;
+		}
+	}
+
+	/**
+	 * A tile stored in its own file.
+	 */
+	public static class FileTileResource extends TileResource
+	{
+		private final RandomAccessFile raf;
+		private final long length;
+		private final long lastModified;
+
+		/**
+		 * @throws FileNotFoundException
+		 *             If the file doesn't exist
+		 */
+		public FileTileResource(File file, String extension) throws FileNotFoundException
+		{
+			super(extension);
+			this.raf = new RandomAccessFile(file, "r");
+			this.lastModified = file.lastModified();
+			long length;
+			try
+			{
+				length = raf.length();
+			}
+			catch (IOException e)
+			{
+				length = file.length();
+			}
+			this.length = length;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return length;
+		}
+
+		@Override
+		public long getLastModified()
+		{
+			return lastModified;
+		}
+
+		@Override
+		public String getVersion()
+		{
+			return Long.toHexString(lastModified) + "-" + Long.toHexString(length);
+		}
+
+		@Override
+		public void writeTo(OutputStream os) throws IOException
+		{
+			transfer(raf.getChannel(), 0, length, os);
+		}
+
+		@Override
+		public void close()
+		{
+			try
+			{
+				raf.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+	}
+
+	/**
+	 * A tile stored as an entry in a zip file.
+	 */
+	public static class ZipTileResource extends TileResource
+	{
+		private final HandleCache<ZipFile> cache;
+		private final Handle<ZipFile> handle;
+		private final ZipEntry entry;
+
+		public ZipTileResource(HandleCache<ZipFile> cache, Handle<ZipFile> handle, ZipEntry entry, String extension)
+		{
+			super(extension);
+			this.cache = cache;
+			this.handle = handle;
+			this.entry = entry;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return entry.getSize();
+		}
+
+		@Override
+		public long getLastModified()
+		{
+			return entry.getTime() >= 0 ? entry.getTime() : handle.getLastModified();
+		}
+
+		@Override
+		public String getVersion()
+		{
+			return Long.toHexString(handle.getLastModified()) + "-" + Long.toHexString(entry.getCrc());
+		}
+
+		@Override
+		public void writeTo(OutputStream os) throws IOException
+		{
+			InputStream is = handle.value.getInputStream(entry);
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int size;
+				while ((size = is.read(buffer)) >= 0)
+				{
+					os.write(buffer, 0, size);
+				}
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			cache.release(handle);
+		}
+	}
+
+	/**
+	 * A tile stored in a tile archive.
+	 */
+	public static class ArchiveTileResource extends TileResource
+	{
+		private final HandleCache<TileArchiveReader> cache;
+		private final Handle<TileArchiveReader> handle;
+		private final int row;
+		private final int col;
+
+		public ArchiveTileResource(HandleCache<TileArchiveReader> cache, Handle<TileArchiveReader> handle, int row,
+				int col, String extension)
+		{
+			super(extension);
+			this.cache = cache;
+			this.handle = handle;
+			this.row = row;
+			this.col = col;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return handle.value.getLength(row, col);
+		}
+
+		@Override
+		public long getLastModified()
+		{
+			return handle.getLastModified();
+		}
+
+		@Override
+		public String getVersion()
+		{
+			return Long.toHexString(handle.getLastModified()) + "-" + row + "-" + col + "-"
+					+ Long.toHexString(getLength());
+		}
+
+		@Override
+		public void writeTo(OutputStream os) throws IOException
+		{
+			handle.value.transferTo(row, col, Channels.newChannel(os));
+		}
+
+		@Override
+		public void close()
+		{
+			cache.release(handle);
+		}
+	}
+}
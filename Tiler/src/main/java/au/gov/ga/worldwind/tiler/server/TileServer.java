@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.converters.FileConverter;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Standalone tile server, serving tiles from a tile root directory without
+ * requiring a servlet container.
+ * <p/>
+ * Serves the same request contract as the TileServer JSPs: imagery tiles on
+ * <code>/tiles.jsp</code> (and <code>/tiles</code>), and elevation tiles on
+ * <code>/elev.jsp</code> (and <code>/elev</code>). Directory, archive and zip
+ * handles and file existence lookups are cached between requests, as are missing
+ * tiles and assembled image+mask zips.
+ */
+public class TileServer
+{
+	@Parameter(names = "-root", description = "The tile root directory", required = true, converter = FileConverter.class)
+	private File root;
+
+	@Parameter(names = "-port", description = "The port to listen on")
+	private int port = 8080;
+
+	@Parameter(names = "-threads", description = "The number of request handling threads")
+	private int threads = Runtime.getRuntime().availableProcessors() * 4;
+
+	@Parameter(names = "-cacheTtl", description = "How long file existence lookups are cached for (in milliseconds)")
+	private long cacheTimeToLive = 10000;
+
+	@Parameter(names = "-maxLookups", description = "The maximum number of file and zip entry lookups to cache")
+	private int maxLookups = 100000;
+
+	@Parameter(names = "-maxOpenFiles", description = "The maximum number of zip and archive files kept open")
+	private int maxOpenFiles = 256;
+
+	@Parameter(names = "-missingTtl", description = "How long missing tiles are remembered for (in milliseconds)")
+	private long missingTimeToLive = 60000;
+
+	@Parameter(names = "-maxMissing", description = "The maximum number of missing tiles to remember")
+	private int maxMissingTiles = 100000;
+
+	@Parameter(names = "-bundleCacheSize", description = "The size of the cache for assembled image+mask zips (in MB)")
+	private int bundleCacheSize = 64;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private TileRepository repository;
+	private BundleCache bundleCache;
+
+	public static void main(String[] args) throws Exception
+	{
+		//tiles are small responses; without TCP_NODELAY they are held up by Nagle's algorithm
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+		{
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+
+		TileServer tileServer = new TileServer();
+		JCommander jCommander = null;
+		try
+		{
+			jCommander = new JCommander();
+			jCommander.addObject(tileServer);
+			jCommander.parse(args);
+		}
+		catch (ParameterException e)
+		{
+			System.out.println(e.getLocalizedMessage());
+			jCommander.usage();
+			return;
+		}
+
+		tileServer.start();
+		System.out.println("Serving tiles from " + tileServer.root.getAbsolutePath() + " on port " + tileServer.port);
+	}
+
+	public TileServer()
+	{
+	}
+
+	public TileServer(File root, int port, int threads)
+	{
+		this.root = root;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/**
+	 * Start listening for tile requests.
+	 * 
+	 * @throws IOException
+	 *             If the server socket cannot be bound
+	 */
+	public synchronized void start() throws IOException
+	{
+		if (server != null)
+			throw new IllegalStateException("Server already started");
+		if (!root.isDirectory())
+			throw new IOException("Tile root is not a directory: " + root);
+
+		repository =
+				new TileRepository(root, TileRequestHandler.getExtensions(), cacheTimeToLive, maxLookups,
+						maxOpenFiles, missingTimeToLive, maxMissingTiles);
+		bundleCache = bundleCacheSize > 0 ? new BundleCache(bundleCacheSize * 1024L * 1024L) : null;
+		TileRequestHandler tiles = new TileRequestHandler(repository, true, true, bundleCache);
+		TileRequestHandler elevations = new TileRequestHandler(repository, false, false);
+
+		executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/tiles.jsp", tiles);
+		server.createContext("/tiles", tiles);
+		server.createContext("/elev.jsp", elevations);
+		server.createContext("/elev", elevations);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stop the server, and close all cached file handles.
+	 */
+	public synchronized void stop()
+	{
+		if (server == null)
+			return;
+
+		server.stop(0);
+		executor.shutdownNow();
+		repository.close();
+		if (bundleCache != null)
+		{
+			bundleCache.clear();
+		}
+		server = null;
+		executor = null;
+		repository = null;
+		bundleCache = null;
+	}
+
+	/**
+	 * @return The port the server is listening on
+	 */
+	public int getPort()
+	{
+		return server != null ? server.getAddress().getPort() : port;
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Simple load test harness for tile servers. Requests every tile in a
+ * row/column range of a level from a number of concurrent threads, and
+ * reports throughput and latency. Can be pointed at either the TileServer JSPs
+ * or the standalone {@link TileServer} to compare them.
+ * <p/>
+ * For example:
+ * 
+ * <pre>
+ * TileServerLoadTester -url http://localhost:8080/tile_server/tiles.jsp -dataset imagery/landsat -level 3 -maxX 15 -maxY 7
+ * TileServerLoadTester -url http://localhost:8081/tiles.jsp -dataset imagery/landsat -level 3 -maxX 15 -maxY 7
+ * </pre>
+ */
+public class TileServerLoadTester
+{
+	@Parameter(names = "-url", description = "The tile service URL (eg http://localhost:8080/tiles.jsp)", required = true)
+	private String url;
+
+	@Parameter(names = "-dataset", description = "The dataset to request tiles from (T parameter)", required = true)
+	private String dataset;
+
+	@Parameter(names = "-level", description = "The level to request tiles from (L parameter)")
+	private int level = 0;
+
+	@Parameter(names = "-minX", description = "The minimum column to request")
+	private int minX = 0;
+
+	@Parameter(names = "-maxX", description = "The maximum column to request")
+	private int maxX = 0;
+
+	@Parameter(names = "-minY", description = "The minimum row to request")
+	private int minY = 0;
+
+	@Parameter(names = "-maxY", description = "The maximum row to request")
+	private int maxY = 0;
+
+	@Parameter(names = "-format", description = "The format to request (F parameter)")
+	private String format;
+
+	@Parameter(names = "-threads", description = "The number of concurrent request threads")
+	private int threads = 8;
+
+	@Parameter(names = "-requests", description = "The total number of requests to make")
+	private int requests = 1000;
+
+	@Parameter(names = "-warmup", description = "The number of requests to make before measuring")
+	private int warmup = 100;
+
+	public static void main(String[] args) throws Exception
+	{
+		TileServerLoadTester tester = new TileServerLoadTester();
+		JCommander jCommander = null;
+		try
+		{
+			jCommander = new JCommander();
+			jCommander.addObject(tester);
+			jCommander.parse(args);
+		}
+		catch (ParameterException e)
+		{
+			System.out.println(e.getLocalizedMessage());
+			jCommander.usage();
+			return;
+		}
+
+		tester.run(tester.warmup);
+		System.out.println(tester.run(tester.requests));
+	}
+
+	/**
+	 * Perform the given number of requests, cycling through the configured
+	 * tile range.
+	 * 
+	 * @return A summary of the throughput and latency
+	 */
+	public String run(final int count) throws InterruptedException
+	{
+		final int cols = maxX - minX + 1;
+		final int rows = maxY - minY + 1;
+		if (cols <= 0 || rows <= 0)
+			throw new IllegalArgumentException("Invalid tile range");
+
+		final AtomicInteger next = new AtomicInteger();
+		final long[] latencies = new long[count];
+		final int[] statuses = new int[count];
+		final long[] bytes = new long[threads];
+
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++)
+		{
+			final int thread = t;
+			workers[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					byte[] buffer = new byte[8192];
+					int i;
+					while ((i = next.getAndIncrement()) < count)
+					{
+						int tile = i % (rows * cols);
+						int row = minY + tile / cols;
+						int col = minX + tile % cols;
+						long requestStart = System.nanoTime();
+						try
+						{
+							HttpURLConnection connection = (HttpURLConnection) createURL(row, col).openConnection();
+							statuses[i] = connection.getResponseCode();
+							InputStream is =
+									statuses[i] < 400 ? connection.getInputStream() : connection.getErrorStream();
+							if (is != null)
+							{
+								int read;
+								while ((read = is.read(buffer)) >= 0)
+								{
+									bytes[thread] += read;
+								}
+								is.close();
+							}
+						}
+						catch (IOException e)
+						{
+							statuses[i] = -1;
+						}
+						latencies[i] = System.nanoTime() - requestStart;
+					}
+				}
+			}, "Load tester " + t);
+			workers[t].start();
+		}
+		for (Thread worker : workers)
+		{
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long totalBytes = 0;
+		for (long b : bytes)
+		{
+			totalBytes += b;
+		}
+		Map<Integer, Integer> statusCounts = new TreeMap<Integer, Integer>();
+		for (int status : statuses)
+		{
+			Integer c = statusCounts.get(status);
+			statusCounts.put(status, c == null ? 1 : c + 1);
+		}
+		Arrays.sort(latencies);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(url).append('\n');
+		sb.append(String.format("Requests = %d, threads = %d, time = %.2fs\n", count, threads, seconds));
+		sb.append(String.format("Requests/sec = %.1f\n", count / seconds));
+		sb.append(String.format("MB/sec = %.2f\n", totalBytes / seconds / (1024 * 1024)));
+		sb.append(String.format("Latency p50 = %.2fms, p99 = %.2fms, max = %.2fms\n", percentile(latencies, 0.5),
+				percentile(latencies, 0.99), percentile(latencies, 1)));
+		sb.append("Status counts = ").append(statusCounts);
+		return sb.toString();
+	}
+
+	private URL createURL(int row, int col) throws IOException
+	{
+		StringBuilder sb = new StringBuilder(url);
+		sb.append(url.indexOf('?') >= 0 ? '&' : '?');
+		sb.append("T=").append(dataset);
+		sb.append("&L=").append(level);
+		sb.append("&X=").append(col);
+		sb.append("&Y=").append(row);
+		if (format != null)
+		{
+			sb.append("&F=").append(format);
+		}
+		return new URL(sb.toString());
+	}
+
+	private static double percentile(long[] sorted, double percentile)
+	{
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Encodes images to a buffer using {@link ImageIO}. Looking up an
+ * {@link ImageWriter} is relatively expensive, so each encoder keeps the
+ * writers it has used (one per format) for reuse, along with its output
+ * buffer. As with {@link ImageIO#write(RenderedImage, String, java.io.File)},
+ * each registered writer for the format is tried until one can encode the
+ * image.
+ * <p/>
+ * Encoders are not thread-safe; use {@link #acquire()} and
+ * {@link #release(ImageEncoder)} to borrow an encoder from a shared pool.
+ */
+public class ImageEncoder
+{
+	private final static Queue<ImageEncoder> pool = new ConcurrentLinkedQueue<ImageEncoder>();
+
+	private final Map<String, ImageWriter> writers = new HashMap<String, ImageWriter>();
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	/**
+	 * @return An encoder from the shared pool (or a new encoder if the pool is
+	 *         empty); must be returned with {@link #release(ImageEncoder)}
+	 */
+	public static ImageEncoder acquire()
+	{
+		ImageEncoder encoder = pool.poll();
+		return encoder != null ? encoder : new ImageEncoder();
+	}
+
+	/**
+	 * Return an encoder to the shared pool.
+	 */
+	public static void release(ImageEncoder encoder)
+	{
+		pool.offer(encoder);
+	}
+
+	/**
+	 * Encode an image using an encoder from the shared pool.
+	 * 
+	 * @see #encode(RenderedImage, String, float)
+	 */
+	public static ByteBuffer encodeImage(RenderedImage image, String format, float jpegQuality) throws IOException
+	{
+		ImageEncoder encoder = acquire();
+		try
+		{
+			return encoder.encode(image, format, jpegQuality);
+		}
+		finally
+		{
+			release(encoder);
+		}
+	}
+
+	/**
+	 * Encode an image into a buffer, in the given image format.
+	 * 
+	 * @param image
+	 *            Image to encode
+	 * @param format
+	 *            Image format (must be supported by {@link ImageIO})
+	 * @param jpegQuality
+	 *            JPEG compression to use (if using the JPEG image format)
+	 * @return Buffer containing the encoded image
+	 * @throws IOException
+	 */
+	public ByteBuffer encode(RenderedImage image, String format, float jpegQuality) throws IOException
+	{
+		boolean jpeg = isJpeg(format);
+		String writerFormat = jpeg ? "jpeg" : format.toLowerCase();
+		ImageWriter writer = getWriter(writerFormat, image);
+		if (writer == null)
+		{
+			//no writer accepts the image, so let ImageIO try to convert it
+			output.reset();
+			ImageOutputStream ios = new MemoryCacheImageOutputStream(output);
+			try
+			{
+				if (!ImageIO.write(image, writerFormat, ios))
+					throw new IOException("No image writer found for format " + format + " that can encode the image");
+			}
+			finally
+			{
+				ios.close();
+			}
+			return ByteBuffer.wrap(output.toByteArray());
+		}
+
+		ImageWriteParam param = null;
+		if (jpeg)
+		{
+			param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(jpegQuality);
+		}
+
+		output.reset();
+		ImageOutputStream ios = new MemoryCacheImageOutputStream(output);
+		try
+		{
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(image, null, null), param);
+		}
+		catch (RuntimeException e)
+		{
+			//writer may be left in an inconsistent state
+			writers.remove(writerFormat);
+			writer.dispose();
+			throw e;
+		}
+		finally
+		{
+			ios.close();
+			writer.setOutput(null);
+		}
+		return ByteBuffer.wrap(output.toByteArray());
+	}
+
+	/**
+	 * Dispose of the writers held by this encoder.
+	 */
+	public void dispose()
+	{
+		for (ImageWriter writer : writers.values())
+		{
+			writer.dispose();
+		}
+		writers.clear();
+	}
+
+	/**
+	 * @return A writer for the given format that can encode the image (reusing
+	 *         the previously used writer if it can), or null if none can
+	 */
+	private ImageWriter getWriter(String format, RenderedImage image)
+	{
+		ImageWriter writer = writers.get(format);
+		if (writer != null && canEncode(writer, image))
+			return writer;
+
+		Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName(format);
+		while (iterator.hasNext())
+		{
+			ImageWriter candidate = iterator.next();
+			if (canEncode(candidate, image))
+			{
+				if (writer != null)
+					writer.dispose();
+				writers.put(format, candidate);
+				return candidate;
+			}
+			candidate.dispose();
+		}
+		return null;
+	}
+
+	private static boolean canEncode(ImageWriter writer, RenderedImage image)
+	{
+		return writer.getOriginatingProvider() == null || writer.getOriginatingProvider().canEncodeImage(image);
+	}
+
+	private static boolean isJpeg(String format)
+	{
+		return "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+	}
+}
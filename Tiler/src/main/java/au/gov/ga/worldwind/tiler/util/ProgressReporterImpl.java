@@ -25,7 +25,7 @@ import java.util.logging.Logger;
  */
 public abstract class ProgressReporterImpl implements ProgressReporter
 {
-	private boolean cancelled = false;
+	private volatile boolean cancelled = false;
 	private final Logger logger;
 
 	public ProgressReporterImpl(Logger logger)
@@ -89,6 +89,7 @@ import nasa.worldwind.retrieve.ExtendedRetrievalService;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.downloader.DownloaderStatusBar;
+import au.gov.ga.worldwind.common.downloader.HttpConnectionPool;
 import au.gov.ga.worldwind.common.render.ExtendedDrawContext;
 import au.gov.ga.worldwind.common.terrain.ElevationModelFactory;
 import au.gov.ga.worldwind.common.terrain.WireframeRectangularTessellator;
@@ -176,6 +177,9 @@ public class Application
 		Configuration.setValue(AVKey.RETRIEVAL_SERVICE_CLASS_NAME, ExtendedRetrievalService.class.getName());
 		Configuration.setValue(AVKey.TESSELLATOR_CLASS_NAME, WireframeRectangularTessellator.class.getName());
 
+		//before any network access, as the JRE only reads the keep-alive cache size once
+		HttpConnectionPool.configureKeepAlive();
+
 		GDALDataHelper.init();
 	}
 